@@ -0,0 +1,53 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import com.annihilator.data.playground.config.AwsHttpClientConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.SdkEventLoopGroup;
+
+import java.time.Duration;
+
+/**
+ * The Netty event loop and connection pool shared by every async AWS client of the process. Clients built on
+ * it do not own it, so closing a client leaves it running for the others; AWS I/O therefore uses a fixed set
+ * of event loop threads however many clients and in-flight calls there are.
+ */
+final class AwsAsyncHttp {
+
+    private static final Logger logger = LoggerFactory.getLogger(AwsAsyncHttp.class);
+
+    private static SdkAsyncHttpClient sharedClient;
+
+    private AwsAsyncHttp() {
+    }
+
+    /**
+     * Returns the shared HTTP client, creating it from the first configuration passed in.
+     */
+    static synchronized SdkAsyncHttpClient shared(AwsHttpClientConfig config) {
+
+        if (sharedClient != null) {
+            return sharedClient;
+        }
+
+        AwsHttpClientConfig httpConfig = config != null ? config : new AwsHttpClientConfig();
+
+        SdkEventLoopGroup.Builder eventLoopGroup = SdkEventLoopGroup.builder();
+
+        if (httpConfig.getEventLoopThreads() > 0) {
+            eventLoopGroup.numberOfThreads(httpConfig.getEventLoopThreads());
+        }
+
+        sharedClient = NettyNioAsyncHttpClient.builder()
+                .eventLoopGroupBuilder(eventLoopGroup)
+                .maxConcurrency(httpConfig.getMaxConnections())
+                .connectionAcquisitionTimeout(Duration.ofMillis(httpConfig.getConnectionAcquisitionTimeout()))
+                .build();
+
+        logger.info("Created shared AWS async HTTP client (max {} connections)", httpConfig.getMaxConnections());
+
+        return sharedClient;
+    }
+}
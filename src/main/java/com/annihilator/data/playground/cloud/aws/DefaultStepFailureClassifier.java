@@ -0,0 +1,85 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Classifies step failures by well-known Hive, Presto, Spark and YARN messages and by the exit code of the
+ * step script when the reason carries one. Anything unrecognised is treated as transient, so unknown
+ * failures keep the previous retry behaviour.
+ */
+public class DefaultStepFailureClassifier implements StepFailureClassifier {
+
+    private static final List<String> PERMANENT_PATTERNS = Arrays.asList(
+            "semanticexception",
+            "parseexception",
+            "syntax error",
+            "invalid query",
+            "mismatched input",
+            "cannot recognize input",
+            "table not found",
+            "column not found",
+            "invalid table alias",
+            "invalid column reference",
+            "analysisexception",
+            "cannot be resolved",
+            "permission denied",
+            "access denied",
+            "authentication failed",
+            "task not found");
+
+    private static final List<String> CAPACITY_PATTERNS = Arrays.asList(
+            "outofmemoryerror",
+            "out of memory",
+            "exceeding memory limits",
+            "container killed",
+            "no space left on device",
+            "insufficient capacity",
+            "insufficient resources",
+            "exceeded max memory",
+            "no available cluster");
+
+    // "exit code 3", "exited with code 3", "exitCode=3", "exit status 3"
+    private static final Pattern EXIT_CODE = Pattern.compile("exit(?:ed with)?[ _]?(?:code|status)[ =:]*(\\d+)", Pattern.CASE_INSENSITIVE);
+
+    @Override
+    public FailureClass classify(String failureReason) {
+
+        if (failureReason == null || failureReason.trim().isEmpty()) {
+            return FailureClass.TRANSIENT;
+        }
+
+        String lowerReason = failureReason.toLowerCase();
+
+        if (PERMANENT_PATTERNS.stream().anyMatch(lowerReason::contains)) {
+            return FailureClass.PERMANENT;
+        }
+
+        if (CAPACITY_PATTERNS.stream().anyMatch(lowerReason::contains)) {
+            return FailureClass.CAPACITY;
+        }
+
+        Matcher exitCode = EXIT_CODE.matcher(failureReason);
+
+        if (exitCode.find()) {
+            return classifyExitCode(Integer.parseInt(exitCode.group(1)));
+        }
+
+        return FailureClass.TRANSIENT;
+    }
+
+    private static FailureClass classifyExitCode(int exitCode) {
+
+        switch (exitCode) {
+            case 126: // not executable
+            case 127: // command not found
+                return FailureClass.PERMANENT;
+            case 137: // SIGKILL, usually the OOM killer
+                return FailureClass.CAPACITY;
+            default:
+                return FailureClass.TRANSIENT;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import com.annihilator.data.playground.config.EMRCapacityConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.emr.EmrClient;
+import software.amazon.awssdk.services.emr.model.InstanceGroup;
+import software.amazon.awssdk.services.emr.model.InstanceGroupModifyConfig;
+import software.amazon.awssdk.services.emr.model.InstanceGroupState;
+import software.amazon.awssdk.services.emr.model.InstanceGroupType;
+import software.amazon.awssdk.services.emr.model.ListInstanceGroupsRequest;
+import software.amazon.awssdk.services.emr.model.ModifyClusterRequest;
+import software.amazon.awssdk.services.emr.model.ModifyInstanceGroupsRequest;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Sizes each cluster to its step backlog: the step concurrency level follows pending + running steps and
+ * the task instance group follows the same demand divided by steps per instance, both within the
+ * configured bounds.
+ *
+ * Scaling up is applied on the first observation. Scaling down waits until demand has stayed below the
+ * current size for the configured delay, so a short lull between scheduled runs does not shed capacity.
+ */
+public class EMRCapacityController {
+
+    private static final Logger logger = LoggerFactory.getLogger(EMRCapacityController.class);
+
+    private final EmrClient emrClient;
+    private final EMRCapacityConfig config;
+    private final LongSupplier clock;
+    private final Map<String, ScaleDownTimers> timersByCluster = new ConcurrentHashMap<>();
+
+    public EMRCapacityController(EmrClient emrClient, EMRCapacityConfig config) {
+        this(emrClient, config, System::currentTimeMillis);
+    }
+
+    EMRCapacityController(EmrClient emrClient, EMRCapacityConfig config, LongSupplier clock) {
+        this.emrClient = emrClient;
+        this.config = config;
+        this.clock = clock;
+    }
+
+    void reconcile(EMRCluster cluster) {
+
+        String clusterId = cluster.getClusterId();
+
+        if (clusterId == null || !cluster.isHealthy()) {
+            return;
+        }
+
+        reconcile(clusterId, cluster.getPendingSteps(), cluster.getRunningSteps(), cluster.getObservedStepConcurrency());
+    }
+
+    /**
+     * @param currentConcurrency the cluster's step concurrency level, or 0 when unknown
+     */
+    void reconcile(String clusterId, int pendingSteps, int runningSteps, int currentConcurrency) {
+
+        ScaleDownTimers timers = timersByCluster.computeIfAbsent(clusterId, k -> new ScaleDownTimers());
+        int demand = pendingSteps + runningSteps;
+
+        try {
+            int desiredConcurrency = clamp(demand, config.getMinStepConcurrency(), config.getMaxStepConcurrency());
+
+            if (currentConcurrency > 0 && timers.concurrency.allows(desiredConcurrency, currentConcurrency)) {
+
+                emrClient.modifyCluster(ModifyClusterRequest.builder()
+                        .clusterId(clusterId)
+                        .stepConcurrencyLevel(desiredConcurrency)
+                        .build());
+
+                logger.info("Changed step concurrency of cluster {} from {} to {} (pending: {}, running: {})",
+                        clusterId, currentConcurrency, desiredConcurrency, pendingSteps, runningSteps);
+            }
+
+            Optional<InstanceGroup> taskGroup = findTaskGroup(clusterId);
+
+            if (taskGroup.isEmpty()) {
+                return;
+            }
+
+            int currentInstances = taskGroup.get().requestedInstanceCount();
+            int desiredInstances = clamp((demand + config.getStepsPerTaskInstance() - 1) / config.getStepsPerTaskInstance(),
+                    config.getMinTaskInstances(), config.getMaxTaskInstances());
+
+            if (timers.instances.allows(desiredInstances, currentInstances)) {
+
+                emrClient.modifyInstanceGroups(ModifyInstanceGroupsRequest.builder()
+                        .clusterId(clusterId)
+                        .instanceGroups(InstanceGroupModifyConfig.builder()
+                                .instanceGroupId(taskGroup.get().id())
+                                .instanceCount(desiredInstances)
+                                .build())
+                        .build());
+
+                logger.info("Resized task instance group {} of cluster {} from {} to {} (pending: {}, running: {})",
+                        taskGroup.get().id(), clusterId, currentInstances, desiredInstances, pendingSteps, runningSteps);
+            }
+
+        } catch (Exception e) {
+            logger.warn("Failed to adjust capacity of cluster {}: {}", clusterId, e.getMessage());
+        }
+    }
+
+    /**
+     * The task instance group, if the cluster has one that is not already being resized.
+     */
+    private Optional<InstanceGroup> findTaskGroup(String clusterId) {
+
+        return emrClient.listInstanceGroups(ListInstanceGroupsRequest.builder().clusterId(clusterId).build())
+                .instanceGroups()
+                .stream()
+                .filter(group -> group.instanceGroupType() == InstanceGroupType.TASK)
+                .filter(group -> group.status() != null && group.status().state() == InstanceGroupState.RUNNING)
+                .findFirst();
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private class ScaleDownTimers {
+
+        final ScaleDownTimer concurrency = new ScaleDownTimer();
+        final ScaleDownTimer instances = new ScaleDownTimer();
+    }
+
+    private class ScaleDownTimer {
+
+        private long lowDemandSince = -1;
+
+        /**
+         * Scale-ups always pass and reset the timer; a scale-down passes once demand has been below the
+         * current size for the configured delay.
+         */
+        synchronized boolean allows(int desired, int current) {
+
+            long now = clock.getAsLong();
+
+            if (desired >= current) {
+                lowDemandSince = -1;
+                return desired > current;
+            }
+
+            if (lowDemandSince < 0) {
+                lowDemandSince = now;
+                return false;
+            }
+
+            if (now - lowDemandSince >= config.getScaleDownDelay()) {
+                lowDemandSince = -1;
+                return true;
+            }
+
+            return false;
+        }
+    }
+}
@@ -0,0 +1,531 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import com.annihilator.data.playground.config.AWSEmrConfig;
+import com.annihilator.data.playground.model.EMRClusterHealth;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.cloudformation.CloudFormationClient;
+import software.amazon.awssdk.services.cloudformation.model.*;
+import software.amazon.awssdk.services.emr.EmrClient;
+import software.amazon.awssdk.services.emr.model.*;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One member of the {@link EMRClusterPool}: a CloudFormation stack whose EMR cluster is provisioned on
+ * demand, together with its own submission batcher and the load figures used for step placement.
+ *
+ * Provisioning runs on a dedicated thread and is published as a shared readiness future, so callers
+ * chain on it instead of blocking while a cluster is (re)created.
+ */
+public class EMRCluster {
+
+    private static final Logger logger = LoggerFactory.getLogger(EMRCluster.class);
+
+    // Upper bound on ListSteps pages read per health refresh (50 steps per page).
+    private static final int MAX_LOAD_PAGES = 10;
+
+    private final String stackName;
+    private final String clusterLogicalId;
+    private final Set<String> taskTypes;
+    private final boolean adoptAnyCluster;
+    private final AWSEmrConfig awsEmrConfig;
+    private final CloudFormationClient cloudFormationClient;
+    private final EmrClient emrClient;
+    private final EMRStepSubmissionBatcher submissionBatcher;
+    private final ExecutorService provisioningExecutor;
+
+    private final AtomicInteger inFlightSteps = new AtomicInteger();
+    private final AtomicInteger placedSinceRefresh = new AtomicInteger();
+
+    private volatile String currentClusterId;
+    private volatile CompletableFuture<String> readiness;
+    private volatile ClusterState observedState;
+    private volatile int observedStepConcurrency;
+    private volatile int observedPendingSteps;
+    private volatile int observedRunningSteps;
+    private volatile String lastError;
+    private volatile long lastCheckedAt;
+
+    /**
+     * @param taskTypes       task types this cluster accepts, empty for any
+     * @param adoptAnyCluster whether an unrelated running cluster may be adopted when the stack has none;
+     *                        only safe when the pool has a single member
+     */
+    public EMRCluster(String stackName, String clusterLogicalId, Collection<String> taskTypes, boolean adoptAnyCluster,
+                      AWSEmrConfig awsEmrConfig, CloudFormationClient cloudFormationClient, EmrClient emrClient) {
+        this.stackName = stackName;
+        this.clusterLogicalId = clusterLogicalId;
+        this.taskTypes = taskTypes != null ? new HashSet<>(taskTypes) : new HashSet<>();
+        this.adoptAnyCluster = adoptAnyCluster;
+        this.awsEmrConfig = awsEmrConfig;
+        this.cloudFormationClient = cloudFormationClient;
+        this.emrClient = emrClient;
+        this.submissionBatcher = new EMRStepSubmissionBatcher(emrClient, this::awaitReady,
+                awsEmrConfig.getStepSubmissionBatchWindow(), awsEmrConfig.getStepSubmissionBatchSize());
+        this.provisioningExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "emr-cluster-provisioner-" + stackName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public String getStackName() {
+        return stackName;
+    }
+
+    String getClusterId() {
+        return currentClusterId;
+    }
+
+    int getObservedStepConcurrency() {
+        return observedStepConcurrency;
+    }
+
+    public boolean accepts(String taskType) {
+        return taskTypes.isEmpty() || taskTypes.contains(taskType);
+    }
+
+    public boolean isDedicatedTo(String taskType) {
+        return !taskTypes.isEmpty() && taskTypes.contains(taskType);
+    }
+
+    /**
+     * Submits a step through this cluster's batcher. The step counts towards the cluster's load until
+     * {@link #onStepFinished()} is called.
+     */
+    public CompletableFuture<EMRStepSubmissionBatcher.SubmittedStep> submit(StepConfig stepConfig) {
+        return submissionBatcher.submit(stepConfig);
+    }
+
+    void onStepPlaced() {
+        inFlightSteps.incrementAndGet();
+        placedSinceRefresh.incrementAndGet();
+    }
+
+    public void onStepFinished() {
+        inFlightSteps.updateAndGet(count -> Math.max(0, count - 1));
+    }
+
+    boolean isHealthy() {
+        return currentClusterId != null && (observedState == null || observedState == ClusterState.WAITING || observedState == ClusterState.RUNNING);
+    }
+
+    /**
+     * Pending steps as last observed on the cluster, plus steps placed here since that observation.
+     */
+    int getPendingSteps() {
+        return observedPendingSteps + placedSinceRefresh.get();
+    }
+
+    int getRunningSteps() {
+        return observedRunningSteps;
+    }
+
+    boolean isSaturated() {
+        return getPendingSteps() >= awsEmrConfig.getClusterSaturationPendingSteps();
+    }
+
+    /**
+     * Re-reads cluster state and PENDING / RUNNING step counts. Never provisions a cluster.
+     */
+    void refreshHealth() {
+
+        String clusterId = currentClusterId;
+
+        lastCheckedAt = System.currentTimeMillis();
+
+        if (clusterId == null) {
+            observedState = null;
+            observedPendingSteps = 0;
+            observedRunningSteps = 0;
+            placedSinceRefresh.set(0);
+            return;
+        }
+
+        try {
+            Cluster cluster = emrClient.describeCluster(DescribeClusterRequest.builder().clusterId(clusterId).build()).cluster();
+            observedState = cluster.status().state();
+            observedStepConcurrency = cluster.stepConcurrencyLevel() != null ? cluster.stepConcurrencyLevel() : 0;
+
+            int pending = 0;
+            int running = 0;
+            String marker = null;
+            int pages = 0;
+
+            do {
+                ListStepsResponse response = emrClient.listSteps(ListStepsRequest.builder()
+                        .clusterId(clusterId)
+                        .stepStates(StepState.PENDING, StepState.RUNNING)
+                        .marker(marker)
+                        .build());
+
+                for (StepSummary step : response.steps()) {
+                    if (step.status().state() == StepState.RUNNING) {
+                        running++;
+                    } else {
+                        pending++;
+                    }
+                }
+
+                marker = response.marker();
+                pages++;
+
+            } while (marker != null && pages < MAX_LOAD_PAGES);
+
+            placedSinceRefresh.set(0);
+            observedPendingSteps = pending;
+            observedRunningSteps = running;
+            lastError = null;
+
+        } catch (Exception e) {
+            logger.warn("Failed to refresh health of cluster {} (stack {}): {}", clusterId, stackName, e.getMessage());
+            observedState = ClusterState.UNKNOWN_TO_SDK_VERSION;
+            lastError = e.getMessage();
+        }
+    }
+
+    public EMRClusterHealth getHealth() {
+        return new EMRClusterHealth(stackName, currentClusterId, observedState != null ? observedState.toString() : null,
+                isHealthy(), isSaturated(), inFlightSteps.get(), getPendingSteps(), getRunningSteps(), lastError, lastCheckedAt);
+    }
+
+    public void close() {
+        submissionBatcher.close();
+        provisioningExecutor.shutdownNow();
+
+        CompletableFuture<String> current = readiness;
+        if (current != null) {
+            current.cancel(false);
+        }
+
+        currentClusterId = null;
+    }
+
+    /**
+     * Returns a future completing with the ID of a ready cluster. A cluster known to be up is returned at
+     * the cost of one DescribeCluster call; otherwise every caller shares the same provisioning attempt.
+     * A failed attempt is not cached, so the next call starts a new one.
+     */
+    public CompletableFuture<String> awaitReady() {
+
+        CompletableFuture<String> current = readiness;
+
+        if (current != null && current.isDone() && !current.isCompletedExceptionally()
+                && isClusterStillRunning(current.join())) {
+            return current;
+        }
+
+        synchronized (this) {
+
+            if (readiness != current) {
+                return readiness;
+            }
+
+            if (current != null && !current.isDone()) {
+                return current;
+            }
+
+            readiness = CompletableFuture.supplyAsync(this::ensureClusterReady, provisioningExecutor);
+            return readiness;
+        }
+    }
+
+    public boolean isProvisioning() {
+        CompletableFuture<String> current = readiness;
+        return current != null && !current.isDone();
+    }
+
+    private String ensureClusterReady() {
+        try {
+            if (currentClusterId != null && isClusterStillRunning(currentClusterId)) {
+                logger.debug("Using stored cluster ID: {}", currentClusterId);
+                return currentClusterId;
+            }
+            
+            logger.info("Stored cluster ID {} is not alive, fetching any existing cluster ID", currentClusterId);
+            String existingClusterId = fetchExistingClusterId();
+            
+            if (existingClusterId != null) {
+                logger.info("Found existing cluster: {}, caching it", existingClusterId);
+                currentClusterId = existingClusterId;
+                return existingClusterId;
+            }
+            
+            logger.info("No running cluster found, updating stack to create new cluster");
+            updateStackWithNewRandom();
+            waitForStackUpdateComplete();
+            
+            String newClusterId = getClusterIdFromStackResources();
+            if (newClusterId != null) {
+                waitForClusterReady(newClusterId);
+                currentClusterId = newClusterId;
+                logger.info("Successfully created and cached new cluster: {}", newClusterId);
+                return newClusterId;
+            } else {
+                throw new RuntimeException("Failed to get cluster ID after CloudFormation update");
+            }
+
+        } catch (Exception e) {
+            logger.error("Failed to ensure cluster is ready", e);
+            throw new RuntimeException("Failed to ensure cluster is ready", e);
+        }
+    }
+    
+    private String fetchExistingClusterId() {
+        try {
+            String clusterId = getClusterIdFromStackResources();
+            
+            if (clusterId != null) {
+                ClusterState state = getClusterState(clusterId);
+                
+                if (state == ClusterState.WAITING || state == ClusterState.RUNNING) {
+                    logger.info("Found ready cluster from CloudFormation: {} (state: {})", clusterId, state);
+                    return clusterId;
+                } else if (state == ClusterState.BOOTSTRAPPING || state == ClusterState.STARTING) {
+                    logger.info("Found bootstrapping cluster from CloudFormation: {} (state: {}), waiting for it to be ready", clusterId, state);
+                    waitForClusterReady(clusterId);
+                    return clusterId;
+                } else {
+                    logger.info("Cluster {} from CloudFormation is in state: {}, will be recreated", clusterId, state);
+                }
+            }
+
+            String existingClusterId = findExistingCluster();
+            if (existingClusterId != null) {
+                logger.info("Found existing cluster: {}", existingClusterId);
+                return existingClusterId;
+            }
+
+            logger.info("No existing clusters found");
+            return null;
+
+        } catch (Exception e) {
+            logger.error("Failed to fetch existing cluster ID", e);
+            return null;
+        }
+    }
+    
+    private boolean isClusterStillRunning(String clusterId) {
+        try {
+            DescribeClusterRequest request = DescribeClusterRequest.builder()
+                .clusterId(clusterId)
+                .build();
+            
+            DescribeClusterResponse response = emrClient.describeCluster(request);
+            ClusterState state = response.cluster().status().state();
+            
+            return state == ClusterState.WAITING || state == ClusterState.RUNNING;
+            
+        } catch (Exception e) {
+            logger.warn("Failed to check cluster state for {}: {}", clusterId, e.getMessage());
+            return false;
+        }
+    }
+    
+    
+    private boolean isClusterReady(String clusterId) {
+        try {
+            DescribeClusterRequest request = DescribeClusterRequest.builder()
+                .clusterId(clusterId)
+                .build();
+            
+            DescribeClusterResponse response = emrClient.describeCluster(request);
+            ClusterState state = response.cluster().status().state();
+            
+            if (state == ClusterState.TERMINATED || state == ClusterState.TERMINATED_WITH_ERRORS) {
+                return false;
+            }
+            
+            return state == ClusterState.WAITING || state == ClusterState.RUNNING;
+            
+        } catch (Exception e) {
+            logger.warn("Failed to check cluster state for {}: {}", clusterId, e.getMessage());
+            return false;
+        }
+    }
+    
+    private ClusterState getClusterState(String clusterId) {
+        try {
+            DescribeClusterRequest request = DescribeClusterRequest.builder()
+                .clusterId(clusterId)
+                .build();
+            
+            DescribeClusterResponse response = emrClient.describeCluster(request);
+            return response.cluster().status().state();
+            
+        } catch (Exception e) {
+            logger.warn("Failed to get cluster state for {}: {}", clusterId, e.getMessage());
+            return ClusterState.UNKNOWN_TO_SDK_VERSION;
+        }
+    }
+    
+    private String getClusterIdFromStackResources() {
+        try {
+            ListStackResourcesRequest request = ListStackResourcesRequest.builder()
+                .stackName(stackName)
+                .build();
+            
+            ListStackResourcesResponse response = cloudFormationClient.listStackResources(request);
+            
+            for (StackResourceSummary resource : response.stackResourceSummaries()) {
+                if ("AWS::EMR::Cluster".equals(resource.resourceType())) {
+                    return resource.physicalResourceId();
+                }
+            }
+            
+            return null;
+            
+        } catch (Exception e) {
+            logger.warn("Failed to get cluster ID from stack resources: {}", e.getMessage());
+            return null;
+        }
+    }
+    
+    private String findExistingCluster() {
+        try {
+            ListClustersRequest request = ListClustersRequest.builder()
+                .clusterStates(ClusterState.RUNNING, ClusterState.WAITING, ClusterState.STARTING, ClusterState.BOOTSTRAPPING)
+                .build();
+            
+            ListClustersResponse response = emrClient.listClusters(request);
+            
+            if (response.clusters().isEmpty()) {
+                return null;
+            }
+            
+            String stackClusterId = getClusterIdFromStackResources();
+            if (stackClusterId != null) {
+                for (ClusterSummary cluster : response.clusters()) {
+                    if (cluster.id().equals(stackClusterId)) {
+                        logger.info("Found existing cluster from CloudFormation stack: {} (state: {})", cluster.id(), cluster.status().state());
+                        return cluster.id();
+                    }
+                }
+            }
+            
+            for (ClusterSummary cluster : response.clusters()) {
+                if (cluster.name() != null && cluster.name().contains(clusterLogicalId)) {
+                    logger.info("Found existing cluster with matching name: {} (state: {})", cluster.id(), cluster.status().state());
+                    return cluster.id();
+                }
+            }
+            
+            if (!adoptAnyCluster) {
+                return null;
+            }
+
+            ClusterSummary firstCluster = response.clusters().get(0);
+            logger.info("Using first available existing cluster: {} (state: {})", firstCluster.id(), firstCluster.status().state());
+            return firstCluster.id();
+            
+        } catch (Exception e) {
+            logger.warn("Failed to find existing clusters: {}", e.getMessage());
+            return null;
+        }
+    }
+    
+    private void updateStackWithNewRandom() {
+        try {
+            int newRandom = ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE);
+            
+            UpdateStackRequest request = UpdateStackRequest.builder()
+                .stackName(stackName)
+                .usePreviousTemplate(true)
+                .parameters(
+                    Parameter.builder()
+                        .parameterKey("Random")
+                        .parameterValue(String.valueOf(newRandom))
+                        .build()
+                )
+                .build();
+            
+            cloudFormationClient.updateStack(request);
+            
+        } catch (CloudFormationException e) {
+            if (e.getMessage().contains("No updates are to be performed")) {
+                logger.warn("Random parameter change didn't trigger resource updates - cluster won't be recreated");
+                return;
+            } else if (e.getMessage().contains("UPDATE_IN_PROGRESS")) {
+                waitForStackUpdateComplete();
+                updateStackWithNewRandom();
+                return;
+            }
+            logger.error("Failed to update CloudFormation stack", e);
+            throw new RuntimeException("Failed to update CloudFormation stack", e);
+        } catch (Exception e) {
+            logger.error("Failed to update CloudFormation stack", e);
+            throw new RuntimeException("Failed to update CloudFormation stack", e);
+        }
+    }
+    
+    
+    private void waitForStackUpdateComplete() {
+        try {
+            int attempt = 0;
+            
+            while (attempt < awsEmrConfig.getStackUpdateCheckMaxAttempt()) {
+                try {
+                    DescribeStacksRequest request = DescribeStacksRequest.builder()
+                        .stackName(stackName)
+                        .build();
+                    
+                    DescribeStacksResponse response = cloudFormationClient.describeStacks(request);
+                    if (!response.stacks().isEmpty()) {
+                        StackStatus status = response.stacks().get(0).stackStatus();
+                        if (status == StackStatus.UPDATE_COMPLETE) {
+                            return;
+                        } else if (status == StackStatus.UPDATE_ROLLBACK_COMPLETE || 
+                                  status == StackStatus.UPDATE_ROLLBACK_FAILED) {
+                            throw new RuntimeException("Stack update failed with status: " + status);
+                        }
+                    }
+                    
+                    Thread.sleep(awsEmrConfig.getStepPollingInterval());
+                    attempt++;
+                    
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for stack update", e);
+                }
+            }
+            
+            throw new RuntimeException("Stack update did not complete within the timeout period");
+            
+        } catch (Exception e) {
+            logger.error("Failed to wait for stack update completion", e);
+            throw new RuntimeException("Failed to wait for stack update completion", e);
+        }
+    }
+    
+    private void waitForClusterReady(String clusterId) {
+        try {
+            int attempt = 0;
+            
+            while (attempt < awsEmrConfig.getStackUpdateCheckMaxAttempt()) {
+                if (isClusterReady(clusterId)) {
+                    return;
+                }
+                
+                Thread.sleep(awsEmrConfig.getStackUpdatePollingInterval());
+                attempt++;
+            }
+            
+            throw new RuntimeException("Cluster did not become ready within the timeout period");
+            
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for cluster to be ready", e);
+        } catch (Exception e) {
+            logger.error("Failed to wait for cluster to be ready", e);
+            throw new RuntimeException("Failed to wait for cluster to be ready", e);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import com.annihilator.data.playground.config.AWSEmrConfig;
+import com.annihilator.data.playground.config.EMRClusterConfig;
+import com.annihilator.data.playground.model.EMRClusterHealth;
+import com.annihilator.data.playground.utility.EmrClusterException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.cloudformation.CloudFormationClient;
+import software.amazon.awssdk.services.emr.EmrClient;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The set of EMR clusters steps can be placed on.
+ *
+ * Placement prefers, in order: clusters that are up and below the saturation threshold, clusters that
+ * still need provisioning, and finally saturated clusters. Ties are broken by pending steps, running
+ * steps and whether the cluster is dedicated to the task type. When enabled, an
+ * {@link EMRCapacityController} resizes each cluster after every health refresh.
+ */
+public class EMRClusterPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(EMRClusterPool.class);
+
+    private static final long MIN_REFRESH_INTERVAL_MS = 1000L;
+
+    private final List<EMRCluster> clusters;
+    private final long refreshIntervalMs;
+    private final EMRCapacityController capacityController;
+
+    private ScheduledExecutorService scheduler;
+
+    public EMRClusterPool(AWSEmrConfig awsEmrConfig, CloudFormationClient cloudFormationClient, EmrClient emrClient) {
+        this(createClusters(awsEmrConfig, cloudFormationClient, emrClient), awsEmrConfig.getStepPollingInterval(),
+                createCapacityController(awsEmrConfig, emrClient));
+    }
+
+    EMRClusterPool(List<EMRCluster> clusters, long refreshIntervalMs) {
+        this(clusters, refreshIntervalMs, null);
+    }
+
+    EMRClusterPool(List<EMRCluster> clusters, long refreshIntervalMs, EMRCapacityController capacityController) {
+
+        if (clusters.isEmpty()) {
+            throw new IllegalArgumentException("Cluster pool needs at least one cluster");
+        }
+
+        this.clusters = Collections.unmodifiableList(new ArrayList<>(clusters));
+        this.refreshIntervalMs = Math.max(refreshIntervalMs, MIN_REFRESH_INTERVAL_MS);
+        this.capacityController = capacityController;
+    }
+
+    private static List<EMRCluster> createClusters(AWSEmrConfig awsEmrConfig, CloudFormationClient cloudFormationClient, EmrClient emrClient) {
+
+        List<EMRClusterConfig> extraClusters = awsEmrConfig.getClusterPool() != null ? awsEmrConfig.getClusterPool() : Collections.emptyList();
+        boolean singleCluster = extraClusters.isEmpty();
+
+        List<EMRCluster> clusters = new ArrayList<>();
+        clusters.add(new EMRCluster(awsEmrConfig.getStackName(), awsEmrConfig.getClusterLogicalId(), Collections.emptyList(),
+                singleCluster, awsEmrConfig, cloudFormationClient, emrClient));
+
+        for (EMRClusterConfig clusterConfig : extraClusters) {
+            clusters.add(new EMRCluster(clusterConfig.getStackName(), clusterConfig.getClusterLogicalId(), clusterConfig.getTaskTypes(),
+                    false, awsEmrConfig, cloudFormationClient, emrClient));
+        }
+
+        return clusters;
+    }
+
+    private static EMRCapacityController createCapacityController(AWSEmrConfig awsEmrConfig, EmrClient emrClient) {
+
+        if (awsEmrConfig.getCapacityController() == null || !awsEmrConfig.getCapacityController().isEnabled()) {
+            return null;
+        }
+
+        return new EMRCapacityController(emrClient, awsEmrConfig.getCapacityController());
+    }
+
+    /**
+     * Picks the cluster for a step of the given task type and counts the step against it.
+     */
+    public synchronized EMRCluster place(String taskType) {
+
+        ensureStarted();
+
+        EMRCluster selected = select(taskType)
+                .orElseThrow(() -> new EmrClusterException("No cluster in the pool accepts task type " + taskType));
+
+        selected.onStepPlaced();
+
+        logger.debug("Placed {} step on stack {} (pending: {}, running: {})", taskType, selected.getStackName(),
+                selected.getPendingSteps(), selected.getRunningSteps());
+
+        return selected;
+    }
+
+    /**
+     * Starts provisioning the clusters that steps of the given task types would currently be placed on,
+     * without counting any step against them. Returns immediately.
+     */
+    public void prewarm(Collection<String> taskTypes) {
+
+        Set<EMRCluster> targets = new LinkedHashSet<>();
+
+        synchronized (this) {
+            ensureStarted();
+            taskTypes.forEach(taskType -> select(taskType).ifPresent(targets::add));
+        }
+
+        for (EMRCluster cluster : targets) {
+            logger.info("Pre-warming cluster of stack {}", cluster.getStackName());
+            cluster.awaitReady().whenComplete((clusterId, throwable) -> {
+                if (throwable != null) {
+                    logger.warn("Pre-warming cluster of stack {} failed: {}", cluster.getStackName(), throwable.getMessage());
+                } else {
+                    logger.info("Cluster {} of stack {} is warm", clusterId, cluster.getStackName());
+                }
+            });
+        }
+    }
+
+    private Optional<EMRCluster> select(String taskType) {
+
+        return clusters.stream()
+                .filter(cluster -> cluster.accepts(taskType))
+                .min(Comparator.comparingInt(EMRClusterPool::placementTier)
+                        .thenComparingInt(EMRCluster::getPendingSteps)
+                        .thenComparingInt(EMRCluster::getRunningSteps)
+                        .thenComparing(cluster -> !cluster.isDedicatedTo(taskType)));
+    }
+
+    private static int placementTier(EMRCluster cluster) {
+
+        if (cluster.isSaturated()) {
+            return 2;
+        }
+
+        return cluster.isHealthy() ? 0 : 1;
+    }
+
+    public List<EMRClusterHealth> getHealth() {
+        return clusters.stream().map(EMRCluster::getHealth).collect(Collectors.toList());
+    }
+
+    void refreshHealth() {
+
+        for (EMRCluster cluster : clusters) {
+
+            cluster.refreshHealth();
+
+            if (capacityController != null) {
+                capacityController.reconcile(cluster);
+            }
+        }
+    }
+
+    List<EMRCluster> getClusters() {
+        return clusters;
+    }
+
+    private void ensureStarted() {
+
+        if (scheduler != null) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "emr-cluster-pool-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                refreshHealth();
+            } catch (Exception e) {
+                logger.error("Unexpected error while refreshing cluster pool health", e);
+            }
+        }, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+
+        logger.info("Started EMR cluster pool with {} cluster(s) (health refresh every {}ms)", clusters.size(), refreshIntervalMs);
+    }
+
+    public synchronized void close() {
+
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+
+        clusters.forEach(EMRCluster::close);
+    }
+}
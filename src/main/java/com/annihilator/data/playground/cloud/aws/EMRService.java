@@ -2,20 +2,25 @@ package com.annihilator.data.playground.cloud.aws;
 
 import com.annihilator.data.playground.config.AWSEmrConfig;
 import com.annihilator.data.playground.db.TaskDAO;
+import com.annihilator.data.playground.db.TaskStepExecutionDAO;
 import com.annihilator.data.playground.db.UDFDAO;
+import com.annihilator.data.playground.model.EMRClusterHealth;
 import com.annihilator.data.playground.model.StepResult;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.cloudformation.CloudFormationClient;
 import software.amazon.awssdk.services.emr.EmrClient;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 public interface EMRService {
 
     CompletableFuture<StepResult> submitTaskAndWait(String playgroundId, String taskId, String content, String taskType);
 
-    static EMRService getInstance(AWSEmrConfig awsEmr, UDFDAO udfDAO, TaskDAO taskDAO) {
+    static EMRService getInstance(AWSEmrConfig awsEmr, UDFDAO udfDAO, TaskDAO taskDAO, TaskStepExecutionDAO stepExecutionDAO) {
 
         String accessKeyId = awsEmr.getAccessKey();
         String secretAccessKey = awsEmr.getSecretKey();
@@ -41,11 +46,29 @@ public interface EMRService {
                 emrClient,
                 s3Service,
                 udfDAO,
-                taskDAO
+                taskDAO,
+                stepExecutionDAO,
+                new DefaultStepFailureClassifier()
         );
 
         return emrService;
     }
 
+    /**
+     * Stops a task started with {@link #submitTaskAndWait}: its EMR step is cancelled with CancelSteps and no
+     * further attempt is made. The future returned by {@code submitTaskAndWait} completes once EMR reports the
+     * step as ended.
+     *
+     * @return false if the task is not in flight
+     */
+    boolean cancelTask(String queryId);
+
+    List<EMRClusterHealth> getClusterHealth();
+
+    /**
+     * Starts bringing up the clusters that steps of the given task types would run on, without waiting.
+     */
+    void prewarm(Collection<String> taskTypes);
+
     void close();
 }
\ No newline at end of file
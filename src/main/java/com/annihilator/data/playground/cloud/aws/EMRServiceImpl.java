@@ -1,18 +1,21 @@
 package com.annihilator.data.playground.cloud.aws;
 
 import com.annihilator.data.playground.config.AWSEmrConfig;
+import com.annihilator.data.playground.config.RetryConfig;
+import com.annihilator.data.playground.model.EMRClusterHealth;
 import com.annihilator.data.playground.model.StepMetadata;
 import com.annihilator.data.playground.model.StepResult;
+import com.annihilator.data.playground.model.TaskStepExecution;
 import com.annihilator.data.playground.model.TaskType;
 import com.annihilator.data.playground.model.Task;
 import com.annihilator.data.playground.db.UDFDAO;
 import com.annihilator.data.playground.db.TaskDAO;
+import com.annihilator.data.playground.db.TaskStepExecutionDAO;
 import com.annihilator.data.playground.utility.PrestoScriptGenerator;
 import com.annihilator.data.playground.utility.HiveScriptGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.services.cloudformation.CloudFormationClient;
-import software.amazon.awssdk.services.cloudformation.model.*;
 import software.amazon.awssdk.services.emr.EmrClient;
 import software.amazon.awssdk.services.emr.model.*;
 
@@ -21,11 +24,15 @@ import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class EMRServiceImpl implements EMRService {
     
@@ -36,129 +43,420 @@ public class EMRServiceImpl implements EMRService {
     private final S3Service s3Service;
     private final UDFDAO udfDAO;
     private final TaskDAO taskDAO;
+    private final TaskStepExecutionDAO stepExecutionDAO;
     private final ExecutorService executorService;
-    private String currentClusterId;
+    private final EMRStepStatusPoller stepStatusPoller;
+    private final EMRClusterPool clusterPool;
+    private final StepScriptCache stepScriptCache;
+    private final EMRStepFuser stepFuser;
+    private final StepRetryPolicy retryPolicy;
 
     private final AWSEmrConfig awsEmrConfig;
     
     private final java.util.concurrent.ConcurrentHashMap<String, StepMetadata> stepMetadata = new java.util.concurrent.ConcurrentHashMap<>();
 
+    private final java.util.concurrent.ConcurrentHashMap<String, InFlightTask> inFlightTasks = new java.util.concurrent.ConcurrentHashMap<>();
+
     public EMRServiceImpl(AWSEmrConfig awsEmrConfig, CloudFormationClient cloudFormationClient, EmrClient emrClient,
                           S3Service s3Service, UDFDAO udfDAO, TaskDAO taskDAO) {
+        this(awsEmrConfig, cloudFormationClient, emrClient, s3Service, udfDAO, taskDAO, null, new DefaultStepFailureClassifier());
+    }
+
+    /**
+     * @param stepExecutionDAO where submitted steps are recorded so a recovery run can reattach to them;
+     *                         {@code null} disables the recording
+     */
+    public EMRServiceImpl(AWSEmrConfig awsEmrConfig, CloudFormationClient cloudFormationClient, EmrClient emrClient,
+                          S3Service s3Service, UDFDAO udfDAO, TaskDAO taskDAO, TaskStepExecutionDAO stepExecutionDAO,
+                          StepFailureClassifier failureClassifier) {
 
         this.udfDAO = udfDAO;
         this.taskDAO = taskDAO;
+        this.stepExecutionDAO = stepExecutionDAO;
         this.cloudFormationClient = cloudFormationClient;
         this.emrClient = emrClient;
         this.s3Service = s3Service;
-        this.executorService = Executors.newCachedThreadPool();
+        // Bounded: waiting on steps is left to the poller, so this pool only prepares steps and handles results
+        this.executorService = Executors.newFixedThreadPool(awsEmrConfig.getEmrServiceThreads());
         this.awsEmrConfig = awsEmrConfig;
-
+        this.stepStatusPoller = new EMRStepStatusPoller(emrClient, awsEmrConfig.getStepPollingInterval());
+        this.clusterPool = new EMRClusterPool(awsEmrConfig, cloudFormationClient, emrClient);
+        this.stepScriptCache = new StepScriptCache(s3Service, awsEmrConfig.getS3PathPrefix());
+        this.stepFuser = awsEmrConfig.getStepFusion() != null && awsEmrConfig.getStepFusion().isEnabled()
+                ? new EMRStepFuser(awsEmrConfig.getStepFusion(), stepScriptCache, s3Service, awsEmrConfig.getS3PathPrefix(), executorService,
+                        (stepConfig, metadata, onSubmitted) -> placeAndWait(new PreparedStep(stepConfig, metadata), metadata.getTaskType(), 0, onSubmitted),
+                        submittedStep -> cancelStep(submittedStep.clusterId, submittedStep.stepId))
+                : null;
+        this.retryPolicy = new StepRetryPolicy(awsEmrConfig.getMaxStepRetries(),
+                awsEmrConfig.getStepRetryBackoff() != null ? awsEmrConfig.getStepRetryBackoff() : new RetryConfig(), failureClassifier);
     }
     
 
     @Override
     public CompletableFuture<StepResult> submitTaskAndWait(String playgroundId, String queryId, String content, String taskType) {
-        return CompletableFuture.supplyAsync(() -> {
 
-            String lastStepId = null;
-            String lastFailureReason = null;
-            StepResult lastResult = null;
-            
-            logger.info("Starting task {} with {} retries", queryId, awsEmrConfig.getMaxStepRetries());
-            
-            for (int attempt = 0; attempt <= awsEmrConfig.getMaxStepRetries(); attempt++) {
-                try {
-                    logger.info("Attempting task {} (attempt {}/{})", queryId, attempt + 1, awsEmrConfig.getMaxStepRetries() + 1);
-                    
-                    Task task = taskDAO.findTaskById(queryId);
-                    if (task == null) {
-                        throw new RuntimeException("Task not found: " + queryId);
-                    }
-                    
-                    String stepId = submitTaskWithCustomOutput(task, playgroundId, queryId, taskType);
-                    lastStepId = stepId;
-                    
-                    StepResult result = waitForStepCompletion(stepId, awsEmrConfig.getStepPollingInterval());
-                    lastResult = result;
-                    
+        logger.info("Starting task {} with up to {} retries", queryId, retryPolicy.getMaxRetries());
+
+        InFlightTask inFlightTask = new InFlightTask();
+        inFlightTasks.put(queryId, inFlightTask);
+
+        // The task is loaded and its step prepared once per run; retries resubmit the same step
+        return CompletableFuture.supplyAsync(() -> prepareStep(loadTask(queryId), playgroundId, queryId, taskType), executorService)
+                .thenCompose(preparedStep -> resumeOrAttempt(preparedStep, queryId, taskType))
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    logger.error("Task {} could not be prepared: {}", queryId, cause.getMessage(), cause);
+                    return new StepResult(null, StepState.FAILED, "Exception: " + cause.getMessage(), null, null, queryId);
+                })
+                .whenComplete((result, throwable) -> inFlightTasks.remove(queryId, inFlightTask));
+    }
+
+    @Override
+    public boolean cancelTask(String queryId) {
+
+        InFlightTask inFlightTask = inFlightTasks.get(queryId);
+
+        if (inFlightTask == null) {
+            return false;
+        }
+
+        logger.info("Cancelling task {}", queryId);
+
+        EMRStepSubmissionBatcher.SubmittedStep step = inFlightTask.cancel();
+
+        if (step != null) {
+            cancelStep(step.clusterId, step.stepId);
+        } else if (stepFuser != null) {
+            // A fused step is never attached to its tasks; the fuser stops it once all of them are cancelled
+            stepFuser.cancel(queryId);
+        }
+
+        return true;
+    }
+
+    /**
+     * SEND_INTERRUPT also stops a step that is already running, not only a pending one. The step's terminal state
+     * is then picked up by the {@link EMRStepStatusPoller} like any other.
+     */
+    private void cancelStep(String clusterId, String stepId) {
+
+        try {
+            CancelStepsResponse response = emrClient.cancelSteps(CancelStepsRequest.builder()
+                    .clusterId(clusterId)
+                    .stepIds(stepId)
+                    .stepCancellationOption(StepCancellationOption.SEND_INTERRUPT)
+                    .build());
+
+            for (CancelStepsInfo info : response.cancelStepsInfoList()) {
+                if (info.status() == CancelStepsRequestStatus.FAILED) {
+                    logger.warn("EMR refused to cancel step {} on cluster {}: {}", info.stepId(), clusterId, info.reason());
+                } else {
+                    logger.info("Cancellation of step {} on cluster {} submitted", info.stepId(), clusterId);
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to cancel step {} on cluster {}: {}", stepId, clusterId, e.getMessage());
+        }
+    }
+
+    private Task loadTask(String queryId) {
+
+        Task task;
+        try {
+            task = taskDAO.findTaskById(queryId);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to load task: " + queryId, e);
+        }
+
+        if (task == null) {
+            throw new RuntimeException("Task not found: " + queryId);
+        }
+
+        return task;
+    }
+
+    /**
+     * A recovery run keeps the correlation ID of the interrupted run, so a step recorded under it was submitted
+     * before the restart. A completed step is harvested and a running one is watched again; only a failed step
+     * or a task without a recorded step is submitted.
+     */
+    private CompletableFuture<StepResult> resumeOrAttempt(PreparedStep preparedStep, String queryId, String taskType) {
+
+        TaskStepExecution previous = findStepExecution(queryId, preparedStep.correlationId);
+
+        if (previous == null || previous.getStepId() == null) {
+            return attemptTask(preparedStep, queryId, taskType, 0);
+        }
+
+        String stepState = previous.getStepState();
+
+        if (StepState.COMPLETED.name().equals(stepState)) {
+            logger.info("Task {} already completed as step {}, reusing its output {}", queryId, previous.getStepId(), previous.getOutputPath());
+            return CompletableFuture.completedFuture(new StepResult(previous.getStepId(), StepState.COMPLETED,
+                    "Step completed successfully", previous.getOutputPath(), previous.getLogPath(), queryId));
+        }
+
+        if (!TaskStepExecutionDAO.SUBMITTED.equals(stepState)) {
+            int attempt = Math.min(previous.getAttempt() + 1, retryPolicy.getMaxRetries());
+            logger.info("Task {} step {} ended in state {} before the restart, resubmitting", queryId, previous.getStepId(), stepState);
+            return attemptTask(preparedStep, queryId, taskType, attempt);
+        }
+
+        logger.info("Reattaching task {} to step {} on cluster {}", queryId, previous.getStepId(), previous.getClusterId());
+
+        StepMetadata metadata = preparedStep.metadata;
+        stepMetadata.put(previous.getStepId(), new StepMetadata(previous.getOutputPath(), previous.getLogPath(), metadata.getPlaygroundId(),
+                metadata.getQueryId(), metadata.getUniqueId(), metadata.getCurrentDate(), metadata.getTaskType()));
+
+        attachStep(queryId, previous.getClusterId(), previous.getStepId());
+
+        CompletableFuture<StepResult> execution = stepStatusPoller
+                .watch(previous.getClusterId(), previous.getStepId())
+                .thenApplyAsync(summary -> toStepResult(previous.getClusterId(), previous.getStepId(), summary), executorService)
+                .whenComplete((result, throwable) -> recordStepState(preparedStep, queryId, previous.getStepId(), result));
+
+        return handleOutcome(execution, preparedStep, queryId, taskType, previous.getAttempt());
+    }
+
+    /**
+     * Submits one attempt of a prepared step and chains the next attempt on failure. The step is placed on a
+     * cluster of the {@link EMRClusterPool}, whose batcher coalesces the AddJobFlowSteps call, and waiting for
+     * it is left to the shared {@link EMRStepStatusPoller}.
+     */
+    private CompletableFuture<StepResult> attemptTask(PreparedStep preparedStep, String queryId, String taskType, int attempt) {
+
+        if (isCancelled(queryId)) {
+            return CompletableFuture.completedFuture(cancelledResult(null, "before attempt " + (attempt + 1), null, queryId));
+        }
+
+        logger.info("Attempting task {} (attempt {}/{})", queryId, attempt + 1, retryPolicy.getMaxRetries() + 1);
+
+        CompletableFuture<StepResult> execution;
+        try {
+            execution = shouldFuse(preparedStep, attempt)
+                    ? stepFuser.submit(queryId, preparedStep.scriptContent, preparedStep.stepConfig, preparedStep.metadata)
+                    : placeAndWait(preparedStep, taskType, attempt, submittedStep -> { });
+        } catch (RuntimeException e) {
+            execution = CompletableFuture.failedFuture(e);
+        }
+
+        return handleOutcome(execution, preparedStep, queryId, taskType, attempt);
+    }
+
+    /**
+     * Failures are classified by the {@link StepRetryPolicy}: permanent ones end the run, the others are retried
+     * after a backoff without holding a thread.
+     */
+    private CompletableFuture<StepResult> handleOutcome(CompletableFuture<StepResult> execution, PreparedStep preparedStep,
+                                                        String queryId, String taskType, int attempt) {
+
+        int maxAttempts = retryPolicy.getMaxRetries() + 1;
+
+        return execution
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    logger.error("Task {} failed on attempt {} with exception: {}", queryId, attempt + 1, cause.getMessage(), cause);
+                    return new StepResult(null, StepState.FAILED, "Exception: " + cause.getMessage(), null, null, queryId);
+                })
+                .thenCompose(result -> {
+
                     if (result.isSuccess()) {
                         logger.info("Task {} succeeded on attempt {}", queryId, attempt + 1);
-                        return result;
-                    } else {
-                        lastFailureReason = result.getMessage();
-                        logger.warn("Task {} failed on attempt {}: {}", queryId, attempt + 1, lastFailureReason);
-                        
-                        if (attempt < awsEmrConfig.getMaxStepRetries()) {
-                            logger.info("Retrying task {} (attempt {}/{})", queryId, attempt + 2, awsEmrConfig.getMaxStepRetries() + 1);
-                        }
+                        return CompletableFuture.completedFuture(result);
                     }
-                    
-                } catch (Exception e) {
-                    logger.error("Task {} failed on attempt {} with exception: {}", queryId, attempt + 1, e.getMessage(), e);
-                    lastFailureReason = "Exception: " + e.getMessage();
-                    
-                    if (attempt < awsEmrConfig.getMaxStepRetries()) {
-                        logger.info("Retrying task {} after exception (attempt {}/{})", queryId, attempt + 2, awsEmrConfig.getMaxStepRetries() + 1);
+
+                    if (isCancelled(queryId)) {
+                        logger.info("Task {} was cancelled on attempt {}", queryId, attempt + 1);
+                        return CompletableFuture.completedFuture(cancelledResult(result.getStepId(), "on attempt " + (attempt + 1), result.getLogPath(), queryId));
                     }
-                }
-            }
-            
-            logger.error("Task {} failed after {} attempts. Last failure: {}", queryId, awsEmrConfig.getMaxStepRetries() + 1, lastFailureReason);
-            
-            if (lastResult != null) {
-                return new StepResult(lastStepId, StepState.FAILED, 
-                    "Failed after " + (awsEmrConfig.getMaxStepRetries() + 1) + " attempts. Last failure: " + lastFailureReason,
-                    null, lastResult.getLogPath(), queryId);
-            } else {
-                return new StepResult(lastStepId, StepState.FAILED, 
-                    "Failed after " + (awsEmrConfig.getMaxStepRetries() + 1) + " attempts. Last failure: " + lastFailureReason,
-                    null, null, queryId);
-            }
-            
-        }, executorService);
-    }
 
+                    StepFailureClassifier.FailureClass failureClass = retryPolicy.classify(result.getMessage());
 
-    private StepResult waitForStepCompletion(String stepId, long pollIntervalMs) throws InterruptedException {
-        logger.info("Waiting for step {} to complete (polling every {}ms)", stepId, pollIntervalMs);
-        
-        while (true) {
-            StepState status = getStepStatus(stepId);
-            
-            if (status == StepState.COMPLETED) {
-                logger.info("Step {} completed successfully", stepId);
-                StepMetadata metadata = stepMetadata.get(stepId);
-                String outputPath = metadata != null ? metadata.getOutputPath() : getStepOutputPath(stepId);
-                String logPath = metadata != null ? metadata.getLogPath() : null;
-                
-                if (metadata != null && TaskType.SPARK_SQL.name().equals(metadata.getTaskType())) {
-                    String actualFilePath = s3Service.findFirstDataFileInDirectory(outputPath);
-                    if (actualFilePath != null) {
-                        logger.info("Updated Spark SQL output path from {} to {}", outputPath, actualFilePath);
-                        outputPath = actualFilePath;
-                        stepMetadata.put(stepId, new StepMetadata(actualFilePath, logPath, metadata.getPlaygroundId(), metadata.getQueryId(), metadata.getUniqueId(), metadata.getCurrentDate(), metadata.getTaskType()));
+                    logger.warn("Task {} failed on attempt {} ({}): {}", queryId, attempt + 1, failureClass, result.getMessage());
+
+                    if (retryPolicy.shouldRetry(failureClass, attempt)) {
+
+                        long delay = retryPolicy.getRetryDelay(failureClass, attempt);
+                        logger.info("Retrying task {} in {}ms (attempt {}/{})", queryId, delay, attempt + 2, maxAttempts);
+
+                        return CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, executorService))
+                                .thenCompose(ignored -> attemptTask(preparedStep, queryId, taskType, attempt + 1));
                     }
+
+                    if (failureClass == StepFailureClassifier.FailureClass.PERMANENT) {
+                        logger.error("Task {} failed with a permanent error, not retrying: {}", queryId, result.getMessage());
+
+                        return CompletableFuture.completedFuture(new StepResult(result.getStepId(), StepState.FAILED,
+                                "Permanent failure: " + result.getMessage(), null, result.getLogPath(), queryId));
+                    }
+
+                    logger.error("Task {} failed after {} attempts. Last failure: {}", queryId, maxAttempts, result.getMessage());
+
+                    return CompletableFuture.completedFuture(new StepResult(result.getStepId(), StepState.FAILED,
+                            "Failed after " + maxAttempts + " attempts. Last failure: " + result.getMessage(),
+                            null, result.getLogPath(), queryId));
+                });
+    }
+
+    /**
+     * Only first attempts are fused; a retry runs as a step of its own so one failing sibling cannot keep
+     * pulling the others back in. Fused steps are not recorded, so a recovery run resubmits their tasks.
+     */
+    private boolean shouldFuse(PreparedStep preparedStep, int attempt) {
+        return stepFuser != null && attempt == 0 && preparedStep.scriptContent != null && stepFuser.accepts(preparedStep.metadata.getTaskType());
+    }
+
+    /**
+     * @param onSubmitted called with the step once the cluster accepted it, after it is attached to its task
+     */
+    private CompletableFuture<StepResult> placeAndWait(PreparedStep preparedStep, String taskType, int attempt,
+                                                       Consumer<EMRStepSubmissionBatcher.SubmittedStep> onSubmitted) {
+
+        EMRCluster cluster = clusterPool.place(taskType);
+
+        return cluster.submit(preparedStep.stepConfig)
+                .thenCompose(submittedStep -> {
+                    stepMetadata.put(submittedStep.stepId, preparedStep.metadata);
+                    recordSubmission(preparedStep, submittedStep.clusterId, submittedStep.stepId, attempt);
+                    attachStep(preparedStep.metadata.getQueryId(), submittedStep.clusterId, submittedStep.stepId);
+                    onSubmitted.accept(submittedStep);
+                    logger.info("Task submitted successfully to cluster {} with step ID: {} and output path: {}",
+                            submittedStep.clusterId, submittedStep.stepId, preparedStep.metadata.getOutputPath());
+                    return waitForStepCompletion(submittedStep.clusterId, submittedStep.stepId)
+                            .whenComplete((result, throwable) -> recordStepState(preparedStep, preparedStep.metadata.getQueryId(), submittedStep.stepId, result));
+                })
+                .whenComplete((result, throwable) -> cluster.onStepFinished());
+    }
+
+    private boolean isCancelled(String queryId) {
+        InFlightTask inFlightTask = inFlightTasks.get(queryId);
+        return inFlightTask != null && inFlightTask.isCancelled();
+    }
+
+    private StepResult cancelledResult(String stepId, String when, String logPath, String queryId) {
+        return new StepResult(stepId, StepState.CANCELLED, "Task cancelled " + when, null, logPath, queryId);
+    }
+
+    /**
+     * Makes a submitted step the one {@link #cancelTask} stops. A cancel that arrived while the step was still
+     * being submitted is carried out now.
+     */
+    private void attachStep(String queryId, String clusterId, String stepId) {
+
+        InFlightTask inFlightTask = inFlightTasks.get(queryId);
+
+        if (inFlightTask != null && inFlightTask.attach(new EMRStepSubmissionBatcher.SubmittedStep(clusterId, stepId))) {
+            logger.info("Task {} was cancelled while step {} was being submitted", queryId, stepId);
+            cancelStep(clusterId, stepId);
+        }
+    }
+
+    private TaskStepExecution findStepExecution(String queryId, String correlationId) {
+
+        if (stepExecutionDAO == null || correlationId == null) {
+            return null;
+        }
+
+        try {
+            return stepExecutionDAO.findStepExecution(queryId, correlationId);
+        } catch (SQLException e) {
+            logger.warn("Failed to look up the recorded step of task {}, submitting a new one: {}", queryId, e.getMessage());
+            return null;
+        }
+    }
+
+    private void recordSubmission(PreparedStep preparedStep, String clusterId, String stepId, int attempt) {
+
+        if (stepExecutionDAO == null || preparedStep.correlationId == null) {
+            return;
+        }
+
+        TaskStepExecution execution = new TaskStepExecution();
+        execution.setTaskId(preparedStep.metadata.getQueryId());
+        execution.setCorrelationId(preparedStep.correlationId);
+        execution.setStepId(stepId);
+        execution.setClusterId(clusterId);
+        execution.setOutputPath(preparedStep.metadata.getOutputPath());
+        execution.setLogPath(preparedStep.metadata.getLogPath());
+        execution.setAttempt(attempt);
+        execution.setStepState(TaskStepExecutionDAO.SUBMITTED);
+
+        try {
+            stepExecutionDAO.upsertStepExecution(execution);
+        } catch (SQLException e) {
+            // The step still runs; a restart would only resubmit it instead of reattaching
+            logger.warn("Failed to record step {} of task {}: {}", stepId, execution.getTaskId(), e.getMessage());
+        }
+    }
+
+    private void recordStepState(PreparedStep preparedStep, String queryId, String stepId, StepResult result) {
+
+        if (stepExecutionDAO == null || preparedStep.correlationId == null || result == null || result.getStatus() == null) {
+            return;
+        }
+
+        try {
+            stepExecutionDAO.updateStepState(queryId, preparedStep.correlationId, stepId, result.getStatus().name(), result.getOutputPath());
+        } catch (SQLException e) {
+            logger.warn("Failed to record state {} of step {} for task {}: {}", result.getStatus(), stepId, queryId, e.getMessage());
+        }
+    }
+
+    private CompletableFuture<StepResult> waitForStepCompletion(String clusterId, String stepId) {
+        logger.info("Waiting for step {} on cluster {} to complete (polling every {}ms)", stepId, clusterId, awsEmrConfig.getStepPollingInterval());
+
+        return stepStatusPoller.watch(clusterId, stepId)
+                .thenApplyAsync(summary -> toStepResult(clusterId, stepId, summary), executorService);
+    }
+
+    private StepResult toStepResult(String clusterId, String stepId, StepSummary summary) {
+
+        StepState status = summary.status().state();
+
+        if (status == StepState.COMPLETED) {
+            logger.info("Step {} completed successfully", stepId);
+            StepMetadata metadata = stepMetadata.remove(stepId);
+            String outputPath = metadata != null ? metadata.getOutputPath() : getStepOutputPath(clusterId, stepId);
+            String logPath = metadata != null ? metadata.getLogPath() : null;
+
+            if (metadata != null && TaskType.SPARK_SQL.name().equals(metadata.getTaskType())) {
+                String actualFilePath = s3Service.findFirstDataFileInDirectory(outputPath);
+                if (actualFilePath != null) {
+                    logger.info("Updated Spark SQL output path from {} to {}", outputPath, actualFilePath);
+                    outputPath = actualFilePath;
                 }
-                
-                return new StepResult(stepId, status, "Step completed successfully", outputPath, logPath, metadata != null ? metadata.getQueryId() : null);
-            } else if (status == StepState.FAILED || status == StepState.CANCELLED) {
-                String reason = getStepFailureReason(stepId);
-                logger.error("Step {} failed with status: {} - {}", stepId, status, reason);
-                StepMetadata metadata = stepMetadata.get(stepId);
-                String logPath = metadata != null ? metadata.getLogPath() : null;
-                return new StepResult(stepId, status, reason, null, logPath, metadata != null ? metadata.getQueryId() : null);
             }
-            
-            Thread.sleep(pollIntervalMs);
+
+            return new StepResult(stepId, status, "Step completed successfully", outputPath, logPath, metadata != null ? metadata.getQueryId() : null);
         }
+
+        String reason = EMRStepStatusPoller.describeFailure(summary);
+        logger.error("Step {} failed with status: {} - {}", stepId, status, reason);
+        StepMetadata metadata = stepMetadata.remove(stepId);
+        String logPath = metadata != null ? metadata.getLogPath() : null;
+        return new StepResult(stepId, status, reason, null, logPath, metadata != null ? metadata.getQueryId() : null);
+    }
+
+
+    @Override
+    public List<EMRClusterHealth> getClusterHealth() {
+        return clusterPool.getHealth();
     }
 
+    @Override
+    public void prewarm(Collection<String> taskTypes) {
+        clusterPool.prewarm(taskTypes);
+    }
 
     @Override
     public void close() {
         try {
             executorService.shutdown();
+            if (stepFuser != null) {
+                stepFuser.close();
+            }
+            clusterPool.close();
+            stepStatusPoller.close();
 
             if (cloudFormationClient != null) {
                 cloudFormationClient.close();
@@ -173,7 +471,6 @@ public class EMRServiceImpl implements EMRService {
             }
             
             stepMetadata.clear();
-            currentClusterId = null;
 
             logger.info("EMR service closed successfully");
 
@@ -182,14 +479,12 @@ public class EMRServiceImpl implements EMRService {
         }
     }
     
-    private String submitTaskWithCustomOutput(Task task, String playgroundId, String queryId, String taskType) {
+    private PreparedStep prepareStep(Task task, String playgroundId, String queryId, String taskType) {
 
         String outputBucket = awsEmrConfig.getS3Bucket();
         String pathPrefix = awsEmrConfig.getS3PathPrefix();
 
         try {
-            ensureClusterReady();
-
             String currentDate = java.time.LocalDate.now().toString();
             
             String uniqueId = queryId; // queryId is actually the task ID
@@ -202,6 +497,7 @@ public class EMRServiceImpl implements EMRService {
                                           uniqueId, playgroundId, queryId);
             
             StepConfig stepConfig;
+            String scriptContent = null;
             
             if (TaskType.PY_SPARK.name().equals(taskType)) {
                 stepConfig = createSparkStepConfig(task.getQuery(), playgroundId, queryId, uniqueId, timestamp);
@@ -210,17 +506,10 @@ public class EMRServiceImpl implements EMRService {
                 outputPath = String.format("s3://%s/%s/sparksql-output/%s/%s/%s/%s/", 
                                          outputBucket, pathPrefix, currentDate, playgroundId, queryId, uniqueId);
             } else {
-                stepConfig = createHivePrestoStepConfig(task, tempFile, outputPath, playgroundId, queryId, uniqueId, currentDate, taskType, timestamp);
+                scriptContent = generateHivePrestoScript(task, tempFile, outputPath, playgroundId, queryId, uniqueId, currentDate, taskType);
+                stepConfig = createHivePrestoStepConfig(task, scriptContent, playgroundId, queryId, taskType, timestamp);
             }
 
-            AddJobFlowStepsRequest request = AddJobFlowStepsRequest.builder()
-                .jobFlowId(currentClusterId)
-                .steps(stepConfig)
-                .build();
-
-            AddJobFlowStepsResponse response = emrClient.addJobFlowSteps(request);
-            String stepId = response.stepIds().get(0);
-
             String logPath = String.format("s3://%s/%s/logs/%s/%s-log-%s-%s-%s.log", 
                                          outputBucket, pathPrefix, currentDate, taskType.toLowerCase(), playgroundId, queryId, uniqueId);
             
@@ -231,15 +520,14 @@ public class EMRServiceImpl implements EMRService {
                 logPath = null;
             }
             
-            stepMetadata.put(stepId, new StepMetadata(outputPath, logPath, playgroundId, queryId, uniqueId, currentDate, taskType));
-
-            logger.info("Task submitted successfully with step ID: {} and output path: {}", stepId, outputPath);
+            String correlationId = task.getCorrelationId() != null ? task.getCorrelationId().toString() : null;
 
-            return stepId;
+            return new PreparedStep(stepConfig, new StepMetadata(outputPath, logPath, playgroundId, queryId, uniqueId, currentDate, taskType),
+                    scriptContent, correlationId);
 
         } catch (Exception e) {
-            logger.error("Failed to submit task with custom output", e);
-            throw new RuntimeException("Failed to submit task with custom output", e);
+            logger.error("Failed to prepare task with custom output", e);
+            throw new RuntimeException("Failed to prepare task with custom output", e);
         }
     }
     
@@ -270,7 +558,8 @@ public class EMRServiceImpl implements EMRService {
             }
             
             return template
-                .replace("${timestamp}", java.time.LocalDateTime.now().toString())
+                // The script is content-addressed, so the header carries the run date rather than the wall clock
+                .replace("${timestamp}", currentDate)
                 .replace("${playgroundId}", playgroundId)
                 .replace("${queryId}", queryId)
                 .replace("${uniqueId}", uniqueId)
@@ -295,13 +584,13 @@ public class EMRServiceImpl implements EMRService {
         }
     }
     
-    private String getStepOutputPath(String stepId) {
+    private String getStepOutputPath(String clusterId, String stepId) {
 
         String outputBucket = awsEmrConfig.getS3Bucket();
         String pathPrefix = awsEmrConfig.getS3PathPrefix();
         try {
             DescribeStepRequest request = DescribeStepRequest.builder()
-                .clusterId(currentClusterId)
+                .clusterId(clusterId)
                 .stepId(stepId)
                 .build();
             
@@ -356,8 +645,7 @@ public class EMRServiceImpl implements EMRService {
     }
     
     private StepConfig createSparkStepConfig(String query, String folderName, String queryName, String uniqueId, String timestamp) {
-        String pythonS3Key = s3Service.writeQueryToS3(query, String.format("spark-script-%s-%s-%s.py", 
-                                                                           folderName, queryName, uniqueId));
+        String pythonS3Key = stepScriptCache.publish(query, TaskType.PY_SPARK.name(), Collections.emptyList(), "py");
         String pythonS3Path = String.format("s3://%s/%s", awsEmrConfig.getS3Bucket(), pythonS3Key);
         
         return StepConfig.builder()
@@ -376,8 +664,7 @@ public class EMRServiceImpl implements EMRService {
     
     private StepConfig createSparkSQLStepConfig(String query, String folderName, String queryName, String uniqueId, String timestamp, String currentDate) {
         String scriptContent = generateSparkSQLScriptFromTemplate(query, folderName, queryName, uniqueId, currentDate, awsEmrConfig.getS3Bucket());
-        String pythonS3Key = s3Service.writeQueryToS3(scriptContent, String.format("sparksql-script-%s-%s-%s.py", 
-                                                                                   folderName, queryName, uniqueId));
+        String pythonS3Key = stepScriptCache.publish(scriptContent, TaskType.SPARK_SQL.name(), Collections.emptyList(), "py");
         String pythonS3Path = String.format("s3://%s/%s", awsEmrConfig.getS3Bucket(), pythonS3Key);
         
         return StepConfig.builder()
@@ -394,8 +681,8 @@ public class EMRServiceImpl implements EMRService {
             .build();
     }
     
-    private StepConfig createHivePrestoStepConfig(Task task, String tempFile, String outputPath, String folderName, 
-                                                 String queryName, String uniqueId, String currentDate, String taskType, String timestamp) throws SQLException {
+    private String generateHivePrestoScript(Task task, String tempFile, String outputPath, String folderName, 
+                                            String queryName, String uniqueId, String currentDate, String taskType) throws SQLException {
         String scriptContent;
         
         if (TaskType.PRESTO.name().equals(taskType)) {
@@ -432,8 +719,11 @@ public class EMRServiceImpl implements EMRService {
             throw new IllegalArgumentException("Unsupported task type: " + taskType);
         }
         
-        String scriptS3Key = s3Service.writeQueryToS3(scriptContent, String.format("%s-script-%s-%s-%s.sh", 
-                                                                                  taskType, folderName, queryName, uniqueId));
+        return scriptContent;
+    }
+    
+    private StepConfig createHivePrestoStepConfig(Task task, String scriptContent, String folderName, String queryName, String taskType, String timestamp) {
+        String scriptS3Key = stepScriptCache.publish(scriptContent, taskType, task.getUdfIdList(), "sh");
         String scriptS3Path = String.format("s3://%s/%s", awsEmrConfig.getS3Bucket(), scriptS3Key);
         
         String stepName = taskType.equals(TaskType.PRESTO.name()) ? "PrestoQuery" : "HiveQuery";
@@ -448,317 +738,54 @@ public class EMRServiceImpl implements EMRService {
             .build();
     }
 
-    
-    private synchronized void ensureClusterReady() {
-        try {
-            if (currentClusterId != null && isClusterStillRunning(currentClusterId)) {
-                logger.debug("Using stored cluster ID: {}", currentClusterId);
-                return;
-            }
-            
-            logger.info("Stored cluster ID {} is not alive, fetching any existing cluster ID", currentClusterId);
-            String existingClusterId = fetchExistingClusterId();
-            
-            if (existingClusterId != null) {
-                logger.info("Found existing cluster: {}, caching it", existingClusterId);
-                currentClusterId = existingClusterId;
-                return;
-            }
-            
-            logger.info("No running cluster found, updating stack to create new cluster");
-            updateStackWithNewRandom();
-            waitForStackUpdateComplete();
-            
-            String newClusterId = getClusterIdFromStackResources();
-            if (newClusterId != null) {
-                waitForClusterReady(newClusterId);
-                currentClusterId = newClusterId;
-                logger.info("Successfully created and cached new cluster: {}", newClusterId);
-            } else {
-                throw new RuntimeException("Failed to get cluster ID after CloudFormation update");
-            }
+    private static class PreparedStep {
 
-        } catch (Exception e) {
-            logger.error("Failed to ensure cluster is ready", e);
-            throw new RuntimeException("Failed to ensure cluster is ready", e);
+        final StepConfig stepConfig;
+        final StepMetadata metadata;
+        // Generated shell script for Hive/Presto steps, null otherwise
+        final String scriptContent;
+        // Run the step belongs to, null if the task was not started by the executor
+        final String correlationId;
+
+        PreparedStep(StepConfig stepConfig, StepMetadata metadata) {
+            this(stepConfig, metadata, null, null);
+        }
+
+        PreparedStep(StepConfig stepConfig, StepMetadata metadata, String scriptContent, String correlationId) {
+            this.stepConfig = stepConfig;
+            this.metadata = metadata;
+            this.scriptContent = scriptContent;
+            this.correlationId = correlationId;
         }
     }
-    
-    private String fetchExistingClusterId() {
-        try {
-            String clusterId = getClusterIdFromStackResources();
-            
-            if (clusterId != null) {
-                ClusterState state = getClusterState(clusterId);
-                
-                if (state == ClusterState.WAITING || state == ClusterState.RUNNING) {
-                    logger.info("Found ready cluster from CloudFormation: {} (state: {})", clusterId, state);
-                    return clusterId;
-                } else if (state == ClusterState.BOOTSTRAPPING || state == ClusterState.STARTING) {
-                    logger.info("Found bootstrapping cluster from CloudFormation: {} (state: {}), waiting for it to be ready", clusterId, state);
-                    waitForClusterReady(clusterId);
-                    return clusterId;
-                } else {
-                    logger.info("Cluster {} from CloudFormation is in state: {}, will be recreated", clusterId, state);
-                }
-            }
 
-            String existingClusterId = findExistingCluster();
-            if (existingClusterId != null) {
-                logger.info("Found existing cluster: {}", existingClusterId);
-                return existingClusterId;
-            }
+    /**
+     * Cancellation state of one submitTaskAndWait call and the step of its current attempt. Fused steps are
+     * never attached; the {@link EMRStepFuser} stops them once all of their tasks are cancelled.
+     */
+    private static class InFlightTask {
 
-            logger.info("No existing clusters found");
-            return null;
+        private EMRStepSubmissionBatcher.SubmittedStep step;
+        private boolean cancelled;
 
-        } catch (Exception e) {
-            logger.error("Failed to fetch existing cluster ID", e);
-            return null;
-        }
-    }
-    
-    private boolean isClusterStillRunning(String clusterId) {
-        try {
-            DescribeClusterRequest request = DescribeClusterRequest.builder()
-                .clusterId(clusterId)
-                .build();
-            
-            DescribeClusterResponse response = emrClient.describeCluster(request);
-            ClusterState state = response.cluster().status().state();
-            
-            return state == ClusterState.WAITING || state == ClusterState.RUNNING;
-            
-        } catch (Exception e) {
-            logger.warn("Failed to check cluster state for {}: {}", clusterId, e.getMessage());
-            return false;
-        }
-    }
-    
-    
-    private boolean isClusterReady(String clusterId) {
-        try {
-            DescribeClusterRequest request = DescribeClusterRequest.builder()
-                .clusterId(clusterId)
-                .build();
-            
-            DescribeClusterResponse response = emrClient.describeCluster(request);
-            ClusterState state = response.cluster().status().state();
-            
-            if (state == ClusterState.TERMINATED || state == ClusterState.TERMINATED_WITH_ERRORS) {
-                return false;
-            }
-            
-            return state == ClusterState.WAITING || state == ClusterState.RUNNING;
-            
-        } catch (Exception e) {
-            logger.warn("Failed to check cluster state for {}: {}", clusterId, e.getMessage());
-            return false;
-        }
-    }
-    
-    private ClusterState getClusterState(String clusterId) {
-        try {
-            DescribeClusterRequest request = DescribeClusterRequest.builder()
-                .clusterId(clusterId)
-                .build();
-            
-            DescribeClusterResponse response = emrClient.describeCluster(request);
-            return response.cluster().status().state();
-            
-        } catch (Exception e) {
-            logger.warn("Failed to get cluster state for {}: {}", clusterId, e.getMessage());
-            return ClusterState.UNKNOWN_TO_SDK_VERSION;
-        }
-    }
-    
-    private String getClusterIdFromStackResources() {
-        try {
-            ListStackResourcesRequest request = ListStackResourcesRequest.builder()
-                .stackName(awsEmrConfig.getStackName())
-                .build();
-            
-            ListStackResourcesResponse response = cloudFormationClient.listStackResources(request);
-            
-            for (StackResourceSummary resource : response.stackResourceSummaries()) {
-                if ("AWS::EMR::Cluster".equals(resource.resourceType())) {
-                    return resource.physicalResourceId();
-                }
-            }
-            
-            return null;
-            
-        } catch (Exception e) {
-            logger.warn("Failed to get cluster ID from stack resources: {}", e.getMessage());
-            return null;
+        synchronized boolean isCancelled() {
+            return cancelled;
         }
-    }
-    
-    private String findExistingCluster() {
-        try {
-            ListClustersRequest request = ListClustersRequest.builder()
-                .clusterStates(ClusterState.RUNNING, ClusterState.WAITING, ClusterState.STARTING, ClusterState.BOOTSTRAPPING)
-                .build();
-            
-            ListClustersResponse response = emrClient.listClusters(request);
-            
-            if (response.clusters().isEmpty()) {
-                return null;
-            }
-            
-            String stackClusterId = getClusterIdFromStackResources();
-            if (stackClusterId != null) {
-                for (ClusterSummary cluster : response.clusters()) {
-                    if (cluster.id().equals(stackClusterId)) {
-                        logger.info("Found existing cluster from CloudFormation stack: {} (state: {})", cluster.id(), cluster.status().state());
-                        return cluster.id();
-                    }
-                }
-            }
-            
-            for (ClusterSummary cluster : response.clusters()) {
-                if (cluster.name() != null && cluster.name().contains(awsEmrConfig.getClusterLogicalId())) {
-                    logger.info("Found existing cluster with matching name: {} (state: {})", cluster.id(), cluster.status().state());
-                    return cluster.id();
-                }
-            }
-            
-            ClusterSummary firstCluster = response.clusters().get(0);
-            logger.info("Using first available existing cluster: {} (state: {})", firstCluster.id(), firstCluster.status().state());
-            return firstCluster.id();
-            
-        } catch (Exception e) {
-            logger.warn("Failed to find existing clusters: {}", e.getMessage());
-            return null;
-        }
-    }
-    
-    private void updateStackWithNewRandom() {
-        try {
-            int newRandom = ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE);
-            
-            UpdateStackRequest request = UpdateStackRequest.builder()
-                .stackName(awsEmrConfig.getStackName())
-                .usePreviousTemplate(true)
-                .parameters(
-                    Parameter.builder()
-                        .parameterKey("Random")
-                        .parameterValue(String.valueOf(newRandom))
-                        .build()
-                )
-                .build();
-            
-            cloudFormationClient.updateStack(request);
-            
-        } catch (CloudFormationException e) {
-            if (e.getMessage().contains("No updates are to be performed")) {
-                logger.warn("Random parameter change didn't trigger resource updates - cluster won't be recreated");
-                return;
-            } else if (e.getMessage().contains("UPDATE_IN_PROGRESS")) {
-                waitForStackUpdateComplete();
-                updateStackWithNewRandom();
-                return;
-            }
-            logger.error("Failed to update CloudFormation stack", e);
-            throw new RuntimeException("Failed to update CloudFormation stack", e);
-        } catch (Exception e) {
-            logger.error("Failed to update CloudFormation stack", e);
-            throw new RuntimeException("Failed to update CloudFormation stack", e);
-        }
-    }
-    
-    
-    private void waitForStackUpdateComplete() {
-        try {
-            int attempt = 0;
-            
-            while (attempt < awsEmrConfig.getStackUpdateCheckMaxAttempt()) {
-                try {
-                    DescribeStacksRequest request = DescribeStacksRequest.builder()
-                        .stackName(awsEmrConfig.getStackName())
-                        .build();
-                    
-                    DescribeStacksResponse response = cloudFormationClient.describeStacks(request);
-                    if (!response.stacks().isEmpty()) {
-                        StackStatus status = response.stacks().get(0).stackStatus();
-                        if (status == StackStatus.UPDATE_COMPLETE) {
-                            return;
-                        } else if (status == StackStatus.UPDATE_ROLLBACK_COMPLETE || 
-                                  status == StackStatus.UPDATE_ROLLBACK_FAILED) {
-                            throw new RuntimeException("Stack update failed with status: " + status);
-                        }
-                    }
-                    
-                    Thread.sleep(awsEmrConfig.getStepPollingInterval());
-                    attempt++;
-                    
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("Interrupted while waiting for stack update", e);
-                }
-            }
-            
-            throw new RuntimeException("Stack update did not complete within the timeout period");
-            
-        } catch (Exception e) {
-            logger.error("Failed to wait for stack update completion", e);
-            throw new RuntimeException("Failed to wait for stack update completion", e);
-        }
-    }
-    
-    private void waitForClusterReady(String clusterId) {
-        try {
-            int attempt = 0;
-            
-            while (attempt < awsEmrConfig.getStackUpdateCheckMaxAttempt()) {
-                if (isClusterReady(clusterId)) {
-                    return;
-                }
-                
-                Thread.sleep(awsEmrConfig.getStackUpdatePollingInterval());
-                attempt++;
-            }
-            
-            throw new RuntimeException("Cluster did not become ready within the timeout period");
-            
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Interrupted while waiting for cluster to be ready", e);
-        } catch (Exception e) {
-            logger.error("Failed to wait for cluster to be ready", e);
-            throw new RuntimeException("Failed to wait for cluster to be ready", e);
-        }
-    }
-    
-    private StepState getStepStatus(String stepId) {
-        try {
-            DescribeStepRequest request = DescribeStepRequest.builder()
-                .clusterId(currentClusterId)
-                .stepId(stepId)
-                .build();
-            
-            DescribeStepResponse response = emrClient.describeStep(request);
-            return response.step().status().state();
-            
-        } catch (Exception e) {
-            logger.warn("Failed to get step status for {}: {}", stepId, e.getMessage());
-            return StepState.PENDING;
+
+        /**
+         * @return the step to cancel, if one is attached
+         */
+        synchronized EMRStepSubmissionBatcher.SubmittedStep cancel() {
+            cancelled = true;
+            return step;
         }
-    }
-    
-    private String getStepFailureReason(String stepId) {
-        try {
-            DescribeStepRequest request = DescribeStepRequest.builder()
-                .clusterId(currentClusterId)
-                .stepId(stepId)
-                .build();
-            
-            DescribeStepResponse response = emrClient.describeStep(request);
-            return response.step().status().stateChangeReason().message();
-            
-        } catch (Exception e) {
-            logger.warn("Failed to get step failure reason for {}: {}", stepId, e.getMessage());
-            return "Unable to retrieve failure reason: " + e.getMessage();
+
+        /**
+         * @return true if the task was cancelled before the step got attached
+         */
+        synchronized boolean attach(EMRStepSubmissionBatcher.SubmittedStep step) {
+            this.step = step;
+            return cancelled;
         }
     }
-}
\ No newline at end of file
+}
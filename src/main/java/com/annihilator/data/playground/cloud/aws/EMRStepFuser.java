@@ -0,0 +1,452 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import com.annihilator.data.playground.config.EMRStepFusionConfig;
+import com.annihilator.data.playground.model.StepMetadata;
+import com.annihilator.data.playground.model.StepResult;
+import com.annihilator.data.playground.model.TaskType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.emr.model.ActionOnFailure;
+import software.amazon.awssdk.services.emr.model.HadoopJarStepConfig;
+import software.amazon.awssdk.services.emr.model.StepConfig;
+import software.amazon.awssdk.services.emr.model.StepState;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Packs sibling Hive/Presto tasks of the same playground and engine into one EMR step.
+ *
+ * The executor dispatches all ready tasks of a DAG level in one go, so tasks arriving within the fusion
+ * window are treated as siblings. Their generated scripts are embedded in one fused script that runs them
+ * concurrently and uploads a manifest of per-task exit codes; once the fused step completes, the manifest
+ * is mapped back to one {@link StepResult} per task. Each task still writes its own output and log paths.
+ * A task that ends up alone in its window is submitted as a regular step.
+ *
+ * All tasks of a fused step belong to the same playground run. Cancelling a task withdraws it while it still
+ * waits in its window; once every task of a fused step is cancelled, the step itself is interrupted and its
+ * tasks complete with the step's CANCELLED state.
+ */
+public class EMRStepFuser {
+
+    private static final Logger logger = LoggerFactory.getLogger(EMRStepFuser.class);
+
+    private final EMRStepFusionConfig config;
+    private final StepScriptCache stepScriptCache;
+    private final S3Service s3Service;
+    private final String pathPrefix;
+    private final Executor manifestExecutor;
+    private final StepRunner stepRunner;
+    private final Consumer<EMRStepSubmissionBatcher.SubmittedStep> stepCanceller;
+    private final Map<String, List<FusionCandidate>> pending = new HashMap<>();
+    // Dispatched fused steps by member task, until the step completes
+    private final Map<String, FusedStep> fusedByTask = new HashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param stepRunner    places a step on a cluster and completes with its result
+     * @param stepCanceller interrupts a submitted step
+     */
+    public EMRStepFuser(EMRStepFusionConfig config, StepScriptCache stepScriptCache, S3Service s3Service, String pathPrefix,
+                        Executor manifestExecutor, StepRunner stepRunner,
+                        Consumer<EMRStepSubmissionBatcher.SubmittedStep> stepCanceller) {
+
+        this.config = config;
+        this.stepScriptCache = stepScriptCache;
+        this.s3Service = s3Service;
+        this.pathPrefix = pathPrefix;
+        this.manifestExecutor = manifestExecutor;
+        this.stepRunner = stepRunner;
+        this.stepCanceller = stepCanceller;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "emr-step-fuser");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public boolean accepts(String taskType) {
+        return TaskType.HIVE.name().equals(taskType) || TaskType.PRESTO.name().equals(taskType);
+    }
+
+    /**
+     * Queues a prepared task for fusion with its siblings.
+     *
+     * @param scriptContent the task's generated shell script, as it would run in a step of its own
+     * @param stepConfig    the task's own step, used when no sibling shows up
+     */
+    public synchronized CompletableFuture<StepResult> submit(String taskId, String scriptContent, StepConfig stepConfig, StepMetadata metadata) {
+
+        String groupKey = metadata.getPlaygroundId() + "|" + metadata.getTaskType();
+        FusionCandidate candidate = new FusionCandidate(taskId, scriptContent, stepConfig, metadata);
+
+        List<FusionCandidate> group = pending.computeIfAbsent(groupKey, k -> new ArrayList<>());
+        group.add(candidate);
+
+        if (group.size() >= config.getMaxTasksPerStep()) {
+            FusedStep fused = take(groupKey, group);
+            scheduler.execute(() -> dispatch(group, fused));
+        } else if (group.size() == 1) {
+            scheduler.schedule(() -> flushWindow(groupKey, group), config.getWindow(), TimeUnit.MILLISECONDS);
+        }
+
+        return candidate.future;
+    }
+
+    /**
+     * Stops a queued task: a task still waiting in its window is withdrawn and completes as CANCELLED, and a
+     * fused step is interrupted once all of its tasks are cancelled. A task running as a step of its own is
+     * left to the caller, who attached that step.
+     *
+     * @return true if the task is waiting in a window or part of a fused step
+     */
+    public boolean cancel(String taskId) {
+
+        FusionCandidate withdrawn;
+        EMRStepSubmissionBatcher.SubmittedStep stepToStop = null;
+
+        synchronized (this) {
+            withdrawn = withdraw(taskId);
+
+            if (withdrawn == null) {
+                FusedStep fused = fusedByTask.get(taskId);
+
+                if (fused == null) {
+                    return false;
+                }
+
+                fused.cancelledTaskIds.add(taskId);
+                stepToStop = fused.stepToStop();
+            }
+        }
+
+        if (withdrawn != null) {
+            logger.info("Task {} was cancelled before its fused step was submitted", taskId);
+            withdrawn.future.complete(new StepResult(null, StepState.CANCELLED, "Task cancelled while waiting for fusion",
+                    null, withdrawn.metadata.getLogPath(), taskId));
+        }
+
+        if (stepToStop != null) {
+            logger.info("All tasks of fused step {} were cancelled, interrupting it", stepToStop.stepId);
+            stepCanceller.accept(stepToStop);
+        }
+
+        return true;
+    }
+
+    private FusionCandidate withdraw(String taskId) {
+
+        for (Map.Entry<String, List<FusionCandidate>> entry : pending.entrySet()) {
+
+            List<FusionCandidate> group = entry.getValue();
+
+            for (int i = 0; i < group.size(); i++) {
+                if (group.get(i).taskId.equals(taskId)) {
+                    FusionCandidate candidate = group.remove(i);
+                    if (group.isEmpty()) {
+                        pending.remove(entry.getKey());
+                    }
+                    return candidate;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Removes a group from the window and registers it as a fused step under the same lock, so a cancel always
+     * finds the task in one of the two.
+     */
+    private FusedStep take(String groupKey, List<FusionCandidate> group) {
+
+        pending.remove(groupKey);
+
+        if (group.size() == 1) {
+            return null;
+        }
+
+        FusedStep fused = new FusedStep(group.size());
+        group.forEach(candidate -> fusedByTask.put(candidate.taskId, fused));
+        return fused;
+    }
+
+    private void flushWindow(String groupKey, List<FusionCandidate> group) {
+
+        FusedStep fused;
+
+        synchronized (this) {
+            // The group has already been dispatched for being full, or all of its tasks were withdrawn
+            if (pending.get(groupKey) != group) {
+                return;
+            }
+            fused = take(groupKey, group);
+        }
+
+        dispatch(group, fused);
+    }
+
+    private void dispatch(List<FusionCandidate> group, FusedStep fused) {
+
+        try {
+            if (group.size() == 1) {
+                FusionCandidate candidate = group.get(0);
+                forward(stepRunner.run(candidate.stepConfig, candidate.metadata, submittedStep -> { }), candidate);
+                return;
+            }
+
+            runFused(group, fused);
+
+        } catch (Exception e) {
+            logger.error("Failed to submit fused step for {} task(s)", group.size(), e);
+            release(group);
+            group.forEach(candidate -> candidate.future.completeExceptionally(e));
+        }
+    }
+
+    private void runFused(List<FusionCandidate> group, FusedStep fused) {
+
+        StepMetadata first = group.get(0).metadata;
+        String taskType = first.getTaskType();
+        String taskIds = group.stream().map(candidate -> candidate.taskId).collect(Collectors.joining(","));
+        String fusedId = UUID.nameUUIDFromBytes(taskIds.getBytes(StandardCharsets.UTF_8)).toString();
+
+        String manifestKey = String.format("%s/fused/%s/%s/%s.manifest.tsv", pathPrefix, first.getCurrentDate(), first.getPlaygroundId(), fusedId);
+        String manifestPath = String.format("s3://%s/%s", s3Service.getBucketName(), manifestKey);
+
+        String scriptKey = stepScriptCache.publish(generateFusedScript(group, fusedId, manifestPath), taskType, null, "sh");
+        String scriptS3Path = String.format("s3://%s/%s", s3Service.getBucketName(), scriptKey);
+        String localScript = "/tmp/fused-" + fusedId + ".sh";
+
+        String stepName = TaskType.PRESTO.name().equals(taskType) ? "FusedPrestoQuery" : "FusedHiveQuery";
+        StepConfig stepConfig = StepConfig.builder()
+                .name(stepName + "-" + System.currentTimeMillis() + "-" + first.getPlaygroundId() + "-" + fusedId)
+                .actionOnFailure(ActionOnFailure.CONTINUE)
+                .hadoopJarStep(HadoopJarStepConfig.builder()
+                        .jar("command-runner.jar")
+                        .args(Arrays.asList("bash", "-c",
+                                String.format("aws s3 cp %s %s && chmod +x %s && %s", scriptS3Path, localScript, localScript, localScript)))
+                        .build())
+                .build();
+
+        StepMetadata fusedMetadata = new StepMetadata(manifestPath, null, first.getPlaygroundId(), fusedId, fusedId, first.getCurrentDate(), taskType);
+
+        logger.info("Fusing {} {} tasks into one step: {}", group.size(), taskType, taskIds);
+
+        stepRunner.run(stepConfig, fusedMetadata, submittedStep -> onFusedStepSubmitted(fused, submittedStep))
+                .whenComplete((result, throwable) -> release(group))
+                .thenAcceptAsync(result -> {
+
+                    if (!result.isSuccess()) {
+                        logger.warn("Fused step {} did not complete: {}", result.getStepId(), result.getMessage());
+                        group.forEach(candidate -> candidate.future.complete(new StepResult(result.getStepId(), result.getStatus(),
+                                "Fused step failed: " + result.getMessage(), null, candidate.metadata.getLogPath(), candidate.taskId)));
+                        return;
+                    }
+
+                    Map<String, Integer> exitCodes = readManifest(manifestPath);
+
+                    for (FusionCandidate candidate : group) {
+                        candidate.future.complete(toStepResult(result.getStepId(), candidate, exitCodes.get(candidate.taskId)));
+                    }
+
+                }, manifestExecutor)
+                .exceptionally(throwable -> {
+                    group.forEach(candidate -> candidate.future.completeExceptionally(throwable));
+                    return null;
+                });
+    }
+
+    private void onFusedStepSubmitted(FusedStep fused, EMRStepSubmissionBatcher.SubmittedStep submittedStep) {
+
+        EMRStepSubmissionBatcher.SubmittedStep stepToStop;
+
+        synchronized (this) {
+            fused.step = submittedStep;
+            stepToStop = fused.stepToStop();
+        }
+
+        if (stepToStop != null) {
+            logger.info("All tasks of fused step {} were cancelled while it was being submitted", stepToStop.stepId);
+            stepCanceller.accept(stepToStop);
+        }
+    }
+
+    private synchronized void release(List<FusionCandidate> group) {
+        group.forEach(candidate -> fusedByTask.remove(candidate.taskId));
+    }
+
+    /**
+     * Writes each task's script into a scratch directory, runs them all in the background and records
+     * "taskId<TAB>exitCode" per task in the manifest. The fused step itself only fails when the manifest
+     * cannot be uploaded.
+     */
+    String generateFusedScript(List<FusionCandidate> group, String fusedId, String manifestPath) {
+
+        List<String> script = new ArrayList<>();
+        String fusedDir = "/tmp/fused-" + fusedId;
+
+        script.add("#!/bin/bash");
+        script.add("# Fused Query Execution Script");
+        script.add("FUSED_DIR=\"" + fusedDir + "\"");
+        script.add("rm -rf ${FUSED_DIR} && mkdir -p ${FUSED_DIR}");
+        script.add("");
+
+        for (FusionCandidate candidate : group) {
+            String encoded = Base64.getEncoder().encodeToString(candidate.scriptContent.getBytes(StandardCharsets.UTF_8));
+            script.add("echo '" + encoded + "' | base64 -d > ${FUSED_DIR}/" + candidate.taskId + ".sh");
+        }
+
+        script.add("");
+        script.add("run_task() {");
+        script.add("    bash \"${FUSED_DIR}/$1.sh\" > \"${FUSED_DIR}/$1.out\" 2>&1");
+        script.add("    echo $? > \"${FUSED_DIR}/$1.exit\"");
+        script.add("}");
+        script.add("");
+
+        for (FusionCandidate candidate : group) {
+            script.add("run_task " + candidate.taskId + " &");
+        }
+
+        script.add("wait");
+        script.add("");
+        script.add(": > ${FUSED_DIR}/manifest.tsv");
+
+        for (FusionCandidate candidate : group) {
+            script.add("printf '%s\\t%s\\n' " + candidate.taskId + " \"$(cat ${FUSED_DIR}/" + candidate.taskId
+                    + ".exit 2>/dev/null || echo 255)\" >> ${FUSED_DIR}/manifest.tsv");
+        }
+
+        script.add("aws s3 cp ${FUSED_DIR}/manifest.tsv " + manifestPath);
+        script.add("if [[ $? != 0 ]]; then");
+        script.add("    exit 1");
+        script.add("fi");
+        script.add("");
+        script.add("rm -rf ${FUSED_DIR}");
+
+        return String.join("\n", script);
+    }
+
+    private Map<String, Integer> readManifest(String manifestPath) {
+
+        Map<String, Integer> exitCodes = new LinkedHashMap<>();
+
+        s3Service.readFileLineByLine(manifestPath, line -> {
+            String[] parts = line.split("\t");
+            if (parts.length == 2) {
+                try {
+                    exitCodes.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring malformed manifest line in {}: {}", manifestPath, line);
+                }
+            }
+        });
+
+        return exitCodes;
+    }
+
+    private StepResult toStepResult(String stepId, FusionCandidate candidate, Integer exitCode) {
+
+        StepMetadata metadata = candidate.metadata;
+
+        if (exitCode == null) {
+            return new StepResult(stepId, StepState.FAILED, "No exit code for task in fused step manifest", null,
+                    metadata.getLogPath(), candidate.taskId);
+        }
+
+        if (exitCode != 0) {
+            return new StepResult(stepId, StepState.FAILED, "Task exited with code " + exitCode + " in fused step", null,
+                    metadata.getLogPath(), candidate.taskId);
+        }
+
+        return new StepResult(stepId, StepState.COMPLETED, "Step completed successfully", metadata.getOutputPath(),
+                metadata.getLogPath(), candidate.taskId);
+    }
+
+    private static void forward(CompletableFuture<StepResult> source, FusionCandidate candidate) {
+        source.whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                candidate.future.completeExceptionally(throwable);
+            } else {
+                candidate.future.complete(result);
+            }
+        });
+    }
+
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Places a step on a cluster and completes with its result.
+     */
+    @FunctionalInterface
+    public interface StepRunner {
+
+        /**
+         * @param onSubmitted called with the step once the cluster accepted it
+         */
+        CompletableFuture<StepResult> run(StepConfig stepConfig, StepMetadata metadata,
+                                          Consumer<EMRStepSubmissionBatcher.SubmittedStep> onSubmitted);
+    }
+
+    /**
+     * The submitted step of a fused group and which of its tasks were cancelled; guarded by the fuser.
+     */
+    private static class FusedStep {
+
+        final int members;
+        final Set<String> cancelledTaskIds = new HashSet<>();
+        EMRStepSubmissionBatcher.SubmittedStep step;
+        boolean stopped;
+
+        FusedStep(int members) {
+            this.members = members;
+        }
+
+        /**
+         * @return the step to interrupt, once it is submitted and all of its tasks are cancelled
+         */
+        EMRStepSubmissionBatcher.SubmittedStep stepToStop() {
+
+            if (stopped || step == null || cancelledTaskIds.size() < members) {
+                return null;
+            }
+
+            stopped = true;
+            return step;
+        }
+    }
+
+    static class FusionCandidate {
+
+        final String taskId;
+        final String scriptContent;
+        final StepConfig stepConfig;
+        final StepMetadata metadata;
+        final CompletableFuture<StepResult> future = new CompletableFuture<>();
+
+        FusionCandidate(String taskId, String scriptContent, StepConfig stepConfig, StepMetadata metadata) {
+            this.taskId = taskId;
+            this.scriptContent = scriptContent;
+            this.stepConfig = stepConfig;
+            this.metadata = metadata;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.emr.EmrClient;
+import software.amazon.awssdk.services.emr.model.DescribeStepRequest;
+import software.amazon.awssdk.services.emr.model.FailureDetails;
+import software.amazon.awssdk.services.emr.model.ListStepsRequest;
+import software.amazon.awssdk.services.emr.model.ListStepsResponse;
+import software.amazon.awssdk.services.emr.model.Step;
+import software.amazon.awssdk.services.emr.model.StepState;
+import software.amazon.awssdk.services.emr.model.StepStateChangeReason;
+import software.amazon.awssdk.services.emr.model.StepSummary;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks every in-flight EMR step with one ListSteps sweep per cluster and poll interval, instead of
+ * one DescribeStep loop (and one parked thread) per step.
+ *
+ * Each sweep asks for the watched step IDs directly, up to ten per ListSteps call, so it neither depends
+ * on the order EMR lists steps in nor pages through steps nobody is waiting for. Terminal states are
+ * picked out client-side. A step that several sweeps in a row leave unresolved is also checked with
+ * DescribeStep, so a step ListSteps somehow misses cannot keep its task waiting forever.
+ */
+public class EMRStepStatusPoller {
+
+    private static final Logger logger = LoggerFactory.getLogger(EMRStepStatusPoller.class);
+
+    private static final long MIN_POLL_INTERVAL_MS = 1000L;
+
+    // ListSteps accepts at most this many step IDs per call
+    private static final int STEP_IDS_PER_CALL = 10;
+
+    // Sweeps a step may stay unresolved before it is also checked with DescribeStep
+    static final int DESCRIBE_FALLBACK_SWEEPS = 30;
+
+    private static final Set<StepState> TERMINAL_STATES = EnumSet.of(
+            StepState.COMPLETED, StepState.FAILED, StepState.CANCELLED, StepState.INTERRUPTED);
+
+    private final EmrClient emrClient;
+    private final long pollIntervalMs;
+    private final Map<String, Map<String, InFlightStep>> inFlightByCluster = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    public EMRStepStatusPoller(EmrClient emrClient, long pollIntervalMs) {
+        this.emrClient = emrClient;
+        this.pollIntervalMs = Math.max(pollIntervalMs, MIN_POLL_INTERVAL_MS);
+    }
+
+    /**
+     * Registers a submitted step. The returned future completes with the step's summary once it reaches a
+     * terminal state; cancelling it simply stops watching the step.
+     */
+    public CompletableFuture<StepSummary> watch(String clusterId, String stepId) {
+
+        ensureStarted();
+
+        InFlightStep step = new InFlightStep();
+        step.future.whenComplete((summary, throwable) -> unwatch(clusterId, stepId, step));
+
+        // Inserted under the cluster's entry lock, so a sweep dropping the cluster's empty map cannot orphan the step
+        inFlightByCluster.compute(clusterId, (k, steps) -> {
+            Map<String, InFlightStep> clusterSteps = steps != null ? steps : newStepMap();
+            clusterSteps.put(stepId, step);
+            return clusterSteps;
+        });
+
+        return step.future;
+    }
+
+    // Overridden by tests to pause an insert half-way
+    Map<String, InFlightStep> newStepMap() {
+        return new ConcurrentHashMap<>();
+    }
+
+    public int getInFlightStepCount() {
+        return inFlightByCluster.values().stream().mapToInt(Map::size).sum();
+    }
+
+    void pollOnce() {
+
+        for (String clusterId : inFlightByCluster.keySet()) {
+
+            Map<String, InFlightStep> steps = inFlightByCluster.get(clusterId);
+
+            if (steps != null && !steps.isEmpty()) {
+                pollCluster(clusterId, steps);
+            }
+
+            inFlightByCluster.computeIfPresent(clusterId, (k, v) -> v.isEmpty() ? null : v);
+        }
+    }
+
+    private void pollCluster(String clusterId, Map<String, InFlightStep> steps) {
+
+        List<String> stepIds = new ArrayList<>(steps.keySet());
+        int calls = 0;
+
+        for (int from = 0; from < stepIds.size(); from += STEP_IDS_PER_CALL) {
+
+            List<String> batch = stepIds.subList(from, Math.min(stepIds.size(), from + STEP_IDS_PER_CALL));
+            String marker = null;
+
+            try {
+                do {
+                    ListStepsResponse response = emrClient.listSteps(ListStepsRequest.builder()
+                            .clusterId(clusterId)
+                            .stepIds(batch)
+                            .marker(marker)
+                            .build());
+                    calls++;
+
+                    for (StepSummary summary : response.steps()) {
+                        resolve(clusterId, steps.get(summary.id()), summary);
+                    }
+
+                    marker = response.marker();
+
+                } while (marker != null && batch.stream().anyMatch(steps::containsKey));
+
+            } catch (Exception e) {
+                // Throttling or a transient API error: this batch stays unresolved, the next sweep tries again.
+                logger.warn("Failed to list steps for cluster {}, will retry on next poll: {}", clusterId, e.getMessage());
+            }
+        }
+
+        for (Map.Entry<String, InFlightStep> entry : steps.entrySet()) {
+            if (++entry.getValue().unresolvedSweeps >= DESCRIBE_FALLBACK_SWEEPS) {
+                entry.getValue().unresolvedSweeps = 0;
+                describe(clusterId, entry.getKey(), entry.getValue());
+            }
+        }
+
+        logger.debug("Polled cluster {} in {} call(s), {} step(s) still in flight", clusterId, calls, steps.size());
+    }
+
+    private void describe(String clusterId, String stepId, InFlightStep inFlight) {
+
+        try {
+            Step step = emrClient.describeStep(DescribeStepRequest.builder()
+                    .clusterId(clusterId)
+                    .stepId(stepId)
+                    .build()).step();
+
+            resolve(clusterId, inFlight, StepSummary.builder()
+                    .id(step.id())
+                    .name(step.name())
+                    .config(step.config())
+                    .actionOnFailure(step.actionOnFailureAsString())
+                    .status(step.status())
+                    .build());
+
+        } catch (Exception e) {
+            logger.warn("Failed to describe step {} on cluster {}, will retry later: {}", stepId, clusterId, e.getMessage());
+        }
+    }
+
+    private void resolve(String clusterId, InFlightStep step, StepSummary summary) {
+
+        if (step == null || summary.status() == null || !TERMINAL_STATES.contains(summary.status().state())) {
+            return;
+        }
+
+        logger.info("Step {} on cluster {} reached state {}", summary.id(), clusterId, summary.status().state());
+        step.future.complete(summary);
+    }
+
+    private void unwatch(String clusterId, String stepId, InFlightStep step) {
+
+        Map<String, InFlightStep> steps = inFlightByCluster.get(clusterId);
+
+        if (steps != null) {
+            steps.remove(stepId, step);
+        }
+    }
+
+    private synchronized void ensureStarted() {
+
+        if (scheduler != null) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "emr-step-status-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                pollOnce();
+            } catch (Exception e) {
+                logger.error("Unexpected error while polling EMR step status", e);
+            }
+        }, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+
+        logger.info("Started EMR step status poller (polling every {}ms)", pollIntervalMs);
+    }
+
+    public synchronized void close() {
+
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+
+        inFlightByCluster.values().forEach(steps -> steps.values().forEach(step -> step.future.cancel(false)));
+        inFlightByCluster.clear();
+    }
+
+    /**
+     * Builds the most specific failure message available from a step summary.
+     */
+    public static String describeFailure(StepSummary summary) {
+
+        if (summary.status() == null) {
+            return "Unknown failure";
+        }
+
+        FailureDetails details = summary.status().failureDetails();
+
+        if (details != null && (details.message() != null || details.reason() != null)) {
+            return details.message() != null ? details.message() : details.reason();
+        }
+
+        StepStateChangeReason reason = summary.status().stateChangeReason();
+
+        if (reason != null && reason.message() != null) {
+            return reason.message();
+        }
+
+        return "Step ended in state " + summary.status().state();
+    }
+
+    static class InFlightStep {
+
+        final CompletableFuture<StepSummary> future = new CompletableFuture<>();
+
+        // Only touched by the polling thread
+        int unresolvedSweeps;
+    }
+}
@@ -0,0 +1,181 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.emr.EmrClient;
+import software.amazon.awssdk.services.emr.model.AddJobFlowStepsRequest;
+import software.amazon.awssdk.services.emr.model.AddJobFlowStepsResponse;
+import software.amazon.awssdk.services.emr.model.StepConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Coalesces step submissions into AddJobFlowSteps calls.
+ *
+ * Steps submitted within one batch window (or until the per-call limit is reached) are sent in a single
+ * request, after a single cluster readiness check, and the returned step IDs are mapped back to each
+ * caller's future in submission order. A batch waiting for a cluster to come up does not hold the
+ * batcher thread; it is sent once the readiness future completes.
+ */
+public class EMRStepSubmissionBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EMRStepSubmissionBatcher.class);
+
+    // Hard limit of the AddJobFlowSteps API.
+    public static final int MAX_STEPS_PER_REQUEST = 256;
+
+    private final EmrClient emrClient;
+    private final Supplier<CompletableFuture<String>> clusterReadiness;
+    private final long batchWindowMs;
+    private final int maxBatchSize;
+    private final List<PendingStep> pending = new ArrayList<>();
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param clusterReadiness returns a future of the ID of a ready cluster; called once per batch
+     */
+    public EMRStepSubmissionBatcher(EmrClient emrClient, Supplier<CompletableFuture<String>> clusterReadiness, long batchWindowMs, int maxBatchSize) {
+        this.emrClient = emrClient;
+        this.clusterReadiness = clusterReadiness;
+        this.batchWindowMs = Math.max(batchWindowMs, 0L);
+        this.maxBatchSize = Math.max(1, Math.min(maxBatchSize, MAX_STEPS_PER_REQUEST));
+    }
+
+    public synchronized CompletableFuture<SubmittedStep> submit(StepConfig stepConfig) {
+
+        ensureStarted();
+
+        PendingStep step = new PendingStep(stepConfig);
+        pending.add(step);
+
+        if (pending.size() >= maxBatchSize) {
+            scheduler.execute(this::flush);
+        } else if (pending.size() == 1) {
+            scheduler.schedule(this::flush, batchWindowMs, TimeUnit.MILLISECONDS);
+        }
+
+        return step.future;
+    }
+
+    void flush() {
+
+        List<PendingStep> batch;
+
+        synchronized (this) {
+
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            int size = Math.min(pending.size(), maxBatchSize);
+            batch = new ArrayList<>(pending.subList(0, size));
+            pending.subList(0, size).clear();
+
+            if (!pending.isEmpty()) {
+                scheduler.execute(this::flush);
+            }
+        }
+
+        CompletableFuture<String> ready;
+
+        try {
+            ready = clusterReadiness.get();
+        } catch (Exception e) {
+            fail(batch, e);
+            return;
+        }
+
+        ready.whenComplete((clusterId, throwable) -> {
+            if (throwable != null) {
+                fail(batch, throwable);
+            } else {
+                send(batch, clusterId);
+            }
+        });
+    }
+
+    private void send(List<PendingStep> batch, String clusterId) {
+
+        try {
+            AddJobFlowStepsRequest request = AddJobFlowStepsRequest.builder()
+                    .jobFlowId(clusterId)
+                    .steps(batch.stream().map(step -> step.stepConfig).collect(Collectors.toList()))
+                    .build();
+
+            AddJobFlowStepsResponse response = emrClient.addJobFlowSteps(request);
+            List<String> stepIds = response.stepIds();
+
+            if (stepIds.size() != batch.size()) {
+                throw new IllegalStateException(String.format("Submitted %d steps but EMR returned %d step IDs", batch.size(), stepIds.size()));
+            }
+
+            logger.info("Submitted {} step(s) to cluster {} in one request", batch.size(), clusterId);
+
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(new SubmittedStep(clusterId, stepIds.get(i)));
+            }
+
+        } catch (Exception e) {
+            fail(batch, e);
+        }
+    }
+
+    private void fail(List<PendingStep> batch, Throwable throwable) {
+        logger.error("Failed to submit batch of {} step(s): {}", batch.size(), throwable.getMessage(), throwable);
+        batch.forEach(step -> step.future.completeExceptionally(throwable));
+    }
+
+    private void ensureStarted() {
+
+        if (scheduler != null) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "emr-step-submission-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public synchronized void close() {
+
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+
+        pending.forEach(step -> step.future.cancel(false));
+        pending.clear();
+    }
+
+    static class SubmittedStep {
+
+        final String clusterId;
+        final String stepId;
+
+        SubmittedStep(String clusterId, String stepId) {
+            this.clusterId = clusterId;
+            this.stepId = stepId;
+        }
+    }
+
+    private static class PendingStep {
+
+        final StepConfig stepConfig;
+
+        final CompletableFuture<SubmittedStep> future = new CompletableFuture<>();
+
+        PendingStep(StepConfig stepConfig) {
+            this.stepConfig = stepConfig;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Streams an S3 object through a multipart upload, so the writer never needs the whole object in memory or
+ * on disk.
+ *
+ * Bytes are collected into part-sized buffers; a full buffer is uploaded on the upload executor while the
+ * writer fills the next one. At most {@code maxBuffers} buffers exist per stream and they are reused once
+ * their part is uploaded, so a writer that outpaces S3 blocks instead of growing memory. An object that
+ * never fills a part is sent with a single PutObject.
+ */
+public class S3MultipartOutputStream extends S3UploadStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3MultipartOutputStream.class);
+
+    // S3 rejects smaller parts except the last one
+    public static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    private final S3Client s3Client;
+    private final String bucket;
+    private final String contentType;
+    private final int partSize;
+    private final int maxBuffers;
+    private final Executor uploadExecutor;
+    private final BlockingQueue<byte[]> freeBuffers;
+    private final List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private int allocatedBuffers;
+    private byte[] buffer;
+    private int position;
+    private long bytesWritten;
+    private String uploadId;
+    private boolean closed;
+    private boolean completed;
+
+    public S3MultipartOutputStream(S3Client s3Client, String bucket, String s3ObjectKey, String contentType,
+                                   int partSize, int maxBuffers, Executor uploadExecutor) {
+        super(s3ObjectKey);
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.contentType = contentType;
+        this.partSize = Math.max(partSize, MIN_PART_SIZE);
+        this.maxBuffers = Math.max(maxBuffers, 2);
+        this.uploadExecutor = uploadExecutor;
+        this.freeBuffers = new ArrayBlockingQueue<>(this.maxBuffers);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+
+        ensureWritable();
+
+        buffer[position++] = (byte) b;
+        bytesWritten++;
+
+        if (position == partSize) {
+            sendPart();
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+
+        while (length > 0) {
+
+            ensureWritable();
+
+            int chunk = Math.min(length, partSize - position);
+            System.arraycopy(bytes, offset, buffer, position, chunk);
+
+            position += chunk;
+            bytesWritten += chunk;
+            offset += chunk;
+            length -= chunk;
+
+            if (position == partSize) {
+                sendPart();
+            }
+        }
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        try {
+            throwIfPartFailed();
+
+            if (uploadId == null) {
+                putSingleObject();
+            } else {
+                if (position > 0) {
+                    sendPart();
+                }
+                completeMultipartUpload();
+            }
+
+            completed = true;
+
+        } catch (IOException | RuntimeException e) {
+            abortUpload();
+            throw e instanceof IOException ? (IOException) e : new IOException("Failed to upload s3://" + bucket + "/" + getS3ObjectKey(), e);
+        } finally {
+            buffer = null;
+            freeBuffers.clear();
+        }
+    }
+
+    @Override
+    public void abort() {
+
+        if (completed) {
+            return;
+        }
+
+        closed = true;
+        buffer = null;
+        abortUpload();
+    }
+
+    private void ensureWritable() throws IOException {
+
+        if (closed) {
+            throw new IOException("Upload stream for " + getS3ObjectKey() + " is closed");
+        }
+
+        throwIfPartFailed();
+
+        if (buffer == null) {
+            buffer = acquireBuffer();
+            position = 0;
+        }
+    }
+
+    private byte[] acquireBuffer() throws IOException {
+
+        byte[] free = freeBuffers.poll();
+
+        if (free != null) {
+            return free;
+        }
+
+        if (allocatedBuffers < maxBuffers) {
+            allocatedBuffers++;
+            return new byte[partSize];
+        }
+
+        try {
+            // Every buffer is being uploaded: wait for S3 to catch up
+            free = freeBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an S3 part upload");
+        }
+
+        throwIfPartFailed();
+        return free;
+    }
+
+    private void sendPart() throws IOException {
+
+        if (uploadId == null) {
+            uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(getS3ObjectKey())
+                    .contentType(contentType)
+                    .build()).uploadId();
+
+            logger.debug("Started multipart upload {} for s3://{}/{}", uploadId, bucket, getS3ObjectKey());
+        }
+
+        String currentUploadId = uploadId;
+        int partNumber = parts.size() + 1;
+        byte[] data = buffer;
+        int length = position;
+
+        buffer = null;
+        position = 0;
+
+        try {
+            parts.add(CompletableFuture
+                    .supplyAsync(() -> uploadPart(currentUploadId, partNumber, data, length), uploadExecutor)
+                    .whenComplete((part, e) -> {
+                        if (e != null) {
+                            failure.compareAndSet(null, unwrap(e));
+                        }
+                        freeBuffers.offer(data);
+                    }));
+        } catch (RejectedExecutionException e) {
+            freeBuffers.offer(data);
+            throw new IOException("S3 part uploads are shut down", e);
+        }
+    }
+
+    private CompletedPart uploadPart(String currentUploadId, int partNumber, byte[] data, int length) {
+
+        UploadPartResponse response = s3Client.uploadPart(UploadPartRequest.builder()
+                        .bucket(bucket)
+                        .key(getS3ObjectKey())
+                        .uploadId(currentUploadId)
+                        .partNumber(partNumber)
+                        .contentLength((long) length)
+                        .build(),
+                RequestBody.fromInputStream(new ByteArrayInputStream(data, 0, length), length));
+
+        return CompletedPart.builder()
+                .partNumber(partNumber)
+                .eTag(response.eTag())
+                .build();
+    }
+
+    private void putSingleObject() {
+
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucket)
+                .key(getS3ObjectKey())
+                .contentType(contentType)
+                .build();
+
+        s3Client.putObject(request, buffer == null
+                ? RequestBody.empty()
+                : RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, position), position));
+
+        logger.debug("Uploaded s3://{}/{} ({} bytes) in one request", bucket, getS3ObjectKey(), bytesWritten);
+    }
+
+    private void completeMultipartUpload() throws IOException {
+
+        List<CompletedPart> completedParts = new ArrayList<>(parts.size());
+
+        for (CompletableFuture<CompletedPart> part : parts) {
+            try {
+                completedParts.add(part.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for S3 part uploads");
+            } catch (ExecutionException e) {
+                throw new IOException("S3 part upload failed for " + getS3ObjectKey(), e.getCause());
+            }
+        }
+
+        s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(getS3ObjectKey())
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                .build());
+
+        logger.debug("Completed multipart upload of s3://{}/{} ({} parts, {} bytes)", bucket, getS3ObjectKey(),
+                completedParts.size(), bytesWritten);
+    }
+
+    private void abortUpload() {
+
+        if (uploadId == null) {
+            return;
+        }
+
+        String abortedUploadId = uploadId;
+        uploadId = null;
+
+        // Parts still in flight fail once the upload is gone
+        parts.forEach(part -> part.cancel(false));
+
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(getS3ObjectKey())
+                    .uploadId(abortedUploadId)
+                    .build());
+
+            logger.info("Aborted multipart upload of s3://{}/{}", bucket, getS3ObjectKey());
+        } catch (RuntimeException e) {
+            logger.warn("Failed to abort multipart upload {} of s3://{}/{}: {}", abortedUploadId, bucket, getS3ObjectKey(), e.getMessage());
+        }
+    }
+
+    private void throwIfPartFailed() throws IOException {
+
+        Throwable partFailure = failure.get();
+
+        if (partFailure != null) {
+            throw new IOException("S3 part upload failed for " + getS3ObjectKey(), partFailure);
+        }
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+}
@@ -4,9 +4,12 @@ import com.annihilator.data.playground.config.AWSEmrConfig;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 
+import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
 public interface S3Service {
@@ -21,8 +24,15 @@ public interface S3Service {
             .region(Region.of(awsConfig.getRegion()))
             .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
             .build();
+
+        // Writes and HEADs go through the async client on the shared event loop; streaming reads stay blocking
+        S3AsyncClient s3AsyncClient = S3AsyncClient.builder()
+            .region(Region.of(awsConfig.getRegion()))
+            .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
+            .httpClient(AwsAsyncHttp.shared(awsConfig.getHttpClient()))
+            .build();
         
-        return new S3ServiceImpl(s3Client, awsConfig);
+        return new S3ServiceImpl(s3Client, s3AsyncClient, awsConfig);
     }
     
     /**
@@ -33,6 +43,20 @@ public interface S3Service {
      * @note Files are saved to: s3://bucket/{pathPrefix}/query/YYYY-MM-DD/fileName
      */
     String writeQueryToS3(String queryText, String fileName);
+
+    /**
+     * Writes text content to an exact S3 object key in the configured bucket
+     * @param content The text content to write
+     * @param s3ObjectKey The S3 object key (path) to write to
+     * @return The S3 object key where the content was saved
+     */
+    String writeTextObject(String content, String s3ObjectKey);
+
+    /**
+     * Non-blocking variant of {@link #writeTextObject(String, String)}
+     * @return A future completing with the S3 object key, or exceptionally if the upload failed
+     */
+    CompletableFuture<String> writeTextObjectAsync(String content, String s3ObjectKey);
     
     /**
      * Writes reconciliation output data to S3 as a text file
@@ -67,12 +91,32 @@ public interface S3Service {
     /**
      * Reads a file from S3 line by line, processing each line with the provided consumer function.
      * This method streams the file content without loading everything into memory at once.
+     * Objects whose key ends in .gz are decompressed while reading.
      * @param s3Path The full S3 path (e.g., s3://bucket-name/path/to/file.txt) or S3 object key
      * @param lineProcessor Consumer function that processes each line as it's read
      * @throws RuntimeException if there's an error reading from S3
      */
     void readFileLineByLine(String s3Path, Consumer<String> lineProcessor);
     
+    /**
+     * Opens a file from S3 as a raw byte stream, for parsers that must see record boundaries themselves.
+     * A directory path resolves to its first data file, and objects whose key ends in .gz are decompressed.
+     * @param s3Path The full S3 path (e.g., s3://bucket-name/path/to/file.txt) or S3 object key
+     * @return The object's content; the caller must close it
+     * @throws RuntimeException if the object cannot be opened
+     */
+    InputStream openFile(String s3Path);
+
+    /**
+     * Opens only the first bytes of a file with a ranged read, for sampling it without downloading all of it.
+     * Objects whose key ends in .gz are decompressed, so their content may end partway through the stream.
+     * @param s3Path The full S3 path (e.g., s3://bucket-name/path/to/file.txt) or S3 object key
+     * @param maxBytes How many bytes of the stored object to read at most
+     * @return The object's content up to maxBytes; the caller must close it
+     * @throws RuntimeException if the object cannot be opened
+     */
+    InputStream openFilePrefix(String s3Path, long maxBytes);
+    
     /**
      * Gets the S3 bucket name used by this service
      * @return The S3 bucket name
@@ -85,6 +129,12 @@ public interface S3Service {
      * @return The file size in bytes, or -1 if the file doesn't exist or there's an error
      */
     long getS3FileSize(String s3Path);
+
+    /**
+     * Non-blocking variant of {@link #getS3FileSize(String)}
+     * @return A future completing with the file size in bytes, or -1 if the file doesn't exist or there's an error
+     */
+    CompletableFuture<Long> getS3FileSizeAsync(String s3Path);
     
     /**
      * Uploads a local file to S3
@@ -93,6 +143,34 @@ public interface S3Service {
      * @return The S3 object key where the file was uploaded
      */
     String uploadLocalFile(String localFilePath, String s3ObjectKey);
+
+    /**
+     * Non-blocking variant of {@link #uploadLocalFile(String, String)}; cancelling the future aborts the upload
+     * @return A future completing with the S3 object key, or exceptionally if the upload failed
+     */
+    CompletableFuture<String> uploadLocalFileAsync(String localFilePath, String s3ObjectKey);
+
+    /**
+     * Opens a stream that writes an object to S3 as it is produced, without staging it locally
+     * @param s3ObjectKey The S3 object key (path) in the configured bucket
+     * @param contentType The content type stored with the object
+     * @return A stream whose close completes the object; abort it to discard a partial write
+     */
+    S3UploadStream openUploadStream(String s3ObjectKey, String contentType);
+
+    /**
+     * Writes the concatenation of several objects as one object, copying them server side where S3 allows
+     * @param sourceKeys The S3 object keys to concatenate, in order
+     * @param s3ObjectKey The S3 object key of the result
+     * @param contentType The content type stored with the result
+     * @return The S3 object key of the result
+     */
+    String concatenateObjects(List<String> sourceKeys, String s3ObjectKey, String contentType);
+
+    /**
+     * Deletes objects from the configured bucket; keys that do not exist are ignored
+     */
+    void deleteObjects(List<String> s3ObjectKeys);
     
     /**
      * Closes the S3 client and releases resources
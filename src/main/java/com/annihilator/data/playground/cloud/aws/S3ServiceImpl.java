@@ -1,55 +1,112 @@
 package com.annihilator.data.playground.cloud.aws;
 
 import com.annihilator.data.playground.config.AWSEmrConfig;
+import com.annihilator.data.playground.config.S3MultipartUploadConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
 import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyRequest;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 public class S3ServiceImpl implements S3Service {
     
     private static final Logger logger = LoggerFactory.getLogger(S3ServiceImpl.class);
+
+    // S3 limits: UploadPartCopy copies at most 5 GiB per part, DeleteObjects takes at most 1000 keys
+    private static final long MAX_COPY_PART_SIZE = 5L * 1024 * 1024 * 1024;
+    private static final int MAX_KEYS_PER_DELETE = 1000;
     
     private final S3Client s3Client;
+    private final S3AsyncClient s3AsyncClient;
     private final AWSEmrConfig awsEmrConfig;
+    private final S3MultipartUploadConfig multipartConfig;
+    // Uploads the parts of streamed objects; idle threads exit, so it costs nothing when nothing streams
+    private final ThreadPoolExecutor partUploadExecutor;
     
     public S3ServiceImpl(S3Client s3Client, AWSEmrConfig awsEmrConfig) {
+        this(s3Client, null, awsEmrConfig);
+    }
+
+    /**
+     * @param s3AsyncClient serves the {@code *Async} methods; without one they run the blocking variant on
+     *                      the common pool
+     */
+    public S3ServiceImpl(S3Client s3Client, S3AsyncClient s3AsyncClient, AWSEmrConfig awsEmrConfig) {
         this.s3Client = s3Client;
+        this.s3AsyncClient = s3AsyncClient;
         this.awsEmrConfig = awsEmrConfig;
+        this.multipartConfig = awsEmrConfig != null && awsEmrConfig.getS3MultipartUpload() != null
+                ? awsEmrConfig.getS3MultipartUpload() : new S3MultipartUploadConfig();
+
+        AtomicInteger uploadThreadSequence = new AtomicInteger();
+        this.partUploadExecutor = new ThreadPoolExecutor(multipartConfig.getUploadThreads(), multipartConfig.getUploadThreads(),
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "s3-part-upload-" + uploadThreadSequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.partUploadExecutor.allowCoreThreadTimeOut(true);
     }
     
     @Override
     public String writeQueryToS3(String queryText, String fileName) {
+
+        String currentDate = java.time.LocalDate.now().toString();
+
+        String s3ObjectKey = String.format("%s/query/%s/%s", awsEmrConfig.getS3PathPrefix(), currentDate, fileName);
+
+        return writeTextObject(queryText, s3ObjectKey);
+    }
+
+    @Override
+    public String writeTextObject(String content, String s3ObjectKey) {
         try {
-            String currentDate = java.time.LocalDate.now().toString();
-            
-            String s3ObjectKey = String.format("%s/query/%s/%s", awsEmrConfig.getS3PathPrefix(), currentDate, fileName);
-            
             PutObjectRequest putObjectRequest = PutObjectRequest.builder()
                 .bucket(awsEmrConfig.getS3Bucket())
                 .key(s3ObjectKey)
                 .contentType("text/plain")
                 .build();
             
-            byte[] contentBytes = queryText.getBytes(StandardCharsets.UTF_8);
+            byte[] contentBytes = content.getBytes(StandardCharsets.UTF_8);
             s3Client.putObject(putObjectRequest, 
                 RequestBody.fromInputStream(
                     new ByteArrayInputStream(contentBytes),
@@ -69,6 +126,32 @@ public class S3ServiceImpl implements S3Service {
         }
     }
     
+    @Override
+    public CompletableFuture<String> writeTextObjectAsync(String content, String s3ObjectKey) {
+
+        if (s3AsyncClient == null) {
+            return CompletableFuture.supplyAsync(() -> writeTextObject(content, s3ObjectKey));
+        }
+
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+            .bucket(awsEmrConfig.getS3Bucket())
+            .key(s3ObjectKey)
+            .contentType("text/plain")
+            .build();
+
+        return s3AsyncClient.putObject(putObjectRequest, AsyncRequestBody.fromString(content, StandardCharsets.UTF_8))
+            .handle((response, e) -> {
+                if (e != null) {
+                    Throwable cause = unwrap(e);
+                    logger.error("Failed to upload query script to S3: {}", cause.getMessage(), cause);
+                    throw new CompletionException(new RuntimeException("Failed to upload query script to S3", cause));
+                }
+
+                logger.info("Successfully uploaded query script to S3: s3://{}/{}", awsEmrConfig.getS3Bucket(), s3ObjectKey);
+                return s3ObjectKey;
+            });
+    }
+    
     @Override
     public List<String> readOutputPreview(String s3Path) {
         try {
@@ -83,8 +166,7 @@ public class S3ServiceImpl implements S3Service {
             
             List<String> previewLines = new ArrayList<>();
             
-            try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(s3Client.getObject(getObjectRequest), StandardCharsets.UTF_8))) {
+            try (BufferedReader reader = openReader(getObjectRequest)) {
                 
                 String line;
                 int lineCount = 0;
@@ -156,8 +238,7 @@ public class S3ServiceImpl implements S3Service {
                 .build();
             
             long lineCount = 0;
-            try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(s3Client.getObject(getObjectRequest), StandardCharsets.UTF_8))) {
+            try (BufferedReader reader = openReader(getObjectRequest)) {
                 
                 String line;
                 while ((line = reader.readLine()) != null) {
@@ -181,6 +262,64 @@ public class S3ServiceImpl implements S3Service {
         }
     }
     
+    @Override
+    public InputStream openFile(String s3Path) {
+
+        S3PathInfo pathInfo = parseS3Path(determineActualFilePath(s3Path));
+
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+            .bucket(pathInfo.bucketName)
+            .key(pathInfo.objectKey)
+            .build();
+
+        try {
+            return openContent(getObjectRequest);
+        } catch (S3Exception e) {
+            logger.error("Failed to open S3 object: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to open S3 object", e);
+        } catch (IOException e) {
+            logger.error("IO error while opening S3 object: {}", e.getMessage(), e);
+            throw new RuntimeException("IO error while opening S3 object", e);
+        }
+    }
+
+    @Override
+    public InputStream openFilePrefix(String s3Path, long maxBytes) {
+
+        S3PathInfo pathInfo = parseS3Path(determineActualFilePath(s3Path));
+
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+            .bucket(pathInfo.bucketName)
+            .key(pathInfo.objectKey)
+            .range("bytes=0-" + (maxBytes - 1))
+            .build();
+
+        try {
+            return openContent(getObjectRequest);
+        } catch (S3Exception e) {
+            logger.error("Failed to open S3 object range: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to open S3 object range", e);
+        } catch (IOException e) {
+            logger.error("IO error while opening S3 object range: {}", e.getMessage(), e);
+            throw new RuntimeException("IO error while opening S3 object range", e);
+        }
+    }
+
+    private BufferedReader openReader(GetObjectRequest getObjectRequest) throws IOException {
+        return new BufferedReader(new InputStreamReader(openContent(getObjectRequest), StandardCharsets.UTF_8));
+    }
+
+    private InputStream openContent(GetObjectRequest getObjectRequest) throws IOException {
+
+        InputStream content = new AbortOnEarlyCloseInputStream(s3Client.getObject(getObjectRequest));
+
+        if (getObjectRequest.key().endsWith(".gz")) {
+            content = new GZIPInputStream(content, 64 * 1024);
+        }
+
+        return content;
+    }
+
     /**
      * Determines the actual file path to read from.
      * If the path is a directory (ends with /), it will find the first data file.
@@ -307,6 +446,43 @@ public class S3ServiceImpl implements S3Service {
         }
     }
     
+    /**
+     * Aborts an object closed before its end, such as a reconciliation file read only until its sample rows are
+     * found; closing the response as is would download the rest of the object to reuse the connection.
+     */
+    private static class AbortOnEarlyCloseInputStream extends FilterInputStream {
+
+        private final ResponseInputStream<?> response;
+        private boolean ended;
+
+        AbortOnEarlyCloseInputStream(ResponseInputStream<?> response) {
+            super(response);
+            this.response = response;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            ended |= read < 0;
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            ended |= read < 0;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!ended) {
+                response.abort();
+            }
+            super.close();
+        }
+    }
+
     /**
      * Helper class to hold parsed S3 path information
      */
@@ -356,6 +532,41 @@ public class S3ServiceImpl implements S3Service {
         }
     }
     
+    @Override
+    public CompletableFuture<Long> getS3FileSizeAsync(String s3Path) {
+
+        if (s3AsyncClient == null) {
+            return CompletableFuture.supplyAsync(() -> getS3FileSize(s3Path));
+        }
+
+        HeadObjectRequest headRequest;
+        try {
+            S3PathInfo pathInfo = parseS3Path(s3Path);
+            headRequest = HeadObjectRequest.builder()
+                .bucket(pathInfo.bucketName)
+                .key(pathInfo.objectKey)
+                .build();
+        } catch (Exception e) {
+            logger.error("Unexpected error getting file size for {}: {}", s3Path, e.getMessage(), e);
+            return CompletableFuture.completedFuture(-1L);
+        }
+
+        return s3AsyncClient.headObject(headRequest)
+            .thenApply(headResponse -> {
+                logger.debug("File size for {}: {} bytes", s3Path, headResponse.contentLength());
+                return headResponse.contentLength();
+            })
+            .exceptionally(e -> {
+                Throwable cause = unwrap(e);
+                if (cause instanceof S3Exception && ((S3Exception) cause).statusCode() == 404) {
+                    logger.warn("File not found: {}", s3Path);
+                } else {
+                    logger.error("Error getting file size for {}: {}", s3Path, cause.getMessage(), cause);
+                }
+                return -1L;
+            });
+    }
+    
     @Override
     public String uploadLocalFile(String localFilePath, String s3ObjectKey) {
         try {
@@ -385,11 +596,226 @@ public class S3ServiceImpl implements S3Service {
         }
     }
     
+    @Override
+    public CompletableFuture<String> uploadLocalFileAsync(String localFilePath, String s3ObjectKey) {
+
+        if (s3AsyncClient == null) {
+            return CompletableFuture.supplyAsync(() -> uploadLocalFile(localFilePath, s3ObjectKey));
+        }
+
+        java.io.File localFile = new java.io.File(localFilePath);
+        if (!localFile.exists()) {
+            return CompletableFuture.failedFuture(new RuntimeException("Local file does not exist: " + localFilePath));
+        }
+
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+            .bucket(awsEmrConfig.getS3Bucket())
+            .key(s3ObjectKey)
+            .contentType("text/csv")
+            .build();
+
+        // Cancelling the returned future aborts the upload
+        return s3AsyncClient.putObject(putObjectRequest, AsyncRequestBody.fromFile(localFile.toPath()))
+            .handle((response, e) -> {
+                if (e != null) {
+                    Throwable cause = unwrap(e);
+                    logger.error("Failed to upload local file {} to S3: {}", localFilePath, cause.getMessage(), cause);
+                    throw new CompletionException(new RuntimeException("Failed to upload local file to S3", cause));
+                }
+
+                logger.info("Successfully uploaded local file {} to S3: s3://{}/{}", localFilePath, awsEmrConfig.getS3Bucket(), s3ObjectKey);
+                return s3ObjectKey;
+            });
+    }
+
+    @Override
+    public S3UploadStream openUploadStream(String s3ObjectKey, String contentType) {
+        return new S3MultipartOutputStream(s3Client, awsEmrConfig.getS3Bucket(), s3ObjectKey, contentType,
+                multipartConfig.getPartSize(), multipartConfig.getBuffersPerUpload(), partUploadExecutor);
+    }
+
+    @Override
+    public String concatenateObjects(List<String> sourceKeys, String s3ObjectKey, String contentType) {
+
+        List<Long> sizes = new ArrayList<>(sourceKeys.size());
+
+        for (String sourceKey : sourceKeys) {
+            sizes.add(s3Client.headObject(HeadObjectRequest.builder()
+                .bucket(awsEmrConfig.getS3Bucket())
+                .key(sourceKey)
+                .build()).contentLength());
+        }
+
+        if (canCopyParts(sizes)) {
+            copyParts(sourceKeys, sizes, s3ObjectKey, contentType);
+        } else {
+            // Some source is too small to be a part of its own: fall back to reading them back through this process
+            logger.info("Concatenating {} objects into s3://{}/{} through a streamed upload", sourceKeys.size(),
+                awsEmrConfig.getS3Bucket(), s3ObjectKey);
+            streamConcatenation(sourceKeys, s3ObjectKey, contentType);
+        }
+
+        return s3ObjectKey;
+    }
+
+    private static boolean canCopyParts(List<Long> sizes) {
+
+        long total = 0;
+
+        for (int i = 0; i < sizes.size(); i++) {
+            if (i < sizes.size() - 1 && sizes.get(i) < S3MultipartOutputStream.MIN_PART_SIZE) {
+                return false;
+            }
+            total += sizes.get(i);
+        }
+
+        return total > 0;
+    }
+
+    /**
+     * Assembles the object from UploadPartCopy parts, so no data leaves S3. Sources above the 5 GiB copy limit
+     * are copied as several equal ranges.
+     */
+    private void copyParts(List<String> sourceKeys, List<Long> sizes, String s3ObjectKey, String contentType) {
+
+        String bucket = awsEmrConfig.getS3Bucket();
+        String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+            .bucket(bucket)
+            .key(s3ObjectKey)
+            .contentType(contentType)
+            .build()).uploadId();
+
+        try {
+            List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+
+            for (int i = 0; i < sourceKeys.size(); i++) {
+
+                String sourceKey = sourceKeys.get(i);
+                long size = sizes.get(i);
+                long ranges = Math.max(1, (size + MAX_COPY_PART_SIZE - 1) / MAX_COPY_PART_SIZE);
+                long rangeSize = (size + ranges - 1) / ranges;
+
+                for (long start = 0; start < size; start += rangeSize) {
+
+                    int partNumber = parts.size() + 1;
+                    String range = "bytes=" + start + "-" + (Math.min(size, start + rangeSize) - 1);
+
+                    parts.add(CompletableFuture.supplyAsync(() -> CompletedPart.builder()
+                        .partNumber(partNumber)
+                        .eTag(s3Client.uploadPartCopy(UploadPartCopyRequest.builder()
+                            .sourceBucket(bucket)
+                            .sourceKey(sourceKey)
+                            .destinationBucket(bucket)
+                            .destinationKey(s3ObjectKey)
+                            .uploadId(uploadId)
+                            .partNumber(partNumber)
+                            .copySourceRange(range)
+                            .build()).copyPartResult().eTag())
+                        .build(), partUploadExecutor));
+                }
+            }
+
+            List<CompletedPart> completedParts = new ArrayList<>(parts.size());
+
+            for (CompletableFuture<CompletedPart> part : parts) {
+                completedParts.add(part.join());
+            }
+
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(s3ObjectKey)
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                .build());
+
+            logger.info("Concatenated {} objects into s3://{}/{} with {} copied parts", sourceKeys.size(), bucket,
+                s3ObjectKey, completedParts.size());
+
+        } catch (RuntimeException e) {
+            Throwable cause = unwrap(e);
+
+            try {
+                s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(s3ObjectKey)
+                    .uploadId(uploadId)
+                    .build());
+            } catch (RuntimeException abortFailure) {
+                logger.warn("Failed to abort multipart upload {} of s3://{}/{}: {}", uploadId, bucket, s3ObjectKey,
+                    abortFailure.getMessage());
+            }
+
+            logger.error("Failed to concatenate objects into s3://{}/{}: {}", bucket, s3ObjectKey, cause.getMessage(), cause);
+            throw new RuntimeException("Failed to concatenate objects in S3", cause);
+        }
+    }
+
+    private void streamConcatenation(List<String> sourceKeys, String s3ObjectKey, String contentType) {
+
+        S3UploadStream upload = openUploadStream(s3ObjectKey, contentType);
+
+        try {
+            for (String sourceKey : sourceKeys) {
+                try (InputStream in = s3Client.getObject(GetObjectRequest.builder()
+                        .bucket(awsEmrConfig.getS3Bucket())
+                        .key(sourceKey)
+                        .build())) {
+                    in.transferTo(upload);
+                }
+            }
+
+            upload.close();
+
+        } catch (IOException | RuntimeException e) {
+            upload.abort();
+            logger.error("Failed to concatenate objects into s3://{}/{}: {}", awsEmrConfig.getS3Bucket(), s3ObjectKey, e.getMessage(), e);
+            throw new RuntimeException("Failed to concatenate objects in S3", e);
+        }
+    }
+
+    @Override
+    public void deleteObjects(List<String> s3ObjectKeys) {
+
+        for (int from = 0; from < s3ObjectKeys.size(); from += MAX_KEYS_PER_DELETE) {
+
+            List<ObjectIdentifier> batch = new ArrayList<>();
+
+            for (String key : s3ObjectKeys.subList(from, Math.min(s3ObjectKeys.size(), from + MAX_KEYS_PER_DELETE))) {
+                batch.add(ObjectIdentifier.builder().key(key).build());
+            }
+
+            try {
+                DeleteObjectsResponse response = s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                    .bucket(awsEmrConfig.getS3Bucket())
+                    .delete(Delete.builder().objects(batch).quiet(true).build())
+                    .build());
+
+                if (response.hasErrors() && !response.errors().isEmpty()) {
+                    throw new RuntimeException("Failed to delete " + response.errors().size() + " objects from S3, first: "
+                        + response.errors().get(0).key() + " (" + response.errors().get(0).message() + ")");
+                }
+            } catch (S3Exception e) {
+                logger.error("Failed to delete objects from S3: {}", e.getMessage(), e);
+                throw new RuntimeException("Failed to delete objects from S3", e);
+            }
+        }
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+    
     @Override
     public void close() {
+        partUploadExecutor.shutdown();
+
         if (s3Client != null) {
             s3Client.close();
             logger.info("S3 client closed successfully");
         }
+
+        if (s3AsyncClient != null) {
+            s3AsyncClient.close();
+        }
     }
 }
@@ -0,0 +1,25 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import java.io.OutputStream;
+
+/**
+ * An S3 object being written as a stream. {@link #close()} completes the object; {@link #abort()} discards
+ * whatever was written so no partial object becomes visible.
+ */
+public abstract class S3UploadStream extends OutputStream {
+
+    private final String s3ObjectKey;
+
+    protected S3UploadStream(String s3ObjectKey) {
+        this.s3ObjectKey = s3ObjectKey;
+    }
+
+    public String getS3ObjectKey() {
+        return s3ObjectKey;
+    }
+
+    /**
+     * Discards the upload. Safe to call after a failed write or close, and a no-op once the object is complete.
+     */
+    public abstract void abort();
+}
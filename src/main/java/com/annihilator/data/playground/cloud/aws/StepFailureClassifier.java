@@ -0,0 +1,22 @@
+package com.annihilator.data.playground.cloud.aws;
+
+/**
+ * Decides whether a failed step is worth retrying, based on the failure reason reported for it
+ * (see {@link EMRStepStatusPoller#describeFailure}) or the exception message of a failed submission.
+ */
+public interface StepFailureClassifier {
+
+    enum FailureClass {
+
+        /** The step will fail the same way again, e.g. a syntax or semantic error in the query. */
+        PERMANENT,
+
+        /** A hiccup that is likely gone on the next attempt, e.g. a throttled or dropped API call. */
+        TRANSIENT,
+
+        /** The cluster was short of memory, disk or nodes; worth retrying after a longer pause. */
+        CAPACITY
+    }
+
+    FailureClass classify(String failureReason);
+}
@@ -0,0 +1,48 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import com.annihilator.data.playground.config.RetryConfig;
+
+/**
+ * Retry decisions for EMR steps: permanent failures fail fast, transient and capacity failures are
+ * retried up to the configured number of times with exponential backoff and jitter. Capacity failures
+ * start one backoff step further, giving the cluster time to scale or drain.
+ */
+public class StepRetryPolicy {
+
+    private final int maxRetries;
+    private final RetryConfig backoff;
+    private final StepFailureClassifier classifier;
+
+    public StepRetryPolicy(int maxRetries, RetryConfig backoff, StepFailureClassifier classifier) {
+        this.maxRetries = maxRetries;
+        this.backoff = backoff;
+        this.classifier = classifier;
+    }
+
+    public StepFailureClassifier.FailureClass classify(String failureReason) {
+        return classifier.classify(failureReason);
+    }
+
+    /**
+     * @param attempt zero-based number of the attempt that just failed
+     */
+    public boolean shouldRetry(StepFailureClassifier.FailureClass failureClass, int attempt) {
+        return failureClass != StepFailureClassifier.FailureClass.PERMANENT && attempt < maxRetries;
+    }
+
+    /**
+     * @param attempt zero-based number of the attempt that just failed
+     */
+    public long getRetryDelay(StepFailureClassifier.FailureClass failureClass, int attempt) {
+
+        if (failureClass == StepFailureClassifier.FailureClass.CAPACITY) {
+            return backoff.getRetryDelay(attempt + 1);
+        }
+
+        return backoff.getRetryDelay(attempt);
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+}
@@ -0,0 +1,127 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Content-addressed store for generated step scripts.
+ *
+ * A script is stored under a key derived from a SHA-256 of its rendered content, engine and UDF set, and
+ * is only uploaded when that key is not known yet. Known keys are kept in memory; on a miss the object is
+ * looked up in S3 first, so a restart does not re-upload existing artifacts either.
+ *
+ * The S3 round trips run outside the index's locks: the first caller for a key registers a future for it
+ * and does the upload, and concurrent callers for the same key wait on that future.
+ */
+public class StepScriptCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(StepScriptCache.class);
+
+    // The index only saves a HEAD request per hit, so it is simply dropped when it grows past this size.
+    private static final int MAX_INDEXED_KEYS = 50000;
+
+    private final S3Service s3Service;
+    private final String pathPrefix;
+    private final Map<String, CompletableFuture<Void>> knownKeys = new ConcurrentHashMap<>();
+
+    public StepScriptCache(S3Service s3Service, String pathPrefix) {
+        this.s3Service = s3Service;
+        this.pathPrefix = pathPrefix;
+    }
+
+    /**
+     * Makes sure the script is stored in S3 and returns its object key.
+     *
+     * @param udfIds    IDs of the UDFs the script registers, in any order
+     * @param extension file extension without the dot, e.g. "sh" or "py"
+     */
+    public String publish(String content, String engine, Collection<String> udfIds, String extension) {
+
+        String s3ObjectKey = keyFor(content, engine, udfIds, extension);
+
+        if (knownKeys.size() > MAX_INDEXED_KEYS) {
+            knownKeys.clear();
+        }
+
+        CompletableFuture<Void> upload = new CompletableFuture<>();
+        CompletableFuture<Void> existing;
+
+        while ((existing = knownKeys.putIfAbsent(s3ObjectKey, upload)) != null) {
+            try {
+                existing.join();
+                return s3ObjectKey;
+            } catch (CompletionException e) {
+                // The other caller's upload failed and forgot the key; try it here
+            }
+        }
+
+        try {
+            String s3Path = String.format("s3://%s/%s", s3Service.getBucketName(), s3ObjectKey);
+
+            if (s3Service.getS3FileSize(s3Path) >= 0) {
+                logger.debug("Step script already in S3: {}", s3Path);
+            } else {
+                s3Service.writeTextObject(content, s3ObjectKey);
+                logger.info("Uploaded step script to {}", s3Path);
+            }
+
+            upload.complete(null);
+
+        } catch (RuntimeException e) {
+            // Forget the key so the next publish tries again
+            knownKeys.remove(s3ObjectKey, upload);
+            upload.completeExceptionally(e);
+            throw e;
+        }
+
+        return s3ObjectKey;
+    }
+
+    String keyFor(String content, String engine, Collection<String> udfIds, String extension) {
+
+        StringBuilder fingerprint = new StringBuilder()
+                .append(engine).append('\0');
+
+        if (udfIds != null) {
+            // Order of the UDF list does not change the artifact
+            for (String udfId : new TreeSet<>(udfIds)) {
+                fingerprint.append(udfId).append(',');
+            }
+        }
+
+        fingerprint.append('\0').append(content);
+
+        return String.format("%s/scripts/%s/%s.%s", pathPrefix, engine.toLowerCase(), sha256(fingerprint.toString()), extension);
+    }
+
+    int getKnownKeyCount() {
+        return knownKeys.size();
+    }
+
+    private static String sha256(String value) {
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+
+            return hex.toString();
+
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package com.annihilator.data.playground.config;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.Max;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class AWSEmrConfig {
 
     @NotNull
@@ -53,6 +57,42 @@ public class AWSEmrConfig {
     @Max(value = 300000, message = "Step polling interval cannot exceed 300000ms (5 minutes)")
     private long stepPollingInterval;
 
+    @Min(value = 0, message = "Step submission batch window cannot be negative")
+    @Max(value = 10000, message = "Step submission batch window cannot exceed 10000ms (10 seconds)")
+    private long stepSubmissionBatchWindow = 200;
+
+    @Min(value = 1, message = "Step submission batch size must be at least 1")
+    @Max(value = 256, message = "Step submission batch size cannot exceed 256 (AddJobFlowSteps limit)")
+    private int stepSubmissionBatchSize = 256;
+
+    // Additional stacks for the cluster pool; when empty, stack_name/cluster_logical_id is the only cluster.
+    @Valid
+    private List<EMRClusterConfig> clusterPool = new ArrayList<>();
+
+    @Min(value = 1, message = "Cluster saturation pending steps must be at least 1")
+    @Max(value = 1000, message = "Cluster saturation pending steps cannot exceed 1000")
+    private int clusterSaturationPendingSteps = 10;
+
+    // EMR service pool that prepares steps and handles their results; waiting on steps is left to the poller
+    @Min(value = 1, message = "EMR service threads must be at least 1")
+    @Max(value = 256, message = "EMR service threads cannot exceed 256")
+    private int emrServiceThreads = 16;
+
+    @Valid
+    private EMRCapacityConfig capacityController = new EMRCapacityConfig();
+
+    @Valid
+    private EMRStepFusionConfig stepFusion = new EMRStepFusionConfig();
+
+    // Backoff between step retries; the number of retries is max_step_retries
+    private RetryConfig stepRetryBackoff = new RetryConfig();
+
+    @Valid
+    private AwsHttpClientConfig httpClient = new AwsHttpClientConfig();
+
+    @Valid
+    private S3MultipartUploadConfig s3MultipartUpload = new S3MultipartUploadConfig();
+
     @JsonProperty("region")
     public String getRegion() {
         return region;
@@ -118,6 +158,56 @@ public class AWSEmrConfig {
         return stepPollingInterval;
     }
 
+    @JsonProperty("step_submission_batch_window")
+    public long getStepSubmissionBatchWindow() {
+        return stepSubmissionBatchWindow;
+    }
+
+    @JsonProperty("step_submission_batch_size")
+    public int getStepSubmissionBatchSize() {
+        return stepSubmissionBatchSize;
+    }
+
+    @JsonProperty("cluster_pool")
+    public List<EMRClusterConfig> getClusterPool() {
+        return clusterPool;
+    }
+
+    @JsonProperty("cluster_saturation_pending_steps")
+    public int getClusterSaturationPendingSteps() {
+        return clusterSaturationPendingSteps;
+    }
+
+    @JsonProperty("emr_service_threads")
+    public int getEmrServiceThreads() {
+        return emrServiceThreads;
+    }
+
+    @JsonProperty("capacity_controller")
+    public EMRCapacityConfig getCapacityController() {
+        return capacityController;
+    }
+
+    @JsonProperty("step_fusion")
+    public EMRStepFusionConfig getStepFusion() {
+        return stepFusion;
+    }
+
+    @JsonProperty("step_retry_backoff")
+    public RetryConfig getStepRetryBackoff() {
+        return stepRetryBackoff;
+    }
+
+    @JsonProperty("http_client")
+    public AwsHttpClientConfig getHttpClient() {
+        return httpClient;
+    }
+
+    @JsonProperty("s3_multipart_upload")
+    public S3MultipartUploadConfig getS3MultipartUpload() {
+        return s3MultipartUpload;
+    }
+
     public void setS3MaxKeysPerRequest(int s3MaxKeysPerRequest) {
         this.s3MaxKeysPerRequest = s3MaxKeysPerRequest;
     }
@@ -134,6 +224,46 @@ public class AWSEmrConfig {
         this.stepPollingInterval = stepPollingInterval;
     }
 
+    public void setStepSubmissionBatchWindow(long stepSubmissionBatchWindow) {
+        this.stepSubmissionBatchWindow = stepSubmissionBatchWindow;
+    }
+
+    public void setStepSubmissionBatchSize(int stepSubmissionBatchSize) {
+        this.stepSubmissionBatchSize = stepSubmissionBatchSize;
+    }
+
+    public void setClusterPool(List<EMRClusterConfig> clusterPool) {
+        this.clusterPool = clusterPool;
+    }
+
+    public void setClusterSaturationPendingSteps(int clusterSaturationPendingSteps) {
+        this.clusterSaturationPendingSteps = clusterSaturationPendingSteps;
+    }
+
+    public void setEmrServiceThreads(int emrServiceThreads) {
+        this.emrServiceThreads = emrServiceThreads;
+    }
+
+    public void setCapacityController(EMRCapacityConfig capacityController) {
+        this.capacityController = capacityController;
+    }
+
+    public void setStepFusion(EMRStepFusionConfig stepFusion) {
+        this.stepFusion = stepFusion;
+    }
+
+    public void setStepRetryBackoff(RetryConfig stepRetryBackoff) {
+        this.stepRetryBackoff = stepRetryBackoff;
+    }
+
+    public void setHttpClient(AwsHttpClientConfig httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    public void setS3MultipartUpload(S3MultipartUploadConfig s3MultipartUpload) {
+        this.s3MultipartUpload = s3MultipartUpload;
+    }
+
     public void setStackUpdatePollingInterval(long stackUpdatePollingInterval) {
         this.stackUpdatePollingInterval = stackUpdatePollingInterval;
     }
@@ -0,0 +1,48 @@
+package com.annihilator.data.playground.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+
+public class AwsHttpClientConfig {
+
+    @Min(value = 1, message = "Max connections must be at least 1")
+    @Max(value = 2000, message = "Max connections cannot exceed 2000")
+    private int maxConnections = 200;
+
+    // 0 lets the SDK pick the number of event loop threads from the available processors
+    @Min(value = 0, message = "Event loop threads cannot be negative")
+    @Max(value = 64, message = "Event loop threads cannot exceed 64")
+    private int eventLoopThreads = 0;
+
+    @Min(value = 1000, message = "Connection acquisition timeout must be at least 1000ms (1 second)")
+    @Max(value = 300000, message = "Connection acquisition timeout cannot exceed 300000ms (5 minutes)")
+    private long connectionAcquisitionTimeout = 60000;
+
+    @JsonProperty("max_connections")
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    @JsonProperty("event_loop_threads")
+    public int getEventLoopThreads() {
+        return eventLoopThreads;
+    }
+
+    @JsonProperty("connection_acquisition_timeout")
+    public long getConnectionAcquisitionTimeout() {
+        return connectionAcquisitionTimeout;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public void setEventLoopThreads(int eventLoopThreads) {
+        this.eventLoopThreads = eventLoopThreads;
+    }
+
+    public void setConnectionAcquisitionTimeout(long connectionAcquisitionTimeout) {
+        this.connectionAcquisitionTimeout = connectionAcquisitionTimeout;
+    }
+}
@@ -1,23 +1,47 @@
 package com.annihilator.data.playground.config;
 
+import com.annihilator.data.playground.utility.BlockingExecutors;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 
+import java.util.concurrent.ExecutorService;
+
 public class ConcurrencyConfig {
 
+    // Platform threads each hold a stack, so pools above this need virtual threads
+    static final int MAX_PLATFORM_THREAD_POOL_SIZE = 1000;
+
     @Min(value = 1, message = "Adhoc thread pool size must be at least 1")
-    @Max(value = 1000, message = "Adhoc thread pool size cannot exceed 1000")
+    @Max(value = 10000, message = "Adhoc thread pool size cannot exceed 10000")
     private int adHocThreadPoolSize;
 
     @Min(value = 1, message = "Scheduled thread pool size must be at least 1")
-    @Max(value = 1000, message = "Scheduled thread pool size cannot exceed 1000")
+    @Max(value = 10000, message = "Scheduled thread pool size cannot exceed 10000")
     private int scheduledThreadPoolSize;
 
+    @Min(value = 1, message = "Run event thread pool size must be at least 1")
+    @Max(value = 200, message = "Run event thread pool size cannot exceed 200")
+    private int runEventThreadPoolSize = 8;
+
+    @Min(value = 1, message = "Run completion thread pool size must be at least 1")
+    @Max(value = 200, message = "Run completion thread pool size cannot exceed 200")
+    private int runCompletionThreadPoolSize = 16;
+
+    // Back the blocking pools with virtual threads; pool sizes then only cap concurrency. Needs Java 21.
+    private boolean virtualThreads = false;
+
     @Min(value = 1000, message = "Scheduler sleep time must be at least 1000ms (1 second)")
     @Max(value = 3600000, message = "Scheduler sleep time cannot exceed 3600000ms (1 hour)")
     private long schedulerSleepTime;
 
+    // How long before a scheduled run its EMR clusters are brought up; 0 disables pre-warming.
+    @Min(value = 0, message = "Cluster prewarm lead time cannot be negative")
+    @Max(value = 7200000, message = "Cluster prewarm lead time cannot exceed 7200000ms (2 hours)")
+    private long clusterPrewarmLeadTime = 1200000;
+
     @Min(value = 60000, message = "Playground execution grace period must be at least 60000ms (1 minute)")
     @Max(value = 1800000, message = "Playground execution grace period cannot exceed 1800000ms (30 minutes)")
     private long playgroundExecutionGracePeriod;
@@ -46,11 +70,31 @@ public class ConcurrencyConfig {
         return scheduledThreadPoolSize;
     }
 
+    @JsonProperty("run_event_threadpool_size")
+    public int getRunEventThreadPoolSize() {
+        return runEventThreadPoolSize;
+    }
+
+    @JsonProperty("run_completion_threadpool_size")
+    public int getRunCompletionThreadPoolSize() {
+        return runCompletionThreadPoolSize;
+    }
+
+    @JsonProperty("virtual_threads")
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
     @JsonProperty("scheduler_sleep_time")
     public long getSchedulerSleepTime() {
         return schedulerSleepTime;
     }
 
+    @JsonProperty("cluster_prewarm_lead_time")
+    public long getClusterPrewarmLeadTime() {
+        return clusterPrewarmLeadTime;
+    }
+
     public void setPlaygroundExecutionGracePeriod(long playgroundExecutionGracePeriod) {
         this.playgroundExecutionGracePeriod = playgroundExecutionGracePeriod;
     }
@@ -63,11 +107,47 @@ public class ConcurrencyConfig {
         this.scheduledThreadPoolSize = scheduledThreadPoolSize;
     }
 
+    public void setRunEventThreadPoolSize(int runEventThreadPoolSize) {
+        this.runEventThreadPoolSize = runEventThreadPoolSize;
+    }
+
+    public void setRunCompletionThreadPoolSize(int runCompletionThreadPoolSize) {
+        this.runCompletionThreadPoolSize = runCompletionThreadPoolSize;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
     public void setSchedulerSleepTime(long schedulerSleepTime) {
         this.schedulerSleepTime = schedulerSleepTime;
     }
 
+    public void setClusterPrewarmLeadTime(long clusterPrewarmLeadTime) {
+        this.clusterPrewarmLeadTime = clusterPrewarmLeadTime;
+    }
+
     public void setPlaygroundMaxExecutionFrequency(long playgroundMaxExecutionFrequency) {
         this.playgroundMaxExecutionFrequency = playgroundMaxExecutionFrequency;
     }
+
+    @JsonIgnore
+    @AssertTrue(message = "Adhoc and scheduled thread pool sizes cannot exceed 1000 unless virtual_threads is set on Java 21+")
+    public boolean isThreadPoolSizeWithinLimit() {
+
+        if (adHocThreadPoolSize <= MAX_PLATFORM_THREAD_POOL_SIZE
+                && scheduledThreadPoolSize <= MAX_PLATFORM_THREAD_POOL_SIZE) {
+            return true;
+        }
+
+        return virtualThreads && BlockingExecutors.isVirtualThreadSupported();
+    }
+
+    /**
+     * Creates a pool for blocking work that runs at most {@code maxConcurrency} tasks at a time, on virtual
+     * threads when {@code virtual_threads} is set.
+     */
+    public ExecutorService newBlockingExecutor(String name, int maxConcurrency) {
+        return BlockingExecutors.newBoundedExecutor(name, maxConcurrency, virtualThreads);
+    }
 }
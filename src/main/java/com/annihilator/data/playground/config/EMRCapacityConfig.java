@@ -0,0 +1,97 @@
+package com.annihilator.data.playground.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+
+public class EMRCapacityConfig {
+
+    private boolean enabled = false;
+
+    @Min(value = 1, message = "Min step concurrency must be at least 1")
+    @Max(value = 256, message = "Min step concurrency cannot exceed 256")
+    private int minStepConcurrency = 1;
+
+    @Min(value = 1, message = "Max step concurrency must be at least 1")
+    @Max(value = 256, message = "Max step concurrency cannot exceed 256")
+    private int maxStepConcurrency = 10;
+
+    @Min(value = 0, message = "Min task instances cannot be negative")
+    @Max(value = 500, message = "Min task instances cannot exceed 500")
+    private int minTaskInstances = 0;
+
+    @Min(value = 0, message = "Max task instances cannot be negative")
+    @Max(value = 500, message = "Max task instances cannot exceed 500")
+    private int maxTaskInstances = 10;
+
+    @Min(value = 1, message = "Steps per task instance must be at least 1")
+    @Max(value = 64, message = "Steps per task instance cannot exceed 64")
+    private int stepsPerTaskInstance = 2;
+
+    @Min(value = 60000, message = "Scale down delay must be at least 60000ms (1 minute)")
+    @Max(value = 7200000, message = "Scale down delay cannot exceed 7200000ms (2 hours)")
+    private long scaleDownDelay = 900000;
+
+    @JsonProperty("enabled")
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @JsonProperty("min_step_concurrency")
+    public int getMinStepConcurrency() {
+        return minStepConcurrency;
+    }
+
+    @JsonProperty("max_step_concurrency")
+    public int getMaxStepConcurrency() {
+        return maxStepConcurrency;
+    }
+
+    @JsonProperty("min_task_instances")
+    public int getMinTaskInstances() {
+        return minTaskInstances;
+    }
+
+    @JsonProperty("max_task_instances")
+    public int getMaxTaskInstances() {
+        return maxTaskInstances;
+    }
+
+    @JsonProperty("steps_per_task_instance")
+    public int getStepsPerTaskInstance() {
+        return stepsPerTaskInstance;
+    }
+
+    @JsonProperty("scale_down_delay")
+    public long getScaleDownDelay() {
+        return scaleDownDelay;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void setMinStepConcurrency(int minStepConcurrency) {
+        this.minStepConcurrency = minStepConcurrency;
+    }
+
+    public void setMaxStepConcurrency(int maxStepConcurrency) {
+        this.maxStepConcurrency = maxStepConcurrency;
+    }
+
+    public void setMinTaskInstances(int minTaskInstances) {
+        this.minTaskInstances = minTaskInstances;
+    }
+
+    public void setMaxTaskInstances(int maxTaskInstances) {
+        this.maxTaskInstances = maxTaskInstances;
+    }
+
+    public void setStepsPerTaskInstance(int stepsPerTaskInstance) {
+        this.stepsPerTaskInstance = stepsPerTaskInstance;
+    }
+
+    public void setScaleDownDelay(long scaleDownDelay) {
+        this.scaleDownDelay = scaleDownDelay;
+    }
+}
@@ -0,0 +1,46 @@
+package com.annihilator.data.playground.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class EMRClusterConfig {
+
+    @NotNull
+    private String stackName;
+
+    @NotNull
+    private String clusterLogicalId;
+
+    // Task types this cluster accepts; empty means any type.
+    private List<String> taskTypes = new ArrayList<>();
+
+    @JsonProperty("stack_name")
+    public String getStackName() {
+        return stackName;
+    }
+
+    @JsonProperty("cluster_logical_id")
+    public String getClusterLogicalId() {
+        return clusterLogicalId;
+    }
+
+    @JsonProperty("task_types")
+    public List<String> getTaskTypes() {
+        return taskTypes;
+    }
+
+    public void setStackName(String stackName) {
+        this.stackName = stackName;
+    }
+
+    public void setClusterLogicalId(String clusterLogicalId) {
+        this.clusterLogicalId = clusterLogicalId;
+    }
+
+    public void setTaskTypes(List<String> taskTypes) {
+        this.taskTypes = taskTypes;
+    }
+}
@@ -0,0 +1,45 @@
+package com.annihilator.data.playground.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+
+public class EMRStepFusionConfig {
+
+    private boolean enabled = false;
+
+    @Min(value = 0, message = "Fusion window cannot be negative")
+    @Max(value = 10000, message = "Fusion window cannot exceed 10000ms (10 seconds)")
+    private long window = 500;
+
+    @Min(value = 2, message = "Max tasks per fused step must be at least 2")
+    @Max(value = 64, message = "Max tasks per fused step cannot exceed 64")
+    private int maxTasksPerStep = 8;
+
+    @JsonProperty("enabled")
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @JsonProperty("window")
+    public long getWindow() {
+        return window;
+    }
+
+    @JsonProperty("max_tasks_per_step")
+    public int getMaxTasksPerStep() {
+        return maxTasksPerStep;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void setWindow(long window) {
+        this.window = window;
+    }
+
+    public void setMaxTasksPerStep(int maxTasksPerStep) {
+        this.maxTasksPerStep = maxTasksPerStep;
+    }
+}
@@ -19,14 +19,28 @@ public class MySQLConnectorConfig {
     
     private int maxSize = 20;
     private int minSize = 5;
+    // SQL tasks run on maxSize workers, one per connection; this many more may wait, the rest are rejected
+    private int maxQueuedTasks = 100;
     private String maxWaitForConnection = "30s";
     private String maxConnectionAge = "30m";
     private String minIdleTime = "10m";
     
+    // Rows per round trip; MariaDB streams a forward-only result in batches of this size instead of buffering it
+    private int fetchSize = 1000;
+
+    // Extra workers, each with its own pooled connection, for tasks that opt into range-partitioned
+    // extraction with a split_by hint; 0 runs every task as a single query
+    private int splitWorkers = 4;
+    private int maxSplitPartitions = 8;
+
     private String validationQuery = "SELECT 1";
     private String validationQueryTimeout = "3s";
     private boolean checkConnectionOnBorrow = true;
     private boolean checkConnectionOnReturn = true;
     
     private String outputDirectory = "/tmp/sql-output";
+
+    // Stream results straight into an S3 multipart upload; when false they are staged in outputDirectory first
+    private boolean streamOutputToS3 = true;
+    private boolean gzipOutput = false;
 }
@@ -24,6 +24,19 @@ public class ReconciliationConfig {
     @Max(value = 1073741824, message = "Exact match threshold cannot exceed 1073741824 bytes (1GB)")
     private long exactMatchThreshold;
 
+    // Above the exact match threshold, fingerprints are spilled into up to this many partitions; 0 uses Bloom filters
+    @Min(value = 0, message = "Max spill partitions cannot be negative")
+    @Max(value = 4096, message = "Max spill partitions cannot exceed 4096")
+    private int maxSpillPartitions = 256;
+
+    // Local directory for spill files; the system temp directory when unset
+    private String spillDirectory;
+
+    // Threads parsing and aggregating rows; 0 uses one per available processor
+    @Min(value = 0, message = "Worker threads cannot be negative")
+    @Max(value = 256, message = "Worker threads cannot exceed 256")
+    private int workerThreads;
+
     @JsonProperty("false_positive_rate")
     public double getFalsePositiveRate() {
         return falsePositiveRate;
@@ -39,6 +52,21 @@ public class ReconciliationConfig {
         return exactMatchThreshold;
     }
 
+    @JsonProperty("max_spill_partitions")
+    public int getMaxSpillPartitions() {
+        return maxSpillPartitions;
+    }
+
+    @JsonProperty("spill_directory")
+    public String getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    @JsonProperty("worker_threads")
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
     public void setFalsePositiveRate(double falsePositiveRate) {
         this.falsePositiveRate = falsePositiveRate;
     }
@@ -50,4 +78,16 @@ public class ReconciliationConfig {
     public void setExactMatchThreshold(long exactMatchThreshold) {
         this.exactMatchThreshold = exactMatchThreshold;
     }
+
+    public void setMaxSpillPartitions(int maxSpillPartitions) {
+        this.maxSpillPartitions = maxSpillPartitions;
+    }
+
+    public void setSpillDirectory(String spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
 }
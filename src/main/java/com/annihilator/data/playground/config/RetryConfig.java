@@ -1,5 +1,6 @@
 package com.annihilator.data.playground.config;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -9,11 +10,15 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 public class RetryConfig {
     
-    private int maxRetries = 3;
+    @JsonProperty("base_delay_ms")
     private long baseDelayMs = 5000; // 5 seconds
+    @JsonProperty("backoff_multiplier")
     private double backoffMultiplier = 2.0;
+    @JsonProperty("max_delay_ms")
     private long maxDelayMs = 60000; // 1 minute
+    @JsonProperty("enable_jitter")
     private boolean enableJitter = true;
+    @JsonProperty("jitter_factor")
     private double jitterFactor = 0.1; // 10% jitter
 
     public long getRetryDelay(int attempt) {
@@ -31,44 +36,10 @@ public class RetryConfig {
         return Math.max(delay, 100); // Minimum 100ms delay
     }
 
-    public boolean shouldRetry(String errorMessage) {
-        if (errorMessage == null) {
-            return true;
-        }
-        
-        String lowerError = errorMessage.toLowerCase();
-        
-        if (lowerError.contains("syntax error") ||
-            lowerError.contains("invalid query") ||
-            lowerError.contains("table not found") ||
-            lowerError.contains("column not found") ||
-            lowerError.contains("permission denied") ||
-            lowerError.contains("authentication failed") ||
-            lowerError.contains("access denied")) {
-
-            return false;
-        }
-        
-        if (lowerError.contains("timeout") ||
-            lowerError.contains("connection") ||
-            lowerError.contains("network") ||
-            lowerError.contains("temporary") ||
-            lowerError.contains("resource") ||
-            lowerError.contains("throttle") ||
-            lowerError.contains("rate limit") ||
-            lowerError.contains("service unavailable")) {
-
-            return true;
-        }
-        
-        return true;
-    }
-    
     @Override
     public String toString() {
         return "RetryConfig{" +
-                "maxRetries=" + maxRetries +
-                ", baseDelayMs=" + baseDelayMs +
+                "baseDelayMs=" + baseDelayMs +
                 ", backoffMultiplier=" + backoffMultiplier +
                 ", maxDelayMs=" + maxDelayMs +
                 ", enableJitter=" + enableJitter +
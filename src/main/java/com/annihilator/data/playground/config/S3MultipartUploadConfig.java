@@ -0,0 +1,49 @@
+package com.annihilator.data.playground.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+
+public class S3MultipartUploadConfig {
+
+    // S3 requires every part but the last to be at least 5 MiB
+    @Min(value = 5242880, message = "Multipart part size must be at least 5242880 bytes (5 MiB)")
+    @Max(value = 134217728, message = "Multipart part size cannot exceed 134217728 bytes (128 MiB)")
+    private int partSize = 8388608;
+
+    // Part buffers per upload, reused as parts finish; caps each upload's memory at part_size * buffers_per_upload
+    @Min(value = 2, message = "Buffers per upload must be at least 2")
+    @Max(value = 16, message = "Buffers per upload cannot exceed 16")
+    private int buffersPerUpload = 3;
+
+    @Min(value = 1, message = "Upload threads must be at least 1")
+    @Max(value = 128, message = "Upload threads cannot exceed 128")
+    private int uploadThreads = 8;
+
+    @JsonProperty("part_size")
+    public int getPartSize() {
+        return partSize;
+    }
+
+    @JsonProperty("buffers_per_upload")
+    public int getBuffersPerUpload() {
+        return buffersPerUpload;
+    }
+
+    @JsonProperty("upload_threads")
+    public int getUploadThreads() {
+        return uploadThreads;
+    }
+
+    public void setPartSize(int partSize) {
+        this.partSize = partSize;
+    }
+
+    public void setBuffersPerUpload(int buffersPerUpload) {
+        this.buffersPerUpload = buffersPerUpload;
+    }
+
+    public void setUploadThreads(int uploadThreads) {
+        this.uploadThreads = uploadThreads;
+    }
+}
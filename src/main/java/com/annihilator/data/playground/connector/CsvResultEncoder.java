@@ -0,0 +1,212 @@
+package com.annihilator.data.playground.connector;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Writes a JDBC result set as CSV through a per-column plan built once from the result set metadata, so the
+ * row loop neither looks up column types nor allocates beyond what the driver hands back.
+ *
+ * Decimal and floating point columns are written as plain decimals without trailing zeros, everything else
+ * as the driver's text. A value containing a comma, a double quote or a newline is wrapped in double quotes
+ * with its double quotes doubled, NULL is written as an empty field, and headers are written as-is.
+ */
+public final class CsvResultEncoder {
+
+    private final String[] headers;
+    private final ColumnWriter[] columns;
+
+    // Reused for every text and integer value of the result set
+    private char[] scratch = new char[256];
+
+    private CsvResultEncoder(String[] headers, ColumnWriter[] columns) {
+        this.headers = headers;
+        this.columns = columns;
+    }
+
+    public static CsvResultEncoder forResultSet(ResultSet rs) throws SQLException {
+
+        ResultSetMetaData meta = rs.getMetaData();
+        int columnCount = meta.getColumnCount();
+
+        String[] headers = new String[columnCount];
+        ColumnWriter[] columns = new ColumnWriter[columnCount];
+
+        for (int i = 1; i <= columnCount; i++) {
+            headers[i - 1] = meta.getColumnName(i);
+            columns[i - 1] = columnWriter(meta, i);
+        }
+
+        return new CsvResultEncoder(headers, columns);
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public void writeHeader(Writer writer) throws IOException {
+
+        for (int i = 0; i < headers.length; i++) {
+            if (i > 0) writer.write(',');
+            writer.write(headers[i]);
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * Writes the current row of {@code rs}, including its line ending.
+     */
+    public void writeRow(ResultSet rs, Writer writer) throws SQLException, IOException {
+
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) writer.write(',');
+            columns[i].write(this, rs, i + 1, writer);
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * Writes every remaining row of {@code rs}.
+     *
+     * @return the number of rows written
+     */
+    public long writeRows(ResultSet rs, Writer writer) throws SQLException, IOException {
+
+        long rows = 0;
+
+        while (rs.next()) {
+            writeRow(rs, writer);
+            rows++;
+        }
+
+        return rows;
+    }
+
+    private static ColumnWriter columnWriter(ResultSetMetaData meta, int column) throws SQLException {
+
+        switch (meta.getColumnType(column)) {
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+            case Types.REAL:
+                return CsvResultEncoder::writeDecimal;
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return CsvResultEncoder::writeInteger;
+            case Types.BIGINT:
+                // BIGINT UNSIGNED does not fit a long
+                return meta.isSigned(column) ? CsvResultEncoder::writeInteger : CsvResultEncoder::writeText;
+            default:
+                return CsvResultEncoder::writeText;
+        }
+    }
+
+    private void writeDecimal(ResultSet rs, int column, Writer writer) throws SQLException, IOException {
+
+        BigDecimal decimal;
+
+        try {
+            decimal = rs.getBigDecimal(column);
+        } catch (SQLException e) {
+            writeText(rs, column, writer);
+            return;
+        }
+
+        if (decimal == null) {
+            writeText(rs, column, writer);
+            return;
+        }
+
+        // A plain decimal never needs quoting; without a fraction there are no trailing zeros to strip
+        writer.write(decimal.scale() <= 0 ? decimal.toPlainString() : decimal.stripTrailingZeros().toPlainString());
+    }
+
+    private void writeInteger(ResultSet rs, int column, Writer writer) throws SQLException, IOException {
+
+        long value = rs.getLong(column);
+
+        if (value == 0 && rs.wasNull()) {
+            return;
+        }
+
+        if (value == Long.MIN_VALUE) {
+            writer.write(Long.toString(value));
+            return;
+        }
+
+        char[] digits = scratch;
+        int position = digits.length;
+        long remaining = Math.abs(value);
+
+        do {
+            digits[--position] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+
+        if (value < 0) {
+            digits[--position] = '-';
+        }
+
+        writer.write(digits, position, digits.length - position);
+    }
+
+    private void writeText(ResultSet rs, int column, Writer writer) throws SQLException, IOException {
+
+        String value = rs.getString(column);
+
+        if (value == null) {
+            return;
+        }
+
+        int length = value.length();
+
+        if (scratch.length < length) {
+            scratch = new char[Math.max(length, scratch.length * 2)];
+        }
+
+        char[] chars = scratch;
+        value.getChars(0, length, chars, 0);
+
+        int firstSpecial = -1;
+
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            if (c == ',' || c == '"' || c == '\n') {
+                firstSpecial = i;
+                break;
+            }
+        }
+
+        if (firstSpecial < 0) {
+            writer.write(chars, 0, length);
+            return;
+        }
+
+        writer.write('"');
+
+        int start = 0;
+
+        for (int i = firstSpecial; i < length; i++) {
+            if (chars[i] == '"') {
+                // Write up to and including the quote, then start the next run at the same quote to double it
+                writer.write(chars, start, i + 1 - start);
+                start = i;
+            }
+        }
+
+        writer.write(chars, start, length - start);
+        writer.write('"');
+    }
+
+    @FunctionalInterface
+    private interface ColumnWriter {
+        void write(CsvResultEncoder encoder, ResultSet rs, int column, Writer writer) throws SQLException, IOException;
+    }
+}
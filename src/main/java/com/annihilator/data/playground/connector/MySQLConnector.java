@@ -2,44 +2,120 @@ package com.annihilator.data.playground.connector;
 
 import com.annihilator.data.playground.config.MySQLConnectorConfig;
 import com.annihilator.data.playground.cloud.aws.S3Service;
+import com.annihilator.data.playground.cloud.aws.S3UploadStream;
 import com.annihilator.data.playground.model.StepResult;
 import com.annihilator.data.playground.model.Task;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import software.amazon.awssdk.services.emr.model.StepState;
 import io.dropwizard.core.setup.Environment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.FileWriter;
-import java.io.PrintWriter;
-import java.math.BigDecimal;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
 
 public class MySQLConnector {
 
     private static final Logger logger = LoggerFactory.getLogger(MySQLConnector.class);
 
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
     private final MySQLDBConnection mysqlDBConnection;
     private final MySQLConnectorConfig config;
     private final S3Service s3Service;
     private final String pathPrefix;
+    private final Map<String, RunningSQLTask> runningTasks = new ConcurrentHashMap<>();
+
+    // Bulkhead: one worker per pooled connection, so SQL tasks never wait on each other for a connection
+    // and never run on the common pool shared with the rest of the process.
+    private final ThreadPoolExecutor taskExecutor;
+    // Runs the extra partitions of split_by tasks; null when range-partitioned extraction is off
+    private final ThreadPoolExecutor splitExecutor;
+    private final Meter rejectedTasks;
+    private final Timer queueWait;
 
     public MySQLConnector(MySQLConnectorConfig config, Environment environment, S3Service s3Service) {
         this(config, environment, s3Service, "data-phantom");
     }
     
     public MySQLConnector(MySQLConnectorConfig config, Environment environment, S3Service s3Service, String pathPrefix) {
-        this.mysqlDBConnection = new MySQLDBConnection(config, environment);
+        this(new MySQLDBConnection(config, environment), config, s3Service, pathPrefix, newTaskExecutor(config), environment.metrics());
+    }
+
+    MySQLConnector(MySQLDBConnection mysqlDBConnection, MySQLConnectorConfig config, S3Service s3Service, String pathPrefix,
+                   ThreadPoolExecutor taskExecutor, MetricRegistry metrics) {
+        this.mysqlDBConnection = mysqlDBConnection;
         this.config = config;
         this.s3Service = s3Service;
         this.pathPrefix = pathPrefix != null ? pathPrefix : "data-phantom";
-        logger.info("MySQL connector initialized with connection pool and S3 service");
+        this.taskExecutor = taskExecutor;
+        this.splitExecutor = newSplitExecutor(config);
+
+        metrics.register(MetricRegistry.name("mysql-connector", "tasks", "active"), (Gauge<Integer>) taskExecutor::getActiveCount);
+        metrics.register(MetricRegistry.name("mysql-connector", "tasks", "queued"), (Gauge<Integer>) () -> taskExecutor.getQueue().size());
+        this.rejectedTasks = metrics.meter(MetricRegistry.name("mysql-connector", "tasks", "rejected"));
+        this.queueWait = metrics.timer(MetricRegistry.name("mysql-connector", "tasks", "queue-wait"));
+
+        logger.info("MySQL connector initialized with {} task workers and a queue of {} tasks",
+                taskExecutor.getMaximumPoolSize(), taskExecutor.getQueue().remainingCapacity());
+    }
+
+    static ThreadPoolExecutor newTaskExecutor(MySQLConnectorConfig config) {
+
+        AtomicInteger sequence = new AtomicInteger();
+
+        return new ThreadPoolExecutor(config.getMaxSize(), config.getMaxSize(), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.getMaxQueuedTasks())),
+                runnable -> new Thread(runnable, "mysql-task-" + sequence.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static ThreadPoolExecutor newSplitExecutor(MySQLConnectorConfig config) {
+
+        if (config.getSplitWorkers() <= 0 || config.getMaxSplitPartitions() < 2) {
+            return null;
+        }
+
+        AtomicInteger sequence = new AtomicInteger();
+
+        // Unbounded queue: at most maxSize tasks are split at once, each into at most maxSplitPartitions
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(config.getSplitWorkers(), config.getSplitWorkers(), 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> new Thread(runnable, "mysql-split-" + sequence.incrementAndGet()));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     public CompletableFuture<StepResult> executeSQLTask(Task task) {
@@ -48,108 +124,514 @@ public class MySQLConnector {
         String taskId = task.getId().toString();
         String query = task.getQuery();
 
-        return CompletableFuture.supplyAsync(() -> {
-            String stepId = UUID.randomUUID().toString();
-            String currentDate = LocalDate.now().toString();
+        CompletableFuture<StepResult> result = new CompletableFuture<>();
+
+        // Registered while queued too, so a cancel reaches a task that has not started yet
+        RunningSQLTask running = new RunningSQLTask(taskId, result);
+        runningTasks.put(taskId, running);
+
+        long queuedAt = System.nanoTime();
+
+        try {
+            taskExecutor.execute(() -> {
+                queueWait.update(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    result.complete(runSQLTask(playgroundId, taskId, query, running));
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            });
+            return result;
+        } catch (RejectedExecutionException e) {
+            runningTasks.remove(taskId, running);
+            rejectedTasks.mark();
+            logger.warn("Rejected SQL task {}: {} tasks running and {} queued", taskId, taskExecutor.getActiveCount(),
+                    taskExecutor.getQueue().size());
+            return CompletableFuture.completedFuture(new StepResult(UUID.randomUUID().toString(), StepState.FAILED,
+                    "SQL task rejected: too many SQL tasks queued", null, null, taskId));
+        }
+    }
+
+    private StepResult runSQLTask(String playgroundId, String taskId, String query, RunningSQLTask running) {
+
+        String stepId = UUID.randomUUID().toString();
+        String currentDate = LocalDate.now().toString();
+        String localFilePath = null;
+
+        if (!running.bind(Thread.currentThread())) {
+            // Cancelled while queued; its result was completed by the cancel
+            runningTasks.remove(taskId, running);
+            return new StepResult(stepId, StepState.CANCELLED, "SQL task cancelled", null, null, taskId);
+        }
+
+        String extension = config.isGzipOutput() ? ".csv.gz" : ".csv";
+        String s3ObjectKey = String.format("%s/%s/%s/%s%s", pathPrefix, currentDate, playgroundId, taskId, extension);
+
+        try {
+            logger.info("Executing SQL task {} for playground {} with step ID {}", taskId, playgroundId, stepId);
+
+            String uploadedS3Key;
+            Optional<RangeSplitPlan> split = splitExecutor != null && config.isStreamOutputToS3()
+                    ? RangeSplitPlan.forQuery(query, config.getMaxSplitPartitions()) : Optional.empty();
+
+            if (split.isPresent()) {
+                uploadedS3Key = streamSplitResultToS3(split.get(), query, s3ObjectKey, running);
+            } else if (config.isStreamOutputToS3()) {
+                uploadedS3Key = streamResultToS3(query, s3ObjectKey, running);
+            } else {
+                localFilePath = stagingFilePath(playgroundId, taskId, stepId, extension);
+                uploadedS3Key = stageResultAndUpload(query, localFilePath, s3ObjectKey, running);
+                deleteLocalFile(localFilePath);
+            }
+
+            String s3OutputPath = String.format("s3://%s/%s", s3Service.getBucketName(), uploadedS3Key);
+
+            logger.info("SQL task {} completed successfully, output uploaded to S3: {}", taskId, s3OutputPath);
             
+            return new StepResult(stepId, StepState.COMPLETED, 
+                                "SQL task executed successfully", s3OutputPath, null, taskId);
+            
+        } catch (Exception e) {
+            deleteLocalFile(localFilePath);
+            if (running.isCancelled()) {
+                logger.info("SQL task {} was cancelled: {}", taskId, e.getMessage());
+                return new StepResult(stepId, StepState.CANCELLED,
+                                    "SQL task cancelled", null, null, taskId);
+            }
+            logger.error("SQL task {} failed: {}", taskId, e.getMessage(), e);
+            return new StepResult(stepId, StepState.FAILED, 
+                                "SQL task failed: " + e.getMessage(), null, null, taskId);
+        } finally {
+            runningTasks.remove(taskId, running);
+            running.release();
+        }
+    }
+
+    /**
+     * Writes the result set into an S3 multipart upload while it is being fetched; the object only
+     * appears in S3 if every row was written.
+     */
+    private String streamResultToS3(String query, String s3ObjectKey, RunningSQLTask running) throws Exception {
+
+        S3UploadStream upload = s3Service.openUploadStream(s3ObjectKey, contentType());
+
+        try {
+            Writer writer = csvWriter(upload);
+
+            writeQueryResult(query, writer, running);
+
+            if (running.isCancelled()) {
+                throw new InterruptedException("Cancelled before the upload completed");
+            }
+
+            // Flushes the last part and completes the upload
+            writer.close();
+
+            return upload.getS3ObjectKey();
+        } catch (Exception e) {
+            upload.abort();
+            throw e;
+        }
+    }
+
+    /**
+     * Fetches the range partitions of a {@code split_by} task in parallel, one connection each: the worker
+     * thread runs the first partition and the split workers the others. Every partition streams into its own
+     * S3 object, and the objects are concatenated in range order once all of them are complete.
+     */
+    private String streamSplitResultToS3(RangeSplitPlan split, String query, String s3ObjectKey, RunningSQLTask running) throws Exception {
+
+        List<RangeSplitPlan.Partition> partitions = planPartitions(split, running);
+
+        if (partitions.size() < 2) {
+            logger.info("SQL task {} has too narrow a {} range to split, running it as a single query", running.taskId, split.getColumn());
+            return streamResultToS3(query, s3ObjectKey, running);
+        }
+
+        logger.info("Splitting SQL task {} into {} partitions on {}", running.taskId, partitions.size(), split.getColumn());
+
+        List<String> partKeys = new ArrayList<>(partitions.size());
+        for (int i = 0; i < partitions.size(); i++) {
+            partKeys.add(String.format("%s.parts/%05d", s3ObjectKey, i));
+        }
+
+        AtomicBoolean failed = new AtomicBoolean();
+        AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+        List<CompletableFuture<Long>> results = new ArrayList<>(partitions.size());
+
+        try {
+            for (int i = 1; i < partitions.size(); i++) {
+                RangeSplitPlan.Partition partition = partitions.get(i);
+                String partKey = partKeys.get(i);
+                results.add(CompletableFuture.supplyAsync(() -> writePartition(partition, partKey, false, running, failed), splitExecutor));
+            }
+
+            CompletableFuture<Long> first = new CompletableFuture<>();
+            results.add(0, first);
+
+            // One failed partition stops the others instead of letting them run to the end
+            results.forEach(result -> result.whenComplete((rows, e) -> {
+                if (e != null && firstFailure.compareAndSet(null, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e)) {
+                    failed.set(true);
+                    running.cancelStatements();
+                }
+            }));
+
             try {
-                java.io.File outputDir = new java.io.File(config.getOutputDirectory());
-                if (!outputDir.exists()) {
-                    outputDir.mkdirs();
+                first.complete(writePartition(partitions.get(0), partKeys.get(0), true, running, failed));
+            } catch (Throwable t) {
+                first.completeExceptionally(t);
+            }
+
+            CompletableFuture<Void> all = CompletableFuture.allOf(results.toArray(new CompletableFuture[0]));
+
+            try {
+                all.get();
+            } catch (InterruptedException e) {
+                failed.set(true);
+                running.cancelStatements();
+                // The part objects are only cleaned up once no partition can still complete one
+                all.handle((ignored, t) -> null).join();
+                throw e;
+            } catch (ExecutionException e) {
+                // The other partitions fail because they were stopped; report what stopped them
+                Throwable cause = firstFailure.get() != null ? firstFailure.get() : e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+            }
+
+            if (running.isCancelled()) {
+                throw new InterruptedException("Cancelled before the partitions were concatenated");
+            }
+
+            long rows = results.stream().mapToLong(CompletableFuture::join).sum();
+            logger.info("SQL task {} fetched {} rows in {} partitions", running.taskId, rows, partitions.size());
+
+            return s3Service.concatenateObjects(partKeys, s3ObjectKey, contentType());
+
+        } catch (RejectedExecutionException e) {
+            failed.set(true);
+            running.cancelStatements();
+            CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).handle((ignored, t) -> null).join();
+            throw new IllegalStateException("MySQL connector is shut down", e);
+        } finally {
+            deletePartObjects(partKeys);
+        }
+    }
+
+    private List<RangeSplitPlan.Partition> planPartitions(RangeSplitPlan split, RunningSQLTask running) throws SQLException {
+
+        try (Connection conn = mysqlDBConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+
+            running.attach(stmt);
+
+            try (ResultSet bounds = stmt.executeQuery(split.boundaryQuery())) {
+                return split.partitions(bounds);
+            } finally {
+                running.detach(stmt);
+            }
+        }
+    }
+
+    private long writePartition(RangeSplitPlan.Partition partition, String partKey, boolean header,
+                                RunningSQLTask running, AtomicBoolean failed) {
+
+        if (failed.get() || running.isCancelled()) {
+            // Queued behind other work until after the task had already stopped
+            throw new CompletionException(new InterruptedException("Another partition failed or the task was cancelled"));
+        }
+
+        S3UploadStream upload = s3Service.openUploadStream(partKey, contentType());
+
+        try {
+            Writer writer = csvWriter(upload);
+            long rows;
+
+            try (Connection conn = mysqlDBConnection.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(partition.getSql(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+                stmt.setFetchSize(config.getFetchSize());
+                partition.bind(stmt);
+                running.attach(stmt);
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    rows = writeResultSet(rs, writer, header);
+                } finally {
+                    running.detach(stmt);
                 }
-                
-                String fileName = String.format("sql-output-%s-%s-%s.csv", playgroundId, taskId, stepId);
-                String localFilePath = new java.io.File(outputDir, fileName).getAbsolutePath();
-                
-                logger.info("Executing SQL task {} for playground {} with step ID {}", taskId, playgroundId, stepId);
-                
-                // Execute query and write to CSV
-                try (Connection conn = mysqlDBConnection.getConnection()) {
-                    try (Statement stmt = conn.createStatement(
-                            ResultSet.TYPE_FORWARD_ONLY,
-                            ResultSet.CONCUR_READ_ONLY)) {
-                        
-                        stmt.setFetchSize(1000);
-
-                        try (ResultSet rs = stmt.executeQuery(query);
-                             PrintWriter writer = new PrintWriter(new FileWriter(localFilePath))) {
-
-                            ResultSetMetaData meta = rs.getMetaData();
-                            int columnCount = meta.getColumnCount();
-
-                            // Write headers
-                            for (int i = 1; i <= columnCount; i++) {
-                                writer.print(meta.getColumnName(i));
-                                if (i < columnCount) writer.print(",");
-                            }
-                            writer.println();
-
-                            // Write data rows
-                            while (rs.next()) {
-                                for (int i = 1; i <= columnCount; i++) {
-                                    String val = formatValue(rs, i);
-                                    if (val != null) {
-                                        val = val.replace("\"", "\"\"");
-                                        if (val.contains(",") || val.contains("\"") || val.contains("\n")) {
-                                            val = "\"" + val + "\"";
-                                        }
-                                    }
-                                    writer.print(val == null ? "" : val);
-                                    if (i < columnCount) writer.print(",");
-                                }
-                                writer.println();
-                            }
-
-                            logger.info("SQL query executed successfully, results written to {}", localFilePath);
-                        }
-                    }
+            }
+
+            if (failed.get() || running.isCancelled()) {
+                throw new InterruptedException("Another partition failed or the task was cancelled");
+            }
+
+            writer.close();
+            return rows;
+
+        } catch (Exception e) {
+            upload.abort();
+            throw new CompletionException(e);
+        }
+    }
+
+    private void deletePartObjects(List<String> partKeys) {
+
+        try {
+            s3Service.deleteObjects(partKeys);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to delete partition objects of {}: {}", partKeys.get(0), e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the result set to a local file and uploads that once the query is done.
+     */
+    private String stageResultAndUpload(String query, String localFilePath, String s3ObjectKey, RunningSQLTask running) throws Exception {
+
+        try (Writer writer = csvWriter(new FileOutputStream(localFilePath))) {
+            writeQueryResult(query, writer, running);
+        }
+
+        logger.info("SQL query executed successfully, results written to {}", localFilePath);
+
+        if (running.isCancelled()) {
+            throw new InterruptedException("Cancelled before upload");
+        }
+
+        CompletableFuture<String> upload = s3Service.uploadLocalFileAsync(localFilePath, s3ObjectKey);
+        running.attach(upload);
+        return upload.join();
+    }
+
+    private String stagingFilePath(String playgroundId, String taskId, String stepId, String extension) {
+
+        java.io.File outputDir = new java.io.File(config.getOutputDirectory());
+        if (!outputDir.exists()) {
+            outputDir.mkdirs();
+        }
+
+        String fileName = String.format("sql-output-%s-%s-%s%s", playgroundId, taskId, stepId, extension);
+        return new java.io.File(outputDir, fileName).getAbsolutePath();
+    }
+
+    private String contentType() {
+        return config.isGzipOutput() ? "application/gzip" : "text/csv";
+    }
+
+    private Writer csvWriter(OutputStream out) throws IOException {
+
+        OutputStream target = config.isGzipOutput() ? new GZIPOutputStream(out, WRITE_BUFFER_SIZE) : out;
+
+        return new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+    }
+
+    private void writeQueryResult(String query, Writer writer, RunningSQLTask running) throws SQLException, IOException {
+
+        try (Connection conn = mysqlDBConnection.getConnection();
+             Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            stmt.setFetchSize(config.getFetchSize());
+            running.attach(stmt);
+
+            try (ResultSet rs = stmt.executeQuery(query)) {
+                writeResultSet(rs, writer, true);
+            } finally {
+                running.detach(stmt);
+            }
+        }
+    }
+
+    private long writeResultSet(ResultSet rs, Writer writer, boolean header) throws SQLException, IOException {
+
+        CsvResultEncoder encoder = CsvResultEncoder.forResultSet(rs);
+
+        if (header) {
+            encoder.writeHeader(writer);
+        }
+
+        long rows = encoder.writeRows(rs, writer);
+
+        writer.flush();
+        return rows;
+    }
+
+    /**
+     * Stops the task workers; queued tasks are dropped and running ones interrupted.
+     */
+    public void close() {
+        taskExecutor.shutdownNow();
+
+        if (splitExecutor != null) {
+            splitExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Stops a running SQL task: the MySQL query is cancelled with {@link Statement#cancel()}, an S3 upload in
+     * progress is aborted and the worker thread is interrupted. The future returned by
+     * {@link #executeSQLTask(Task)} completes with a CANCELLED result once the task has actually stopped, or
+     * right away if it was still queued.
+     *
+     * @return false if the task is neither queued nor running
+     */
+    public boolean cancelSQLTask(String taskId) {
+
+        RunningSQLTask running = runningTasks.get(taskId);
+
+        if (running == null) {
+            return false;
+        }
+
+        logger.info("Cancelling SQL task {}", taskId);
+        running.cancel();
+        return true;
+    }
+
+    private void deleteLocalFile(String localFilePath) {
+
+        if (localFilePath != null && new java.io.File(localFilePath).delete()) {
+            logger.debug("Cleaned up local file: {}", localFilePath);
+        }
+    }
+
+    private static class RunningSQLTask {
+
+        // Cancel issues a KILL QUERY round trip while holding it; a lock, unlike a monitor, does not pin a virtual thread
+        private final ReentrantLock lock = new ReentrantLock();
+        private final String taskId;
+        private final CompletableFuture<StepResult> result;
+        private Thread worker;
+        // Split tasks run one statement per partition
+        private final List<Statement> statements = new ArrayList<>();
+        private CompletableFuture<String> upload;
+        private boolean started;
+        private boolean cancelled;
+
+        RunningSQLTask(String taskId, CompletableFuture<StepResult> result) {
+            this.taskId = taskId;
+            this.result = result;
+        }
+
+        /**
+         * Hands the task to the worker thread that dequeued it.
+         *
+         * @return false if the task was cancelled while queued and must not run
+         */
+        boolean bind(Thread worker) {
+            lock.lock();
+            try {
+                if (cancelled) {
+                    return false;
                 }
-                
-                String s3ObjectKey = String.format("%s/%s/%s/%s.csv", 
-                                                  pathPrefix, currentDate, playgroundId, taskId);
-                String uploadedS3Key = s3Service.uploadLocalFile(localFilePath, s3ObjectKey);
-                String s3OutputPath = String.format("s3://%s/%s", s3Service.getBucketName(), uploadedS3Key);
-                
-                // Clean up local file
-                java.io.File localFile = new java.io.File(localFilePath);
-                if (localFile.exists()) {
-                    localFile.delete();
-                    logger.debug("Cleaned up local file: {}", localFilePath);
+
+                this.worker = worker;
+                this.started = true;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void attach(Statement statement) throws SQLException {
+            lock.lock();
+            try {
+                statements.add(statement);
+
+                if (cancelled) {
+                    statement.cancel();
                 }
-                
-                logger.info("SQL task {} completed successfully, output uploaded to S3: {}", taskId, s3OutputPath);
-                
-                return new StepResult(stepId, StepState.COMPLETED, 
-                                    "SQL task executed successfully", s3OutputPath, null, taskId);
-                
-            } catch (Exception e) {
-                logger.error("SQL task {} failed: {}", taskId, e.getMessage(), e);
-                return new StepResult(stepId, StepState.FAILED, 
-                                    "SQL task failed: " + e.getMessage(), null, null, taskId);
-            }
-        });
-    }
-
-    public String formatValue(ResultSet rs, int columnIndex) throws SQLException {
-        ResultSetMetaData meta = rs.getMetaData();
-        int columnType = meta.getColumnType(columnIndex);
-        
-        switch (columnType) {
-            case java.sql.Types.DECIMAL:
-            case java.sql.Types.NUMERIC:
-            case java.sql.Types.FLOAT:
-            case java.sql.Types.DOUBLE:
-            case java.sql.Types.REAL:
-                try {
-                    BigDecimal decimal = rs.getBigDecimal(columnIndex);
-                    if (decimal != null) {
-                        return decimal.stripTrailingZeros().toPlainString();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void detach(Statement statement) {
+            lock.lock();
+            try {
+                statements.remove(statement);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Cancels the queries in flight without cancelling the task, so it still reports the failure that
+         * made it stop them.
+         */
+        void cancelStatements() {
+            lock.lock();
+            try {
+                for (Statement statement : statements) {
+                    try {
+                        statement.cancel();
+                    } catch (SQLException e) {
+                        logger.warn("Failed to cancel MySQL statement: {}", e.getMessage());
                     }
-                } catch (SQLException e) {
                 }
-                break;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void attach(CompletableFuture<String> upload) {
+            lock.lock();
+            try {
+                this.upload = upload;
+
+                if (cancelled) {
+                    upload.cancel(true);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean isCancelled() {
+            lock.lock();
+            try {
+                return cancelled;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void cancel() {
+            lock.lock();
+            try {
+                cancelled = true;
+
+                if (!started) {
+                    // Still queued: report it stopped now rather than when a worker gets to it
+                    result.complete(new StepResult(UUID.randomUUID().toString(), StepState.CANCELLED,
+                            "SQL task cancelled", null, null, taskId));
+                    return;
+                }
+
+                cancelStatements();
+
+                if (upload != null) {
+                    upload.cancel(true);
+                }
+
+                if (worker != null) {
+                    worker.interrupt();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Detaches the pool thread; an interrupt delivered by a late cancel must not leak into its next task.
+         */
+        void release() {
+            lock.lock();
+            try {
+                worker = null;
+                Thread.interrupted();
+            } finally {
+                lock.unlock();
+            }
         }
-        
-        return rs.getString(columnIndex);
     }
-}
\ No newline at end of file
+}
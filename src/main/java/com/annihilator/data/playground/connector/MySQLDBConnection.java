@@ -24,7 +24,8 @@ public class MySQLDBConnection {
         dataSourceFactory.setUser(config.getUser());
         dataSourceFactory.setPassword(config.getPassword());
         
-        dataSourceFactory.setMaxSize(config.getMaxSize());
+        // Task workers and split workers each hold at most one connection, so neither waits on the other
+        dataSourceFactory.setMaxSize(config.getMaxSize() + Math.max(0, config.getSplitWorkers()));
         dataSourceFactory.setMinSize(config.getMinSize());
         dataSourceFactory.setMaxWaitForConnection(Duration.parse(config.getMaxWaitForConnection()));
         dataSourceFactory.setMaxConnectionAge(Duration.parse(config.getMaxConnectionAge()));
@@ -36,7 +37,7 @@ public class MySQLDBConnection {
         
         this.dataSource = dataSourceFactory.build(environment.metrics(), "mysql-connector");
         logger.info("MySQL connection pool initialized with maxSize: {}, minSize: {}", 
-                   config.getMaxSize(), config.getMinSize());
+                   dataSourceFactory.getMaxSize(), config.getMinSize());
     }
     
     public Connection getConnection() throws SQLException {
@@ -0,0 +1,284 @@
+package com.annihilator.data.playground.connector;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a SQL task into range partitions over a numeric or date column, so each partition can be fetched on
+ * its own connection.
+ *
+ * A task opts in with a leading comment naming the split column and, optionally, the number of partitions:
+ * <pre>
+ * /* split_by(order_id, 8) *&#47;
+ * SELECT * FROM orders WHERE status = 'SHIPPED'
+ * </pre>
+ * The column must be in the query's output. Its MIN and MAX over the query are read first, and partition
+ * {@code i} then runs the query wrapped as {@code SELECT * FROM (query) WHERE column >= ? AND column < ?}.
+ * Rows whose split column is NULL go to the first partition.
+ */
+final class RangeSplitPlan {
+
+    private static final Pattern SPLIT_HINT = Pattern.compile(
+            "^\\s*/\\*\\s*split_by\\s*\\(\\s*([A-Za-z_][A-Za-z0-9_$]*)\\s*(?:,\\s*(\\d+)\\s*)?\\)\\s*\\*/",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern TRAILING_SEMICOLONS = Pattern.compile("[\\s;]+$");
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final String query;
+    private final String column;
+    private final int partitions;
+
+    private RangeSplitPlan(String query, String column, int partitions) {
+        this.query = TRAILING_SEMICOLONS.matcher(query).replaceFirst("");
+        this.column = column;
+        this.partitions = partitions;
+    }
+
+    /**
+     * @param maxPartitions upper bound for the partition count, also used when the hint does not name one
+     * @return the plan for a query carrying a {@code split_by} hint, or empty when it does not opt in
+     */
+    static Optional<RangeSplitPlan> forQuery(String query, int maxPartitions) {
+
+        if (query == null || maxPartitions < 2) {
+            return Optional.empty();
+        }
+
+        Matcher hint = SPLIT_HINT.matcher(query);
+
+        if (!hint.find()) {
+            return Optional.empty();
+        }
+
+        int partitions = hint.group(2) != null ? Math.min(Integer.parseInt(hint.group(2)), maxPartitions) : maxPartitions;
+
+        return partitions < 2 ? Optional.empty() : Optional.of(new RangeSplitPlan(query, hint.group(1), partitions));
+    }
+
+    String getColumn() {
+        return column;
+    }
+
+    int getPartitions() {
+        return partitions;
+    }
+
+    String boundaryQuery() {
+        return String.format("SELECT MIN(%1$s), MAX(%1$s) FROM (\n%2$s\n) AS dp_split", quotedColumn(), query);
+    }
+
+    /**
+     * Builds the partitions from the row of {@link #boundaryQuery()}. Fewer partitions than requested come back
+     * when the range is too narrow, and a single unbounded one when the split column has no values.
+     *
+     * @throws IllegalArgumentException if the split column is neither numeric nor a date
+     */
+    List<Partition> partitions(ResultSet bounds) throws SQLException {
+
+        if (!bounds.next()) {
+            return Collections.singletonList(new Partition(query, Collections.emptyList()));
+        }
+
+        SplitType type = SplitType.of(bounds.getMetaData().getColumnType(1), column);
+        BigDecimal min = type.read(bounds, 1);
+        BigDecimal max = type.read(bounds, 2);
+
+        if (min == null || max == null) {
+            return Collections.singletonList(new Partition(query, Collections.emptyList()));
+        }
+
+        List<BigDecimal> splitPoints = new ArrayList<>();
+        BigDecimal range = max.subtract(min);
+
+        for (int i = 1; i < partitions; i++) {
+
+            BigDecimal point = type.round(min.add(range.multiply(BigDecimal.valueOf(i))
+                    .divide(BigDecimal.valueOf(partitions), MathContext.DECIMAL64)));
+
+            BigDecimal previous = splitPoints.isEmpty() ? min : splitPoints.get(splitPoints.size() - 1);
+
+            if (point.compareTo(previous) > 0 && point.compareTo(max) <= 0) {
+                splitPoints.add(point);
+            }
+        }
+
+        if (splitPoints.isEmpty()) {
+            return Collections.singletonList(new Partition(query, Collections.emptyList()));
+        }
+
+        List<Partition> result = new ArrayList<>(splitPoints.size() + 1);
+        String quoted = quotedColumn();
+
+        for (int i = 0; i <= splitPoints.size(); i++) {
+
+            List<Object> parameters = new ArrayList<>(2);
+            String predicate;
+
+            if (i == 0) {
+                predicate = String.format("(%1$s < ? OR %1$s IS NULL)", quoted);
+                parameters.add(type.toParameter(splitPoints.get(0)));
+            } else if (i == splitPoints.size()) {
+                predicate = quoted + " >= ?";
+                parameters.add(type.toParameter(splitPoints.get(i - 1)));
+            } else {
+                predicate = String.format("%1$s >= ? AND %1$s < ?", quoted);
+                parameters.add(type.toParameter(splitPoints.get(i - 1)));
+                parameters.add(type.toParameter(splitPoints.get(i)));
+            }
+
+            result.add(new Partition(String.format("SELECT * FROM (\n%s\n) AS dp_split WHERE %s", query, predicate), parameters));
+        }
+
+        return result;
+    }
+
+    private String quotedColumn() {
+        return "`" + column + "`";
+    }
+
+    static final class Partition {
+
+        private final String sql;
+        private final List<Object> parameters;
+
+        Partition(String sql, List<Object> parameters) {
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+
+        String getSql() {
+            return sql;
+        }
+
+        List<Object> getParameters() {
+            return parameters;
+        }
+
+        void bind(PreparedStatement statement) throws SQLException {
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+        }
+    }
+
+    /**
+     * Maps split column values onto a number line, so the bounds of every type are computed the same way.
+     */
+    private enum SplitType {
+
+        INTEGER {
+            @Override
+            BigDecimal read(ResultSet rs, int column) throws SQLException {
+                return rs.getBigDecimal(column);
+            }
+
+            @Override
+            BigDecimal round(BigDecimal value) {
+                return value.setScale(0, RoundingMode.CEILING);
+            }
+
+            @Override
+            Object toParameter(BigDecimal value) {
+                return value.toBigInteger().bitLength() < 64 ? (Object) value.longValueExact() : value;
+            }
+        },
+
+        DECIMAL {
+            @Override
+            BigDecimal read(ResultSet rs, int column) throws SQLException {
+                return rs.getBigDecimal(column);
+            }
+
+            @Override
+            BigDecimal round(BigDecimal value) {
+                return value;
+            }
+
+            @Override
+            Object toParameter(BigDecimal value) {
+                return value;
+            }
+        },
+
+        DATE {
+            @Override
+            BigDecimal read(ResultSet rs, int column) throws SQLException {
+                LocalDate date = rs.getObject(column, LocalDate.class);
+                return date == null ? null : BigDecimal.valueOf(date.toEpochDay());
+            }
+
+            @Override
+            BigDecimal round(BigDecimal value) {
+                return value.setScale(0, RoundingMode.CEILING);
+            }
+
+            @Override
+            Object toParameter(BigDecimal value) {
+                return LocalDate.ofEpochDay(value.longValueExact());
+            }
+        },
+
+        DATETIME {
+            @Override
+            BigDecimal read(ResultSet rs, int column) throws SQLException {
+                LocalDateTime dateTime = rs.getObject(column, LocalDateTime.class);
+                return dateTime == null ? null : BigDecimal.valueOf(ChronoUnit.MICROS.between(EPOCH, dateTime));
+            }
+
+            @Override
+            BigDecimal round(BigDecimal value) {
+                return value.setScale(0, RoundingMode.CEILING);
+            }
+
+            @Override
+            Object toParameter(BigDecimal value) {
+                return EPOCH.plus(value.longValueExact(), ChronoUnit.MICROS);
+            }
+        };
+
+        abstract BigDecimal read(ResultSet rs, int column) throws SQLException;
+
+        abstract BigDecimal round(BigDecimal value);
+
+        abstract Object toParameter(BigDecimal value);
+
+        static SplitType of(int sqlType, String column) {
+
+            switch (sqlType) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                case Types.BIGINT:
+                    return INTEGER;
+                case Types.DECIMAL:
+                case Types.NUMERIC:
+                case Types.FLOAT:
+                case Types.REAL:
+                case Types.DOUBLE:
+                    return DECIMAL;
+                case Types.DATE:
+                    return DATE;
+                case Types.TIMESTAMP:
+                    return DATETIME;
+                default:
+                    throw new IllegalArgumentException("split_by column " + column + " must be numeric or a date");
+            }
+        }
+    }
+}
@@ -14,6 +14,7 @@ import com.annihilator.data.playground.model.LimitedRunRequest;
 import com.annihilator.data.playground.model.NotificationDestination;
 import com.annihilator.data.playground.model.Playground;
 import com.annihilator.data.playground.model.PlaygroundExecutionType;
+import com.annihilator.data.playground.model.PlaygroundRunState;
 import com.annihilator.data.playground.model.Status;
 import com.annihilator.data.playground.model.StepResult;
 import com.annihilator.data.playground.model.Task;
@@ -23,6 +24,7 @@ import com.annihilator.data.playground.reconsilation.DataPhantomReconciliationMa
 import com.annihilator.data.playground.utility.DAGNotificationUtility;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.emr.model.StepState;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -35,9 +37,8 @@ import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class DataPhantomPlaygroundExecutor implements Runnable {
 
@@ -60,6 +61,27 @@ public class DataPhantomPlaygroundExecutor implements Runnable {
     private final NotificationService notificationService;
     private final ReconciliationMappingDAO reconciliationMappingDAO;
     private final ReconciliationResultsDAO reconciliationResultsDAO;
+    private final DataPhantomRunCoordinator runCoordinator;
+
+    // Events write task state to the meta store while holding it; a lock, unlike a monitor, does not pin a virtual thread
+    private final ReentrantLock eventLock = new ReentrantLock();
+
+    // Run state below is only touched while holding eventLock, i.e. from the
+    // coordinator's event threads, one event at a time.
+    private final Map<String, CompletableFuture<StepResult>> runningTasks = new HashMap<>();
+
+    // Running tasks that were asked to stop; they stay in runningTasks until the stop is confirmed.
+    private final Set<String> cancelRequestedTasks = new HashSet<>();
+
+    private volatile PlaygroundRunState runState = PlaygroundRunState.PENDING;
+
+    private UUID correlationId;
+
+    private Queue<Task> readyQueue;
+
+    private Map<String, Task> taskMap;
+
+    private Map<String, List<String>> parentChildrenMap;
 
     private int successCount = 0;
 
@@ -69,7 +91,7 @@ public class DataPhantomPlaygroundExecutor implements Runnable {
 
     private boolean isCancelled = false;
 
-    public DataPhantomPlaygroundExecutor(Playground playground, TaskDAO taskDAO, PlaygroundDAO playgroundDAO, PlaygroundRunHistoryDAO historyDAO, AdhocLimitedInputDAO adhocLimitedInputDAO, EMRService emrService, PlaygroundExecutionType executionType, DataPhantomReconciliationManager reconciliationManager, Set<String> cancelPlaygroundRequestSet, MySQLConnector mySQLConnector, boolean limitedRun, Map<String, Boolean> selectionMap, NotificationDestinationDAO notificationDestinationDAO, S3Service s3Service, NotificationService notificationService, ReconciliationMappingDAO reconciliationMappingDAO, ReconciliationResultsDAO reconciliationResultsDAO) {
+    public DataPhantomPlaygroundExecutor(Playground playground, TaskDAO taskDAO, PlaygroundDAO playgroundDAO, PlaygroundRunHistoryDAO historyDAO, AdhocLimitedInputDAO adhocLimitedInputDAO, EMRService emrService, PlaygroundExecutionType executionType, DataPhantomReconciliationManager reconciliationManager, Set<String> cancelPlaygroundRequestSet, MySQLConnector mySQLConnector, boolean limitedRun, Map<String, Boolean> selectionMap, NotificationDestinationDAO notificationDestinationDAO, S3Service s3Service, NotificationService notificationService, ReconciliationMappingDAO reconciliationMappingDAO, ReconciliationResultsDAO reconciliationResultsDAO, DataPhantomRunCoordinator runCoordinator) {
         this.playground = playground;
         this.taskDAO = taskDAO;
         this.emrService = emrService;
@@ -87,11 +109,18 @@ public class DataPhantomPlaygroundExecutor implements Runnable {
         this.notificationService = notificationService;
         this.reconciliationMappingDAO = reconciliationMappingDAO;
         this.reconciliationResultsDAO = reconciliationResultsDAO;
+        this.runCoordinator = runCoordinator;
     }
 
+    /**
+     * Prepares the run and hands it over to the {@link DataPhantomRunCoordinator}. The calling thread is
+     * released as soon as the DAG is built; task completions and cancellation advance the run afterwards.
+     */
     @Override
     public void run() {
 
+        boolean handedOver = false;
+
         try {
 
             Playground temp = playgroundDAO.getPlaygroundById(playground.getId());
@@ -117,7 +146,7 @@ public class DataPhantomPlaygroundExecutor implements Runnable {
                 return;
             }
 
-            UUID correlationId = executionType == PlaygroundExecutionType.RECOVERY ? playground.getCorrelationId() : UUID.randomUUID();
+            correlationId = executionType == PlaygroundExecutionType.RECOVERY ? playground.getCorrelationId() : UUID.randomUUID();
 
             if (executionType != PlaygroundExecutionType.RECOVERY && limitedRun) {
 
@@ -130,24 +159,121 @@ public class DataPhantomPlaygroundExecutor implements Runnable {
 
             DAGExecutionQueue dagExecutionQueue = buildLevels(tasks);
 
+            readyQueue = dagExecutionQueue.queue;
+            taskMap = dagExecutionQueue.taskMap;
+            parentChildrenMap = dagExecutionQueue.parentChildrenMap;
+
             if (executionType != PlaygroundExecutionType.RECOVERY) {
-                updatePlaygroundMeta(dagExecutionQueue.queue, correlationId);
+                updatePlaygroundMeta(readyQueue, correlationId);
             }
 
-            processTasks(dagExecutionQueue, correlationId);
+            runCoordinator.register(this);
+            handedOver = true;
+        } catch (SQLException e) {
+            logger.error("Error executing playground {}: {}", playground.getName(), e.getMessage(), e);
+            throw new RuntimeException(e);
+        } finally {
+            if (!handedOver) {
+                cancelPlaygroundRequestSet.remove(playground.getId().toString());
+            }
+        }
+    }
+
+    String getPlaygroundId() {
+        return playground.getId().toString();
+    }
+
+    PlaygroundRunState getRunState() {
+        return runState;
+    }
+
+    void onStart() {
+
+        eventLock.lock();
+
+        try {
+            if (runState != PlaygroundRunState.PENDING) {
+                return;
+            }
+
+            runState = PlaygroundRunState.RUNNING;
+
+            if (cancelPlaygroundRequestSet.contains(getPlaygroundId())) {
+                isCancelled = true;
+            }
+
+            advance();
+        } finally {
+            eventLock.unlock();
+        }
+    }
+
+    void onTaskCompleted(TaskCompletion completion) {
+
+        eventLock.lock();
+
+        try {
+            if (runState != PlaygroundRunState.RUNNING) {
+                return;
+            }
+
+            handleCompletion(completion);
+
+            advance();
+        } finally {
+            eventLock.unlock();
+        }
+    }
+
+    void onCancelRequested() {
+
+        eventLock.lock();
+
+        try {
+            if (runState != PlaygroundRunState.RUNNING || isCancelled) {
+                return;
+            }
+
+            isCancelled = true;
+
+            cancelRunningTasks();
+
+            advance();
+        } finally {
+            eventLock.unlock();
+        }
+    }
+
+    void onComplete() {
+
+        try {
+
+            if (isCancelled) {
+                logger.info("Playground execution was cancelled.");
+            }
 
             reconciliationManager.startReconciliation(playground.getId());
             notifySubscribers();
             updatePlaygroundMetaAfterCompletion();
-        } catch (InterruptedException | SQLException e) {
-            logger.error("Error executing playground {}: {}", playground.getName(), e.getMessage(), e);
-            throw new RuntimeException(e);
         } finally {
-            cancelPlaygroundRequestSet.remove(playground.getId().toString());
+            runState = PlaygroundRunState.COMPLETE;
+            cancelPlaygroundRequestSet.remove(getPlaygroundId());
             logger.info("Playground {} execution completed. Success: {}, Failed: {}, Skipped: {}", playground.getName(), successCount, failureCount, skippedCount);
         }
     }
 
+    private void advance() {
+
+        dispatchReadyTasks();
+
+        if (readyQueue.isEmpty() && runningTasks.isEmpty()) {
+
+            runState = PlaygroundRunState.COMPLETING;
+
+            runCoordinator.complete(this);
+        }
+    }
+
     private void updatePlaygroundMetaAfterCompletion() {
         try {
             Status finalStatus = Status.SUCCESS;
@@ -304,135 +430,113 @@ public class DataPhantomPlaygroundExecutor implements Runnable {
         return false;
     }
 
-    private void processTasks(DAGExecutionQueue dagExecutionQueue, UUID correlationId) throws InterruptedException {
-
-        Queue<Task> queue = dagExecutionQueue.queue;
-        Map<String, Task> taskMap = dagExecutionQueue.taskMap;
-        Map<String, List<String>> parentChildrenMap = dagExecutionQueue.parentChildrenMap;
+    private void dispatchReadyTasks() {
 
-        Set<String> runningTasks = new HashSet<>();
+        while (!readyQueue.isEmpty()) {
 
-        Map<String, CompletableFuture<StepResult>> futureMap = new HashMap<>();
-        List<CompletableFuture<StepResult>> allFutures = new ArrayList<>();
+            Task task = readyQueue.poll();
 
-        while (!queue.isEmpty() || !runningTasks.isEmpty()) {
-
-            isCancelled = cancelPlaygroundRequestSet.contains(playground.getId().toString());
+            if (skipTask(task, executionType, correlationId, readyQueue, taskMap, parentChildrenMap)) {
+                continue;
+            }
 
             if (isCancelled) {
 
-                for (String taskId: futureMap.keySet()) {
-
-                    CompletableFuture<StepResult> futureTask = futureMap.get(taskId);
-                    runningTasks.remove(taskId);
-
-                    if (futureTask.isDone()) {
-
-                        continue;
-                    }
-
-                    futureTask.cancel(true);
-
-                    updateTaskStatus(UUID.fromString(taskId), taskMap.get(taskId), Status.CANCELLED, null);
+                skippedCount++;
 
-                    for (String childId : parentChildrenMap.getOrDefault(taskId, new ArrayList<>())) {
+                updateTaskStatus(correlationId, task, Status.SKIPPED, null);
 
-                        if (futureMap.containsKey(childId)) {
-                            continue;
-                        }
+                updateChildrenTaskStatus(task, taskMap, parentChildrenMap, correlationId, Status.SKIPPED);
 
-                        queue.add(taskMap.get(childId));
-                    }
-                }
+                continue;
             }
 
-            while (!queue.isEmpty()) {
+            updateTaskStatus(correlationId, task, Status.RUNNING, null);
 
-                Task task = queue.poll();
+            logger.info("Submitting task: {} (ID: {}) of type: {}", task.getName(), task.getId(), task.getType());
 
-                if (skipTask(task, executionType, correlationId, queue, taskMap, parentChildrenMap)) {
-                    continue;
-                }
-
-                if (isCancelled) {
-
-                    skippedCount++;
+            String taskId = task.getId().toString();
 
-                    updateTaskStatus(correlationId, task, Status.SKIPPED, null);
+            CompletableFuture<StepResult> future;
 
-                    updateChildrenTaskStatus(task, taskMap, parentChildrenMap, correlationId, Status.SKIPPED);
+            if (task.getType() == TaskType.SQL) {
+                future = mySQLConnector.executeSQLTask(task);
+            } else {
 
-                    continue;
-                }
+                future = emrService.submitTaskAndWait(
+                        task.getPlaygroundId().toString(),
+                        taskId,
+                        task.getQuery(),
+                        task.getType().name());
+            }
 
+            runningTasks.put(taskId, future);
 
-                updateTaskStatus(correlationId, task, Status.RUNNING, null);
+            // Completion callbacks run on EMR / connector threads, so they only post an event back to the coordinator.
+            future.whenComplete((stepResult, throwable) ->
+                    runCoordinator.post(() -> onTaskCompleted(new TaskCompletion(taskId, stepResult, throwable))));
+        }
+    }
 
-                logger.info("Submitting task: {} (ID: {}) of type: {}", task.getName(), task.getId(), task.getType());
+    private void handleCompletion(TaskCompletion completion) {
 
-                runningTasks.add(task.getId().toString());
+        if (runningTasks.remove(completion.taskId) == null) {
+            // Already accounted for, e.g. the task was cancelled before its completion was delivered.
+            return;
+        }
 
-                CompletableFuture<StepResult> future;
+        Task completedTask = taskMap.get(completion.taskId);
+        StepResult stepResult = completion.stepResult;
 
-                if (task.getType() == TaskType.SQL) {
-                    future = mySQLConnector.executeSQLTask(task);
-                } else {
+        if (completion.throwable != null) {
 
-                    future = emrService.submitTaskAndWait(
-                            task.getPlaygroundId().toString(),
-                            task.getId().toString(),
-                            task.getQuery(),
-                            task.getType().name());
-                }
+            logger.error("Task {} completed exceptionally: {}", completedTask.getName(), completion.throwable.getMessage(), completion.throwable);
 
-                future = future.thenApply(stepResult -> {
+            stepResult = new StepResult(null, StepState.FAILED, "Task failed: " + completion.throwable.getMessage(), null, null, completion.taskId);
+        }
 
-                            Task completedTask = taskMap.get(stepResult.getQueryId());
+        if (cancelRequestedTasks.remove(completion.taskId) && !stepResult.isSuccess()) {
 
-                            if (isCancelled) {
+            logger.info("Task {} (ID: {}) stopped after cancellation: {}", completedTask.getName(), completion.taskId, stepResult.getMessage());
 
-                                logger.info("Playground {} was cancelled. Not processing EMR completion for task {} (ID: {}).",
-                                        playground.getName(), completedTask.getName(), completedTask.getId());
-                                return stepResult;
-                            }
+            updateTaskStatus(correlationId, completedTask, Status.CANCELLED, stepResult);
+            // The run is cancelled, so the children are skipped when they are dispatched.
+            enqueueChildrenTasks(completedTask, readyQueue, taskMap, parentChildrenMap);
+            return;
+        }
 
-                            logger.info("Task {} completed with status: {}", completedTask.getName(), stepResult.isSuccess() ? "SUCCESS" : "FAILED");
-                            runningTasks.remove(completedTask.getId().toString());
+        logger.info("Task {} completed with status: {}", completedTask.getName(), stepResult.isSuccess() ? "SUCCESS" : "FAILED");
 
-                            if (stepResult.isSuccess()) {
-                                successCount++;
-                                updateTaskStatus(correlationId, completedTask, Status.SUCCESS, stepResult);
-                                List<String> children = parentChildrenMap.getOrDefault(completedTask.getId().toString(), new ArrayList<>());
-                                for (String child : children) {
-                                    logger.info("Enqueuing child task: {}", taskMap.get(child).getName());
-                                    queue.add(taskMap.get(child));
-                                }
-                            } else {
-                                failureCount++;
-                                updateTaskStatus(correlationId, completedTask, Status.FAILED, stepResult);
-                                updateChildrenTaskStatus(completedTask, taskMap, parentChildrenMap, correlationId, Status.UPSTREAM_FAILED);
-                            }
+        if (stepResult.isSuccess()) {
+            successCount++;
+            updateTaskStatus(correlationId, completedTask, Status.SUCCESS, stepResult);
+            enqueueChildrenTasks(completedTask, readyQueue, taskMap, parentChildrenMap);
+        } else {
+            failureCount++;
+            updateTaskStatus(correlationId, completedTask, Status.FAILED, stepResult);
+            updateChildrenTaskStatus(completedTask, taskMap, parentChildrenMap, correlationId, Status.UPSTREAM_FAILED);
+        }
+    }
 
-                            return stepResult;
-                        });
+    /**
+     * Asks the connector or EMR to stop every running task. The tasks stay in {@code runningTasks}, so their
+     * status is written by {@link #handleCompletion} once the stop is confirmed and their slots (JDBC
+     * connections, EMR step capacity) are actually free.
+     */
+    private void cancelRunningTasks() {
 
-                futureMap.put(task.getId().toString(), future);
+        for (String taskId : runningTasks.keySet()) {
 
-                allFutures.add(future);
-            }
+            Task task = taskMap.get(taskId);
 
-            Thread.sleep(1000);
-        }
+            boolean stopping = task.getType() == TaskType.SQL
+                    ? mySQLConnector.cancelSQLTask(taskId)
+                    : emrService.cancelTask(taskId);
 
-        try {
+            cancelRequestedTasks.add(taskId);
 
-            CompletableFuture.allOf(allFutures.toArray(new CompletableFuture[0])).join();
-        } catch (CompletionException e) {
-            if (e.getCause() instanceof CancellationException) {
-                logger.info("Playground execution was cancelled.");
-            } else {
-                logger.error("Error during task execution: {}", e.getMessage(), e);
-            }
+            logger.info("Playground {} was cancelled. Cancelling running task {} (ID: {}){}.",
+                    playground.getName(), task.getName(), taskId, stopping ? "" : ", which is already finishing");
         }
     }
 
@@ -474,6 +578,22 @@ public class DataPhantomPlaygroundExecutor implements Runnable {
         return new DAGExecutionQueue(rootTasks, parentChildrenMap, taskMap);
     }
 
+    static class TaskCompletion {
+
+        final String taskId;
+
+        final StepResult stepResult;
+
+        final Throwable throwable;
+
+        TaskCompletion(String taskId, StepResult stepResult, Throwable throwable) {
+
+            this.taskId = taskId;
+            this.stepResult = stepResult;
+            this.throwable = throwable;
+        }
+    }
+
     private static class DAGExecutionQueue {
 
         Queue<Task> queue;
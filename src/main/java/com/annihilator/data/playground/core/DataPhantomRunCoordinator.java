@@ -0,0 +1,91 @@
+package com.annihilator.data.playground.core;
+
+import com.annihilator.data.playground.config.ConcurrencyConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Drives in-flight playground runs as state machines.
+ *
+ * A run only holds a thread while it reacts to an event (start, task completion, cancellation), so a
+ * small fixed pool can supervise any number of concurrent runs. The end-of-run work (reconciliation,
+ * notifications, history) is handed to a separate pool so a slow reconciliation cannot stall the
+ * event loop of other runs.
+ */
+public class DataPhantomRunCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataPhantomRunCoordinator.class);
+
+    private final ExecutorService eventExecutorService;
+    private final ExecutorService completionExecutorService;
+    private final Map<String, DataPhantomPlaygroundExecutor> activeRuns = new ConcurrentHashMap<>();
+
+    public DataPhantomRunCoordinator(ConcurrencyConfig concurrencyConfig) {
+        this(concurrencyConfig.newBlockingExecutor("run-event", concurrencyConfig.getRunEventThreadPoolSize()),
+                concurrencyConfig.newBlockingExecutor("run-completion", concurrencyConfig.getRunCompletionThreadPoolSize()));
+    }
+
+    public DataPhantomRunCoordinator(ExecutorService eventExecutorService, ExecutorService completionExecutorService) {
+        this.eventExecutorService = eventExecutorService;
+        this.completionExecutorService = completionExecutorService;
+    }
+
+    void register(DataPhantomPlaygroundExecutor run) {
+
+        activeRuns.put(run.getPlaygroundId(), run);
+        post(run::onStart);
+    }
+
+    void post(Runnable event) {
+
+        try {
+            eventExecutorService.execute(event);
+        } catch (RejectedExecutionException e) {
+            logger.error("Run coordinator is shut down, dropping event: {}", e.getMessage());
+        }
+    }
+
+    void complete(DataPhantomPlaygroundExecutor run) {
+
+        try {
+            completionExecutorService.execute(() -> {
+                try {
+                    run.onComplete();
+                } finally {
+                    activeRuns.remove(run.getPlaygroundId(), run);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.error("Run coordinator is shut down, playground {} will be picked up by recovery", run.getPlaygroundId());
+            activeRuns.remove(run.getPlaygroundId(), run);
+        }
+    }
+
+    public boolean cancel(String playgroundId) {
+
+        DataPhantomPlaygroundExecutor run = activeRuns.get(playgroundId);
+
+        if (run == null) {
+            return false;
+        }
+
+        post(run::onCancelRequested);
+        return true;
+    }
+
+    public int getActiveRunCount() {
+        return activeRuns.size();
+    }
+
+    public void close() {
+
+        eventExecutorService.shutdown();
+        completionExecutorService.shutdown();
+        activeRuns.clear();
+    }
+}
@@ -13,6 +13,8 @@ import com.annihilator.data.playground.db.ReconciliationResultsDAO;
 import com.annihilator.data.playground.db.TaskDAO;
 import com.annihilator.data.playground.model.Playground;
 import com.annihilator.data.playground.model.PlaygroundExecutionType;
+import com.annihilator.data.playground.model.Task;
+import com.annihilator.data.playground.model.TaskType;
 import com.annihilator.data.playground.notification.NotificationService;
 import com.annihilator.data.playground.reconsilation.DataPhantomReconciliationManager;
 import org.slf4j.Logger;
@@ -22,6 +24,7 @@ import java.sql.SQLException;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.PriorityQueue;
@@ -53,6 +56,8 @@ public class DataPhantomSchedulerAssistant implements Runnable {
     private NotificationService notificationService;
     private ReconciliationMappingDAO reconciliationMappingDAO;
     private ReconciliationResultsDAO reconciliationResultsDAO;
+    private DataPhantomRunCoordinator runCoordinator;
+    private Map<String, Long> prewarmedExecutionTimes;
 
     public DataPhantomSchedulerAssistant(ConcurrencyConfig concurrencyConfig,
                                          PlaygroundDAO playgroundDAO,
@@ -68,7 +73,8 @@ public class DataPhantomSchedulerAssistant implements Runnable {
                                          S3Service s3Service,
                                          NotificationService notificationService,
                                          ReconciliationMappingDAO reconciliationMappingDAO,
-                                         ReconciliationResultsDAO reconciliationResultsDAO) {
+                                         ReconciliationResultsDAO reconciliationResultsDAO,
+                                         DataPhantomRunCoordinator runCoordinator) {
 
         this.playgroundDAO = playgroundDAO;
         this.historyDAO = historyDAO;
@@ -87,6 +93,8 @@ public class DataPhantomSchedulerAssistant implements Runnable {
         this.notificationService = notificationService;
         this.reconciliationMappingDAO = reconciliationMappingDAO;
         this.reconciliationResultsDAO = reconciliationResultsDAO;
+        this.runCoordinator = runCoordinator;
+        this.prewarmedExecutionTimes = new HashMap<>();
     }
 
     private void loadQueue() {
@@ -162,10 +170,19 @@ public class DataPhantomSchedulerAssistant implements Runnable {
                 long executionTime = getNextExecutionTimeInMillis(nextPlayground.getCronExpression());
                 long currentTime = getCurrentTimeInMillis();
 
+                prewarmUpcomingPlaygrounds(currentTime);
+
                 long waitTime = executionTime - currentTime;
                 
                 long sleepTime = Math.min(waitTime, concurrencyConfig.getSchedulerSleepTime());
 
+                long prewarmLeadTime = concurrencyConfig.getClusterPrewarmLeadTime();
+
+                if (prewarmLeadTime > 0 && waitTime > prewarmLeadTime && !isPrewarmed(nextPlayground, executionTime)) {
+                    // Wake up in time to pre-warm the head of the queue
+                    sleepTime = Math.min(sleepTime, waitTime - prewarmLeadTime);
+                }
+
                 if (sleepTime < 0) {
                     sleepTime = 0;
                 }
@@ -201,7 +218,8 @@ public class DataPhantomSchedulerAssistant implements Runnable {
                                 s3Service,
                                 notificationService,
                                 reconciliationMappingDAO,
-                                reconciliationResultsDAO));
+                                reconciliationResultsDAO,
+                                runCoordinator));
 
                 if(hasMoreExecutions(nextPlayground)) {
 
@@ -214,6 +232,51 @@ public class DataPhantomSchedulerAssistant implements Runnable {
         }
     }
 
+    /**
+     * Starts provisioning EMR clusters for every queued playground firing within the pre-warm lead time,
+     * once per fire, so scheduled runs do not pay the cluster cold start.
+     */
+    private void prewarmUpcomingPlaygrounds(long currentTime) {
+
+        long prewarmLeadTime = concurrencyConfig.getClusterPrewarmLeadTime();
+
+        if (prewarmLeadTime <= 0) {
+            return;
+        }
+
+        Set<String> taskTypes = new HashSet<>();
+
+        for (Playground playground : playgroundQueue) {
+
+            long executionTime = getNextExecutionTimeInMillis(playground.getCronExpression());
+
+            if (executionTime == -1 || executionTime - currentTime > prewarmLeadTime || isPrewarmed(playground, executionTime)) {
+                continue;
+            }
+
+            prewarmedExecutionTimes.put(playground.getId().toString(), executionTime);
+
+            try {
+                for (Task task : taskDAO.findTasksByPlaygroundRecursively(playground.getId())) {
+                    if (task.getType() != null && task.getType() != TaskType.SQL) {
+                        taskTypes.add(task.getType().name());
+                    }
+                }
+            } catch (SQLException e) {
+                logger.warn("Could not load tasks of playground {} for pre-warming: {}", playground.getId(), e.getMessage());
+            }
+        }
+
+        if (!taskTypes.isEmpty()) {
+            logger.info("Pre-warming EMR clusters for upcoming task types: {}", taskTypes);
+            emrService.prewarm(taskTypes);
+        }
+    }
+
+    private boolean isPrewarmed(Playground playground, long executionTime) {
+        return Objects.equals(prewarmedExecutionTimes.get(playground.getId().toString()), executionTime);
+    }
+
     private boolean hasMoreExecutions(Playground nextPlayground) {
 
         long newExecutionTime = getNextExecutionTimeInMillis(nextPlayground.getCronExpression());
@@ -54,11 +54,11 @@ public class ReconciliationResultsDAOImpl implements ReconciliationResultsDAO {
             try (PreparedStatement insertPs = conn.prepareStatement(insertSql)) {
                 insertPs.setString(1, reconciliationId);
                 insertPs.setString(2, status); // Use provided status
-                insertPs.setInt(3, result.getLeftFileRowCount());
-                insertPs.setInt(4, result.getRightFileRowCount());
-                insertPs.setInt(5, result.getCommonRowCount());
-                insertPs.setInt(6, result.getLeftFileExclusiveRowCount());
-                insertPs.setInt(7, result.getRightFileExclusiveRowCount());
+                insertPs.setLong(3, result.getLeftFileRowCount());
+                insertPs.setLong(4, result.getRightFileRowCount());
+                insertPs.setLong(5, result.getCommonRowCount());
+                insertPs.setLong(6, result.getLeftFileExclusiveRowCount());
+                insertPs.setLong(7, result.getRightFileExclusiveRowCount());
                 insertPs.setString(8, result.getSampleCommonRowsS3Path());
                 insertPs.setString(9, result.getSampleExclusiveLeftRowsS3Path());
                 insertPs.setString(10, result.getSampleExclusiveRightRowsS3Path());
@@ -98,11 +98,11 @@ public class ReconciliationResultsDAOImpl implements ReconciliationResultsDAO {
                     response.setStatus(rs.getString("status"));
                     response.setExecutionTimestamp(rs.getTimestamp("execution_timestamp"));
                     response.setReconciliationMethod(rs.getString("reconciliation_method"));
-                    response.setLeftFileRowCount(rs.getInt("left_file_row_count"));
-                    response.setRightFileRowCount(rs.getInt("right_file_row_count"));
-                    response.setCommonRowCount(rs.getInt("common_row_count"));
-                    response.setLeftFileExclusiveRowCount(rs.getInt("left_file_exclusive_row_count"));
-                    response.setRightFileExclusiveRowCount(rs.getInt("right_file_exclusive_row_count"));
+                    response.setLeftFileRowCount(rs.getLong("left_file_row_count"));
+                    response.setRightFileRowCount(rs.getLong("right_file_row_count"));
+                    response.setCommonRowCount(rs.getLong("common_row_count"));
+                    response.setLeftFileExclusiveRowCount(rs.getLong("left_file_exclusive_row_count"));
+                    response.setRightFileExclusiveRowCount(rs.getLong("right_file_exclusive_row_count"));
                     response.setSampleCommonRowsS3Path(rs.getString("sample_common_rows_s3_path"));
                     response.setSampleExclusiveLeftRowsS3Path(rs.getString("sample_exclusive_left_rows_s3_path"));
                     response.setSampleExclusiveRightRowsS3Path(rs.getString("sample_exclusive_right_rows_s3_path"));
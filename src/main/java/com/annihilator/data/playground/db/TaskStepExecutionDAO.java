@@ -0,0 +1,22 @@
+package com.annihilator.data.playground.db;
+
+import com.annihilator.data.playground.model.TaskStepExecution;
+
+import java.sql.SQLException;
+
+public interface TaskStepExecutionDAO {
+
+    String SUBMITTED = "SUBMITTED";
+
+    /**
+     * Records the step of a new attempt, replacing the previous attempt of the same run.
+     */
+    void upsertStepExecution(TaskStepExecution execution) throws SQLException;
+
+    TaskStepExecution findStepExecution(String taskId, String correlationId) throws SQLException;
+
+    /**
+     * Updates state and output path, but only while the row still refers to the given step.
+     */
+    void updateStepState(String taskId, String correlationId, String stepId, String stepState, String outputPath) throws SQLException;
+}
@@ -0,0 +1,90 @@
+package com.annihilator.data.playground.db;
+
+import com.annihilator.data.playground.model.TaskStepExecution;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class TaskStepExecutionDAOImpl implements TaskStepExecutionDAO {
+
+    private final MetaDBConnection metaDBConnection;
+
+    public TaskStepExecutionDAOImpl(MetaDBConnection metaDBConnection) {
+        this.metaDBConnection = metaDBConnection;
+    }
+
+    @Override
+    public void upsertStepExecution(TaskStepExecution execution) throws SQLException {
+        String sql = "INSERT INTO task_step_executions (task_id, correlation_id, step_id, cluster_id, output_path, log_path, attempt, step_state, updated_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE step_id = VALUES(step_id), cluster_id = VALUES(cluster_id), output_path = VALUES(output_path), " +
+                "log_path = VALUES(log_path), attempt = VALUES(attempt), step_state = VALUES(step_state), updated_at = VALUES(updated_at)";
+
+        try (Connection conn = metaDBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            execution.setUpdatedAt(System.currentTimeMillis());
+
+            ps.setString(1, execution.getTaskId());
+            ps.setString(2, execution.getCorrelationId());
+            ps.setString(3, execution.getStepId());
+            ps.setString(4, execution.getClusterId());
+            ps.setString(5, execution.getOutputPath());
+            ps.setString(6, execution.getLogPath());
+            ps.setInt(7, execution.getAttempt());
+            ps.setString(8, execution.getStepState());
+            ps.setLong(9, execution.getUpdatedAt());
+
+            ps.executeUpdate();
+        }
+    }
+
+    @Override
+    public TaskStepExecution findStepExecution(String taskId, String correlationId) throws SQLException {
+        String sql = "SELECT task_id, correlation_id, step_id, cluster_id, output_path, log_path, attempt, step_state, updated_at " +
+                "FROM task_step_executions WHERE task_id = ? AND correlation_id = ?";
+
+        try (Connection conn = metaDBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, taskId);
+            ps.setString(2, correlationId);
+            ResultSet rs = ps.executeQuery();
+
+            if (!rs.next()) {
+                return null;
+            }
+
+            TaskStepExecution execution = new TaskStepExecution();
+            execution.setTaskId(rs.getString("task_id"));
+            execution.setCorrelationId(rs.getString("correlation_id"));
+            execution.setStepId(rs.getString("step_id"));
+            execution.setClusterId(rs.getString("cluster_id"));
+            execution.setOutputPath(rs.getString("output_path"));
+            execution.setLogPath(rs.getString("log_path"));
+            execution.setAttempt(rs.getInt("attempt"));
+            execution.setStepState(rs.getString("step_state"));
+            execution.setUpdatedAt(rs.getLong("updated_at"));
+
+            return execution;
+        }
+    }
+
+    @Override
+    public void updateStepState(String taskId, String correlationId, String stepId, String stepState, String outputPath) throws SQLException {
+        String sql = "UPDATE task_step_executions SET step_state = ?, output_path = COALESCE(?, output_path), updated_at = ? " +
+                "WHERE task_id = ? AND correlation_id = ? AND step_id = ?";
+
+        try (Connection conn = metaDBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, stepState);
+            ps.setString(2, outputPath);
+            ps.setLong(3, System.currentTimeMillis());
+            ps.setString(4, taskId);
+            ps.setString(5, correlationId);
+            ps.setString(6, stepId);
+
+            ps.executeUpdate();
+        }
+    }
+}
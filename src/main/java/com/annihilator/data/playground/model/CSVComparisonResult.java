@@ -9,11 +9,11 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class CSVComparisonResult {
 
-    private int leftFileRowCount;
-    private int rightFileRowCount;
-    private int commonRowCount;
-    private int leftFileExclusiveRowCount;
-    private int rightFileExclusiveRowCount;
+    private long leftFileRowCount;
+    private long rightFileRowCount;
+    private long commonRowCount;
+    private long leftFileExclusiveRowCount;
+    private long rightFileExclusiveRowCount;
     private String sampleCommonRowsS3Path;
     private String sampleExclusiveLeftRowsS3Path;
     private String sampleExclusiveRightRowsS3Path;
@@ -0,0 +1,25 @@
+package com.annihilator.data.playground.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EMRClusterHealth {
+
+    private String stackName;
+    private String clusterId;
+    private String clusterState;
+    private boolean healthy;
+    private boolean saturated;
+
+    // Steps placed on the cluster by this service that have not reached a terminal state
+    private int inFlightSteps;
+    private int pendingSteps;
+    private int runningSteps;
+
+    private String lastError;
+    private long lastCheckedAt;
+}
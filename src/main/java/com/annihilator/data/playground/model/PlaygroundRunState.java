@@ -0,0 +1,9 @@
+package com.annihilator.data.playground.model;
+
+public enum PlaygroundRunState {
+
+    PENDING,
+    RUNNING,
+    COMPLETING,
+    COMPLETE
+}
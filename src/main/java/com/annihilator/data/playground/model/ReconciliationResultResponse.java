@@ -17,11 +17,11 @@ public class ReconciliationResultResponse {
     private String reconciliationMethod;
     
     // Count fields from CSVComparisonResult
-    private int leftFileRowCount;
-    private int rightFileRowCount;
-    private int commonRowCount;
-    private int leftFileExclusiveRowCount;
-    private int rightFileExclusiveRowCount;
+    private long leftFileRowCount;
+    private long rightFileRowCount;
+    private long commonRowCount;
+    private long leftFileExclusiveRowCount;
+    private long rightFileExclusiveRowCount;
     
     // S3 paths for sample data
     private String sampleCommonRowsS3Path;
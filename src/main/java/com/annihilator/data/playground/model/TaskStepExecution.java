@@ -0,0 +1,22 @@
+package com.annihilator.data.playground.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The latest EMR step submitted for a task within one run (correlation ID).
+ */
+@Data
+@NoArgsConstructor
+public class TaskStepExecution {
+
+    private String taskId;
+    private String correlationId;
+    private String stepId;
+    private String clusterId;
+    private String outputPath;
+    private String logPath;
+    private int attempt;
+    private String stepState; // SUBMITTED until the step reaches a terminal EMR state
+    private long updatedAt;
+}
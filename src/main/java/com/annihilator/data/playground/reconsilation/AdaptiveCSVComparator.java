@@ -10,20 +10,26 @@ import com.annihilator.data.playground.model.Reconciliation;
 import com.annihilator.data.playground.model.Task;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
-import com.opencsv.CSVReader;
-import com.sangupta.bloomfilter.impl.InMemoryBloomFilter;
 import org.slf4j.Logger;
 
-import java.io.StringReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class AdaptiveCSVComparator implements CSVComparator {
 
     private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(AdaptiveCSVComparator.class);
     private static final Gson GSON = new Gson();
+    private static final int MAX_SAMPLE_ROWS = 100;
+    // Row texts captured per side while aggregating, from which the samples are mostly printed
+    private static final int SAMPLE_TEXT_ROWS = 1024;
+    private static final long ROW_SAMPLE_BYTES = 256 * 1024;
+    private static final long MAX_BLOOM_FILTER_BYTES = 256L * 1024 * 1024;
 
     private S3Service s3Service;
     private ReconciliationMappingDAO reconciliationMappingDAO;
@@ -98,15 +104,19 @@ public class AdaptiveCSVComparator implements CSVComparator {
         }
 
         long totalFileSize = leftFileSize + rightFileSize;
-        boolean useBloomFilter = totalFileSize > reconciliationConfig.getExactMatchThreshold();
+        long exactMatchThreshold = reconciliationConfig.getExactMatchThreshold();
+        boolean fitsInMemory = totalFileSize <= exactMatchThreshold;
+        boolean useBloomFilter = !fitsInMemory && reconciliationConfig.getMaxSpillPartitions() == 0;
 
-        LOGGER.info("Reconciliation {} - Total file size: {} bytes, Using Bloom filter: {}", 
-                reconciliationId, totalFileSize, useBloomFilter);
+        LOGGER.info("Reconciliation {} - Total file size: {} bytes, Spilling to disk: {}, Using Bloom filter: {}", 
+                reconciliationId, totalFileSize, !fitsInMemory && !useBloomFilter, useBloomFilter);
 
-        if (useBloomFilter) {
-            compareWithBloomFilter(reconciliationId, leftTask, rightTask, columnsMapping);
-        } else {
+        if (fitsInMemory) {
             compareWithExactMatching(reconciliationId, leftTask, rightTask, columnsMapping);
+        } else if (useBloomFilter) {
+            compareWithBloomFilter(reconciliationId, leftTask, rightTask, columnsMapping, leftFileSize, rightFileSize);
+        } else {
+            compareWithSpilledMatching(reconciliationId, leftTask, rightTask, columnsMapping, totalFileSize);
         }
     }
 
@@ -117,102 +127,259 @@ public class AdaptiveCSVComparator implements CSVComparator {
         List<String> leftColumns = new ArrayList<>();
         List<String> rightColumns = new ArrayList<>();
 
-        AtomicInteger leftLineNumber = new AtomicInteger(0);
-        AtomicInteger rightLineNumber = new AtomicInteger(0);
+        for (Map.Entry<String, String> entry : columnsMapping.entrySet()) {
+            leftColumns.add(entry.getKey());
+            rightColumns.add(entry.getValue());
+        }
+
+        ParallelRowPipeline pipeline = newPipeline(Integer.MAX_VALUE);
+
+        // Rows are counted by fingerprint, each shard in a table only its own thread touches; only the sample
+        // rows are ever kept as text
+        FingerprintCounts[] shardCounts = new FingerprintCounts[pipeline.getShards()];
+        ParallelRowPipeline.ShardSink[] sinks = new ParallelRowPipeline.ShardSink[pipeline.getShards()];
+
+        for (int shard = 0; shard < shardCounts.length; shard++) {
+            FingerprintCounts rowCounts = new FingerprintCounts(1024);
+            shardCounts[shard] = rowCounts;
+            sinks[shard] = (side, high, low) -> {
+                if (side == ParallelRowPipeline.LEFT) {
+                    rowCounts.incrementLeft(high, low);
+                } else {
+                    rowCounts.incrementRight(high, low);
+                }
+            };
+        }
+
+        FingerprintDiffSummary summary = new FingerprintDiffSummary(MAX_SAMPLE_ROWS);
+        SampleRowTexts sampleTexts = new SampleRowTexts(SAMPLE_TEXT_ROWS);
+        long[] rows;
+
+        try {
+            rows = pipeline.aggregate(source(leftTask, leftColumns, "left"), source(rightTask, rightColumns, "right"),
+                    sinks, sampleTexts);
+
+            for (FingerprintCounts rowCounts : shardCounts) {
+                summary.add(rowCounts);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to read files for reconciliation {}: {}", reconciliationId, e.getMessage(), e);
+            throw new RuntimeException("Failed to read files for reconciliation", e);
+        }
+
+        storeExactMatchResult(reconciliationId, pipeline, leftTask, rightTask, leftColumns, rightColumns, rows, summary,
+                sampleTexts);
+    }
+
+    /**
+     * Exact matching for inputs over the in-memory threshold: row fingerprints are spilled to local disk in hash
+     * partitions and diffed one partition at a time per shard, the shards diffing in parallel.
+     */
+    private void compareWithSpilledMatching(String reconciliationId, Task leftTask, Task rightTask,
+                                            Map<String, String> columnsMapping, long totalFileSize) throws SQLException {
+
+        List<String> leftColumns = new ArrayList<>();
+        List<String> rightColumns = new ArrayList<>();
 
         for (Map.Entry<String, String> entry : columnsMapping.entrySet()) {
             leftColumns.add(entry.getKey());
             rightColumns.add(entry.getValue());
         }
 
-        // Local variables for storing row data with counts
-        Map<String, Integer> leftRowCounts = new HashMap<>();
-        Map<String, Integer> rightRowCounts = new HashMap<>();
-
-        Map<String, Integer> leftColumnIndices = new HashMap<>();
-
-        s3Service.readFileLineByLine(leftTask.getOutputLocation(), line -> {
-            int lineNum = leftLineNumber.incrementAndGet();
-
-            if (lineNum == 1) {
-                leftColumnIndices.putAll(parseHeaderAndFindIndices(line, leftColumns));
-                LOGGER.debug("Left file column indices: {}", leftColumnIndices);
-            } else if (!line.trim().isEmpty()) {
-                Map<String, String> rowData = parseDataRow(line, leftColumnIndices);
-                if (!rowData.isEmpty()) {
-                    String rowKey = leftColumns.stream()
-                            .map(col -> rowData.getOrDefault(col, ""))
-                            .collect(Collectors.joining("|"));
-                    leftRowCounts.merge(rowKey, 1, Integer::sum);
+        int maxPartitions = reconciliationConfig.getMaxSpillPartitions();
+        ParallelRowPipeline pipeline = newPipeline(maxPartitions);
+        int shards = pipeline.getShards();
+
+        // Shards diff a partition each at the same time, so every partition holds about a threshold's worth of
+        // input divided between the shards; the count is kept a multiple of the shards so each owns as many
+        long threshold = reconciliationConfig.getExactMatchThreshold();
+        long wanted = Math.max(2, (totalFileSize * shards + threshold - 1) / threshold);
+        int partitions = (int) Math.min(maxPartitions - maxPartitions % shards, (wanted + shards - 1) / shards * shards);
+
+        LOGGER.info("Using exact matching spilled to {} partitions over {} shards for reconciliation: {}",
+                partitions, shards, reconciliationId);
+
+        FingerprintDiffSummary summary = new FingerprintDiffSummary(MAX_SAMPLE_ROWS);
+        SampleRowTexts sampleTexts = new SampleRowTexts(SAMPLE_TEXT_ROWS);
+        long[] rows;
+
+        try (SpilledFingerprintDiff spill = new SpilledFingerprintDiff(spillDirectory(), partitions)) {
+
+            SpilledFingerprintDiff.SpillWriter[][] writers = new SpilledFingerprintDiff.SpillWriter[2][shards];
+
+            try {
+                ParallelRowPipeline.ShardSink[] sinks = new ParallelRowPipeline.ShardSink[shards];
+
+                for (int shard = 0; shard < shards; shard++) {
+                    SpilledFingerprintDiff.SpillWriter left = spill.openLeft(shard, shards);
+                    writers[ParallelRowPipeline.LEFT][shard] = left;
+                    SpilledFingerprintDiff.SpillWriter right = spill.openRight(shard, shards);
+                    writers[ParallelRowPipeline.RIGHT][shard] = right;
+
+                    sinks[shard] = (side, high, low) -> (side == ParallelRowPipeline.LEFT ? left : right).add(high, low);
                 }
+
+                rows = pipeline.aggregate(source(leftTask, leftColumns, "left"), source(rightTask, rightColumns, "right"),
+                        sinks, sampleTexts);
+            } finally {
+                closeAll(writers);
+            }
+
+            for (FingerprintDiffSummary shardSummary : pipeline.forEachShard(shard -> spill.diff(shard, shards, MAX_SAMPLE_ROWS))) {
+                summary.merge(shardSummary);
             }
-        });
-
-        Map<String, Integer> rightColumnIndices = new HashMap<>();
-
-        s3Service.readFileLineByLine(rightTask.getOutputLocation(), line -> {
-            int lineNum = rightLineNumber.incrementAndGet();
-
-            if (lineNum == 1) {
-                rightColumnIndices.putAll(parseHeaderAndFindIndices(line, rightColumns));
-                LOGGER.debug("Right file column indices: {}", rightColumnIndices);
-            } else if (!line.trim().isEmpty()) {
-                Map<String, String> rowData = parseDataRow(line, rightColumnIndices);
-                if (!rowData.isEmpty()) {
-                    String rowKey = rightColumns.stream()
-                            .map(col -> rowData.getOrDefault(col, ""))
-                            .collect(Collectors.joining("|"));
-                    rightRowCounts.merge(rowKey, 1, Integer::sum);
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.error("Failed to spill reconciliation {} to disk: {}", reconciliationId, e.getMessage(), e);
+            storeFailedResult(reconciliationId);
+            throw new RuntimeException("Failed to spill reconciliation to disk", e);
+        }
+
+        storeExactMatchResult(reconciliationId, pipeline, leftTask, rightTask, leftColumns, rightColumns, rows, summary,
+                sampleTexts);
+    }
+
+    private void closeAll(SpilledFingerprintDiff.SpillWriter[][] writers) throws IOException {
+
+        IOException failure = null;
+
+        for (SpilledFingerprintDiff.SpillWriter[] sideWriters : writers) {
+            for (SpilledFingerprintDiff.SpillWriter writer : sideWriters) {
+                if (writer == null) {
+                    continue;
+                }
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    failure = failure == null ? e : failure;
                 }
             }
-        });
+        }
 
-        CSVComparisonResult result = new CSVComparisonResult();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Looks up the text of each sample fingerprint among the rows captured while aggregating. Only samples of a
+     * category too rare to show up among a side's captured rows are looked for in one more read, which stops as
+     * soon as the last of them is found. A common row's text is the same on both sides, so a missing one is taken
+     * from the right file along with the right-only rows, and the left file is only read again for rows of its own.
+     */
+    private Map<UUID, String> resolveSampleTexts(ParallelRowPipeline pipeline, Task leftTask, Task rightTask,
+                                                 List<String> leftColumns, List<String> rightColumns,
+                                                 FingerprintDiffSummary summary, SampleRowTexts sampleTexts) throws IOException {
+
+        Map<UUID, String> texts = new ConcurrentHashMap<>();
+        Set<UUID> leftMissing = ConcurrentHashMap.newKeySet();
+        Set<UUID> rightMissing = ConcurrentHashMap.newKeySet();
+
+        lookUpSamples(summary.getLeftExclusiveSamples(), sampleTexts, texts, leftMissing);
+        lookUpSamples(summary.getCommonSamples(), sampleTexts, texts, rightMissing);
+        lookUpSamples(summary.getRightExclusiveSamples(), sampleTexts, texts, rightMissing);
+
+        if (leftMissing.isEmpty() && rightMissing.isEmpty()) {
+            return texts;
+        }
 
-        Set<String> allRowKeys = new HashSet<>(leftRowCounts.keySet());
-        allRowKeys.addAll(rightRowCounts.keySet());
+        LOGGER.info("Reading {} sample row(s) of the left file and {} of the right file again",
+                leftMissing.size(), rightMissing.size());
 
-        int totalLeftRows = leftRowCounts.values().stream().mapToInt(Integer::intValue).sum();
-        int totalRightRows = rightRowCounts.values().stream().mapToInt(Integer::intValue).sum();
+        List<Set<UUID>> missing = List.of(leftMissing, rightMissing);
 
-        int commonUniqueRows = 0;
-        int leftExclusiveUniqueRows = 0;
-        int rightExclusiveUniqueRows = 0;
+        pipeline.scan(leftMissing.isEmpty() ? null : source(leftTask, leftColumns, "left"),
+                rightMissing.isEmpty() ? null : source(rightTask, rightColumns, "right"),
+                () -> {
+                    RowFingerprint fingerprint = new RowFingerprint();
+                    return (side, row) -> {
+                        fingerprint.compute(row);
+                        UUID key = new UUID(fingerprint.high(), fingerprint.low());
 
-        List<String> sampleExclusiveLeftRows = new ArrayList<>();
-        List<String> sampleExclusiveRightRows = new ArrayList<>();
-        List<String> sampleCommonRows = new ArrayList<>();
+                        if (missing.get(side).remove(key)) {
+                            texts.put(key, row.rowText());
+                        }
+                    };
+                },
+                side -> missing.get(side).isEmpty());
 
-        for (String rowKey : allRowKeys) {
-            Integer leftCount = leftRowCounts.getOrDefault(rowKey, 0);
-            Integer rightCount = rightRowCounts.getOrDefault(rowKey, 0);
+        return texts;
+    }
 
-            if (leftCount > 0 && rightCount > 0) {
-                // Row exists in both files
-                commonUniqueRows++;
-                if (sampleCommonRows.size() < 100) {
-                    sampleCommonRows.add(rowKey + " (Left: " + leftCount + ", Right: " + rightCount + ")");
-                }
-            } else if (leftCount > 0) {
-                // Row only in left file
-                leftExclusiveUniqueRows++;
-                if (sampleExclusiveLeftRows.size() < 100) {
-                    sampleExclusiveLeftRows.add(rowKey + " (Count: " + leftCount + ")");
-                }
+    private static void lookUpSamples(List<FingerprintDiffSummary.Sample> samples, SampleRowTexts sampleTexts,
+                                      Map<UUID, String> texts, Set<UUID> missing) {
+
+        for (FingerprintDiffSummary.Sample sample : samples) {
+            String text = sampleTexts.text(sample.high, sample.low);
+            if (text != null) {
+                texts.put(new UUID(sample.high, sample.low), text);
             } else {
-                // Row only in right file
-                rightExclusiveUniqueRows++;
-                if (sampleExclusiveRightRows.size() < 100) {
-                    sampleExclusiveRightRows.add(rowKey + " (Count: " + rightCount + ")");
-                }
+                missing.add(new UUID(sample.high, sample.low));
             }
         }
+    }
+
+    private ParallelRowPipeline.Source source(Task task, List<String> columns, String fileType) {
+        return new ParallelRowPipeline.Source(fileType, () -> s3Service.openFile(task.getOutputLocation()), columns);
+    }
+
+    /**
+     * @param maxShards upper bound on the aggregation shards, which default to half the worker threads
+     */
+    private ParallelRowPipeline newPipeline(int maxShards) {
+        int workers = reconciliationConfig.getWorkerThreads() > 0
+                ? reconciliationConfig.getWorkerThreads()
+                : Runtime.getRuntime().availableProcessors();
+        return new ParallelRowPipeline(workers, Math.max(1, Math.min(maxShards, workers / 2)));
+    }
+
+    private Path spillDirectory() {
+        String configured = reconciliationConfig.getSpillDirectory();
+        return configured == null || configured.trim().isEmpty()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "data-phantom-reconciliation")
+                : Paths.get(configured.trim());
+    }
+
+    private void storeExactMatchResult(String reconciliationId, ParallelRowPipeline pipeline, Task leftTask, Task rightTask,
+                                       List<String> leftColumns, List<String> rightColumns, long[] rows,
+                                       FingerprintDiffSummary summary, SampleRowTexts sampleTexts) throws SQLException {
+
+        Map<UUID, String> texts;
 
-        result.setLeftFileRowCount(totalLeftRows);
-        result.setRightFileRowCount(totalRightRows);
-        result.setCommonRowCount(commonUniqueRows);
-        result.setLeftFileExclusiveRowCount(leftExclusiveUniqueRows);
-        result.setRightFileExclusiveRowCount(rightExclusiveUniqueRows);
+        try {
+            texts = resolveSampleTexts(pipeline, leftTask, rightTask, leftColumns, rightColumns, summary, sampleTexts);
+        } catch (IOException e) {
+            LOGGER.error("Failed to read sample rows for reconciliation {}: {}", reconciliationId, e.getMessage(), e);
+            throw new RuntimeException("Failed to read sample rows for reconciliation", e);
+        }
+
+        // Sorted, since the parallel aggregation does not keep the input order
+        List<String> sampleCommonRows = new ArrayList<>();
+        List<String> sampleExclusiveLeftRows = new ArrayList<>();
+        List<String> sampleExclusiveRightRows = new ArrayList<>();
+
+        for (FingerprintDiffSummary.Sample sample : summary.getCommonSamples()) {
+            sampleCommonRows.add(texts.get(new UUID(sample.high, sample.low))
+                    + " (Left: " + sample.leftCount + ", Right: " + sample.rightCount + ")");
+        }
+
+        for (FingerprintDiffSummary.Sample sample : summary.getLeftExclusiveSamples()) {
+            sampleExclusiveLeftRows.add(texts.get(new UUID(sample.high, sample.low)) + " (Count: " + sample.leftCount + ")");
+        }
+
+        for (FingerprintDiffSummary.Sample sample : summary.getRightExclusiveSamples()) {
+            sampleExclusiveRightRows.add(texts.get(new UUID(sample.high, sample.low)) + " (Count: " + sample.rightCount + ")");
+        }
+
+        Collections.sort(sampleCommonRows);
+        Collections.sort(sampleExclusiveLeftRows);
+        Collections.sort(sampleExclusiveRightRows);
+
+        CSVComparisonResult result = new CSVComparisonResult();
+        result.setLeftFileRowCount(rows[ParallelRowPipeline.LEFT]);
+        result.setRightFileRowCount(rows[ParallelRowPipeline.RIGHT]);
+        result.setCommonRowCount(summary.getCommonRows());
+        result.setLeftFileExclusiveRowCount(summary.getLeftExclusiveRows());
+        result.setRightFileExclusiveRowCount(summary.getRightExclusiveRows());
 
         // Write sample data to S3 and store paths (only for exact matching)
         try {
@@ -249,8 +416,8 @@ public class AdaptiveCSVComparator implements CSVComparator {
         }
 
         LOGGER.info("Exact matching reconciliation completed - Left Total: {}, Right Total: {}, Common Unique: {}, Left Only Unique: {}, Right Only Unique: {}",
-                totalLeftRows, totalRightRows, commonUniqueRows,
-                leftExclusiveUniqueRows, rightExclusiveUniqueRows);
+                result.getLeftFileRowCount(), result.getRightFileRowCount(), result.getCommonRowCount(),
+                result.getLeftFileExclusiveRowCount(), result.getRightFileExclusiveRowCount());
 
         // Store the result in the database
         try {
@@ -263,8 +430,14 @@ public class AdaptiveCSVComparator implements CSVComparator {
         }
     }
 
-    private void compareWithBloomFilter(String reconciliationId, Task leftTask, Task rightTask, 
-                                      Map<String, String> columnsMapping) throws SQLException {
+    /**
+     * Probabilistic matching that reads each file once. The smaller file's rows go into a Bloom filter while
+     * their fingerprints are buffered on local disk; the larger file's rows are then checked against that
+     * filter while building their own, and the buffered fingerprints are checked against the second filter.
+     * Each shard has its own filter of each side, so filters are only ever touched by their shard's thread.
+     */
+    private void compareWithBloomFilter(String reconciliationId, Task leftTask, Task rightTask, Map<String, String> columnsMapping,
+                                        long leftFileSize, long rightFileSize) throws SQLException {
         LOGGER.info("Using Bloom filter for reconciliation: {}", reconciliationId);
 
         List<String> leftColumns = new ArrayList<>();
@@ -275,18 +448,94 @@ public class AdaptiveCSVComparator implements CSVComparator {
             rightColumns.add(entry.getValue());
         }
 
-        // Create Bloom filters
-        InMemoryBloomFilter<String> leftRowFilter = new InMemoryBloomFilter<>(reconciliationConfig.getEstimatedRows(), reconciliationConfig.getFalsePositiveRate());
-        InMemoryBloomFilter<String> rightRowFilter = new InMemoryBloomFilter<>(reconciliationConfig.getEstimatedRows(), reconciliationConfig.getFalsePositiveRate());
+        ParallelRowPipeline pipeline = newPipeline(Integer.MAX_VALUE);
+        int shards = pipeline.getShards();
+
+        boolean leftFirst = leftFileSize <= rightFileSize;
+        Task firstTask = leftFirst ? leftTask : rightTask;
+        Task secondTask = leftFirst ? rightTask : leftTask;
+        List<String> firstColumns = leftFirst ? leftColumns : rightColumns;
+        List<String> secondColumns = leftFirst ? rightColumns : leftColumns;
+        String firstType = leftFirst ? "left" : "right";
+        String secondType = leftFirst ? "right" : "left";
+
+        BlockedBloomFilter[] firstFilters = newBloomFilters(firstTask, firstColumns,
+                leftFirst ? leftFileSize : rightFileSize, firstType, shards);
+        BlockedBloomFilter[] secondFilters = newBloomFilters(secondTask, secondColumns,
+                leftFirst ? rightFileSize : leftFileSize, secondType, shards);
+
+        long firstRows;
+        long secondRows;
+        long firstMatches = 0;
+        long secondMatches = 0;
+
+        try (SpilledFingerprintDiff buffer = new SpilledFingerprintDiff(spillDirectory(), shards)) {
+
+            SpilledFingerprintDiff.SpillWriter[][] writers = new SpilledFingerprintDiff.SpillWriter[1][shards];
+
+            try {
+                ParallelRowPipeline.ShardSink[] sinks = new ParallelRowPipeline.ShardSink[shards];
+
+                for (int shard = 0; shard < shards; shard++) {
+                    BlockedBloomFilter filter = firstFilters[shard];
+                    SpilledFingerprintDiff.SpillWriter writer = buffer.openLeft(shard, shards);
+                    writers[0][shard] = writer;
+
+                    sinks[shard] = (side, high, low) -> {
+                        filter.put(high, low);
+                        writer.add(high, low);
+                    };
+                }
+
+                firstRows = pipeline.aggregate(source(firstTask, firstColumns, firstType), null, sinks)[ParallelRowPipeline.LEFT];
+            } finally {
+                closeAll(writers);
+            }
 
-        // First pass: Build Bloom filters
-        buildBloomFilter(leftTask.getOutputLocation(), leftColumns, leftRowFilter, "left");
-        buildBloomFilter(rightTask.getOutputLocation(), rightColumns, rightRowFilter, "right");
+            long[] shardMatches = new long[shards];
+            ParallelRowPipeline.ShardSink[] sinks = new ParallelRowPipeline.ShardSink[shards];
 
-        // Second pass: Cross-compare
-        CSVComparisonResult result = crossCompareWithBloomFilters(
-            leftTask.getOutputLocation(), rightTask.getOutputLocation(),
-            leftColumns, rightColumns, leftRowFilter, rightRowFilter);
+            for (int shard = 0; shard < shards; shard++) {
+                int current = shard;
+                BlockedBloomFilter filter = secondFilters[shard];
+                BlockedBloomFilter firstFilter = firstFilters[shard];
+
+                sinks[shard] = (side, high, low) -> {
+                    filter.put(high, low);
+                    if (firstFilter.mightContain(high, low)) {
+                        shardMatches[current]++;
+                    }
+                };
+            }
+
+            secondRows = pipeline.aggregate(null, source(secondTask, secondColumns, secondType), sinks)[ParallelRowPipeline.RIGHT];
+
+            for (long matches : shardMatches) {
+                secondMatches += matches;
+            }
+
+            List<Long> replayedMatches = pipeline.forEachShard(shard -> {
+                long[] matches = {0};
+                buffer.forEachLeft(shard, shards, (high, low) -> {
+                    if (secondFilters[shard].mightContain(high, low)) {
+                        matches[0]++;
+                    }
+                });
+                return matches[0];
+            });
+
+            for (long matches : replayedMatches) {
+                firstMatches += matches;
+            }
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.error("Failed to read files for Bloom filter reconciliation {}: {}", reconciliationId, e.getMessage(), e);
+            storeFailedResult(reconciliationId);
+            throw new RuntimeException("Failed to read files for Bloom filter reconciliation", e);
+        }
+
+        CSVComparisonResult result = bloomFilterResult(
+                leftFirst ? firstRows : secondRows, leftFirst ? secondRows : firstRows,
+                leftFirst ? firstMatches : secondMatches, leftFirst ? secondMatches : firstMatches);
 
         // Store result in database
         try {
@@ -299,97 +548,66 @@ public class AdaptiveCSVComparator implements CSVComparator {
         }
     }
 
-    private void buildBloomFilter(String s3Path, List<String> columns, InMemoryBloomFilter<String> bloomFilter, String fileType) {
-        Map<String, Integer> columnIndices = new HashMap<>();
-        AtomicInteger lineNumber = new AtomicInteger(0);
-
-        s3Service.readFileLineByLine(s3Path, line -> {
-            int lineNum = lineNumber.incrementAndGet();
-
-            if (lineNum == 1) {
-                // Parse header
-                columnIndices.putAll(parseHeaderAndFindIndices(line, columns));
-                LOGGER.debug("{} file column indices: {}", fileType, columnIndices);
-            } else if (!line.trim().isEmpty()) {
-                // Parse data row and add to Bloom filter
-                Map<String, String> rowData = parseDataRow(line, columnIndices);
-                if (!rowData.isEmpty()) {
-                    String rowKey = columns.stream()
-                            .map(col -> rowData.getOrDefault(col, ""))
-                            .collect(Collectors.joining("|"));
-                    bloomFilter.add(rowKey);
-                }
-            }
-        });
+    private BlockedBloomFilter[] newBloomFilters(Task task, List<String> columns, long fileSize, String fileType, int shards) {
+
+        long rows = estimateRows(task.getOutputLocation(), columns, fileSize, fileType);
+        BlockedBloomFilter[] filters = new BlockedBloomFilter[shards];
+
+        for (int shard = 0; shard < shards; shard++) {
+            filters[shard] = new BlockedBloomFilter((rows + shards - 1) / shards,
+                    reconciliationConfig.getFalsePositiveRate(), MAX_BLOOM_FILTER_BYTES / shards);
+        }
+
+        LOGGER.info("Sized Bloom filter for {} file at ~{} rows: {} bytes, {} hashes", fileType, rows,
+                filters[0].sizeInBytes() * shards, filters[0].hashCount());
 
-        LOGGER.info("Built Bloom filter for {} file with {} rows", fileType, lineNumber.get() - 1);
+        return filters;
     }
 
-    private CSVComparisonResult crossCompareWithBloomFilters(String leftPath, String rightPath,
-                                                           List<String> leftColumns, List<String> rightColumns,
-                                                           InMemoryBloomFilter<String> leftRowFilter, InMemoryBloomFilter<String> rightRowFilter) {
-        CSVComparisonResult result = new CSVComparisonResult();
+    /**
+     * Estimates a file's rows from its size and the rows in a sample read from its start. For a gzip file the
+     * sample is of the compressed bytes, so the estimate still scales by the stored size. Falls back to the
+     * configured estimated_rows when the sample cannot be read or holds no whole row.
+     */
+    private long estimateRows(String s3Path, List<String> columns, long fileSize, String fileType) {
 
-        int leftTotalRows = 0;
-        AtomicInteger leftToRightMatches = new AtomicInteger();
-
-        Map<String, Integer> leftColumnIndices = new HashMap<>();
-        AtomicInteger leftLineNumber = new AtomicInteger(0);
-
-        s3Service.readFileLineByLine(leftPath, line -> {
-            int lineNum = leftLineNumber.incrementAndGet();
-
-            if (lineNum == 1) {
-                leftColumnIndices.putAll(parseHeaderAndFindIndices(line, leftColumns));
-            } else if (!line.trim().isEmpty()) {
-                Map<String, String> rowData = parseDataRow(line, leftColumnIndices);
-                if (!rowData.isEmpty()) {
-                    String rowKey = leftColumns.stream()
-                            .map(col -> rowData.getOrDefault(col, ""))
-                            .collect(Collectors.joining("|"));
-                    
-                    if (rightRowFilter.contains(rowKey)) {
-                        leftToRightMatches.getAndIncrement();
-                    }
-                }
-            }
-        });
-
-        leftTotalRows = leftLineNumber.get() - 1;
-
-        int rightTotalRows = 0;
-        AtomicInteger rightToLeftMatches = new AtomicInteger();
-
-        Map<String, Integer> rightColumnIndices = new HashMap<>();
-        AtomicInteger rightLineNumber = new AtomicInteger(0);
-
-        s3Service.readFileLineByLine(rightPath, line -> {
-            int lineNum = rightLineNumber.incrementAndGet();
-
-            if (lineNum == 1) {
-                rightColumnIndices.putAll(parseHeaderAndFindIndices(line, rightColumns));
-            } else if (!line.trim().isEmpty()) {
-                Map<String, String> rowData = parseDataRow(line, rightColumnIndices);
-                if (!rowData.isEmpty()) {
-                    String rowKey = rightColumns.stream()
-                            .map(col -> rowData.getOrDefault(col, ""))
-                            .collect(Collectors.joining("|"));
-                    
-                    if (leftRowFilter.contains(rowKey)) {
-                        rightToLeftMatches.getAndIncrement();
-                    }
-                }
+        long sampleBytes = Math.max(1, Math.min(fileSize, ROW_SAMPLE_BYTES));
+        long rows = 0;
+
+        try (DelimitedRowReader reader = new DelimitedRowReader(s3Service.openFilePrefix(s3Path, sampleBytes), columns)) {
+            while (reader.next()) {
+                rows++;
             }
-        });
+        } catch (EOFException e) {
+            // A gzip sample ends partway through the compressed stream
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to sample {} file {}: {}", fileType, s3Path, e.getMessage());
+            rows = 0;
+        }
 
-        rightTotalRows = rightLineNumber.get() - 1;
+        // Unless the sample is the whole file, its last row is likely cut short
+        boolean wholeFile = sampleBytes >= fileSize;
+        long wholeRows = wholeFile ? rows : rows - 1;
 
-        int commonRows = Math.min(leftToRightMatches.get(), rightToLeftMatches.get());
-        int leftExclusiveRows = leftTotalRows - commonRows;
-        int rightExclusiveRows = rightTotalRows - commonRows;
+        if (wholeRows <= 0) {
+            LOGGER.warn("No rows sampled from {} file {}, sizing its Bloom filter for the configured {} rows",
+                    fileType, s3Path, reconciliationConfig.getEstimatedRows());
+            return reconciliationConfig.getEstimatedRows();
+        }
+
+        return wholeFile ? wholeRows : (long) Math.ceil((double) fileSize * wholeRows / sampleBytes);
+    }
+
+    private CSVComparisonResult bloomFilterResult(long leftTotalRows, long rightTotalRows,
+                                                  long leftToRightMatches, long rightToLeftMatches) {
+        CSVComparisonResult result = new CSVComparisonResult();
+
+        long commonRows = Math.min(leftToRightMatches, rightToLeftMatches);
+        long leftExclusiveRows = leftTotalRows - commonRows;
+        long rightExclusiveRows = rightTotalRows - commonRows;
 
         LOGGER.info("Bloom filter bidirectional matching - Left→Right: {}, Right→Left: {}, Using minimum: {}",
-                leftToRightMatches.get(), rightToLeftMatches.get(), commonRows);
+                leftToRightMatches, rightToLeftMatches, commonRows);
 
         result.setLeftFileRowCount(leftTotalRows);
         result.setRightFileRowCount(rightTotalRows);
@@ -401,8 +619,8 @@ public class AdaptiveCSVComparator implements CSVComparator {
         result.setSampleExclusiveLeftRowsS3Path(null);
         result.setSampleExclusiveRightRowsS3Path(null);
 
-        LOGGER.info("Bloom filter reconciliation completed - Left Total: {}, Right Total: {}, Common: {}, Left Only: {}, Right Only: {} (99% accurate)", 
-                leftTotalRows, rightTotalRows, commonRows, leftExclusiveRows, rightExclusiveRows);
+        LOGGER.info("Bloom filter reconciliation completed - Left Total: {}, Right Total: {}, Common: {}, Left Only: {}, Right Only: {} (false positive rate {})", 
+                leftTotalRows, rightTotalRows, commonRows, leftExclusiveRows, rightExclusiveRows, reconciliationConfig.getFalsePositiveRate());
 
         return result;
     }
@@ -418,50 +636,6 @@ public class AdaptiveCSVComparator implements CSVComparator {
         }
     }
 
-    private Map<String, String> parseDataRow(String dataLine, Map<String, Integer> columnIndices) {
-        Map<String, String> rowData = new HashMap<>();
-
-        try (CSVReader csvReader = new CSVReader(new StringReader(dataLine))) {
-            String[] columns = csvReader.readNext();
-            if (columns != null) {
-                for (Map.Entry<String, Integer> entry : columnIndices.entrySet()) {
-                    String columnName = entry.getKey();
-                    int columnIndex = entry.getValue();
-
-                    if (columnIndex < columns.length) {
-                        rowData.put(columnName, columns[columnIndex].trim());
-                    } else {
-                        LOGGER.warn("Column index {} out of bounds for column {}", columnIndex, columnName);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            LOGGER.error("Error parsing data line: {}", e.getMessage());
-        }
-
-        return rowData;
-    }
-
-    private Map<String, Integer> parseHeaderAndFindIndices(String headerLine, List<String> neededColumns) {
-        Map<String, Integer> columnIndices = new HashMap<>();
-
-        try (CSVReader csvReader = new CSVReader(new StringReader(headerLine))) {
-            String[] headers = csvReader.readNext();
-            if (headers != null) {
-                for (int i = 0; i < headers.length; i++) {
-                    String header = headers[i].trim();
-                    if (neededColumns.contains(header)) {
-                        columnIndices.put(header, i);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            LOGGER.error("Error parsing header line: {}", e.getMessage());
-        }
-
-        return columnIndices;
-    }
-
     private Map<String, String> transformToMap(String mapping) {
         try {
             if (mapping == null || mapping.trim().isEmpty()) {
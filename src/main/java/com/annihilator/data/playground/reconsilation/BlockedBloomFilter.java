@@ -0,0 +1,84 @@
+package com.annihilator.data.playground.reconsilation;
+
+/**
+ * Bloom filter over 128-bit row fingerprints, split into 64-byte blocks so that every probe of a key lands
+ * in a single cache line.
+ *
+ * The fingerprint already is a strong hash, so no hashing happens here: the top of the high word picks the
+ * block and the bits within it are derived from the low half of the high word and the top of the low word.
+ * The bottom of the low word is left alone, since rows are routed to shards by it and within one shard it
+ * barely varies. Not thread-safe.
+ */
+final class BlockedBloomFilter {
+
+    private static final int WORDS_PER_BLOCK = 8;
+    private static final int BLOCK_BITS = WORDS_PER_BLOCK * Long.SIZE;
+    private static final int MAX_HASHES = 16;
+
+    // Keys are spread unevenly over blocks, so a blocked filter needs some more bits for the same error rate
+    private static final double BLOCKING_OVERHEAD = 1.2;
+
+    private final long[] words;
+    private final long blocks;
+    private final int hashes;
+
+    /**
+     * @param expectedRows distinct rows the filter is sized for
+     * @param falsePositiveRate wanted chance of a row not added reading as present
+     * @param maxBytes upper bound on the filter's size, which raises the error rate when it applies
+     */
+    BlockedBloomFilter(long expectedRows, double falsePositiveRate, long maxBytes) {
+
+        double bitsPerRow = -Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        double bits = Math.max(1, expectedRows) * bitsPerRow * BLOCKING_OVERHEAD;
+        long maxBlocks = Math.max(1, Math.min(maxBytes / (WORDS_PER_BLOCK * Long.BYTES),
+                (Integer.MAX_VALUE - 8) / WORDS_PER_BLOCK));
+
+        this.blocks = Math.max(1, Math.min(maxBlocks, (long) Math.ceil(bits / BLOCK_BITS)));
+        this.hashes = (int) Math.max(1, Math.min(MAX_HASHES, Math.round(bitsPerRow * Math.log(2))));
+        this.words = new long[(int) (blocks * WORDS_PER_BLOCK)];
+    }
+
+    void put(long high, long low) {
+
+        int base = blockOf(high);
+        int position = (int) high;
+        int step = (int) (low >>> 32) | 1;
+
+        for (int i = 0; i < hashes; i++) {
+            int bit = position & (BLOCK_BITS - 1);
+            words[base + (bit >>> 6)] |= 1L << bit;
+            position += step;
+        }
+    }
+
+    boolean mightContain(long high, long low) {
+
+        int base = blockOf(high);
+        int position = (int) high;
+        int step = (int) (low >>> 32) | 1;
+
+        for (int i = 0; i < hashes; i++) {
+            int bit = position & (BLOCK_BITS - 1);
+            if ((words[base + (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+            position += step;
+        }
+
+        return true;
+    }
+
+    long sizeInBytes() {
+        return (long) words.length * Long.BYTES;
+    }
+
+    int hashCount() {
+        return hashes;
+    }
+
+    private int blockOf(long high) {
+        // Scales the top 32 bits into [0, blocks) with a multiply instead of a division
+        return (int) (((high >>> 32) * blocks) >>> 32) * WORDS_PER_BLOCK;
+    }
+}
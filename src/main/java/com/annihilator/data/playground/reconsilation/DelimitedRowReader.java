@@ -0,0 +1,516 @@
+package com.annihilator.data.playground.reconsilation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streams the rows of a comma- or tab-separated file and extracts only the projected columns.
+ *
+ * The delimiter is taken from the header: tab when it has more unquoted tabs than commas, comma otherwise, so
+ * both the connectors' CSV and Spark SQL's tab-separated output read correctly. Fields follow the quoting the
+ * previous OpenCSV parsing accepted: a field opened by a quote runs to the closing quote, newlines and
+ * delimiters included, with {@code ""} and {@code \"} standing for a quote inside it.
+ *
+ * Parsing works on the undecoded UTF-8 bytes. Fields outside the projection are skipped over without being
+ * copied, and each projected value is extracted, trimmed, into a buffer reused from row to row, so it is only
+ * valid until the next call to {@link #next()}.
+ *
+ * For parsing on several threads, {@link #nextBlock} cuts the data rows into blocks ending on a record boundary
+ * and {@link #blockParser()} makes a reader with the same header layout that parses such blocks.
+ */
+final class DelimitedRowReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte QUOTE = '"';
+    private static final byte ESCAPE = '\\';
+    private static final byte NEWLINE = '\n';
+    private static final int END_OF_INPUT = -1;
+
+    // Null for a block parser, which only parses the block it was last reset to
+    private final InputStream in;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    private final byte delimiter;
+    private final int[] fieldIndices;
+
+    // Projected column targets per field index; the extra last value slot collects header names
+    private final int[][] fieldTargets;
+    private final byte[][] values;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final int headerSlot;
+    private final int firstProjectedField;
+
+    private boolean fieldBlank;
+
+    /**
+     * Reads the header from {@code in}. A projected column that is not in the header reads as an empty value.
+     *
+     * @param columns the header names to project, in the order their values are exposed
+     */
+    DelimitedRowReader(InputStream in, List<String> columns) throws IOException {
+
+        this.in = in;
+        this.headerSlot = columns.size();
+        this.values = new byte[columns.size() + 1][64];
+        this.offsets = new int[columns.size() + 1];
+        this.lengths = new int[columns.size() + 1];
+
+        skipByteOrderMark();
+        this.delimiter = detectDelimiter();
+
+        List<String> header = readHeader();
+        this.fieldIndices = new int[columns.size()];
+
+        int firstField = Integer.MAX_VALUE;
+        int maxField = -1;
+
+        for (int i = 0; i < columns.size(); i++) {
+            // Like the previous map-based lookup, a duplicated header name resolves to its last occurrence
+            fieldIndices[i] = header.lastIndexOf(columns.get(i));
+            firstField = fieldIndices[i] >= 0 ? Math.min(firstField, fieldIndices[i]) : firstField;
+            maxField = Math.max(maxField, fieldIndices[i]);
+        }
+
+        this.firstProjectedField = firstField;
+        this.fieldTargets = new int[maxField + 1][];
+
+        for (int i = 0; i < columns.size(); i++) {
+            int field = fieldIndices[i];
+            if (field >= 0) {
+                int[] targets = fieldTargets[field];
+                fieldTargets[field] = targets == null ? new int[]{i} : append(targets, i);
+            }
+        }
+    }
+
+    private DelimitedRowReader(DelimitedRowReader layout) {
+
+        this.in = null;
+        this.delimiter = layout.delimiter;
+        this.fieldIndices = layout.fieldIndices;
+        this.fieldTargets = layout.fieldTargets;
+        this.firstProjectedField = layout.firstProjectedField;
+        this.headerSlot = layout.headerSlot;
+        this.values = new byte[headerSlot + 1][64];
+        this.offsets = new int[headerSlot + 1];
+        this.lengths = new int[headerSlot + 1];
+    }
+
+    /**
+     * @return a reader sharing this reader's header layout, to parse the blocks of {@link #nextBlock} handed
+     *         to it with {@link #reset}
+     */
+    DelimitedRowReader blockParser() {
+        return new DelimitedRowReader(this);
+    }
+
+    /**
+     * Points a block parser at a block of whole records; {@link #next()} then returns false at its end.
+     */
+    void reset(byte[] block) {
+        buffer = block;
+        position = 0;
+        limit = block.length;
+    }
+
+    char getDelimiter() {
+        return (char) delimiter;
+    }
+
+    /**
+     * @return the header position of the projected column, or -1 if the header does not have it
+     */
+    int getFieldIndex(int column) {
+        return fieldIndices[column];
+    }
+
+    int getColumnCount() {
+        return fieldIndices.length;
+    }
+
+    /**
+     * Advances to the next row holding at least one projected column, skipping blank lines.
+     *
+     * @return false at the end of the input
+     */
+    boolean next() throws IOException {
+
+        while (true) {
+
+            Arrays.fill(lengths, 0);
+
+            int fieldCount = 0;
+            boolean blank = true;
+            int end;
+
+            do {
+                end = readField(fieldCount < fieldTargets.length ? fieldTargets[fieldCount] : null);
+                blank &= fieldBlank && (end != delimiter || delimiter <= ' ');
+                fieldCount++;
+            } while (end == delimiter);
+
+            if (end == END_OF_INPUT && fieldCount == 1 && blank) {
+                return false;
+            }
+
+            if (!blank && firstProjectedField < fieldCount) {
+                return true;
+            }
+
+            if (end == END_OF_INPUT) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Cuts the next block of unread input, ending it at the first record boundary at or past
+     * {@code targetBytes} or at the end of the input. Record boundaries are found with the same quoting rules
+     * as {@link #next()}, so a quoted newline never splits a record between blocks.
+     *
+     * @return the block, or null at the end of the input
+     */
+    byte[] nextBlock(int targetBytes) throws IOException {
+
+        if (position == limit && !fill()) {
+            return null;
+        }
+
+        // Scanned bytes are counted from position, which refills move
+        int scanned = 0;
+        boolean quoted = false;
+        boolean started = false;
+
+        while (true) {
+
+            if (position + scanned == limit && !fill()) {
+                break;
+            }
+
+            byte b = buffer[position + scanned++];
+
+            if (quoted) {
+                if (b == QUOTE || b == ESCAPE) {
+                    int following = position + scanned < limit || fill() ? buffer[position + scanned] : END_OF_INPUT;
+                    if (following == QUOTE || (b == ESCAPE && following == ESCAPE)) {
+                        scanned++;
+                    } else if (b == QUOTE) {
+                        quoted = false;
+                    }
+                }
+            } else if (b == delimiter) {
+                started = false;
+            } else if (b == NEWLINE) {
+                started = false;
+                if (scanned >= targetBytes) {
+                    break;
+                }
+            } else if (b == QUOTE && !started) {
+                quoted = true;
+                started = true;
+            } else if (b != ' ') {
+                started = true;
+            }
+        }
+
+        byte[] block = Arrays.copyOfRange(buffer, position, position + scanned);
+        position += scanned;
+        return block;
+    }
+
+    byte[] valueBuffer(int column) {
+        return values[column];
+    }
+
+    int valueOffset(int column) {
+        return offsets[column];
+    }
+
+    int valueLength(int column) {
+        return lengths[column];
+    }
+
+    String value(int column) {
+        return new String(values[column], offsets[column], lengths[column], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the projected values joined with {@code |}, the form reconciliation samples are reported in
+     */
+    String rowText() {
+
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < fieldIndices.length; i++) {
+            if (i > 0) {
+                text.append('|');
+            }
+            text.append(value(i));
+        }
+
+        return text.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads one field, copying it into the value slots in {@code targets} when it is projected.
+     *
+     * @return the delimiter or newline that ended the field, or {@link #END_OF_INPUT}
+     */
+    private int readField(int[] targets) throws IOException {
+
+        int slot = targets == null ? -1 : targets[0];
+        boolean quoted = false;
+        boolean started = false;
+
+        fieldBlank = true;
+
+        while (true) {
+
+            if (position == limit && !fill()) {
+                return finishField(targets, END_OF_INPUT);
+            }
+
+            if (quoted) {
+                int start = position;
+
+                while (position < limit && buffer[position] != QUOTE && buffer[position] != ESCAPE) {
+                    position++;
+                }
+
+                copy(slot, start, position);
+
+                if (position == limit) {
+                    continue;
+                }
+
+                byte special = buffer[position++];
+                int following = peek();
+
+                if (following == QUOTE || (special == ESCAPE && following == ESCAPE)) {
+                    position++;
+                    copy(slot, (byte) following);
+                } else if (special == ESCAPE) {
+                    copy(slot, ESCAPE);
+                } else {
+                    quoted = false;
+                }
+                continue;
+            }
+
+            int start = position;
+
+            while (position < limit) {
+
+                byte b = buffer[position];
+
+                if (b == delimiter || b == NEWLINE) {
+                    copy(slot, start, position);
+                    position++;
+                    return finishField(targets, b);
+                }
+
+                if (b == QUOTE && !started) {
+                    // Anything before the opening quote is spaces, which trimming would drop anyway
+                    if (slot >= 0) {
+                        lengths[slot] = 0;
+                    }
+                    position++;
+                    quoted = true;
+                    started = true;
+                    fieldBlank = false;
+                    break;
+                }
+
+                if (b != ' ') {
+                    started = true;
+                }
+                if ((b & 0xFF) > ' ') {
+                    fieldBlank = false;
+                }
+
+                position++;
+            }
+
+            if (!quoted) {
+                copy(slot, start, position);
+            }
+        }
+    }
+
+    private int finishField(int[] targets, int end) {
+
+        if (targets == null) {
+            return end;
+        }
+
+        int slot = targets[0];
+        byte[] value = values[slot];
+        int from = 0;
+        int to = lengths[slot];
+
+        while (from < to && (value[from] & 0xFF) <= ' ') {
+            from++;
+        }
+        while (to > from && (value[to - 1] & 0xFF) <= ' ') {
+            to--;
+        }
+
+        offsets[slot] = from;
+        lengths[slot] = to - from;
+
+        for (int i = 1; i < targets.length; i++) {
+            int other = targets[i];
+            values[other] = ensureCapacity(values[other], lengths[slot]);
+            System.arraycopy(value, from, values[other], 0, lengths[slot]);
+            offsets[other] = 0;
+            lengths[other] = lengths[slot];
+        }
+
+        return end;
+    }
+
+    private void copy(int slot, int from, int to) {
+
+        if (slot < 0 || from == to) {
+            return;
+        }
+
+        int length = lengths[slot];
+        values[slot] = ensureCapacity(values[slot], length + to - from);
+        System.arraycopy(buffer, from, values[slot], length, to - from);
+        lengths[slot] = length + to - from;
+    }
+
+    private void copy(int slot, byte b) {
+
+        if (slot < 0) {
+            return;
+        }
+
+        values[slot] = ensureCapacity(values[slot], lengths[slot] + 1);
+        values[slot][lengths[slot]++] = b;
+    }
+
+    private int peek() throws IOException {
+        return position < limit || fill() ? buffer[position] & 0xFF : END_OF_INPUT;
+    }
+
+    /**
+     * Reads more input behind the unconsumed bytes, growing the buffer only when they fill it.
+     *
+     * @return false at the end of the input
+     */
+    private boolean fill() throws IOException {
+
+        if (in == null) {
+            return false;
+        }
+
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+
+        int read = in.read(buffer, limit, buffer.length - limit);
+
+        if (read < 0) {
+            return false;
+        }
+
+        limit += read;
+        return true;
+    }
+
+    private void skipByteOrderMark() throws IOException {
+
+        while (limit < 3 && fill()) {
+            // Buffer enough bytes to compare against the mark
+        }
+
+        if (limit >= 3 && (buffer[0] & 0xFF) == 0xEF && (buffer[1] & 0xFF) == 0xBB && (buffer[2] & 0xFF) == 0xBF) {
+            position = 3;
+        }
+    }
+
+    /**
+     * Counts unquoted commas and tabs in the header line without consuming it.
+     */
+    private byte detectDelimiter() throws IOException {
+
+        int commas = 0;
+        int tabs = 0;
+        boolean inQuotes = false;
+
+        for (int i = position; ; i++) {
+
+            if (i == limit) {
+                int scanned = i - position;
+                if (!fill()) {
+                    break;
+                }
+                i = position + scanned;
+            }
+
+            byte b = buffer[i];
+
+            if (b == QUOTE) {
+                inQuotes = !inQuotes;
+            } else if (!inQuotes) {
+                if (b == NEWLINE) {
+                    break;
+                } else if (b == ',') {
+                    commas++;
+                } else if (b == '\t') {
+                    tabs++;
+                }
+            }
+        }
+
+        return tabs > commas ? (byte) '\t' : (byte) ',';
+    }
+
+    private List<String> readHeader() throws IOException {
+
+        List<String> header = new ArrayList<>();
+        int[] headerTarget = {headerSlot};
+        int end;
+
+        do {
+            lengths[headerSlot] = 0;
+            end = readField(headerTarget);
+            header.add(value(headerSlot));
+        } while (end == delimiter);
+
+        return header;
+    }
+
+    private static byte[] ensureCapacity(byte[] value, int capacity) {
+        return capacity <= value.length ? value : Arrays.copyOf(value, Math.max(capacity, value.length * 2));
+    }
+
+    private static int[] append(int[] targets, int target) {
+        int[] grown = Arrays.copyOf(targets, targets.length + 1);
+        grown[targets.length] = target;
+        return grown;
+    }
+}
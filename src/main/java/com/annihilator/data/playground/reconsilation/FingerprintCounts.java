@@ -0,0 +1,153 @@
+package com.annihilator.data.playground.reconsilation;
+
+/**
+ * Per-side occurrence counts keyed by {@link RowFingerprint}, in an open-addressing table of primitive
+ * arrays: 24 bytes per slot for both sides together, against hundreds of bytes for a row string boxed into
+ * a {@code HashMap} per side.
+ *
+ * Slots returned by {@link #incrementLeft} and {@link #incrementRight} are only valid until the next
+ * increment, which may grow the table.
+ */
+final class FingerprintCounts {
+
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final float LOAD_FACTOR = 0.7f;
+
+    private long[] highs;
+    private long[] lows;
+    private int[] leftCounts;
+    private int[] rightCounts;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    FingerprintCounts(int expectedRows) {
+        allocate(tableSizeFor(Math.max(16, (int) Math.min(MAX_CAPACITY, expectedRows / LOAD_FACTOR + 1))));
+    }
+
+    int incrementLeft(long high, long low) {
+        int slot = insert(high, low);
+        leftCounts[slot]++;
+        return slot;
+    }
+
+    int incrementRight(long high, long low) {
+        int slot = insert(high, low);
+        rightCounts[slot]++;
+        return slot;
+    }
+
+    /**
+     * @return the slot holding the fingerprint, or -1 if it was never counted
+     */
+    int find(long high, long low) {
+
+        if (high == 0 && low == 0) {
+            low = 1;
+        }
+
+        for (int slot = (int) high & mask; ; slot = (slot + 1) & mask) {
+            if (highs[slot] == high && lows[slot] == low) {
+                return slot;
+            }
+            if (highs[slot] == 0 && lows[slot] == 0) {
+                return -1;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return highs.length;
+    }
+
+    boolean isUsed(int slot) {
+        return highs[slot] != 0 || lows[slot] != 0;
+    }
+
+    long highAt(int slot) {
+        return highs[slot];
+    }
+
+    long lowAt(int slot) {
+        return lows[slot];
+    }
+
+    int leftCount(int slot) {
+        return leftCounts[slot];
+    }
+
+    int rightCount(int slot) {
+        return rightCounts[slot];
+    }
+
+    private int insert(long high, long low) {
+
+        // (0, 0) marks an empty slot
+        if (high == 0 && low == 0) {
+            low = 1;
+        }
+
+        int slot = (int) high & mask;
+
+        while (highs[slot] != 0 || lows[slot] != 0) {
+            if (highs[slot] == high && lows[slot] == low) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size >= resizeAt) {
+            grow();
+            return insert(high, low);
+        }
+
+        highs[slot] = high;
+        lows[slot] = low;
+        size++;
+        return slot;
+    }
+
+    private void grow() {
+
+        if (highs.length == MAX_CAPACITY) {
+            throw new IllegalStateException("Too many distinct rows for exact matching: " + size);
+        }
+
+        long[] oldHighs = highs;
+        long[] oldLows = lows;
+        int[] oldLeftCounts = leftCounts;
+        int[] oldRightCounts = rightCounts;
+
+        allocate(oldHighs.length * 2);
+
+        for (int i = 0; i < oldHighs.length; i++) {
+            if (oldHighs[i] != 0 || oldLows[i] != 0) {
+                int slot = (int) oldHighs[i] & mask;
+                while (highs[slot] != 0 || lows[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                highs[slot] = oldHighs[i];
+                lows[slot] = oldLows[i];
+                leftCounts[slot] = oldLeftCounts[i];
+                rightCounts[slot] = oldRightCounts[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        highs = new long[capacity];
+        lows = new long[capacity];
+        leftCounts = new int[capacity];
+        rightCounts = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int minimum) {
+        return minimum >= MAX_CAPACITY ? MAX_CAPACITY : Integer.highestOneBit(minimum - 1) << 1;
+    }
+}
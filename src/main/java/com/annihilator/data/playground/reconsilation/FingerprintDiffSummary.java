@@ -0,0 +1,134 @@
+package com.annihilator.data.playground.reconsilation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Distinct row counts of an exact diff, with up to a fixed number of sample fingerprints per category. Built
+ * from one or more {@link FingerprintCounts} tables whose fingerprints do not overlap, such as the partitions
+ * or shards of a single diff.
+ *
+ * The samples of a category are its smallest fingerprints, in the order {@link SampleRowTexts} keeps, so they
+ * do not depend on how the diff was split up and their text has usually been captured already.
+ */
+final class FingerprintDiffSummary {
+
+    private final int maxSamples;
+
+    private long commonRows;
+    private long leftExclusiveRows;
+    private long rightExclusiveRows;
+    // Largest first, so the sample to drop is at the head
+    private final PriorityQueue<Sample> commonSamples = new PriorityQueue<>(Sample.ORDER.reversed());
+    private final PriorityQueue<Sample> leftExclusiveSamples = new PriorityQueue<>(Sample.ORDER.reversed());
+    private final PriorityQueue<Sample> rightExclusiveSamples = new PriorityQueue<>(Sample.ORDER.reversed());
+
+    FingerprintDiffSummary(int maxSamples) {
+        this.maxSamples = maxSamples;
+    }
+
+    void add(FingerprintCounts counts) {
+
+        for (int slot = 0; slot < counts.capacity(); slot++) {
+
+            if (!counts.isUsed(slot)) {
+                continue;
+            }
+
+            int leftCount = counts.leftCount(slot);
+            int rightCount = counts.rightCount(slot);
+            PriorityQueue<Sample> samples;
+
+            if (leftCount > 0 && rightCount > 0) {
+                commonRows++;
+                samples = commonSamples;
+            } else if (leftCount > 0) {
+                leftExclusiveRows++;
+                samples = leftExclusiveSamples;
+            } else {
+                rightExclusiveRows++;
+                samples = rightExclusiveSamples;
+            }
+
+            addSample(samples, new Sample(counts.highAt(slot), counts.lowAt(slot), leftCount, rightCount));
+        }
+    }
+
+    void merge(FingerprintDiffSummary other) {
+
+        commonRows += other.commonRows;
+        leftExclusiveRows += other.leftExclusiveRows;
+        rightExclusiveRows += other.rightExclusiveRows;
+
+        addSamples(commonSamples, other.commonSamples);
+        addSamples(leftExclusiveSamples, other.leftExclusiveSamples);
+        addSamples(rightExclusiveSamples, other.rightExclusiveSamples);
+    }
+
+    long getCommonRows() {
+        return commonRows;
+    }
+
+    long getLeftExclusiveRows() {
+        return leftExclusiveRows;
+    }
+
+    long getRightExclusiveRows() {
+        return rightExclusiveRows;
+    }
+
+    List<Sample> getCommonSamples() {
+        return sorted(commonSamples);
+    }
+
+    List<Sample> getLeftExclusiveSamples() {
+        return sorted(leftExclusiveSamples);
+    }
+
+    List<Sample> getRightExclusiveSamples() {
+        return sorted(rightExclusiveSamples);
+    }
+
+    private void addSamples(PriorityQueue<Sample> samples, PriorityQueue<Sample> more) {
+        for (Sample sample : more) {
+            addSample(samples, sample);
+        }
+    }
+
+    private void addSample(PriorityQueue<Sample> samples, Sample sample) {
+
+        if (samples.size() < maxSamples) {
+            samples.add(sample);
+        } else if (maxSamples > 0 && Sample.ORDER.compare(sample, samples.peek()) < 0) {
+            samples.poll();
+            samples.add(sample);
+        }
+    }
+
+    private static List<Sample> sorted(PriorityQueue<Sample> samples) {
+        List<Sample> list = new ArrayList<>(samples);
+        list.sort(Sample.ORDER);
+        return list;
+    }
+
+    static final class Sample {
+
+        // As UUIDs of the high and low words compare
+        static final Comparator<Sample> ORDER = Comparator.<Sample>comparingLong(sample -> sample.high)
+                .thenComparingLong(sample -> sample.low);
+
+        final long high;
+        final long low;
+        final int leftCount;
+        final int rightCount;
+
+        Sample(long high, long low, int leftCount, int rightCount) {
+            this.high = high;
+            this.low = low;
+            this.leftCount = leftCount;
+            this.rightCount = rightCount;
+        }
+    }
+}
@@ -0,0 +1,474 @@
+package com.annihilator.data.playground.reconsilation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+/**
+ * Reads both sides of a reconciliation at once and parses them on several threads.
+ *
+ * A reader thread per side cuts its file into blocks of whole records, which parse workers take from a shared
+ * bounded queue, so a slow download and a slow parse each only hold back the other side of the queue. For
+ * aggregation, workers fingerprint their rows and route them in batches to a fixed number of shards by
+ * {@link SpilledFingerprintDiff#shardOf}; each shard is drained by its own thread, so whatever a shard
+ * aggregates into is only ever touched by that thread and needs no locking.
+ *
+ * A failure on any thread stops the others and is rethrown from the call that started the run.
+ */
+final class ParallelRowPipeline {
+
+    static final int LEFT = 0;
+    static final int RIGHT = 1;
+
+    private static final int BLOCK_BYTES = 1024 * 1024;
+    private static final int BATCH_SIZE = 1024;
+    private static final Block END_OF_BLOCKS = new Block(LEFT, null, null);
+    private static final Batch END_OF_BATCHES = new Batch(LEFT, 0);
+
+    private final int parseWorkers;
+    private final int shards;
+
+    /**
+     * @param parseWorkers threads parsing blocks into rows
+     * @param shards aggregation shards, each drained by a thread of its own
+     */
+    ParallelRowPipeline(int parseWorkers, int shards) {
+        this.parseWorkers = parseWorkers;
+        this.shards = shards;
+    }
+
+    int getShards() {
+        return shards;
+    }
+
+    /**
+     * Fingerprints every row of both sources and hands each fingerprint to the sink of its shard, on that
+     * shard's thread.
+     *
+     * @return the left and right row counts
+     */
+    long[] aggregate(Source left, Source right, ShardSink[] sinks) throws IOException {
+        return aggregate(left, right, sinks, null);
+    }
+
+    /**
+     * Aggregates like {@link #aggregate(Source, Source, ShardSink[])}, capturing the text of each side's
+     * smallest fingerprints on the way.
+     *
+     * @param samples where row texts are captured, or null
+     */
+    long[] aggregate(Source left, Source right, ShardSink[] sinks, SampleRowTexts samples) throws IOException {
+
+        if (sinks.length != shards) {
+            throw new IllegalArgumentException("Expected " + shards + " shard sinks, got " + sinks.length);
+        }
+
+        List<BlockingQueue<Batch>> queues = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            queues.add(new ArrayBlockingQueue<>(4 * parseWorkers));
+        }
+
+        return run(left, right, () -> new Router(queues, samples != null ? samples.newCollector() : null),
+                side -> false, queues, sinks);
+    }
+
+    /**
+     * Hands every row of both sources to a row handler, with a handler of its own for each parse worker.
+     * A null source is skipped.
+     *
+     * @return the left and right row counts
+     */
+    long[] scan(Source left, Source right, Supplier<RowHandler> handlers) throws IOException {
+        return scan(left, right, handlers, side -> false);
+    }
+
+    /**
+     * Scans like {@link #scan(Source, Source, Supplier)}, but stops reading a side once {@code done} holds
+     * for it; rows of blocks already read may still be handed over.
+     *
+     * @return the left and right rows handed over
+     */
+    long[] scan(Source left, Source right, Supplier<RowHandler> handlers, IntPredicate done) throws IOException {
+        return run(left, right, handlers, done, null, null);
+    }
+
+    /**
+     * Runs a task for every shard at once, such as diffing the spill partitions each shard owns.
+     *
+     * @return the results in shard order
+     */
+    <T> List<T> forEachShard(ShardTask<T> task) throws IOException {
+
+        ExecutorService pool = newPool(shards);
+
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int shard = 0; shard < shards; shard++) {
+                int current = shard;
+                futures.add(pool.submit(() -> task.run(current)));
+            }
+
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reconciling shards", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private long[] run(Source left, Source right, Supplier<RowHandler> handlers, IntPredicate done,
+                       List<BlockingQueue<Batch>> shardQueues, ShardSink[] sinks) throws IOException {
+
+        Source[] sources = {left, right};
+        int readers = (left != null ? 1 : 0) + (right != null ? 1 : 0);
+        int threads = readers + parseWorkers + (shardQueues != null ? shards : 0);
+
+        BlockingQueue<Block> blocks = new ArrayBlockingQueue<>(2 * parseWorkers);
+        AtomicInteger runningReaders = new AtomicInteger(readers);
+        AtomicInteger runningWorkers = new AtomicInteger(parseWorkers);
+        AtomicLong[] rows = {new AtomicLong(), new AtomicLong()};
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        ExecutorService pool = newPool(threads);
+
+        try {
+            for (int side = LEFT; side <= RIGHT; side++) {
+                Source source = sources[side];
+                int current = side;
+                if (source != null) {
+                    submit(pool, failure, () -> {
+                        try {
+                            readBlocks(current, source, blocks, done);
+                        } finally {
+                            // The last reader out releases every worker, even after a failure
+                            if (runningReaders.decrementAndGet() == 0) {
+                                for (int i = 0; i < parseWorkers; i++) {
+                                    blocks.put(END_OF_BLOCKS);
+                                }
+                            }
+                        }
+                    });
+                }
+            }
+
+            if (readers == 0) {
+                for (int i = 0; i < parseWorkers; i++) {
+                    blocks.add(END_OF_BLOCKS);
+                }
+            }
+
+            for (int i = 0; i < parseWorkers; i++) {
+                submit(pool, failure, () -> {
+                    try {
+                        parseBlocks(blocks, handlers.get(), done, rows);
+                    } finally {
+                        if (runningWorkers.decrementAndGet() == 0 && shardQueues != null) {
+                            for (BlockingQueue<Batch> queue : shardQueues) {
+                                queue.put(END_OF_BATCHES);
+                            }
+                        }
+                    }
+                });
+            }
+
+            if (shardQueues != null) {
+                for (int shard = 0; shard < shards; shard++) {
+                    BlockingQueue<Batch> queue = shardQueues.get(shard);
+                    ShardSink sink = sinks[shard];
+                    submit(pool, failure, () -> drainBatches(queue, sink));
+                }
+            }
+
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading reconciliation files", e);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (failure.get() != null) {
+            throw rethrow(failure.get());
+        }
+
+        return new long[]{rows[LEFT].get(), rows[RIGHT].get()};
+    }
+
+    private static void readBlocks(int side, Source source, BlockingQueue<Block> blocks, IntPredicate done)
+            throws IOException, InterruptedException {
+
+        try (DelimitedRowReader reader = new DelimitedRowReader(source.open(), source.columns)) {
+            byte[] block;
+            while (!done.test(side) && (block = reader.nextBlock(BLOCK_BYTES)) != null) {
+                blocks.put(new Block(side, reader, block));
+            }
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                throw (InterruptedException) e;
+            }
+            throw new IOException("Failed to read " + source.name + " file", e);
+        }
+    }
+
+    private static void parseBlocks(BlockingQueue<Block> blocks, RowHandler handler, IntPredicate done, AtomicLong[] rows)
+            throws IOException, InterruptedException {
+
+        DelimitedRowReader[] parsers = new DelimitedRowReader[2];
+        long[] parsed = new long[2];
+
+        while (true) {
+            Block block = blocks.take();
+
+            if (block == END_OF_BLOCKS) {
+                break;
+            }
+
+            if (done.test(block.side)) {
+                continue;
+            }
+
+            DelimitedRowReader parser = parsers[block.side];
+            if (parser == null) {
+                parser = block.layout.blockParser();
+                parsers[block.side] = parser;
+            }
+
+            parser.reset(block.bytes);
+            while (parser.next()) {
+                handler.accept(block.side, parser);
+                parsed[block.side]++;
+            }
+        }
+
+        handler.finish();
+
+        rows[LEFT].addAndGet(parsed[LEFT]);
+        rows[RIGHT].addAndGet(parsed[RIGHT]);
+    }
+
+    private static void drainBatches(BlockingQueue<Batch> queue, ShardSink sink) throws InterruptedException {
+        while (true) {
+            Batch batch = queue.take();
+
+            if (batch == END_OF_BATCHES) {
+                return;
+            }
+
+            for (int i = 0; i < batch.size; i += 2) {
+                sink.accept(batch.side, batch.fingerprints[i], batch.fingerprints[i + 1]);
+            }
+        }
+    }
+
+    private static void submit(ExecutorService pool, AtomicReference<Throwable> failure, PipelineTask task) {
+        try {
+            pool.submit(() -> {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    // Only the first failure counts; the rest are mostly interruptions caused by it
+                    if (failure.compareAndSet(null, t)) {
+                        pool.shutdownNow();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // A task that already failed has shut the pool down; the run is over
+            if (failure.get() == null) {
+                throw e;
+            }
+        }
+    }
+
+    private static ExecutorService newPool(int threads) {
+        AtomicInteger created = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "reconciliation-pipeline-" + created.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static IOException rethrow(Throwable failure) {
+        if (failure instanceof IOException) {
+            return (IOException) failure;
+        }
+        if (failure instanceof UncheckedIOException) {
+            return ((UncheckedIOException) failure).getCause();
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        return new IOException("Reconciliation pipeline failed", failure);
+    }
+
+    /**
+     * A file to read, with the header names projected from it.
+     */
+    static final class Source {
+
+        final String name;
+        final Callable<InputStream> opener;
+        final List<String> columns;
+
+        Source(String name, Callable<InputStream> opener, List<String> columns) {
+            this.name = name;
+            this.opener = opener;
+            this.columns = columns;
+        }
+
+        private InputStream open() throws Exception {
+            return opener.call();
+        }
+    }
+
+    /**
+     * Receives the rows parsed by one worker. The row is only valid during the call.
+     */
+    interface RowHandler {
+
+        void accept(int side, DelimitedRowReader row);
+
+        /**
+         * Called once the worker has parsed its last row.
+         */
+        default void finish() {
+        }
+    }
+
+    @FunctionalInterface
+    interface ShardSink {
+        void accept(int side, long high, long low);
+    }
+
+    @FunctionalInterface
+    interface ShardTask<T> {
+        T run(int shard) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface PipelineTask {
+        void run() throws Exception;
+    }
+
+    /**
+     * Fingerprints a worker's rows into a batch per side and shard, queueing each batch once it fills.
+     */
+    private final class Router implements RowHandler {
+
+        private final List<BlockingQueue<Batch>> queues;
+        private final Batch[][] batches = new Batch[2][shards];
+        private final RowFingerprint fingerprint = new RowFingerprint();
+        private final SampleRowTexts.Collector samples;
+
+        private Router(List<BlockingQueue<Batch>> queues, SampleRowTexts.Collector samples) {
+            this.queues = queues;
+            this.samples = samples;
+            for (int shard = 0; shard < shards; shard++) {
+                batches[LEFT][shard] = new Batch(LEFT, BATCH_SIZE);
+                batches[RIGHT][shard] = new Batch(RIGHT, BATCH_SIZE);
+            }
+        }
+
+        @Override
+        public void accept(int side, DelimitedRowReader row) {
+
+            fingerprint.compute(row);
+
+            if (samples != null) {
+                samples.offer(side, fingerprint.high(), fingerprint.low(), row);
+            }
+
+            int shard = SpilledFingerprintDiff.shardOf(fingerprint.low(), shards);
+            Batch batch = batches[side][shard];
+
+            batch.fingerprints[batch.size++] = fingerprint.high();
+            batch.fingerprints[batch.size++] = fingerprint.low();
+
+            if (batch.size == batch.fingerprints.length) {
+                queue(shard, batch);
+                batches[side][shard] = new Batch(side, BATCH_SIZE);
+            }
+        }
+
+        @Override
+        public void finish() {
+            for (int shard = 0; shard < shards; shard++) {
+                queue(shard, batches[LEFT][shard]);
+                queue(shard, batches[RIGHT][shard]);
+            }
+            if (samples != null) {
+                samples.finish();
+            }
+        }
+
+        private void queue(int shard, Batch batch) {
+
+            if (batch.size == 0) {
+                return;
+            }
+
+            try {
+                queues.get(shard).put(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while queueing fingerprints", e);
+            }
+        }
+    }
+
+    private static final class Block {
+
+        final int side;
+        final DelimitedRowReader layout;
+        final byte[] bytes;
+
+        Block(int side, DelimitedRowReader layout, byte[] bytes) {
+            this.side = side;
+            this.layout = layout;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Fingerprints of one side, as high and low words in turn.
+     */
+    private static final class Batch {
+
+        final int side;
+        final long[] fingerprints;
+        int size;
+
+        Batch(int side, int rows) {
+            this.side = side;
+            this.fingerprints = new long[2 * rows];
+        }
+    }
+}
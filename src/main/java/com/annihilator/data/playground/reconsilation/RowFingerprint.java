@@ -0,0 +1,132 @@
+package com.annihilator.data.playground.reconsilation;
+
+/**
+ * 128-bit fingerprint of a row's mapped column values, so rows can be counted without keeping their text.
+ *
+ * The values' UTF-8 bytes are fed through the MurmurHash3 x64 128-bit mixing functions, eight bytes per word,
+ * with each value followed by its length so that {@code ["ab", "c"]} and {@code ["a", "bc"]} differ. At 128
+ * bits a collision between two distinct rows is not a practical concern even for billions of rows.
+ *
+ * Instances are reused from row to row and are not thread-safe.
+ */
+final class RowFingerprint {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private static final long SEED = 0x9747b28c;
+
+    private long h1;
+    private long h2;
+    private long pendingWord;
+    private boolean hasPendingWord;
+    private long words;
+
+    private long high;
+    private long low;
+
+    void compute(DelimitedRowReader row) {
+
+        h1 = SEED;
+        h2 = SEED;
+        hasPendingWord = false;
+        words = 0;
+
+        for (int column = 0; column < row.getColumnCount(); column++) {
+
+            byte[] value = row.valueBuffer(column);
+            int offset = row.valueOffset(column);
+            int length = row.valueLength(column);
+            int end = offset + length;
+            int i = offset;
+
+            for (; i + Long.BYTES <= end; i += Long.BYTES) {
+                word((value[i] & 0xFFL)
+                        | (value[i + 1] & 0xFFL) << 8
+                        | (value[i + 2] & 0xFFL) << 16
+                        | (value[i + 3] & 0xFFL) << 24
+                        | (value[i + 4] & 0xFFL) << 32
+                        | (value[i + 5] & 0xFFL) << 40
+                        | (value[i + 6] & 0xFFL) << 48
+                        | (value[i + 7] & 0xFFL) << 56);
+            }
+
+            long tail = 0;
+            for (int shift = 0; i < end; i++, shift += 8) {
+                tail |= (value[i] & 0xFFL) << shift;
+            }
+
+            word(tail);
+            word(length);
+        }
+
+        if (hasPendingWord) {
+            h1 ^= Long.rotateLeft(pendingWord * C1, 31) * C2;
+        }
+
+        h1 ^= words * Long.BYTES;
+        h2 ^= words * Long.BYTES;
+
+        h1 += h2;
+        h2 += h1;
+
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+
+        h1 += h2;
+        h2 += h1;
+
+        high = h1;
+        low = h2;
+    }
+
+    long high() {
+        return high;
+    }
+
+    long low() {
+        return low;
+    }
+
+    private void word(long k) {
+
+        words++;
+
+        if (!hasPendingWord) {
+            pendingWord = k;
+            hasPendingWord = true;
+            return;
+        }
+
+        hasPendingWord = false;
+
+        long k1 = pendingWord;
+        long k2 = k;
+
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        h1 ^= k1;
+
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        h1 = h1 * 5 + 0x52dce729;
+
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        h2 ^= k2;
+
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
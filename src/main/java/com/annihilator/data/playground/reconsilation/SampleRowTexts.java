@@ -0,0 +1,108 @@
+package com.annihilator.data.playground.reconsilation;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Text of the rows with the smallest fingerprints of each side, captured while the rows are aggregated.
+ *
+ * {@link FingerprintDiffSummary} samples the smallest fingerprints of each category, and a category's smallest
+ * fingerprints on a side are among that side's smallest ones unless the category is rare, so most samples can
+ * be printed without reading the files again. Fingerprints are ordered as {@link UUID}s of their high and low
+ * words.
+ */
+final class SampleRowTexts {
+
+    private final int rowsPerSide;
+    private final Bottom[] sides;
+
+    SampleRowTexts(int rowsPerSide) {
+        this.rowsPerSide = rowsPerSide;
+        this.sides = new Bottom[]{new Bottom(rowsPerSide), new Bottom(rowsPerSide)};
+    }
+
+    /**
+     * @return a collector for one parse worker, merged back by {@link Collector#finish()}
+     */
+    Collector newCollector() {
+        return new Collector();
+    }
+
+    /**
+     * @return the row's text, or null when neither side captured it
+     */
+    synchronized String text(long high, long low) {
+
+        UUID key = new UUID(high, low);
+        String text = sides[ParallelRowPipeline.LEFT].texts.get(key);
+
+        return text != null ? text : sides[ParallelRowPipeline.RIGHT].texts.get(key);
+    }
+
+    private synchronized void merge(Bottom[] local) {
+        for (int side = ParallelRowPipeline.LEFT; side <= ParallelRowPipeline.RIGHT; side++) {
+            for (Map.Entry<UUID, String> entry : local[side].texts.entrySet()) {
+                sides[side].offer(entry.getKey().getMostSignificantBits(), entry.getKey().getLeastSignificantBits(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Captures a worker's rows; not thread-safe.
+     */
+    final class Collector {
+
+        private final Bottom[] local = {new Bottom(rowsPerSide), new Bottom(rowsPerSide)};
+
+        void offer(int side, long high, long low, DelimitedRowReader row) {
+
+            Bottom bottom = local[side];
+
+            // Past the first rows almost every fingerprint is rejected here, before any text is built
+            if (bottom.accepts(high, low)) {
+                bottom.offer(high, low, row.rowText());
+            }
+        }
+
+        void finish() {
+            merge(local);
+        }
+    }
+
+    /**
+     * The smallest fingerprints offered so far, up to a limit, with their text.
+     */
+    private static final class Bottom {
+
+        private final int limit;
+        private final TreeMap<UUID, String> texts = new TreeMap<>();
+        private long maxHigh;
+        private long maxLow;
+
+        Bottom(int limit) {
+            this.limit = limit;
+        }
+
+        boolean accepts(long high, long low) {
+            return texts.size() < limit || high < maxHigh || (high == maxHigh && low < maxLow);
+        }
+
+        void offer(long high, long low, String text) {
+
+            if (limit == 0 || !accepts(high, low) || texts.putIfAbsent(new UUID(high, low), text) != null) {
+                return;
+            }
+
+            if (texts.size() > limit) {
+                texts.pollLastEntry();
+            }
+
+            if (texts.size() == limit) {
+                UUID max = texts.lastKey();
+                maxHigh = max.getMostSignificantBits();
+                maxLow = max.getLeastSignificantBits();
+            }
+        }
+    }
+}
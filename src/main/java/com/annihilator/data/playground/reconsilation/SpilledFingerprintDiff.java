@@ -0,0 +1,263 @@
+package com.annihilator.data.playground.reconsilation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Exact row diff for inputs too large to count in memory at once.
+ *
+ * Each side's row fingerprints are hash-partitioned into spill files in a private work directory, 16 bytes
+ * per row. Since equal rows always land in the same partition, the partitions can then be diffed one pair at
+ * a time in a {@link FingerprintCounts} table, so heap is bounded by the distinct rows of a single partition
+ * rather than of the whole input.
+ *
+ * Partitions can be split between shards, shard {@code s} of {@code n} owning the partitions {@code p} with
+ * {@code p % n == s}. Each shard then writes and diffs only its own partition files, so shards need no
+ * coordination as long as every fingerprint reaches the shard {@link #shardOf} picks for it.
+ */
+final class SpilledFingerprintDiff implements Closeable {
+
+    private static final int FINGERPRINT_BYTES = 2 * Long.BYTES;
+    private static final int WRITE_BUFFER_BYTES = 32 * 1024;
+    private static final int READ_BUFFER_BYTES = 1024 * 1024;
+    private static final int INITIAL_DISTINCT_ROWS = 1 << 20;
+
+    private final Path directory;
+    private final int partitions;
+
+    /**
+     * @param parent directory the work directory is created in
+     * @param partitions number of partitions each side is spilled into
+     */
+    SpilledFingerprintDiff(Path parent, int partitions) throws IOException {
+        Files.createDirectories(parent);
+        this.directory = Files.createTempDirectory(parent, "reconciliation-");
+        this.partitions = partitions;
+    }
+
+    int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * @return the shard of {@code shards} that owns the partition of a fingerprint with this low word
+     */
+    static int shardOf(long low, int shards) {
+        return (int) Long.remainderUnsigned(low, shards);
+    }
+
+    SpillWriter openLeft() throws IOException {
+        return openLeft(0, 1);
+    }
+
+    SpillWriter openRight() throws IOException {
+        return openRight(0, 1);
+    }
+
+    SpillWriter openLeft(int shard, int shards) throws IOException {
+        return new SpillWriter("left", shard, shards);
+    }
+
+    SpillWriter openRight(int shard, int shards) throws IOException {
+        return new SpillWriter("right", shard, shards);
+    }
+
+    FingerprintDiffSummary diff(int maxSamples) throws IOException {
+        return diff(0, 1, maxSamples);
+    }
+
+    /**
+     * Diffs a shard's spilled partitions one by one, deleting each pair of spill files once it is counted.
+     *
+     * @param maxSamples the most fingerprints kept per category, for resolving sample rows afterwards
+     */
+    FingerprintDiffSummary diff(int shard, int shards, int maxSamples) throws IOException {
+
+        FingerprintDiffSummary summary = new FingerprintDiffSummary(maxSamples);
+
+        for (int partition = shard; partition < partitions; partition += shards) {
+
+            Path left = file("left", partition);
+            Path right = file("right", partition);
+
+            long leftBytes = Files.size(left);
+            long rightBytes = Files.size(right);
+
+            // Sized from the row count, but capped since duplicates can make it far larger than the distinct count
+            FingerprintCounts counts = new FingerprintCounts(
+                    (int) Math.min(INITIAL_DISTINCT_ROWS, Math.max(leftBytes, rightBytes) / FINGERPRINT_BYTES));
+
+            read(left, (high, low) -> counts.incrementLeft(high, low));
+            read(right, (high, low) -> counts.incrementRight(high, low));
+
+            summary.add(counts);
+
+            Files.delete(left);
+            Files.delete(right);
+        }
+
+        return summary;
+    }
+
+    /**
+     * Replays a shard's spilled left fingerprints, for using the spill as a plain buffer of one side.
+     */
+    void forEachLeft(int shard, int shards, FingerprintConsumer consumer) throws IOException {
+        for (int partition = shard; partition < partitions; partition += shards) {
+            read(file("left", partition), consumer);
+        }
+    }
+
+    /**
+     * Deletes the work directory and whatever spill files are left in it.
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (!Files.exists(directory)) {
+            return;
+        }
+
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private Path file(String side, int partition) {
+        return directory.resolve(String.format("%s-%05d.fp", side, partition));
+    }
+
+    private int partitionOf(long low) {
+        // Slots in FingerprintCounts come from the high word, so partitioning uses the low word. With the
+        // partition count a multiple of the shard count, p % shards equals shardOf(low, shards).
+        return (int) Long.remainderUnsigned(low, partitions);
+    }
+
+    private void read(Path file, FingerprintConsumer consumer) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.remaining() >= FINGERPRINT_BYTES) {
+                    consumer.accept(buffer.getLong(), buffer.getLong());
+                }
+                buffer.compact();
+            }
+        }
+
+        if (buffer.position() > 0) {
+            throw new IOException("Truncated spill file " + file);
+        }
+    }
+
+    @FunctionalInterface
+    interface FingerprintConsumer {
+        void accept(long high, long low);
+    }
+
+    /**
+     * Appends one side's fingerprints to a shard's partition files through a small direct buffer per partition.
+     * Not thread-safe.
+     */
+    final class SpillWriter implements Closeable {
+
+        private final FileChannel[] channels = new FileChannel[partitions];
+        private final ByteBuffer[] buffers = new ByteBuffer[partitions];
+
+        private SpillWriter(String side, int shard, int shards) throws IOException {
+
+            if (partitions % shards != 0) {
+                throw new IllegalArgumentException(partitions + " partitions cannot be split between " + shards + " shards");
+            }
+
+            try {
+                for (int partition = shard; partition < partitions; partition += shards) {
+                    channels[partition] = FileChannel.open(file(side, partition),
+                            StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                    buffers[partition] = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+                }
+            } catch (IOException e) {
+                closeChannels();
+                throw e;
+            }
+        }
+
+        /**
+         * @throws UncheckedIOException if a full buffer cannot be written out
+         */
+        void add(long high, long low) {
+
+            int partition = partitionOf(low);
+            ByteBuffer buffer = buffers[partition];
+
+            if (buffer.remaining() < FINGERPRINT_BYTES) {
+                flush(partition);
+            }
+
+            buffer.putLong(high).putLong(low);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                for (int partition = 0; partition < partitions; partition++) {
+                    if (channels[partition] != null) {
+                        flush(partition);
+                    }
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                closeChannels();
+            }
+        }
+
+        private void flush(int partition) {
+
+            ByteBuffer buffer = buffers[partition];
+            buffer.flip();
+
+            try {
+                while (buffer.hasRemaining()) {
+                    channels[partition].write(buffer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write reconciliation spill file", e);
+            }
+
+            buffer.clear();
+        }
+
+        private void closeChannels() throws IOException {
+
+            IOException failure = null;
+
+            for (FileChannel channel : channels) {
+                if (channel == null) {
+                    continue;
+                }
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    failure = failure == null ? e : failure;
+                }
+            }
+
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
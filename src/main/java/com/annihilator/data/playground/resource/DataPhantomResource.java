@@ -7,6 +7,7 @@ import com.annihilator.data.playground.config.ConcurrencyConfig;
 import com.annihilator.data.playground.config.DataPhantomConfig;
 import com.annihilator.data.playground.connector.MySQLConnector;
 import com.annihilator.data.playground.core.DataPhantomPlaygroundExecutor;
+import com.annihilator.data.playground.core.DataPhantomRunCoordinator;
 import com.annihilator.data.playground.db.AdhocLimitedInputDAO;
 import com.annihilator.data.playground.db.AdhocLimitedInputDAOImpl;
 import com.annihilator.data.playground.db.MetaDBConnection;
@@ -22,11 +23,13 @@ import com.annihilator.data.playground.db.ReconciliationResultsDAO;
 import com.annihilator.data.playground.db.ReconciliationResultsDAOImpl;
 import com.annihilator.data.playground.db.TaskDAO;
 import com.annihilator.data.playground.db.TaskDAOImpl;
+import com.annihilator.data.playground.db.TaskStepExecutionDAOImpl;
 import com.annihilator.data.playground.db.UDFDAO;
 import com.annihilator.data.playground.db.UDFDAOImpl;
 import com.annihilator.data.playground.db.UserDAO;
 import com.annihilator.data.playground.db.UserDAOImpl;
 import com.annihilator.data.playground.model.CSVComparisonResult;
+import com.annihilator.data.playground.model.EMRClusterHealth;
 import com.annihilator.data.playground.model.LimitedRunRequest;
 import com.annihilator.data.playground.model.NotificationDestination;
 import com.annihilator.data.playground.model.Playground;
@@ -69,7 +72,6 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 @Path("/data-phantom")
 @Produces(MediaType.APPLICATION_JSON)
@@ -93,6 +95,7 @@ public class DataPhantomResource {
     private final NotificationService notificationService;
     private final UDFDAO udfDAO;
     private final MySQLConnector mysqlConnector;
+    private final DataPhantomRunCoordinator runCoordinator;
     private ExecutorService adhocExecutorService;
     private ExecutorService scheduledExecutorService;
     private Set<String> cancelPlaygroundRequestSet;
@@ -110,11 +113,15 @@ public class DataPhantomResource {
         this.udfDAO = new UDFDAOImpl(metaDBConnection);
         this.historyDAO = new PlaygroundRunHistoryDAOImpl(metaDBConnection);
         this.adhocLimitedInputDAO = new AdhocLimitedInputDAOImpl(metaDBConnection);
-        this.emrService = EMRService.getInstance(config.getConnector().getAwsEmrConfig(), udfDAO, taskDAO);
+        this.emrService = EMRService.getInstance(config.getConnector().getAwsEmrConfig(), udfDAO, taskDAO,
+                new TaskStepExecutionDAOImpl(metaDBConnection));
         this.s3Service = S3Service.getInstance(config.getConnector().getAwsEmrConfig());
         this.mysqlConnector = new MySQLConnector(config.getConnector().getMysql(), environment, s3Service, config.getConnector().getAwsEmrConfig().getS3PathPrefix());
-        this.adhocExecutorService = Executors.newFixedThreadPool(config.getConcurrencyConfig().getAdHocThreadPoolSize());
-        this.scheduledExecutorService = Executors.newFixedThreadPool(config.getConcurrencyConfig().getScheduledThreadPoolSize());
+        this.adhocExecutorService = config.getConcurrencyConfig().newBlockingExecutor("adhoc-run",
+                config.getConcurrencyConfig().getAdHocThreadPoolSize());
+        this.scheduledExecutorService = config.getConcurrencyConfig().newBlockingExecutor("scheduled-run",
+                config.getConcurrencyConfig().getScheduledThreadPoolSize());
+        this.runCoordinator = new DataPhantomRunCoordinator(config.getConcurrencyConfig());
         this.cancelPlaygroundRequestSet = Collections.synchronizedSet(new HashSet<>());
         this.runningReconciliationSet = Collections.synchronizedSet(new HashSet<>());
         this.reconciliationFutures = Collections.synchronizedMap(new HashMap<>());
@@ -161,7 +168,8 @@ public class DataPhantomResource {
                                 s3Service,
                                 notificationService,
                                 reconciliationMappingDAO,
-                                reconciliationResultsDAO)
+                                reconciliationResultsDAO,
+                                runCoordinator)
                 );
             }
         } catch (SQLException e) {
@@ -191,7 +199,8 @@ public class DataPhantomResource {
                 this.s3Service,
                 this.notificationService,
                 this.reconciliationMappingDAO,
-                this.reconciliationResultsDAO));
+                this.reconciliationResultsDAO,
+                this.runCoordinator));
         schedulerThread.setDaemon(true);
         schedulerThread.start();
     }
@@ -283,7 +292,8 @@ public class DataPhantomResource {
                     s3Service,
                     notificationService,
                     reconciliationMappingDAO,
-                    reconciliationResultsDAO));
+                    reconciliationResultsDAO,
+                    runCoordinator));
 
             logger.info("Adhoc run started for playground {}", playground.getName());
 
@@ -320,6 +330,28 @@ public class DataPhantomResource {
         }
     }
 
+    @GET
+    @Path("/emr/clusters/health")
+    public Response getEmrClusterHealth() {
+        try {
+            List<EMRClusterHealth> clusters = emrService.getClusterHealth();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("clusters", clusters);
+            response.put("count", clusters.size());
+
+            return Response.ok()
+                    .entity(response)
+                    .build();
+        } catch (Exception e) {
+            logger.error("Error retrieving EMR cluster health: {}", e.getMessage(), e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("Failed to retrieve EMR cluster health")
+                    .build();
+        }
+    }
+
     @POST
     @Path("/limited-adhoc-run")
     public Response adhocLimitedRun(LimitedRunRequest limitedRunRequest) {
@@ -364,7 +396,8 @@ public class DataPhantomResource {
                     s3Service,
                     notificationService,
                     reconciliationMappingDAO,
-                    reconciliationResultsDAO)
+                    reconciliationResultsDAO,
+                    runCoordinator)
             );
 
             logger.info("Limited adhoc run started for playground {}", playground.getName());
@@ -473,6 +506,7 @@ public class DataPhantomResource {
             }
 
             cancelPlaygroundRequestSet.add(id.toString());
+            runCoordinator.cancel(id.toString());
 
             return Response.ok().entity("Playground cancellation requested successfully").build();
         } catch (SQLException e) {
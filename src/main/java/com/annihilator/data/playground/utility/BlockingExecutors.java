@@ -0,0 +1,154 @@
+package com.annihilator.data.playground.utility;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for work that blocks on JDBC, AWS calls and S3 streams.
+ *
+ * In platform mode a task holds one of a fixed number of named threads. In virtual mode every task gets its
+ * own virtual thread and a semaphore caps how many run at once, so a queued task costs a parked virtual thread
+ * rather than a platform thread stack. Virtual threads need a Java 21 runtime; they are looked up
+ * reflectively so the service still builds for Java 11, and platform threads are used when they are missing.
+ */
+public final class BlockingExecutors {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlockingExecutors.class);
+
+    private BlockingExecutors() {
+    }
+
+    /**
+     * Creates an executor that runs at most {@code maxConcurrency} tasks at a time.
+     *
+     * @param name           thread name prefix of the pool
+     * @param maxConcurrency tasks allowed to run at once; the rest wait, in submission order only in platform mode
+     * @param virtualThreads run tasks on virtual threads when the runtime supports them
+     */
+    public static ExecutorService newBoundedExecutor(String name, int maxConcurrency, boolean virtualThreads) {
+
+        if (virtualThreads) {
+
+            ExecutorService perTaskExecutor = newVirtualThreadPerTaskExecutor();
+
+            if (perTaskExecutor != null) {
+                logger.info("Executor {} runs on virtual threads, at most {} tasks at a time", name, maxConcurrency);
+                return new SemaphoreBoundedExecutor(perTaskExecutor, maxConcurrency);
+            }
+
+            logger.warn("Virtual threads are not available on Java {}; executor {} falls back to {} platform threads",
+                    System.getProperty("java.specification.version"), name, maxConcurrency);
+        }
+
+        return Executors.newFixedThreadPool(maxConcurrency, namedThreadFactory(name));
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        return findVirtualThreadPerTaskFactoryMethod() != null;
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+
+        Method factoryMethod = findVirtualThreadPerTaskFactoryMethod();
+
+        if (factoryMethod == null) {
+            return null;
+        }
+
+        try {
+            return (ExecutorService) factoryMethod.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("Failed to create virtual thread executor: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static Method findVirtualThreadPerTaskFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory namedThreadFactory(String name) {
+
+        AtomicInteger sequence = new AtomicInteger();
+
+        return runnable -> new Thread(runnable, name + "-" + sequence.incrementAndGet());
+    }
+
+    /**
+     * Starts every task on the unbounded delegate at once and makes it wait for a permit there, which is
+     * cheap when the delegate hands out virtual threads. Waiting tasks get permits in the order their threads
+     * reach the semaphore, which the scheduler may make differ from the order they were submitted in.
+     */
+    static final class SemaphoreBoundedExecutor extends AbstractExecutorService {
+
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+
+        SemaphoreBoundedExecutor(ExecutorService delegate, int maxConcurrency) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(maxConcurrency, true);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(() -> {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    // Shut down while waiting for a permit: the task never started
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                try {
+                    command.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        int availablePermits() {
+            return permits.availablePermits();
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
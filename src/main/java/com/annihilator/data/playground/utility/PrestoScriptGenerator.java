@@ -46,33 +46,15 @@ public class PrestoScriptGenerator {
         script.add("LOG_S3_PATH=\"s3://" + bucket + "/" + pathPrefix + "/logs/" + date + "/presto-log-" + playgroundId + "-" + queryId + "-" + uniqueId + ".log\"");
         script.add("");
         
-        // UDF Setup Section (if UDFs exist)
-        if (task.getUdfIds() != null && !task.getUdfIds().trim().isEmpty()) {
-            String[] udfIds = task.getUdfIds().split(",");
-            
-            for (String udfId : udfIds) {
-                udfId = udfId.trim();
-                if (udfId.isEmpty()) continue;
-                
-                UDF udf = getUDFById(udfId, udfDAO);
-                if (udf == null) {
-                    script.add("echo \"Warning: UDF not found for ID: " + udfId + "\" | tee -a ${LOG_FILE}");
-                    continue;
-                }
-                
-                String jarFileName = extractJarFileName(udf.getJarS3Path());
-                String localJarPath = "/tmp/" + jarFileName;
-                
-                script.add("aws s3 cp " + udf.getJarS3Path() + " " + localJarPath);
-                script.add("sudo cp " + localJarPath + " /usr/lib/hive/lib/");
-                script.add("hive -e \"CREATE TEMPORARY FUNCTION " + udf.getFunctionName() + " AS '" + udf.getClassName() + "'\"");
-            }
-        }
+        // UDF Setup Section (if UDFs exist): JARs come from the node-local cache, the functions are
+        // registered in the query's own Hive session
+        String udfSessionSetup = UDFSessionSetup.appendUdfSetup(task, udfDAO, script);
         
         // Query Execution Section
-        if (task.getUdfIds() != null && !task.getUdfIds().trim().isEmpty()) {
+        if (!udfSessionSetup.isEmpty()) {
+            // Hive UDFs are only visible to Hive, so the query runs there in the session that registered them
             script.add("echo \"Query: " + task.getQuery() + "\" | tee -a ${LOG_FILE}");
-            script.add("hive -e \"SET hive.cli.print.header=true; " + escapeForShell(task.getQuery()) + "\" > " + tempFile);
+            script.add("hive -e \"SET hive.cli.print.header=true; " + udfSessionSetup + escapeForShell(task.getQuery()) + "\" > " + tempFile);
             script.add("if [[ $? != 0 ]]; then");
             script.add("    exit 1");
             script.add("fi");
@@ -167,33 +149,6 @@ public class PrestoScriptGenerator {
         return command.toString();
     }
     
-    /**
-     * Extracts the JAR file name from an S3 path.
-     * 
-     * @param s3Path The S3 path (e.g., "s3://bucket/path/to/file.jar")
-     * @return The file name (e.g., "file.jar")
-     */
-    private static String extractJarFileName(String s3Path) {
-        if (s3Path == null || s3Path.isEmpty()) {
-            return "unknown.jar";
-        }
-        
-        String[] parts = s3Path.split("/");
-        return parts[parts.length - 1];
-    }
-    
-    /**
-     * Helper method to get UDF by ID.
-     * 
-     * @param udfId The UDF ID
-     * @param udfDAO The UDF DAO
-     * @return The UDF object or null if not found
-     * @throws SQLException if there's an error fetching UDF metadata
-     */
-    private static UDF getUDFById(String udfId, UDFDAO udfDAO) throws SQLException {
-        return udfDAO.getUDFById(udfId);
-    }
-    
     /**
      * Escapes a string for safe use in shell commands.
      * 
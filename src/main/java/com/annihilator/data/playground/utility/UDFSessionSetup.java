@@ -0,0 +1,113 @@
+package com.annihilator.data.playground.utility;
+
+import com.annihilator.data.playground.model.Task;
+import com.annihilator.data.playground.model.UDF;
+import com.annihilator.data.playground.db.UDFDAO;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared UDF handling for the Hive and Presto script generators.
+ *
+ * UDF JARs are kept in a node-local cache keyed by the S3 object's ETag, so a JAR is only downloaded
+ * the first time a node sees that version of it. The functions are registered with ADD JAR and
+ * CREATE TEMPORARY FUNCTION in the same Hive session as the query instead of a separate Hive CLI
+ * launch per UDF, whose temporary functions would be gone before the query ran anyway.
+ */
+class UDFSessionSetup {
+
+    static final String UDF_CACHE_DIR = "/tmp/data-phantom-udf-cache";
+
+    private UDFSessionSetup() {
+    }
+
+    /**
+     * Appends the JAR cache lookups for the task's UDFs to the script.
+     *
+     * @return the statements to prepend to the query in its Hive session, or an empty string when the
+     *         task has no UDFs
+     * @throws SQLException if there's an error fetching UDF metadata
+     */
+    static String appendUdfSetup(Task task, UDFDAO udfDAO, List<String> script) throws SQLException {
+
+        if (task.getUdfIds() == null || task.getUdfIds().trim().isEmpty()) {
+            return "";
+        }
+
+        StringBuilder sessionSetup = new StringBuilder();
+        Map<String, String> jarVariables = new LinkedHashMap<>();
+
+        for (String udfId : task.getUdfIds().split(",")) {
+            udfId = udfId.trim();
+            if (udfId.isEmpty()) continue;
+
+            UDF udf = udfDAO.getUDFById(udfId);
+            if (udf == null) {
+                script.add("echo \"Warning: UDF not found for ID: " + udfId + "\" | tee -a ${LOG_FILE}");
+                continue;
+            }
+
+            // UDFs packaged in the same JAR share one download and one ADD JAR
+            String jarVariable = jarVariables.get(udf.getJarS3Path());
+            if (jarVariable == null) {
+                jarVariable = "UDF_JAR_" + (jarVariables.size() + 1);
+                jarVariables.put(udf.getJarS3Path(), jarVariable);
+
+                if (jarVariables.size() == 1) {
+                    appendFetchFunction(script);
+                }
+
+                script.add(jarVariable + "=$(fetch_udf_jar " + udf.getJarS3Path() + ") || exit 1");
+                sessionSetup.append("ADD JAR ${").append(jarVariable).append("}; ");
+            }
+
+            sessionSetup.append("CREATE TEMPORARY FUNCTION ")
+                    .append(udf.getFunctionName())
+                    .append(" AS '")
+                    .append(udf.getClassName())
+                    .append("'; ");
+        }
+
+        if (!jarVariables.isEmpty()) {
+            script.add("");
+        }
+
+        return sessionSetup.toString();
+    }
+
+    /**
+     * Shell function that prints the local path of a UDF JAR, downloading it only when the cache has no
+     * copy for the object's current ETag. The download goes to a temporary name first so concurrent
+     * steps on the same node never see a partial JAR. Without an ETag or a complete download it fails
+     * instead of printing a path, so the step stops before Hive gets to ADD JAR.
+     */
+    private static void appendFetchFunction(List<String> script) {
+        script.add("UDF_CACHE_DIR=\"" + UDF_CACHE_DIR + "\"");
+        script.add("fetch_udf_jar() {");
+        script.add("    local s3_path=\"$1\"");
+        script.add("    local bucket=\"${s3_path#s3://}\"");
+        script.add("    bucket=\"${bucket%%/*}\"");
+        script.add("    local key=\"${s3_path#s3://${bucket}/}\"");
+        script.add("    local etag");
+        script.add("    etag=$(aws s3api head-object --bucket \"${bucket}\" --key \"${key}\" --query ETag --output text | tr -d '\"')");
+        script.add("    if [ -z \"${etag}\" ] || [ \"${etag}\" = \"None\" ]; then");
+        script.add("        echo \"Could not read the ETag of ${s3_path}\" >&2");
+        script.add("        return 1");
+        script.add("    fi");
+        script.add("    local jar_path=\"${UDF_CACHE_DIR}/${etag}/$(basename \"${key}\")\"");
+        script.add("    if [ ! -s \"${jar_path}\" ]; then");
+        script.add("        if ! mkdir -p \"$(dirname \"${jar_path}\")\" \\");
+        script.add("            || ! aws s3 cp --only-show-errors \"${s3_path}\" \"${jar_path}.$$\" >&2 \\");
+        script.add("            || ! mv -f \"${jar_path}.$$\" \"${jar_path}\"; then");
+        script.add("            rm -f \"${jar_path}.$$\"");
+        script.add("            echo \"Could not download ${s3_path}\" >&2");
+        script.add("            return 1");
+        script.add("        fi");
+        script.add("    fi");
+        script.add("    echo \"${jar_path}\"");
+        script.add("}");
+    }
+}
@@ -0,0 +1,51 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import org.junit.jupiter.api.Test;
+
+import static com.annihilator.data.playground.cloud.aws.StepFailureClassifier.FailureClass.CAPACITY;
+import static com.annihilator.data.playground.cloud.aws.StepFailureClassifier.FailureClass.PERMANENT;
+import static com.annihilator.data.playground.cloud.aws.StepFailureClassifier.FailureClass.TRANSIENT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DefaultStepFailureClassifierTest {
+
+    private final DefaultStepFailureClassifier classifier = new DefaultStepFailureClassifier();
+
+    @Test
+    void testClassify_QueryErrors_ShouldBePermanent() {
+        assertEquals(PERMANENT, classifier.classify("FAILED: SemanticException [Error 10001]: Line 1:14 Table not found 'sales'"));
+        assertEquals(PERMANENT, classifier.classify("FAILED: ParseException line 1:7 cannot recognize input near 'FORM'"));
+        assertEquals(PERMANENT, classifier.classify("Query failed: line 1:8: mismatched input 'FORM'"));
+        assertEquals(PERMANENT, classifier.classify("org.apache.spark.sql.AnalysisException: cannot resolve 'x'"));
+        assertEquals(PERMANENT, classifier.classify("Access Denied (Service: Amazon S3; Status Code: 403)"));
+        assertEquals(PERMANENT, classifier.classify("Syntax error in query"));
+        assertEquals(PERMANENT, classifier.classify("Invalid query"));
+        assertEquals(PERMANENT, classifier.classify("Column not found"));
+        assertEquals(PERMANENT, classifier.classify("Permission denied"));
+        assertEquals(PERMANENT, classifier.classify("Authentication failed"));
+    }
+
+    @Test
+    void testClassify_ResourceShortage_ShouldBeCapacity() {
+        assertEquals(CAPACITY, classifier.classify("java.lang.OutOfMemoryError: Java heap space"));
+        assertEquals(CAPACITY, classifier.classify("Container killed by YARN for exceeding memory limits"));
+        assertEquals(CAPACITY, classifier.classify("No space left on device"));
+        assertEquals(CAPACITY, classifier.classify("Task exited with code 137 in fused step"));
+    }
+
+    @Test
+    void testClassify_ExitCodes_ShouldFollowShellConventions() {
+        assertEquals(PERMANENT, classifier.classify("Step script exit code 127"));
+        assertEquals(TRANSIENT, classifier.classify("Task exited with code 1 in fused step"));
+    }
+
+    @Test
+    void testClassify_UnknownOrMissingReason_ShouldBeTransient() {
+        assertEquals(TRANSIENT, classifier.classify("Rate exceeded"));
+        assertEquals(TRANSIENT, classifier.classify("Connection timeout"));
+        assertEquals(TRANSIENT, classifier.classify("Service temporarily unavailable"));
+        assertEquals(TRANSIENT, classifier.classify("Step ended in state FAILED"));
+        assertEquals(TRANSIENT, classifier.classify(null));
+        assertEquals(TRANSIENT, classifier.classify("  "));
+    }
+}
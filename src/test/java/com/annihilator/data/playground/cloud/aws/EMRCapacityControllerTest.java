@@ -0,0 +1,133 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import com.annihilator.data.playground.config.EMRCapacityConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.services.emr.EmrClient;
+import software.amazon.awssdk.services.emr.model.InstanceGroup;
+import software.amazon.awssdk.services.emr.model.InstanceGroupState;
+import software.amazon.awssdk.services.emr.model.InstanceGroupStatus;
+import software.amazon.awssdk.services.emr.model.InstanceGroupType;
+import software.amazon.awssdk.services.emr.model.ListInstanceGroupsRequest;
+import software.amazon.awssdk.services.emr.model.ListInstanceGroupsResponse;
+import software.amazon.awssdk.services.emr.model.ModifyClusterRequest;
+import software.amazon.awssdk.services.emr.model.ModifyInstanceGroupsRequest;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class EMRCapacityControllerTest {
+
+    @Mock
+    private EmrClient emrClient;
+
+    private final AtomicLong now = new AtomicLong(0);
+    private EMRCapacityController controller;
+
+    @BeforeEach
+    void setUp() {
+        EMRCapacityConfig config = new EMRCapacityConfig();
+        config.setEnabled(true);
+        config.setMinStepConcurrency(1);
+        config.setMaxStepConcurrency(8);
+        config.setMinTaskInstances(0);
+        config.setMaxTaskInstances(5);
+        config.setStepsPerTaskInstance(2);
+        config.setScaleDownDelay(600000);
+
+        controller = new EMRCapacityController(emrClient, config, now::get);
+    }
+
+    @Test
+    void testReconcile_WithBacklog_ShouldScaleUpWithinBounds() {
+        // Given
+        givenTaskGroup(1);
+
+        // When - 20 steps of demand exceed both upper bounds
+        controller.reconcile("j-1", 15, 5, 2);
+
+        // Then
+        verify(emrClient).modifyCluster(argThat((ModifyClusterRequest r) -> r.stepConcurrencyLevel() == 8));
+        verify(emrClient).modifyInstanceGroups(argThat((ModifyInstanceGroupsRequest r) ->
+                r.instanceGroups().get(0).instanceCount() == 5 && "ig-task".equals(r.instanceGroups().get(0).instanceGroupId())));
+    }
+
+    @Test
+    void testReconcile_WhenIdle_ShouldScaleDownOnlyAfterDelay() {
+        // Given
+        givenTaskGroup(4);
+
+        // When - idle, but not for long enough
+        controller.reconcile("j-1", 0, 0, 8);
+        now.addAndGet(300000);
+        controller.reconcile("j-1", 0, 0, 8);
+
+        // Then
+        verify(emrClient, never()).modifyCluster(any(ModifyClusterRequest.class));
+        verify(emrClient, never()).modifyInstanceGroups(any(ModifyInstanceGroupsRequest.class));
+
+        // When - idle past the delay
+        now.addAndGet(300000);
+        controller.reconcile("j-1", 0, 0, 8);
+
+        // Then
+        verify(emrClient).modifyCluster(argThat((ModifyClusterRequest r) -> r.stepConcurrencyLevel() == 1));
+        verify(emrClient).modifyInstanceGroups(argThat((ModifyInstanceGroupsRequest r) -> r.instanceGroups().get(0).instanceCount() == 0));
+    }
+
+    @Test
+    void testReconcile_WhenDemandReturns_ShouldResetScaleDownTimer() {
+        // Given
+        givenTaskGroup(2);
+
+        // When - a short lull followed by demand at the current size, then another lull
+        controller.reconcile("j-1", 0, 0, 4);
+        now.addAndGet(500000);
+        controller.reconcile("j-1", 2, 2, 4);
+        now.addAndGet(200000);
+        controller.reconcile("j-1", 0, 0, 4);
+
+        // Then - the second lull starts a fresh delay
+        verify(emrClient, never()).modifyCluster(any(ModifyClusterRequest.class));
+        verify(emrClient, never()).modifyInstanceGroups(any(ModifyInstanceGroupsRequest.class));
+    }
+
+    @Test
+    void testReconcile_WithResizingTaskGroup_ShouldLeaveItAlone() {
+        // Given
+        when(emrClient.listInstanceGroups(any(ListInstanceGroupsRequest.class))).thenReturn(ListInstanceGroupsResponse.builder()
+                .instanceGroups(taskGroup(1, InstanceGroupState.RESIZING))
+                .build());
+
+        // When
+        controller.reconcile("j-1", 10, 0, 0);
+
+        // Then - concurrency is unknown and the group is busy, so nothing is changed
+        verify(emrClient, never()).modifyCluster(any(ModifyClusterRequest.class));
+        verify(emrClient, never()).modifyInstanceGroups(any(ModifyInstanceGroupsRequest.class));
+    }
+
+    private void givenTaskGroup(int instances) {
+        when(emrClient.listInstanceGroups(any(ListInstanceGroupsRequest.class))).thenReturn(ListInstanceGroupsResponse.builder()
+                .instanceGroups(taskGroup(instances, InstanceGroupState.RUNNING))
+                .build());
+    }
+
+    private InstanceGroup taskGroup(int instances, InstanceGroupState state) {
+        return InstanceGroup.builder()
+                .id("ig-task")
+                .instanceGroupType(InstanceGroupType.TASK)
+                .requestedInstanceCount(instances)
+                .status(InstanceGroupStatus.builder().state(state).build())
+                .build();
+    }
+}
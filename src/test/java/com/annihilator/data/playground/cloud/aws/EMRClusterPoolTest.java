@@ -0,0 +1,241 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import com.annihilator.data.playground.config.AWSEmrConfig;
+import com.annihilator.data.playground.model.EMRClusterHealth;
+import com.annihilator.data.playground.utility.EmrClusterException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.services.cloudformation.CloudFormationClient;
+import software.amazon.awssdk.services.cloudformation.model.ListStackResourcesRequest;
+import software.amazon.awssdk.services.cloudformation.model.ListStackResourcesResponse;
+import software.amazon.awssdk.services.cloudformation.model.StackResourceSummary;
+import software.amazon.awssdk.services.emr.model.ClusterState;
+import software.amazon.awssdk.services.emr.model.StepConfig;
+import software.amazon.awssdk.services.emr.model.StepState;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class EMRClusterPoolTest {
+
+    @Mock
+    private CloudFormationClient cloudFormationClient;
+
+    private InProcessEmrStub emrStub;
+    private AWSEmrConfig awsEmrConfig;
+    private final Map<String, String> clusterIdByStack = new HashMap<>();
+    private EMRClusterPool pool;
+
+    @BeforeEach
+    void setUp() {
+        emrStub = new InProcessEmrStub();
+
+        awsEmrConfig = new AWSEmrConfig();
+        awsEmrConfig.setStepPollingInterval(60000);
+        awsEmrConfig.setStackUpdatePollingInterval(1000);
+        awsEmrConfig.setStackUpdateCheckMaxAttempt(1);
+        awsEmrConfig.setStepSubmissionBatchWindow(10);
+        awsEmrConfig.setStepSubmissionBatchSize(256);
+        awsEmrConfig.setClusterSaturationPendingSteps(10);
+
+        lenient().when(cloudFormationClient.listStackResources(any(ListStackResourcesRequest.class))).thenAnswer(invocation -> {
+            ListStackResourcesRequest request = invocation.getArgument(0);
+            String clusterId = clusterIdByStack.get(request.stackName());
+            return ListStackResourcesResponse.builder()
+                    .stackResourceSummaries(clusterId == null ? Collections.emptyList() : Collections.singletonList(
+                            StackResourceSummary.builder().resourceType("AWS::EMR::Cluster").physicalResourceId(clusterId).build()))
+                    .build();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    void testPlace_ShouldPickClusterWithFewestPendingSteps() {
+        // Given
+        EMRCluster busy = provisionedCluster("stack-a", "j-a", Collections.emptyList());
+        EMRCluster idle = provisionedCluster("stack-b", "j-b", Collections.emptyList());
+        for (int i = 0; i < 3; i++) {
+            emrStub.addStep("j-a", "queued-" + i, StepState.PENDING);
+        }
+        pool = new EMRClusterPool(Arrays.asList(busy, idle), 60000);
+        pool.refreshHealth();
+
+        // When
+        EMRCluster placed = pool.place("HIVE");
+
+        // Then
+        assertSame(idle, placed);
+    }
+
+    @Test
+    void testPlace_ShouldCountOwnPlacementsBeforeNextRefresh() {
+        // Given
+        EMRCluster first = provisionedCluster("stack-a", "j-a", Collections.emptyList());
+        EMRCluster second = provisionedCluster("stack-b", "j-b", Collections.emptyList());
+        pool = new EMRClusterPool(Arrays.asList(first, second), 60000);
+        pool.refreshHealth();
+
+        // When
+        EMRCluster a = pool.place("HIVE");
+        EMRCluster b = pool.place("HIVE");
+
+        // Then - the second step goes to the other cluster
+        assertSame(first, a);
+        assertSame(second, b);
+    }
+
+    @Test
+    void testPlace_ShouldHonourTaskTypeRestrictions() {
+        // Given
+        EMRCluster general = provisionedCluster("stack-a", "j-a", Collections.emptyList());
+        EMRCluster spark = provisionedCluster("stack-b", "j-b", Collections.singletonList("PY_SPARK"));
+        pool = new EMRClusterPool(Arrays.asList(general, spark), 60000);
+        pool.refreshHealth();
+
+        // When & Then
+        assertSame(spark, pool.place("PY_SPARK"));
+        assertSame(general, pool.place("HIVE"));
+        assertSame(general, pool.place("HIVE"));
+    }
+
+    @Test
+    void testPlace_ShouldAvoidTerminatedCluster() {
+        // Given
+        EMRCluster dead = provisionedCluster("stack-a", "j-a", Collections.emptyList());
+        EMRCluster alive = provisionedCluster("stack-b", "j-b", Collections.emptyList());
+        emrStub.addStep("j-b", "queued", StepState.PENDING);
+        emrStub.setClusterState("j-a", ClusterState.TERMINATED);
+        pool = new EMRClusterPool(Arrays.asList(dead, alive), 60000);
+
+        // When
+        pool.refreshHealth();
+
+        // Then
+        List<EMRClusterHealth> health = pool.getHealth();
+        assertFalse(health.get(0).isHealthy());
+        assertEquals("TERMINATED", health.get(0).getClusterState());
+        assertTrue(health.get(1).isHealthy());
+        assertEquals(1, health.get(1).getPendingSteps());
+        assertSame(alive, pool.place("HIVE"));
+    }
+
+    @Test
+    void testPlace_WithNoMatchingCluster_ShouldThrow() {
+        // Given
+        pool = new EMRClusterPool(Collections.singletonList(
+                provisionedCluster("stack-a", "j-a", Collections.singletonList("PY_SPARK"))), 60000);
+
+        // When & Then
+        assertThrows(EmrClusterException.class, () -> pool.place("HIVE"));
+    }
+
+    @Test
+    void testSubmit_ShouldLandStepOnPlacedCluster() throws Exception {
+        // Given
+        EMRCluster first = provisionedCluster("stack-a", "j-a", Collections.emptyList());
+        EMRCluster second = provisionedCluster("stack-b", "j-b", Collections.emptyList());
+        emrStub.addStep("j-a", "queued", StepState.RUNNING);
+        pool = new EMRClusterPool(Arrays.asList(first, second), 60000);
+        pool.refreshHealth();
+
+        // When
+        EMRCluster placed = pool.place("HIVE");
+        EMRStepSubmissionBatcher.SubmittedStep submitted = placed.submit(StepConfig.builder().name("HiveQuery-1").build())
+                .get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals("j-b", submitted.clusterId);
+        assertEquals(1, emrStub.getSteps("j-b").size());
+        assertEquals(1, placed.getHealth().getInFlightSteps());
+
+        placed.onStepFinished();
+        assertEquals(0, placed.getHealth().getInFlightSteps());
+    }
+
+    @Test
+    void testAwaitReady_WhileProvisioning_ShouldShareOneAttempt() throws Exception {
+        // Given
+        CountDownLatch stackLookup = new CountDownLatch(1);
+        emrStub.addCluster("j-a", ClusterState.WAITING);
+        when(cloudFormationClient.listStackResources(any(ListStackResourcesRequest.class))).thenAnswer(invocation -> {
+            stackLookup.await(5, TimeUnit.SECONDS);
+            return ListStackResourcesResponse.builder()
+                    .stackResourceSummaries(StackResourceSummary.builder().resourceType("AWS::EMR::Cluster").physicalResourceId("j-a").build())
+                    .build();
+        });
+        EMRCluster cluster = cluster("stack-a", Collections.emptyList());
+
+        // When
+        CompletableFuture<String> first = cluster.awaitReady();
+        CompletableFuture<String> second = cluster.awaitReady();
+
+        // Then - callers are not blocked and share the same provisioning attempt
+        assertSame(first, second);
+        assertTrue(cluster.isProvisioning());
+
+        stackLookup.countDown();
+        assertEquals("j-a", first.get(5, TimeUnit.SECONDS));
+        assertSame(first, cluster.awaitReady());
+        cluster.close();
+    }
+
+    @Test
+    void testPrewarm_ShouldProvisionClusterWithoutPlacingSteps() {
+        // Given
+        emrStub.addCluster("j-a", ClusterState.WAITING);
+        clusterIdByStack.put("stack-a", "j-a");
+        EMRCluster cluster = cluster("stack-a", Collections.emptyList());
+        pool = new EMRClusterPool(Collections.singletonList(cluster), 60000);
+
+        // When
+        pool.prewarm(Collections.singleton("HIVE"));
+
+        // Then
+        cluster.awaitReady().join();
+        EMRClusterHealth health = pool.getHealth().get(0);
+        assertEquals("j-a", health.getClusterId());
+        assertEquals(0, health.getInFlightSteps());
+    }
+
+    private EMRCluster provisionedCluster(String stackName, String clusterId, List<String> taskTypes) {
+
+        emrStub.addCluster(clusterId, ClusterState.WAITING);
+        clusterIdByStack.put(stackName, clusterId);
+
+        EMRCluster cluster = cluster(stackName, taskTypes);
+        assertEquals(clusterId, cluster.awaitReady().join());
+
+        return cluster;
+    }
+
+    private EMRCluster cluster(String stackName, List<String> taskTypes) {
+        return new EMRCluster(stackName, stackName + "-cluster", taskTypes, false,
+                awsEmrConfig, cloudFormationClient, emrStub);
+    }
+}
@@ -56,7 +56,6 @@ public class EMRServiceImplRetryTest {
     public void testRetryConfigDefaults() {
         RetryConfig defaultConfig = new RetryConfig();
         
-        assertEquals(3, defaultConfig.getMaxRetries());
         assertEquals(5000, defaultConfig.getBaseDelayMs());
         assertEquals(2.0, defaultConfig.getBackoffMultiplier());
         assertEquals(60000, defaultConfig.getMaxDelayMs());
@@ -75,7 +74,7 @@ public class EMRServiceImplRetryTest {
 
     @Test
     public void testRetryDelayCalculation() {
-        RetryConfig config = new RetryConfig(3, 1000, 2.0, 10000, false, 0.0);
+        RetryConfig config = new RetryConfig(1000, 2.0, 10000, false, 0.0);
         
         // Test exponential backoff without jitter
         assertEquals(1000, config.getRetryDelay(0)); // 1s
@@ -86,7 +85,7 @@ public class EMRServiceImplRetryTest {
 
     @Test
     public void testRetryDelayWithMaxCap() {
-        RetryConfig config = new RetryConfig(3, 1000, 2.0, 5000, false, 0.0);
+        RetryConfig config = new RetryConfig(1000, 2.0, 5000, false, 0.0);
         
         // Test that delay is capped at maxDelayMs
         assertEquals(1000, config.getRetryDelay(0)); // 1s
@@ -96,32 +95,11 @@ public class EMRServiceImplRetryTest {
         assertEquals(5000, config.getRetryDelay(10)); // Still capped at 5s
     }
 
-    @Test
-    public void testShouldRetryLogic() {
-        RetryConfig config = new RetryConfig();
-        
-        // Should retry transient failures
-        assertTrue(config.shouldRetry("Connection timeout"));
-        assertTrue(config.shouldRetry("Network error"));
-        assertTrue(config.shouldRetry("Service temporarily unavailable"));
-        assertTrue(config.shouldRetry("Rate limit exceeded"));
-        
-        // Should not retry permanent failures
-        assertFalse(config.shouldRetry("Syntax error in query"));
-        assertFalse(config.shouldRetry("Table not found"));
-        assertFalse(config.shouldRetry("Permission denied"));
-        
-        // Should retry unknown errors
-        assertTrue(config.shouldRetry("Unknown error"));
-        assertTrue(config.shouldRetry(null));
-    }
-
     @Test
     public void testRetryConfigToString() {
-        RetryConfig config = new RetryConfig(3, 5000, 2.0, 60000, true, 0.1);
+        RetryConfig config = new RetryConfig(5000, 2.0, 60000, true, 0.1);
         String configString = config.toString();
         
-        assertTrue(configString.contains("maxRetries=3"));
         assertTrue(configString.contains("baseDelayMs=5000"));
         assertTrue(configString.contains("backoffMultiplier=2.0"));
         assertTrue(configString.contains("maxDelayMs=60000"));
@@ -134,7 +112,6 @@ public class EMRServiceImplRetryTest {
         RetryConfig config = new RetryConfig();
         
         // Test setters
-        config.setMaxRetries(5);
         config.setBaseDelayMs(10000);
         config.setBackoffMultiplier(1.5);
         config.setMaxDelayMs(30000);
@@ -142,7 +119,6 @@ public class EMRServiceImplRetryTest {
         config.setJitterFactor(0.2);
         
         // Verify changes
-        assertEquals(5, config.getMaxRetries());
         assertEquals(10000, config.getBaseDelayMs());
         assertEquals(1.5, config.getBackoffMultiplier());
         assertEquals(30000, config.getMaxDelayMs());
@@ -54,6 +54,16 @@ class EMRServiceImplTest {
         assertNotNull(service);
     }
 
+    @Test
+    void testCancelTask_WithTaskNotInFlight_ShouldNotCallEmr() {
+        // When
+        boolean cancelled = emrService.cancelTask("unknown-task");
+
+        // Then
+        assertFalse(cancelled);
+        verify(emrClient, never()).cancelSteps(any(software.amazon.awssdk.services.emr.model.CancelStepsRequest.class));
+    }
+
     @Test
     void testClose_ShouldCloseEmrClient() {
         // When
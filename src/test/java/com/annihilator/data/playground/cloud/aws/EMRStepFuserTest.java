@@ -0,0 +1,257 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import com.annihilator.data.playground.config.EMRStepFusionConfig;
+import com.annihilator.data.playground.model.StepMetadata;
+import com.annihilator.data.playground.model.StepResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.services.emr.model.StepConfig;
+import software.amazon.awssdk.services.emr.model.StepState;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class EMRStepFuserTest {
+
+    @Mock
+    private S3Service s3Service;
+
+    private final List<StepConfig> submittedSteps = new CopyOnWriteArrayList<>();
+    private final List<StepMetadata> submittedMetadata = new CopyOnWriteArrayList<>();
+    private final List<EMRStepSubmissionBatcher.SubmittedStep> cancelledSteps = new CopyOnWriteArrayList<>();
+    private StepState fusedStepState = StepState.COMPLETED;
+    // When set, submitted steps stay running until the test completes them
+    private CompletableFuture<StepResult> runningStep;
+    private EMRStepFuser fuser;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(s3Service.getBucketName()).thenReturn("bucket");
+        lenient().when(s3Service.getS3FileSize(anyString())).thenReturn(-1L);
+        lenient().when(s3Service.writeTextObject(anyString(), anyString())).thenAnswer(invocation -> invocation.getArgument(1));
+
+        EMRStepFusionConfig config = new EMRStepFusionConfig();
+        config.setEnabled(true);
+        config.setWindow(50);
+        config.setMaxTasksPerStep(3);
+
+        fuser = new EMRStepFuser(config, new StepScriptCache(s3Service, "prefix"), s3Service, "prefix", Runnable::run,
+                (stepConfig, metadata, onSubmitted) -> {
+                    submittedSteps.add(stepConfig);
+                    submittedMetadata.add(metadata);
+                    onSubmitted.accept(new EMRStepSubmissionBatcher.SubmittedStep("j-1", "s-" + submittedSteps.size()));
+                    if (runningStep != null) {
+                        return runningStep;
+                    }
+                    return CompletableFuture.completedFuture(new StepResult("s-" + submittedSteps.size(), fusedStepState,
+                            "done", metadata.getOutputPath(), metadata.getLogPath(), metadata.getQueryId()));
+                },
+                cancelledSteps::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fuser.close();
+    }
+
+    @Test
+    void testSubmit_SiblingsWithinWindow_ShouldRunInOneStepAndSplitManifest() throws Exception {
+        // Given
+        manifest("t1\t0", "t2\t3");
+
+        // When
+        CompletableFuture<StepResult> first = fuser.submit("t1", "echo one", step("HiveQuery-t1"), metadata("t1", "HIVE"));
+        CompletableFuture<StepResult> second = fuser.submit("t2", "echo two", step("HiveQuery-t2"), metadata("t2", "HIVE"));
+
+        // Then
+        StepResult firstResult = first.get(5, TimeUnit.SECONDS);
+        StepResult secondResult = second.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, submittedSteps.size());
+        assertTrue(submittedSteps.get(0).name().startsWith("FusedHiveQuery-"));
+        assertTrue(submittedMetadata.get(0).getOutputPath().endsWith(".manifest.tsv"));
+
+        assertTrue(firstResult.isSuccess());
+        assertEquals("t1", firstResult.getQueryId());
+        assertEquals("s3://bucket/out/t1.txt", firstResult.getOutputPath());
+
+        assertFalse(secondResult.isSuccess());
+        assertNull(secondResult.getOutputPath());
+        assertTrue(secondResult.getMessage().contains("code 3"));
+    }
+
+    @Test
+    void testSubmit_SingleTask_ShouldRunItsOwnStep() throws Exception {
+        // Given
+        StepConfig own = step("HiveQuery-t1");
+
+        // When
+        StepResult result = fuser.submit("t1", "echo one", own, metadata("t1", "HIVE")).get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertTrue(result.isSuccess());
+        assertEquals(1, submittedSteps.size());
+        assertSame(own, submittedSteps.get(0));
+    }
+
+    @Test
+    void testSubmit_DifferentEngines_ShouldNotBeFused() throws Exception {
+        // When
+        CompletableFuture<StepResult> hive = fuser.submit("t1", "echo one", step("HiveQuery-t1"), metadata("t1", "HIVE"));
+        CompletableFuture<StepResult> presto = fuser.submit("t2", "echo two", step("PrestoQuery-t2"), metadata("t2", "PRESTO"));
+        hive.get(5, TimeUnit.SECONDS);
+        presto.get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(2, submittedSteps.size());
+        assertTrue(submittedSteps.stream().noneMatch(step -> step.name().startsWith("Fused")));
+    }
+
+    @Test
+    void testSubmit_FullGroup_ShouldNotWaitForWindow() throws Exception {
+        // Given
+        manifest("t1\t0", "t2\t0", "t3\t0");
+
+        // When
+        CompletableFuture<StepResult> first = fuser.submit("t1", "echo one", step("HiveQuery-t1"), metadata("t1", "HIVE"));
+        fuser.submit("t2", "echo two", step("HiveQuery-t2"), metadata("t2", "HIVE"));
+        fuser.submit("t3", "echo three", step("HiveQuery-t3"), metadata("t3", "HIVE"));
+        CompletableFuture<StepResult> fourth = fuser.submit("t4", "echo four", step("HiveQuery-t4"), metadata("t4", "HIVE"));
+
+        // Then - the fourth task starts a new group and runs alone
+        assertTrue(first.get(5, TimeUnit.SECONDS).isSuccess());
+        assertTrue(fourth.get(5, TimeUnit.SECONDS).isSuccess());
+        assertEquals(2, submittedSteps.size());
+        assertEquals("HiveQuery-t4", submittedSteps.get(1).name());
+    }
+
+    @Test
+    void testSubmit_WhenFusedStepFails_ShouldFailEveryTask() throws Exception {
+        // Given
+        fusedStepState = StepState.FAILED;
+
+        // When
+        CompletableFuture<StepResult> first = fuser.submit("t1", "echo one", step("HiveQuery-t1"), metadata("t1", "HIVE"));
+        CompletableFuture<StepResult> second = fuser.submit("t2", "echo two", step("HiveQuery-t2"), metadata("t2", "HIVE"));
+
+        // Then
+        assertFalse(first.get(5, TimeUnit.SECONDS).isSuccess());
+        assertFalse(second.get(5, TimeUnit.SECONDS).isSuccess());
+    }
+
+    @Test
+    void testCancel_TaskWaitingInWindow_ShouldWithdrawItOnly() throws Exception {
+        // Given
+        CompletableFuture<StepResult> first = fuser.submit("t1", "echo one", step("HiveQuery-t1"), metadata("t1", "HIVE"));
+        CompletableFuture<StepResult> second = fuser.submit("t2", "echo two", step("HiveQuery-t2"), metadata("t2", "HIVE"));
+
+        // When
+        boolean cancelled = fuser.cancel("t2");
+
+        // Then - the sibling left alone runs its own step
+        assertTrue(cancelled);
+        assertEquals(StepState.CANCELLED, second.get(5, TimeUnit.SECONDS).getStatus());
+        assertTrue(first.get(5, TimeUnit.SECONDS).isSuccess());
+        assertEquals(1, submittedSteps.size());
+        assertEquals("HiveQuery-t1", submittedSteps.get(0).name());
+        assertTrue(cancelledSteps.isEmpty());
+    }
+
+    @Test
+    void testCancel_AllTasksOfFusedStep_ShouldInterruptTheStep() throws Exception {
+        // Given
+        runningStep = new CompletableFuture<>();
+        CompletableFuture<StepResult> first = fuser.submit("t1", "echo one", step("HiveQuery-t1"), metadata("t1", "HIVE"));
+        CompletableFuture<StepResult> second = fuser.submit("t2", "echo two", step("HiveQuery-t2"), metadata("t2", "HIVE"));
+        CompletableFuture<StepResult> third = fuser.submit("t3", "echo three", step("HiveQuery-t3"), metadata("t3", "HIVE"));
+        waitForSubmittedSteps(1);
+
+        // When
+        fuser.cancel("t1");
+        fuser.cancel("t2");
+        boolean stoppedEarly = !cancelledSteps.isEmpty();
+        fuser.cancel("t3");
+        runningStep.complete(new StepResult("s-1", StepState.CANCELLED, "Step ended in state CANCELLED", null, null, "f1"));
+
+        // Then
+        assertFalse(stoppedEarly);
+        assertEquals(1, cancelledSteps.size());
+        assertEquals("s-1", cancelledSteps.get(0).stepId);
+        assertEquals(StepState.CANCELLED, first.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(StepState.CANCELLED, second.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(StepState.CANCELLED, third.get(5, TimeUnit.SECONDS).getStatus());
+        assertFalse(fuser.cancel("t1"));
+    }
+
+    @Test
+    void testCancel_SingleTaskStep_ShouldBeLeftToTheCaller() throws Exception {
+        // Given
+        fuser.submit("t1", "echo one", step("HiveQuery-t1"), metadata("t1", "HIVE")).get(5, TimeUnit.SECONDS);
+
+        // When / Then
+        assertFalse(fuser.cancel("t1"));
+        assertTrue(cancelledSteps.isEmpty());
+    }
+
+    @Test
+    void testGenerateFusedScript_ShouldRunTasksInBackgroundAndUploadManifest() {
+        // Given
+        List<EMRStepFuser.FusionCandidate> group = List.of(
+                new EMRStepFuser.FusionCandidate("t1", "echo one", step("a"), metadata("t1", "HIVE")),
+                new EMRStepFuser.FusionCandidate("t2", "echo two", step("b"), metadata("t2", "HIVE")));
+
+        // When
+        String script = fuser.generateFusedScript(group, "f1", "s3://bucket/prefix/fused/f1.manifest.tsv");
+
+        // Then
+        assertTrue(script.contains("run_task t1 &"));
+        assertTrue(script.contains("run_task t2 &"));
+        assertTrue(script.contains("\nwait\n"));
+        assertTrue(script.contains("aws s3 cp ${FUSED_DIR}/manifest.tsv s3://bucket/prefix/fused/f1.manifest.tsv"));
+    }
+
+    private void waitForSubmittedSteps(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (submittedSteps.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, submittedSteps.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void manifest(String... lines) {
+        doAnswer(invocation -> {
+            Consumer<String> consumer = invocation.getArgument(1);
+            for (String line : lines) {
+                consumer.accept(line);
+            }
+            return null;
+        }).when(s3Service).readFileLineByLine(anyString(), any(Consumer.class));
+    }
+
+    private StepConfig step(String name) {
+        return StepConfig.builder().name(name).build();
+    }
+
+    private StepMetadata metadata(String taskId, String taskType) {
+        return new StepMetadata("s3://bucket/out/" + taskId + ".txt", "s3://bucket/logs/" + taskId + ".log", "p1", taskId, taskId, "2025-01-20", taskType);
+    }
+}
@@ -0,0 +1,240 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.services.emr.EmrClient;
+import software.amazon.awssdk.services.emr.model.DescribeStepRequest;
+import software.amazon.awssdk.services.emr.model.DescribeStepResponse;
+import software.amazon.awssdk.services.emr.model.FailureDetails;
+import software.amazon.awssdk.services.emr.model.ListStepsRequest;
+import software.amazon.awssdk.services.emr.model.ListStepsResponse;
+import software.amazon.awssdk.services.emr.model.Step;
+import software.amazon.awssdk.services.emr.model.StepState;
+import software.amazon.awssdk.services.emr.model.StepStatus;
+import software.amazon.awssdk.services.emr.model.StepSummary;
+import software.amazon.awssdk.services.emr.model.StepTimeline;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class EMRStepStatusPollerTest {
+
+    @Mock
+    private EmrClient emrClient;
+
+    private EMRStepStatusPoller poller;
+
+    @BeforeEach
+    void setUp() {
+        poller = new EMRStepStatusPoller(emrClient, 60000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        poller.close();
+    }
+
+    @Test
+    void testPollOnce_ShouldCompleteOnlyTerminalSteps() throws Exception {
+        // Given
+        CompletableFuture<StepSummary> done = poller.watch("j-1", "s-done");
+        CompletableFuture<StepSummary> running = poller.watch("j-1", "s-running");
+
+        when(emrClient.listSteps(any(ListStepsRequest.class))).thenReturn(ListStepsResponse.builder()
+                .steps(summary("s-done", StepState.COMPLETED, Instant.now()), summary("s-other", StepState.FAILED, Instant.now()))
+                .build());
+
+        // When
+        poller.pollOnce();
+
+        // Then
+        assertTrue(done.isDone());
+        assertEquals(StepState.COMPLETED, done.get().status().state());
+        assertFalse(running.isDone());
+        assertEquals(1, poller.getInFlightStepCount());
+    }
+
+    @Test
+    void testPollOnce_ShouldIssueOneCallPerTenWatchedSteps() {
+        // Given
+        for (int i = 0; i < 50; i++) {
+            poller.watch("j-1", "s-" + i);
+        }
+
+        when(emrClient.listSteps(any(ListStepsRequest.class))).thenReturn(ListStepsResponse.builder().build());
+
+        // When
+        poller.pollOnce();
+
+        // Then - asked by step ID, without a state filter
+        verify(emrClient, times(5)).listSteps(argThat((ListStepsRequest r) ->
+                r != null && r.stepIds().size() == 10 && !r.hasStepStates()));
+        assertEquals(50, poller.getInFlightStepCount());
+    }
+
+    @Test
+    void testPollOnce_ShouldFollowMarkerUntilStepsResolved() {
+        // Given
+        CompletableFuture<StepSummary> older = poller.watch("j-1", "s-older");
+
+        when(emrClient.listSteps(argThat((ListStepsRequest r) -> r != null && r.marker() == null))).thenReturn(ListStepsResponse.builder()
+                .steps(summary("s-newer", StepState.COMPLETED, Instant.now()))
+                .marker("page-2")
+                .build());
+        when(emrClient.listSteps(argThat((ListStepsRequest r) -> r != null && "page-2".equals(r.marker())))).thenReturn(ListStepsResponse.builder()
+                .steps(summary("s-older", StepState.FAILED, Instant.now()))
+                .marker("page-3")
+                .build());
+
+        // When
+        poller.pollOnce();
+
+        // Then
+        assertTrue(older.isDone());
+        assertEquals(0, poller.getInFlightStepCount());
+    }
+
+    @Test
+    void testPollOnce_WithThrottling_ShouldKeepStepsInFlight() {
+        // Given
+        CompletableFuture<StepSummary> step = poller.watch("j-1", "s-1");
+
+        when(emrClient.listSteps(any(ListStepsRequest.class))).thenThrow(new RuntimeException("Rate exceeded"));
+
+        // When & Then
+        assertDoesNotThrow(() -> poller.pollOnce());
+        assertFalse(step.isDone());
+        assertEquals(1, poller.getInFlightStepCount());
+    }
+
+    @Test
+    void testPollOnce_WithStepFinishedLongAgo_ShouldStillFindIt() {
+        // Given - a step reattached after a restart, finished hours before it is watched again
+        Instant finishedAt = Instant.now().minus(java.time.Duration.ofHours(3));
+        CompletableFuture<StepSummary> reattached = poller.watch("j-1", "s-old");
+
+        when(emrClient.listSteps(argThat((ListStepsRequest r) -> r != null && r.stepIds().contains("s-old"))))
+                .thenReturn(ListStepsResponse.builder()
+                        .steps(summary("s-old", StepState.COMPLETED, finishedAt))
+                        .build());
+
+        // When
+        poller.pollOnce();
+
+        // Then
+        assertTrue(reattached.isDone());
+        assertEquals(0, poller.getInFlightStepCount());
+    }
+
+    @Test
+    void testPollOnce_WithStepListStepsNeverReturns_ShouldFallBackToDescribeStep() {
+        // Given
+        CompletableFuture<StepSummary> step = poller.watch("j-1", "s-lost");
+
+        when(emrClient.listSteps(any(ListStepsRequest.class))).thenReturn(ListStepsResponse.builder().build());
+        when(emrClient.describeStep(any(DescribeStepRequest.class))).thenReturn(DescribeStepResponse.builder()
+                .step(Step.builder()
+                        .id("s-lost")
+                        .status(StepStatus.builder().state(StepState.FAILED).build())
+                        .build())
+                .build());
+
+        // When
+        for (int i = 1; i < EMRStepStatusPoller.DESCRIBE_FALLBACK_SWEEPS; i++) {
+            poller.pollOnce();
+        }
+        boolean doneBeforeFallback = step.isDone();
+        poller.pollOnce();
+
+        // Then
+        assertFalse(doneBeforeFallback);
+        assertTrue(step.isDone());
+        assertEquals(StepState.FAILED, step.join().status().state());
+        verify(emrClient, times(1)).describeStep(any(DescribeStepRequest.class));
+        assertEquals(0, poller.getInFlightStepCount());
+    }
+
+    @Test
+    void testWatch_RacingPollOnce_ShouldNeverLoseAStep() throws Exception {
+        // Given - a sweep runs on another thread while a step is being put into its cluster's empty map
+        AtomicBoolean raceArmed = new AtomicBoolean();
+        poller.close();
+        poller = new EMRStepStatusPoller(emrClient, 60000) {
+            @Override
+            Map<String, InFlightStep> newStepMap() {
+                EMRStepStatusPoller racing = this;
+                return new ConcurrentHashMap<>() {
+                    @Override
+                    public InFlightStep put(String stepId, InFlightStep step) {
+                        if (raceArmed.compareAndSet(true, false)) {
+                            Thread sweeper = new Thread(racing::pollOnce);
+                            sweeper.start();
+                            try {
+                                sweeper.join(500);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                        return super.put(stepId, step);
+                    }
+                };
+            }
+        };
+
+        poller.watch("j-1", "s-cancelled").cancel(false);
+        raceArmed.set(true);
+
+        when(emrClient.listSteps(any(ListStepsRequest.class))).thenReturn(ListStepsResponse.builder()
+                .steps(summary("s-next", StepState.COMPLETED, Instant.now()))
+                .build());
+
+        // When
+        CompletableFuture<StepSummary> next = poller.watch("j-1", "s-next");
+        poller.pollOnce();
+
+        // Then
+        assertTrue(next.isDone());
+        assertEquals(0, poller.getInFlightStepCount());
+    }
+
+    @Test
+    void testDescribeFailure_ShouldPreferFailureDetails() {
+        StepSummary summary = StepSummary.builder()
+                .id("s-1")
+                .status(StepStatus.builder()
+                        .state(StepState.FAILED)
+                        .failureDetails(FailureDetails.builder().message("ParseException line 1:7").build())
+                        .build())
+                .build();
+
+        assertEquals("ParseException line 1:7", EMRStepStatusPoller.describeFailure(summary));
+    }
+
+    private StepSummary summary(String id, StepState state, Instant created) {
+        return StepSummary.builder()
+                .id(id)
+                .status(StepStatus.builder()
+                        .state(state)
+                        .timeline(StepTimeline.builder().creationDateTime(created).build())
+                        .build())
+                .build();
+    }
+}
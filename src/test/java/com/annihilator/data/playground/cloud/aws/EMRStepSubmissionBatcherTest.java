@@ -0,0 +1,135 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.services.emr.EmrClient;
+import software.amazon.awssdk.services.emr.model.AddJobFlowStepsRequest;
+import software.amazon.awssdk.services.emr.model.AddJobFlowStepsResponse;
+import software.amazon.awssdk.services.emr.model.StepConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class EMRStepSubmissionBatcherTest {
+
+    @Mock
+    private EmrClient emrClient;
+
+    private EMRStepSubmissionBatcher batcher;
+
+    @AfterEach
+    void tearDown() {
+        batcher.close();
+    }
+
+    @Test
+    void testSubmit_WithinWindow_ShouldSendOneRequestAndMapStepIdsInOrder() throws Exception {
+        // Given
+        AtomicInteger readinessChecks = new AtomicInteger();
+        batcher = new EMRStepSubmissionBatcher(emrClient, () -> {
+            readinessChecks.incrementAndGet();
+            return CompletableFuture.completedFuture("j-1");
+        }, 200, 256);
+
+        when(emrClient.addJobFlowSteps(any(AddJobFlowStepsRequest.class))).thenAnswer(invocation -> {
+            AddJobFlowStepsRequest request = invocation.getArgument(0);
+            return AddJobFlowStepsResponse.builder()
+                    .stepIds(request.steps().stream().map(step -> "s-" + step.name()).collect(Collectors.toList()))
+                    .build();
+        });
+
+        // When
+        List<CompletableFuture<EMRStepSubmissionBatcher.SubmittedStep>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(batcher.submit(step("task-" + i)));
+        }
+
+        // Then
+        for (int i = 0; i < 3; i++) {
+            EMRStepSubmissionBatcher.SubmittedStep submitted = futures.get(i).get(5, TimeUnit.SECONDS);
+            assertEquals("j-1", submitted.clusterId);
+            assertEquals("s-task-" + i, submitted.stepId);
+        }
+        verify(emrClient, times(1)).addJobFlowSteps(any(AddJobFlowStepsRequest.class));
+        assertEquals(1, readinessChecks.get());
+    }
+
+    @Test
+    void testSubmit_OverBatchSize_ShouldSplitIntoMultipleRequests() throws Exception {
+        // Given
+        batcher = new EMRStepSubmissionBatcher(emrClient, () -> CompletableFuture.completedFuture("j-1"), 10000, 2);
+
+        when(emrClient.addJobFlowSteps(any(AddJobFlowStepsRequest.class))).thenAnswer(invocation -> {
+            AddJobFlowStepsRequest request = invocation.getArgument(0);
+            return AddJobFlowStepsResponse.builder()
+                    .stepIds(request.steps().stream().map(step -> "s-" + step.name()).collect(Collectors.toList()))
+                    .build();
+        });
+
+        // When
+        CompletableFuture<EMRStepSubmissionBatcher.SubmittedStep> first = batcher.submit(step("a"));
+        CompletableFuture<EMRStepSubmissionBatcher.SubmittedStep> second = batcher.submit(step("b"));
+
+        // Then - a full batch is flushed without waiting for the window
+        assertEquals("s-a", first.get(5, TimeUnit.SECONDS).stepId);
+        assertEquals("s-b", second.get(5, TimeUnit.SECONDS).stepId);
+        verify(emrClient, times(1)).addJobFlowSteps(any(AddJobFlowStepsRequest.class));
+    }
+
+    @Test
+    void testSubmit_WhenRequestFails_ShouldFailEveryStepInBatch() {
+        // Given
+        batcher = new EMRStepSubmissionBatcher(emrClient, () -> CompletableFuture.completedFuture("j-1"), 50, 256);
+
+        when(emrClient.addJobFlowSteps(any(AddJobFlowStepsRequest.class))).thenThrow(new RuntimeException("Rate exceeded"));
+
+        // When
+        CompletableFuture<EMRStepSubmissionBatcher.SubmittedStep> first = batcher.submit(step("a"));
+        CompletableFuture<EMRStepSubmissionBatcher.SubmittedStep> second = batcher.submit(step("b"));
+
+        // Then
+        assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testSubmit_WhileClusterProvisioning_ShouldSendOnceReady() throws Exception {
+        // Given
+        CompletableFuture<String> readiness = new CompletableFuture<>();
+        batcher = new EMRStepSubmissionBatcher(emrClient, () -> readiness, 10, 256);
+
+        when(emrClient.addJobFlowSteps(any(AddJobFlowStepsRequest.class)))
+                .thenReturn(AddJobFlowStepsResponse.builder().stepIds("s-a").build());
+
+        // When
+        CompletableFuture<EMRStepSubmissionBatcher.SubmittedStep> submitted = batcher.submit(step("a"));
+        Thread.sleep(100);
+
+        // Then - nothing is sent until the cluster is ready
+        verify(emrClient, never()).addJobFlowSteps(any(AddJobFlowStepsRequest.class));
+
+        readiness.complete("j-2");
+        assertEquals("j-2", submitted.get(5, TimeUnit.SECONDS).clusterId);
+    }
+
+    private StepConfig step(String name) {
+        return StepConfig.builder().name(name).build();
+    }
+}
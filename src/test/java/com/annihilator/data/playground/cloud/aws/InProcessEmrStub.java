@@ -0,0 +1,149 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import software.amazon.awssdk.services.emr.EmrClient;
+import software.amazon.awssdk.services.emr.model.AddJobFlowStepsRequest;
+import software.amazon.awssdk.services.emr.model.AddJobFlowStepsResponse;
+import software.amazon.awssdk.services.emr.model.Cluster;
+import software.amazon.awssdk.services.emr.model.ClusterState;
+import software.amazon.awssdk.services.emr.model.ClusterStatus;
+import software.amazon.awssdk.services.emr.model.DescribeClusterRequest;
+import software.amazon.awssdk.services.emr.model.DescribeClusterResponse;
+import software.amazon.awssdk.services.emr.model.ListClustersRequest;
+import software.amazon.awssdk.services.emr.model.ListClustersResponse;
+import software.amazon.awssdk.services.emr.model.ListStepsRequest;
+import software.amazon.awssdk.services.emr.model.ListStepsResponse;
+import software.amazon.awssdk.services.emr.model.StepConfig;
+import software.amazon.awssdk.services.emr.model.StepState;
+import software.amazon.awssdk.services.emr.model.StepStatus;
+import software.amazon.awssdk.services.emr.model.StepSummary;
+import software.amazon.awssdk.services.emr.model.StepTimeline;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * In-process EMR control plane for tests: clusters and steps live in memory and only change when the
+ * test moves them.
+ */
+class InProcessEmrStub implements EmrClient {
+
+    private final Map<String, ClusterState> clusters = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, StepSummary>> steps = new ConcurrentHashMap<>();
+    private final AtomicInteger stepSequence = new AtomicInteger();
+    private final AtomicInteger addJobFlowStepsCalls = new AtomicInteger();
+
+    void addCluster(String clusterId, ClusterState state) {
+        clusters.put(clusterId, state);
+        steps.putIfAbsent(clusterId, new LinkedHashMap<>());
+    }
+
+    void setClusterState(String clusterId, ClusterState state) {
+        clusters.put(clusterId, state);
+    }
+
+    String addStep(String clusterId, String name, StepState state) {
+
+        String stepId = "s-" + stepSequence.incrementAndGet();
+
+        synchronized (steps) {
+            steps.get(clusterId).put(stepId, StepSummary.builder()
+                    .id(stepId)
+                    .name(name)
+                    .status(StepStatus.builder()
+                            .state(state)
+                            .timeline(StepTimeline.builder().creationDateTime(Instant.now()).build())
+                            .build())
+                    .build());
+        }
+
+        return stepId;
+    }
+
+    void setStepState(String clusterId, String stepId, StepState state) {
+
+        synchronized (steps) {
+            StepSummary step = steps.get(clusterId).get(stepId);
+            steps.get(clusterId).put(stepId, step.toBuilder()
+                    .status(step.status().toBuilder().state(state).build())
+                    .build());
+        }
+    }
+
+    List<StepSummary> getSteps(String clusterId) {
+
+        synchronized (steps) {
+            return new ArrayList<>(steps.getOrDefault(clusterId, new LinkedHashMap<>()).values());
+        }
+    }
+
+    int getAddJobFlowStepsCalls() {
+        return addJobFlowStepsCalls.get();
+    }
+
+    @Override
+    public DescribeClusterResponse describeCluster(DescribeClusterRequest request) {
+
+        ClusterState state = clusters.getOrDefault(request.clusterId(), ClusterState.TERMINATED);
+
+        return DescribeClusterResponse.builder()
+                .cluster(Cluster.builder()
+                        .id(request.clusterId())
+                        .status(ClusterStatus.builder().state(state).build())
+                        .build())
+                .build();
+    }
+
+    @Override
+    public ListClustersResponse listClusters(ListClustersRequest request) {
+        return ListClustersResponse.builder().build();
+    }
+
+    @Override
+    public AddJobFlowStepsResponse addJobFlowSteps(AddJobFlowStepsRequest request) {
+
+        addJobFlowStepsCalls.incrementAndGet();
+
+        if (!clusters.containsKey(request.jobFlowId())) {
+            throw new IllegalArgumentException("Unknown cluster " + request.jobFlowId());
+        }
+
+        List<String> stepIds = new ArrayList<>();
+
+        for (StepConfig stepConfig : request.steps()) {
+            stepIds.add(addStep(request.jobFlowId(), stepConfig.name(), StepState.PENDING));
+        }
+
+        return AddJobFlowStepsResponse.builder().stepIds(stepIds).build();
+    }
+
+    @Override
+    public ListStepsResponse listSteps(ListStepsRequest request) {
+
+        List<StepSummary> matching = getSteps(request.clusterId()).stream()
+                .filter(step -> !request.hasStepStates() || request.stepStates().contains(step.status().state()))
+                .filter(step -> !request.hasStepIds() || request.stepIds().contains(step.id()))
+                .collect(Collectors.toList());
+
+        // Newest first, single page
+        List<StepSummary> newestFirst = new ArrayList<>(matching);
+        Collections.reverse(newestFirst);
+
+        return ListStepsResponse.builder().steps(newestFirst).build();
+    }
+
+    @Override
+    public String serviceName() {
+        return "elasticmapreduce";
+    }
+
+    @Override
+    public void close() {
+    }
+}
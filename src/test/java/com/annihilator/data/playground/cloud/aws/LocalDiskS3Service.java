@@ -0,0 +1,289 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * S3 object store on local disk for tests and load runs: {@code s3://bucket/key} lives at
+ * {@code root/bucket/key}, and bare keys go to the configured bucket.
+ */
+public class LocalDiskS3Service implements S3Service {
+
+    private static final int PREVIEW_LINE_COUNT = 100;
+
+    private final Path root;
+    private final String bucketName;
+    private final String pathPrefix;
+
+    public LocalDiskS3Service(Path root, String bucketName, String pathPrefix) {
+        this.root = root;
+        this.bucketName = bucketName;
+        this.pathPrefix = pathPrefix;
+    }
+
+    /**
+     * Stores an object, e.g. a step's output, and returns its full S3 path.
+     */
+    public String putObject(String s3PathOrKey, String content) {
+        write(resolve(s3PathOrKey), content);
+        return toS3Path(s3PathOrKey);
+    }
+
+    public boolean exists(String s3PathOrKey) {
+        return Files.isRegularFile(resolve(s3PathOrKey));
+    }
+
+    @Override
+    public String writeQueryToS3(String queryText, String fileName) {
+        return writeTextObject(queryText, String.format("%s/query/%s/%s", pathPrefix, LocalDate.now(), fileName));
+    }
+
+    @Override
+    public String writeTextObject(String content, String s3ObjectKey) {
+        write(resolve(s3ObjectKey), content);
+        return s3ObjectKey;
+    }
+
+    @Override
+    public CompletableFuture<String> writeTextObjectAsync(String content, String s3ObjectKey) {
+        return CompletableFuture.completedFuture(writeTextObject(content, s3ObjectKey));
+    }
+
+    @Override
+    public String writeReconciliationOutput(String data, String fileName) {
+        return writeTextObject(data, String.format("%s/reconciliation/%s/%s", pathPrefix, LocalDate.now(), fileName));
+    }
+
+    @Override
+    public List<String> readOutputPreview(String s3Path) {
+
+        List<String> lines = new ArrayList<>();
+
+        readFileLineByLine(s3Path, line -> {
+            if (lines.size() < PREVIEW_LINE_COUNT) {
+                lines.add(line);
+            }
+        });
+
+        return lines;
+    }
+
+    @Override
+    public String findFirstDataFileInDirectory(String s3DirectoryPath) {
+
+        Path directory = resolve(s3DirectoryPath);
+
+        if (!Files.isDirectory(directory)) {
+            return null;
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            Optional<Path> first = files
+                    .filter(Files::isRegularFile)
+                    .filter(file -> !file.getFileName().toString().startsWith("_") && !file.getFileName().toString().startsWith("."))
+                    .sorted()
+                    .findFirst();
+
+            return first.map(file -> toS3Path(s3DirectoryPath.endsWith("/")
+                    ? s3DirectoryPath + file.getFileName()
+                    : s3DirectoryPath + "/" + file.getFileName())).orElse(null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void readFileLineByLine(String s3Path, Consumer<String> lineProcessor) {
+
+        try (InputStream content = Files.newInputStream(resolve(s3Path));
+             BufferedReader reader = new BufferedReader(new InputStreamReader(
+                     s3Path.endsWith(".gz") ? new GZIPInputStream(content) : content, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineProcessor.accept(line);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read file from S3: " + s3Path, e);
+        }
+    }
+
+    @Override
+    public InputStream openFile(String s3Path) {
+
+        try {
+            InputStream content = Files.newInputStream(resolve(s3Path));
+            return s3Path.endsWith(".gz") ? new GZIPInputStream(content) : content;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open file from S3: " + s3Path, e);
+        }
+    }
+
+    @Override
+    public InputStream openFilePrefix(String s3Path, long maxBytes) {
+
+        try (InputStream content = Files.newInputStream(resolve(s3Path))) {
+            InputStream prefix = new ByteArrayInputStream(content.readNBytes((int) Math.min(maxBytes, Integer.MAX_VALUE)));
+            return s3Path.endsWith(".gz") ? new GZIPInputStream(prefix) : prefix;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open file from S3: " + s3Path, e);
+        }
+    }
+
+    @Override
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    @Override
+    public long getS3FileSize(String s3Path) {
+        try {
+            Path file = resolve(s3Path);
+            return Files.isRegularFile(file) ? Files.size(file) : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Long> getS3FileSizeAsync(String s3Path) {
+        return CompletableFuture.completedFuture(getS3FileSize(s3Path));
+    }
+
+    @Override
+    public String uploadLocalFile(String localFilePath, String s3ObjectKey) {
+
+        Path target = resolve(s3ObjectKey);
+
+        try {
+            Files.createDirectories(target.getParent());
+            Files.copy(Path.of(localFilePath), target, StandardCopyOption.REPLACE_EXISTING);
+            return s3ObjectKey;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to upload local file to S3", e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> uploadLocalFileAsync(String localFilePath, String s3ObjectKey) {
+        return CompletableFuture.supplyAsync(() -> uploadLocalFile(localFilePath, s3ObjectKey));
+    }
+
+    @Override
+    public S3UploadStream openUploadStream(String s3ObjectKey, String contentType) {
+
+        Path target = resolve(s3ObjectKey);
+
+        try {
+            Files.createDirectories(target.getParent());
+            Path staging = Files.createTempFile(target.getParent(), ".upload-", ".part");
+            OutputStream out = Files.newOutputStream(staging);
+
+            // Like S3, the object only appears once the stream is closed
+            return new S3UploadStream(s3ObjectKey) {
+
+                private boolean closed;
+
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    out.write(bytes, offset, length);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    if (!closed) {
+                        closed = true;
+                        out.close();
+                        Files.move(staging, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+
+                @Override
+                public void abort() {
+                    if (!closed) {
+                        closed = true;
+                        try {
+                            out.close();
+                            Files.deleteIfExists(staging);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                }
+            };
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String concatenateObjects(List<String> sourceKeys, String s3ObjectKey, String contentType) {
+
+        try (S3UploadStream upload = openUploadStream(s3ObjectKey, contentType)) {
+            for (String sourceKey : sourceKeys) {
+                Files.copy(resolve(sourceKey), upload);
+            }
+            return s3ObjectKey;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void deleteObjects(List<String> s3ObjectKeys) {
+        try {
+            for (String key : s3ObjectKeys) {
+                Files.deleteIfExists(resolve(key));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private Path resolve(String s3PathOrKey) {
+
+        if (s3PathOrKey.startsWith("s3://")) {
+            return root.resolve(s3PathOrKey.substring("s3://".length()));
+        }
+
+        return root.resolve(bucketName).resolve(s3PathOrKey);
+    }
+
+    private String toS3Path(String s3PathOrKey) {
+        return s3PathOrKey.startsWith("s3://") ? s3PathOrKey : "s3://" + bucketName + "/" + s3PathOrKey;
+    }
+
+    private static void write(Path file, String content) {
+        try {
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, content, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class S3MultipartOutputStreamTest {
+
+    private static final int PART_SIZE = S3MultipartOutputStream.MIN_PART_SIZE;
+
+    // Parts upload on the writing thread, which keeps their order deterministic
+    private static final Executor DIRECT = Runnable::run;
+
+    @Mock
+    private S3Client s3Client;
+
+    @Test
+    void testClose_SmallObject_ShouldUseSinglePutObject() throws IOException {
+        // Given
+        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class))).thenReturn(PutObjectResponse.builder().build());
+        S3MultipartOutputStream stream = newStream();
+
+        // When
+        stream.write("id,name\n1,alpha\n".getBytes());
+        stream.close();
+
+        // Then
+        ArgumentCaptor<PutObjectRequest> request = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(s3Client).putObject(request.capture(), any(RequestBody.class));
+        assertEquals("results/task.csv", request.getValue().key());
+        assertEquals("text/csv", request.getValue().contentType());
+        verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testClose_LargeObject_ShouldCompleteMultipartUploadWithPartsInOrder() throws IOException {
+        // Given
+        stubMultipartUpload();
+        when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenReturn(CompleteMultipartUploadResponse.builder().build());
+        S3MultipartOutputStream stream = newStream();
+
+        // When
+        stream.write(new byte[PART_SIZE * 2 + 100]);
+        stream.close();
+
+        // Then
+        ArgumentCaptor<UploadPartRequest> parts = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(s3Client, times(3)).uploadPart(parts.capture(), any(RequestBody.class));
+        assertEquals(List.of((long) PART_SIZE, (long) PART_SIZE, 100L),
+                parts.getAllValues().stream().map(UploadPartRequest::contentLength).collect(Collectors.toList()));
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3Client).completeMultipartUpload(complete.capture());
+        assertEquals("upload-1", complete.getValue().uploadId());
+        assertEquals(List.of(1, 2, 3), complete.getValue().multipartUpload().parts().stream()
+                .map(CompletedPart::partNumber).collect(Collectors.toList()));
+        assertEquals(PART_SIZE * 2L + 100, stream.getBytesWritten());
+    }
+
+    @Test
+    void testWrite_WhenPartUploadFails_ShouldFailAndAbortUpload() throws IOException {
+        // Given
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().message("Slow Down").statusCode(503).build());
+        S3MultipartOutputStream stream = newStream();
+        stream.write(new byte[PART_SIZE]);
+
+        // When / Then
+        assertThrows(IOException.class, () -> stream.write(1));
+        assertThrows(IOException.class, stream::close);
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testAbort_ShouldDiscardStartedUpload() throws IOException {
+        // Given
+        stubMultipartUpload();
+        S3MultipartOutputStream stream = newStream();
+        stream.write(new byte[PART_SIZE + 1]);
+
+        // When
+        stream.abort();
+
+        // Then
+        ArgumentCaptor<AbortMultipartUploadRequest> abort = ArgumentCaptor.forClass(AbortMultipartUploadRequest.class);
+        verify(s3Client).abortMultipartUpload(abort.capture());
+        assertEquals("upload-1", abort.getValue().uploadId());
+        assertThrows(IOException.class, () -> stream.write(1));
+    }
+
+    private S3MultipartOutputStream newStream() {
+        return new S3MultipartOutputStream(s3Client, "test-bucket", "results/task.csv", "text/csv", PART_SIZE, 2, DIRECT);
+    }
+
+    private void stubMultipartUpload() {
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenAnswer(invocation -> UploadPartResponse.builder()
+                        .eTag("etag-" + invocation.<UploadPartRequest>getArgument(0).partNumber()).build());
+    }
+}
@@ -8,7 +8,9 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
 
@@ -16,6 +18,8 @@ import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -26,17 +30,86 @@ class S3ServiceImplTest {
 
     @Mock
     private S3Client s3Client;
+
+    @Mock
+    private S3AsyncClient s3AsyncClient;
     
     private S3ServiceImpl s3Service;
+    private AWSEmrConfig awsEmrConfig;
 
     @BeforeEach
     void setUp() {
-        AWSEmrConfig awsEmrConfig = new AWSEmrConfig();
+        awsEmrConfig = new AWSEmrConfig();
         awsEmrConfig.setS3Bucket("test-bucket");
         awsEmrConfig.setS3PathPrefix("test-prefix");
         s3Service = new S3ServiceImpl(s3Client, awsEmrConfig);
     }
 
+    @Test
+    void testWriteTextObjectAsync_ShouldUseAsyncClient() {
+        // Given
+        S3ServiceImpl asyncService = new S3ServiceImpl(s3Client, s3AsyncClient, awsEmrConfig);
+
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+            .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().build()));
+
+        // When
+        String result = asyncService.writeTextObjectAsync("SELECT 1", "test-prefix/scripts/a.sh").join();
+
+        // Then
+        assertEquals("test-prefix/scripts/a.sh", result);
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    void testWriteTextObjectAsync_WithS3Error_ShouldCompleteExceptionally() {
+        // Given
+        S3ServiceImpl asyncService = new S3ServiceImpl(s3Client, s3AsyncClient, awsEmrConfig);
+
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+            .thenReturn(CompletableFuture.failedFuture(S3Exception.builder().message("Slow Down").statusCode(503).build()));
+
+        // When & Then
+        CompletionException e = assertThrows(CompletionException.class,
+            () -> asyncService.writeTextObjectAsync("SELECT 1", "test-prefix/scripts/a.sh").join());
+        assertTrue(e.getCause() instanceof RuntimeException);
+    }
+
+    @Test
+    void testGetS3FileSizeAsync_WithMissingObject_ShouldReturnMinusOne() {
+        // Given
+        S3ServiceImpl asyncService = new S3ServiceImpl(s3Client, s3AsyncClient, awsEmrConfig);
+
+        when(s3AsyncClient.headObject(any(HeadObjectRequest.class)))
+            .thenReturn(CompletableFuture.failedFuture(S3Exception.builder().statusCode(404).build()));
+
+        // When & Then
+        assertEquals(-1L, asyncService.getS3FileSizeAsync("s3://test-bucket/missing.txt").join());
+    }
+
+    @Test
+    void testGetS3FileSizeAsync_ShouldReturnContentLength() {
+        // Given
+        S3ServiceImpl asyncService = new S3ServiceImpl(s3Client, s3AsyncClient, awsEmrConfig);
+
+        when(s3AsyncClient.headObject(any(HeadObjectRequest.class)))
+            .thenReturn(CompletableFuture.completedFuture(HeadObjectResponse.builder().contentLength(42L).build()));
+
+        // When & Then
+        assertEquals(42L, asyncService.getS3FileSizeAsync("s3://test-bucket/file.txt").join());
+    }
+
+    @Test
+    void testUploadLocalFileAsync_WithMissingFile_ShouldFailWithoutCallingS3() {
+        // Given
+        S3ServiceImpl asyncService = new S3ServiceImpl(s3Client, s3AsyncClient, awsEmrConfig);
+
+        // When & Then
+        assertThrows(CompletionException.class,
+            () -> asyncService.uploadLocalFileAsync("/nonexistent/output.csv", "test-prefix/output.csv").join());
+        verifyNoInteractions(s3AsyncClient);
+    }
+
     @Test
     void testWriteQueryToS3_WithValidData_ShouldReturnS3Key() {
         // Given
@@ -0,0 +1,266 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import com.annihilator.data.playground.model.EMRClusterHealth;
+import com.annihilator.data.playground.model.StepResult;
+import software.amazon.awssdk.services.emr.model.StepState;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * EMR step lifecycle simulated in process, behind the {@link EMRService} interface.
+ *
+ * Submissions are throttled like AddJobFlowSteps, accepted steps wait PENDING for one of a fixed number of
+ * step slots, run for a log-normally distributed duration and then either fail at the configured rate or
+ * complete with their output written to a {@link LocalDiskS3Service}. All timers run on one scheduler thread,
+ * like the real step status poller, so the simulator itself adds no threads per step.
+ */
+public class SimulatedEmrService implements EMRService {
+
+    private final LocalDiskS3Service s3Service;
+    private final Profile profile;
+    private final Random random;
+    private final ScheduledExecutorService timer;
+    private final Map<String, SimulatedStep> inFlightSteps = new ConcurrentHashMap<>();
+    private final AtomicInteger stepSequence = new AtomicInteger();
+
+    // Guarded by this
+    private final Deque<SimulatedStep> pendingSteps = new ArrayDeque<>();
+    private int runningSteps;
+    private int peakRunningSteps;
+    private double submissionTokens;
+    private long lastRefillNanos = System.nanoTime();
+
+    private final AtomicLong submittedSteps = new AtomicLong();
+    private final AtomicLong completedSteps = new AtomicLong();
+    private final AtomicLong failedSteps = new AtomicLong();
+    private final AtomicLong cancelledSteps = new AtomicLong();
+    private final AtomicLong throttledSubmissions = new AtomicLong();
+
+    public SimulatedEmrService(LocalDiskS3Service s3Service, Profile profile, long seed) {
+        this.s3Service = s3Service;
+        this.profile = profile;
+        this.random = new Random(seed);
+        this.submissionTokens = profile.submissionsPerSecond;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "simulated-emr");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public CompletableFuture<StepResult> submitTaskAndWait(String playgroundId, String taskId, String content, String taskType) {
+
+        SimulatedStep step = new SimulatedStep("s-sim-" + stepSequence.incrementAndGet(), playgroundId, taskId);
+
+        inFlightSteps.put(taskId, step);
+        step.future.whenComplete((result, throwable) -> inFlightSteps.remove(taskId, step));
+
+        submittedSteps.incrementAndGet();
+        timer.execute(() -> trySubmit(step));
+
+        return step.future;
+    }
+
+    @Override
+    public boolean cancelTask(String taskId) {
+
+        SimulatedStep step = inFlightSteps.get(taskId);
+
+        if (step == null) {
+            return false;
+        }
+
+        synchronized (this) {
+            step.cancelled = true;
+            pendingSteps.remove(step);
+
+            if (step.completion != null && step.completion.cancel(false)) {
+                runningSteps--;
+                startPendingSteps();
+            }
+        }
+
+        if (step.future.complete(new StepResult(step.stepId, StepState.CANCELLED, "Step cancelled", null, null, taskId))) {
+            cancelledSteps.incrementAndGet();
+        }
+
+        return true;
+    }
+
+    @Override
+    public List<EMRClusterHealth> getClusterHealth() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void prewarm(Collection<String> taskTypes) {
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    public long getSubmittedSteps() {
+        return submittedSteps.get();
+    }
+
+    public long getCompletedSteps() {
+        return completedSteps.get();
+    }
+
+    public long getFailedSteps() {
+        return failedSteps.get();
+    }
+
+    public long getCancelledSteps() {
+        return cancelledSteps.get();
+    }
+
+    public long getThrottledSubmissions() {
+        return throttledSubmissions.get();
+    }
+
+    public synchronized int getPeakRunningSteps() {
+        return peakRunningSteps;
+    }
+
+    private synchronized void trySubmit(SimulatedStep step) {
+
+        if (step.cancelled) {
+            return;
+        }
+
+        if (!acquireSubmissionToken()) {
+            throttledSubmissions.incrementAndGet();
+            timer.schedule(() -> trySubmit(step), profile.throttleBackoffMs, TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        pendingSteps.add(step);
+        startPendingSteps();
+    }
+
+    private boolean acquireSubmissionToken() {
+
+        if (profile.submissionsPerSecond <= 0) {
+            return true;
+        }
+
+        long now = System.nanoTime();
+        submissionTokens = Math.min(profile.submissionsPerSecond,
+                submissionTokens + (now - lastRefillNanos) / 1e9 * profile.submissionsPerSecond);
+        lastRefillNanos = now;
+
+        if (submissionTokens < 1) {
+            return false;
+        }
+
+        submissionTokens--;
+        return true;
+    }
+
+    private void startPendingSteps() {
+
+        while (runningSteps < profile.stepConcurrency && !pendingSteps.isEmpty()) {
+
+            SimulatedStep step = pendingSteps.poll();
+
+            runningSteps++;
+            peakRunningSteps = Math.max(peakRunningSteps, runningSteps);
+            step.completion = timer.schedule(() -> finish(step), sampleDurationMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void finish(SimulatedStep step) {
+
+        boolean failed;
+
+        synchronized (this) {
+            runningSteps--;
+            startPendingSteps();
+
+            if (step.cancelled) {
+                return;
+            }
+
+            failed = random.nextDouble() < profile.failureRate;
+        }
+
+        String logPath = String.format("s3://%s/simulated/logs/%s/%s.log", s3Service.getBucketName(), step.playgroundId, step.taskId);
+
+        if (failed) {
+            failedSteps.incrementAndGet();
+            step.future.complete(new StepResult(step.stepId, StepState.FAILED, "Simulated step failure", null, logPath, step.taskId));
+            return;
+        }
+
+        String outputPath = s3Service.putObject(
+                String.format("s3://%s/simulated/output/%s/%s.txt", s3Service.getBucketName(), step.playgroundId, step.taskId),
+                "output of " + step.stepId + "\n");
+
+        completedSteps.incrementAndGet();
+        step.future.complete(new StepResult(step.stepId, StepState.COMPLETED, "Step completed successfully", outputPath, logPath, step.taskId));
+    }
+
+    private synchronized long sampleDurationMs() {
+        return Math.max(0L, Math.round(profile.medianStepDurationMs * Math.exp(profile.stepDurationSigma * random.nextGaussian())));
+    }
+
+    /**
+     * Shape of the simulated EMR: step durations are log-normal around {@code medianStepDurationMs};
+     * {@code submissionsPerSecond} of 0 disables throttling.
+     */
+    public static class Profile {
+
+        final long medianStepDurationMs;
+        final double stepDurationSigma;
+        final double failureRate;
+        final int submissionsPerSecond;
+        final int stepConcurrency;
+        final long throttleBackoffMs;
+
+        public Profile(long medianStepDurationMs, double stepDurationSigma, double failureRate,
+                       int submissionsPerSecond, int stepConcurrency, long throttleBackoffMs) {
+            this.medianStepDurationMs = medianStepDurationMs;
+            this.stepDurationSigma = stepDurationSigma;
+            this.failureRate = failureRate;
+            this.submissionsPerSecond = submissionsPerSecond;
+            this.stepConcurrency = stepConcurrency;
+            this.throttleBackoffMs = throttleBackoffMs;
+        }
+    }
+
+    private static class SimulatedStep {
+
+        final String stepId;
+        final String playgroundId;
+        final String taskId;
+        final CompletableFuture<StepResult> future = new CompletableFuture<>();
+
+        // Guarded by the service
+        boolean cancelled;
+        ScheduledFuture<?> completion;
+
+        SimulatedStep(String stepId, String playgroundId, String taskId) {
+            this.stepId = stepId;
+            this.playgroundId = playgroundId;
+            this.taskId = taskId;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import com.annihilator.data.playground.config.RetryConfig;
+import org.junit.jupiter.api.Test;
+
+import static com.annihilator.data.playground.cloud.aws.StepFailureClassifier.FailureClass.CAPACITY;
+import static com.annihilator.data.playground.cloud.aws.StepFailureClassifier.FailureClass.PERMANENT;
+import static com.annihilator.data.playground.cloud.aws.StepFailureClassifier.FailureClass.TRANSIENT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StepRetryPolicyTest {
+
+    @Test
+    void testShouldRetry_PermanentFailure_ShouldFailFast() {
+        // Given
+        StepRetryPolicy policy = new StepRetryPolicy(3, backoff(), new DefaultStepFailureClassifier());
+
+        // When & Then
+        assertFalse(policy.shouldRetry(PERMANENT, 0));
+        assertTrue(policy.shouldRetry(TRANSIENT, 0));
+        assertTrue(policy.shouldRetry(CAPACITY, 2));
+        assertFalse(policy.shouldRetry(TRANSIENT, 3));
+    }
+
+    @Test
+    void testGetRetryDelay_ShouldBackOffExponentially() {
+        // Given
+        StepRetryPolicy policy = new StepRetryPolicy(3, backoff(), new DefaultStepFailureClassifier());
+
+        // When & Then
+        assertEquals(1000, policy.getRetryDelay(TRANSIENT, 0));
+        assertEquals(2000, policy.getRetryDelay(TRANSIENT, 1));
+        assertEquals(4000, policy.getRetryDelay(TRANSIENT, 2));
+    }
+
+    @Test
+    void testGetRetryDelay_CapacityFailure_ShouldWaitLonger() {
+        // Given
+        StepRetryPolicy policy = new StepRetryPolicy(3, backoff(), new DefaultStepFailureClassifier());
+
+        // When & Then
+        assertEquals(2000, policy.getRetryDelay(CAPACITY, 0));
+        assertEquals(8000, policy.getRetryDelay(CAPACITY, 2));
+    }
+
+    @Test
+    void testClassify_ShouldDelegateToClassifier() {
+        // Given
+        StepRetryPolicy policy = new StepRetryPolicy(3, backoff(), reason -> CAPACITY);
+
+        // When & Then
+        assertEquals(CAPACITY, policy.classify("FAILED: SemanticException"));
+    }
+
+    private RetryConfig backoff() {
+        RetryConfig config = new RetryConfig();
+        config.setBaseDelayMs(1000);
+        config.setBackoffMultiplier(2.0);
+        config.setMaxDelayMs(60000);
+        config.setEnableJitter(false);
+        return config;
+    }
+}
@@ -0,0 +1,99 @@
+package com.annihilator.data.playground.cloud.aws;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StepScriptCacheTest {
+
+    @Mock
+    private S3Service s3Service;
+
+    private StepScriptCache cache;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(s3Service.getBucketName()).thenReturn("bucket");
+        lenient().when(s3Service.writeTextObject(anyString(), anyString())).thenAnswer(invocation -> invocation.getArgument(1));
+        cache = new StepScriptCache(s3Service, "playground");
+    }
+
+    @Test
+    void testPublish_SameScriptTwice_ShouldUploadOnce() {
+        // Given
+        when(s3Service.getS3FileSize(anyString())).thenReturn(-1L);
+
+        // When
+        String first = cache.publish("SELECT 1", "HIVE", Arrays.asList("u1", "u2"), "sh");
+        String second = cache.publish("SELECT 1", "HIVE", Arrays.asList("u2", "u1"), "sh");
+
+        // Then
+        assertEquals(first, second);
+        assertTrue(first.startsWith("playground/scripts/hive/"));
+        assertTrue(first.endsWith(".sh"));
+        verify(s3Service, times(1)).getS3FileSize(anyString());
+        verify(s3Service, times(1)).writeTextObject(eq("SELECT 1"), eq(first));
+    }
+
+    @Test
+    void testPublish_WhenObjectAlreadyInS3_ShouldNotUpload() {
+        // Given
+        when(s3Service.getS3FileSize(anyString())).thenReturn(42L);
+
+        // When
+        String key = cache.publish("SELECT 1", "PRESTO", Collections.emptyList(), "sh");
+
+        // Then
+        verify(s3Service).getS3FileSize("s3://bucket/" + key);
+        verify(s3Service, never()).writeTextObject(anyString(), anyString());
+        assertEquals(1, cache.getKnownKeyCount());
+    }
+
+    @Test
+    void testPublish_AfterFailedUpload_ShouldUploadAgain() {
+        // Given
+        when(s3Service.getS3FileSize(anyString())).thenReturn(-1L);
+        when(s3Service.writeTextObject(anyString(), anyString()))
+                .thenThrow(new RuntimeException("Slow Down"))
+                .thenAnswer(invocation -> invocation.getArgument(1));
+
+        // When
+        assertThrows(RuntimeException.class, () -> cache.publish("SELECT 1", "HIVE", null, "sh"));
+        String key = cache.publish("SELECT 1", "HIVE", null, "sh");
+
+        // Then
+        verify(s3Service, times(2)).writeTextObject(eq("SELECT 1"), eq(key));
+        assertEquals(1, cache.getKnownKeyCount());
+    }
+
+    @Test
+    void testKeyFor_ShouldDependOnEngineAndUdfSet() {
+        // When
+        String hive = cache.keyFor("SELECT 1", "HIVE", Collections.emptyList(), "sh");
+        String presto = cache.keyFor("SELECT 1", "PRESTO", Collections.emptyList(), "sh");
+        String hiveWithUdf = cache.keyFor("SELECT 1", "HIVE", Collections.singletonList("u1"), "sh");
+
+        // Then
+        assertNotEquals(hive, presto);
+        assertNotEquals(hive, hiveWithUdf);
+        assertEquals(hive, cache.keyFor("SELECT 1", "HIVE", null, "sh"));
+    }
+}
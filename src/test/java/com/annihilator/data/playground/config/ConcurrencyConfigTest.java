@@ -0,0 +1,78 @@
+package com.annihilator.data.playground.config;
+
+import com.annihilator.data.playground.utility.BlockingExecutors;
+import io.dropwizard.jersey.validation.Validators;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrencyConfigTest {
+
+    private final Validator validator = Validators.newValidator();
+
+    @Test
+    void testValidate_PlatformThreadPoolsUpTo1000_ShouldPass() {
+        // Given
+        ConcurrencyConfig config = config(1000, 1000, false);
+
+        // When
+        Set<ConstraintViolation<ConcurrencyConfig>> violations = validator.validate(config);
+
+        // Then
+        assertTrue(violations.isEmpty(), violations.toString());
+    }
+
+    @Test
+    void testValidate_PlatformThreadPoolOver1000_ShouldFail() {
+        // Given
+        ConcurrencyConfig config = config(200, 5000, false);
+
+        // When
+        Set<ConstraintViolation<ConcurrencyConfig>> violations = validator.validate(config);
+
+        // Then
+        assertEquals(1, violations.size());
+        assertEquals("threadPoolSizeWithinLimit", violations.iterator().next().getPropertyPath().toString());
+    }
+
+    @Test
+    void testValidate_VirtualThreadPoolOver1000_ShouldPassOnlyWhereSupported() {
+        // Given
+        ConcurrencyConfig config = config(10000, 10000, true);
+
+        // When
+        Set<ConstraintViolation<ConcurrencyConfig>> violations = validator.validate(config);
+
+        // Then
+        assertEquals(BlockingExecutors.isVirtualThreadSupported(), violations.isEmpty(), violations.toString());
+    }
+
+    @Test
+    void testValidate_VirtualThreadPoolOver10000_ShouldFail() {
+        // Given
+        ConcurrencyConfig config = config(10001, 200, true);
+
+        // When
+        Set<ConstraintViolation<ConcurrencyConfig>> violations = validator.validate(config);
+
+        // Then
+        assertTrue(violations.stream().anyMatch(v -> v.getPropertyPath().toString().equals("adHocThreadPoolSize")));
+    }
+
+    private static ConcurrencyConfig config(int adHocThreadPoolSize, int scheduledThreadPoolSize, boolean virtualThreads) {
+
+        ConcurrencyConfig config = new ConcurrencyConfig();
+        config.setAdHocThreadPoolSize(adHocThreadPoolSize);
+        config.setScheduledThreadPoolSize(scheduledThreadPoolSize);
+        config.setVirtualThreads(virtualThreads);
+        config.setSchedulerSleepTime(60000);
+        config.setPlaygroundExecutionGracePeriod(60000);
+        config.setPlaygroundMaxExecutionFrequency(60000);
+        return config;
+    }
+}
@@ -12,7 +12,6 @@ public class RetryConfigTest {
     public void testDefaultConfiguration() {
         RetryConfig config = new RetryConfig();
         
-        assertEquals(3, config.getMaxRetries());
         assertEquals(5000, config.getBaseDelayMs());
         assertEquals(2.0, config.getBackoffMultiplier());
         assertEquals(60000, config.getMaxDelayMs());
@@ -44,46 +43,10 @@ public class RetryConfigTest {
         assertTrue(delay <= config.getMaxDelayMs());
     }
 
-    @Test
-    public void testShouldRetryTransientFailures() {
-        RetryConfig config = new RetryConfig();
-        
-        // Should retry transient failures
-        assertTrue(config.shouldRetry("Connection timeout"));
-        assertTrue(config.shouldRetry("Network error"));
-        assertTrue(config.shouldRetry("Service temporarily unavailable"));
-        assertTrue(config.shouldRetry("Rate limit exceeded"));
-        assertTrue(config.shouldRetry("Resource not available"));
-    }
-
-    @Test
-    public void testShouldNotRetryPermanentFailures() {
-        RetryConfig config = new RetryConfig();
-        
-        // Should not retry permanent failures
-        assertFalse(config.shouldRetry("Syntax error in query"));
-        assertFalse(config.shouldRetry("Table not found"));
-        assertFalse(config.shouldRetry("Column not found"));
-        assertFalse(config.shouldRetry("Permission denied"));
-        assertFalse(config.shouldRetry("Authentication failed"));
-        assertFalse(config.shouldRetry("Access denied"));
-    }
-
-    @Test
-    public void testShouldRetryUnknownErrors() {
-        RetryConfig config = new RetryConfig();
-        
-        // Should retry unknown errors (default behavior)
-        assertTrue(config.shouldRetry("Unknown error"));
-        assertTrue(config.shouldRetry(null));
-        assertTrue(config.shouldRetry(""));
-    }
-
     @Test
     public void testCustomConfiguration() {
-        RetryConfig config = new RetryConfig(5, 10000, 1.5, 30000, false, 0.0);
+        RetryConfig config = new RetryConfig(10000, 1.5, 30000, false, 0.0);
         
-        assertEquals(5, config.getMaxRetries());
         assertEquals(10000, config.getBaseDelayMs());
         assertEquals(1.5, config.getBackoffMultiplier());
         assertEquals(30000, config.getMaxDelayMs());
@@ -0,0 +1,343 @@
+package com.annihilator.data.playground.connector;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CsvResultEncoderTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(CsvResultEncoderTest.class);
+
+    @Test
+    void testWriteRows_TextColumns_ShouldQuoteOnlyWhenNeeded() throws Exception {
+        // Given
+        ResultSet rs = SyntheticResultSet.builder()
+                .column("name", Types.VARCHAR)
+                .column("note", Types.LONGVARCHAR)
+                .row("alpha", "plain")
+                .row("beta, gamma", "say \"hi\"")
+                .row("line\nbreak", "\"")
+                .row(null, "")
+                .build().resultSet();
+
+        // When
+        String csv = encode(rs);
+
+        // Then
+        assertEquals("name,note\n"
+                + "alpha,plain\n"
+                + "\"beta, gamma\",\"say \"\"hi\"\"\"\n"
+                + "\"line\nbreak\",\"\"\"\"\n"
+                + ",\n", csv);
+    }
+
+    @Test
+    void testWriteRows_NumericColumns_ShouldMatchFormatValue() throws Exception {
+        // Given
+        SyntheticResultSet.Builder builder = SyntheticResultSet.builder()
+                .column("id", Types.BIGINT)
+                .column("qty", Types.INTEGER)
+                .column("amount", Types.DECIMAL)
+                .column("ratio", Types.DOUBLE)
+                .row(1L, 0L, new BigDecimal("12.500"), new BigDecimal("0.25"))
+                .row(-42L, null, new BigDecimal("100"), new BigDecimal("1E+3"))
+                .row(Long.MIN_VALUE, 7L, new BigDecimal("0.000"), null)
+                .row(Long.MAX_VALUE, -1L, null, new BigDecimal("-3.1400"));
+
+        // When
+        String csv = encode(builder.build().resultSet());
+
+        // Then
+        assertEquals("id,qty,amount,ratio\n"
+                + "1,0,12.5,0.25\n"
+                + "-42,,100,1000\n"
+                + Long.MIN_VALUE + ",7,0,\n"
+                + Long.MAX_VALUE + ",-1,,-3.14\n", csv);
+        assertEquals(legacyEncode(builder.build().resultSet()), csv);
+    }
+
+    @Test
+    void testWriteRows_UnsignedBigint_ShouldReadAsText() throws Exception {
+        // Given
+        ResultSet rs = SyntheticResultSet.builder()
+                .unsignedColumn("id", Types.BIGINT)
+                .row("18446744073709551615")
+                .build().resultSet();
+
+        // When
+        String csv = encode(rs);
+
+        // Then
+        assertEquals("id\n18446744073709551615\n", csv);
+    }
+
+    @Test
+    void testWriteRows_LongText_ShouldGrowScratchBuffer() throws Exception {
+        // Given
+        String longValue = "x".repeat(1000) + "," + "\"".repeat(3);
+        ResultSet rs = SyntheticResultSet.builder()
+                .column("payload", Types.VARCHAR)
+                .row("short")
+                .row(longValue)
+                .row("after")
+                .build().resultSet();
+
+        // When
+        String csv = encode(rs);
+
+        // Then
+        assertEquals("payload\nshort\n\"" + "x".repeat(1000) + "," + "\"".repeat(6) + "\"\nafter\n", csv);
+    }
+
+    @Test
+    void testForResultSet_ShouldReadMetadataOnce() throws Exception {
+        // Given
+        SyntheticResultSet synthetic = SyntheticResultSet.builder()
+                .column("id", Types.INTEGER)
+                .column("name", Types.VARCHAR)
+                .row(1L, "a")
+                .row(2L, "b")
+                .build();
+
+        // When
+        encode(synthetic.resultSet());
+
+        // Then
+        assertEquals(1, synthetic.getMetaDataCalls());
+    }
+
+    /**
+     * Compares the encoder with the per-cell {@code formatValue} loop it replaced on a synthetic result set.
+     * Excluded from the default build; run it with {@code mvn test -P load-test} and size it with
+     * {@code -Dload.csvRows} (default 10 million rows).
+     */
+    @Test
+    @Tag("load")
+    void testEncodingBenchmark() throws Exception {
+        // Given
+        long rows = Long.getLong("load.csvRows", 10_000_000L);
+        long warmupRows = Math.min(rows, 500_000L);
+        SyntheticResultSet.Builder table = benchmarkTable();
+
+        runEncoder(table.generate(warmupRows, BENCHMARK_VALUES));
+        runLegacy(table.generate(warmupRows, BENCHMARK_VALUES));
+
+        // When
+        EncodingRun legacy = runLegacy(table.generate(rows, BENCHMARK_VALUES));
+        EncodingRun encoder = runEncoder(table.generate(rows, BENCHMARK_VALUES));
+
+        // Then
+        logger.info("CSV encoding of {} rows: formatValue loop {}; column-writer encoder {}", rows, legacy, encoder);
+        assertEquals(legacy.checksum, encoder.checksum);
+        assertEquals(legacy.bytes, encoder.bytes);
+    }
+
+    private static final int VALUE_POOL_SIZE = 1024;
+
+    // Values are drawn from a small pool so the run measures encoding rather than value generation
+    private static final SyntheticResultSet.ValueSource BENCHMARK_VALUES = benchmarkValues();
+
+    private static SyntheticResultSet.Builder benchmarkTable() {
+        return SyntheticResultSet.builder()
+                .column("id", Types.BIGINT)
+                .column("customer_id", Types.INTEGER)
+                .column("amount", Types.DECIMAL)
+                .column("ratio", Types.DOUBLE)
+                .column("name", Types.VARCHAR)
+                .column("comment", Types.VARCHAR)
+                .column("created_at", Types.TIMESTAMP);
+    }
+
+    private static SyntheticResultSet.ValueSource benchmarkValues() {
+
+        Random random = new Random(42);
+        Object[][] pool = new Object[7][VALUE_POOL_SIZE];
+
+        for (int i = 0; i < VALUE_POOL_SIZE; i++) {
+            pool[1][i] = i % 50 == 0 ? null : (long) random.nextInt(1_000_000);
+            pool[2][i] = BigDecimal.valueOf(random.nextInt(10_000_000), 4);
+            pool[3][i] = new BigDecimal(Double.toString(random.nextDouble()));
+            pool[4][i] = "customer-" + random.nextInt(100_000);
+            pool[5][i] = i % 10 == 0 ? "said \"hello, world\"" : i % 7 == 0 ? null : "ordinary comment " + i;
+            pool[6][i] = "2024-01-" + (10 + i % 18) + " 12:34:56";
+        }
+
+        return (row, column) -> column == 0 ? (Object) row : pool[column][(int) (row % VALUE_POOL_SIZE)];
+    }
+
+    private static EncodingRun runEncoder(SyntheticResultSet table) throws SQLException, IOException {
+
+        return measure(writer -> {
+            ResultSet rs = table.resultSet();
+            CsvResultEncoder encoder = CsvResultEncoder.forResultSet(rs);
+            encoder.writeHeader(writer);
+            encoder.writeRows(rs, writer);
+        });
+    }
+
+    private static EncodingRun runLegacy(SyntheticResultSet table) throws SQLException, IOException {
+        return measure(writer -> legacyEncode(table.resultSet(), writer));
+    }
+
+    private static EncodingRun measure(EncodingTask task) throws SQLException, IOException {
+
+        CountingOutputStream bytes = new CountingOutputStream();
+        CheckedOutputStream out = new CheckedOutputStream(bytes, new CRC32());
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+
+        task.run(writer);
+        writer.flush();
+
+        long elapsedNanos = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        return new EncodingRun(elapsedNanos, allocated, bytes.count, out.getChecksum().getValue());
+    }
+
+    private static long allocatedBytes() {
+
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    @FunctionalInterface
+    private interface EncodingTask {
+        void run(Writer writer) throws SQLException, IOException;
+    }
+
+    private static class EncodingRun {
+
+        final long elapsedNanos;
+        final long allocatedBytes;
+        final long bytes;
+        final long checksum;
+
+        EncodingRun(long elapsedNanos, long allocatedBytes, long bytes, long checksum) {
+            this.elapsedNanos = elapsedNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.bytes = bytes;
+            this.checksum = checksum;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d ms, %.1f MB allocated, %.1f MB written",
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos), allocatedBytes / 1e6, bytes / 1e6);
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    private static String encode(ResultSet rs) throws SQLException, IOException {
+
+        StringWriter writer = new StringWriter();
+        CsvResultEncoder encoder = CsvResultEncoder.forResultSet(rs);
+
+        encoder.writeHeader(writer);
+        encoder.writeRows(rs, writer);
+
+        return writer.toString();
+    }
+
+    private static String legacyEncode(ResultSet rs) throws SQLException, IOException {
+
+        StringWriter writer = new StringWriter();
+        legacyEncode(rs, writer);
+
+        return writer.toString();
+    }
+
+    // The row loop MySQLConnector used before the encoder, kept here to pin the output format
+    private static void legacyEncode(ResultSet rs, Writer writer) throws SQLException, IOException {
+
+        ResultSetMetaData meta = rs.getMetaData();
+        int columnCount = meta.getColumnCount();
+
+        for (int i = 1; i <= columnCount; i++) {
+            writer.write(meta.getColumnName(i));
+            if (i < columnCount) writer.write(',');
+        }
+        writer.write('\n');
+
+        while (rs.next()) {
+            for (int i = 1; i <= columnCount; i++) {
+                String val = formatValue(rs, i);
+                if (val != null) {
+                    val = val.replace("\"", "\"\"");
+                    if (val.contains(",") || val.contains("\"") || val.contains("\n")) {
+                        val = "\"" + val + "\"";
+                    }
+                    writer.write(val);
+                }
+                if (i < columnCount) writer.write(',');
+            }
+            writer.write('\n');
+        }
+    }
+
+    // MySQLConnector's former per-cell formatting, which looked the column type up for every value
+    private static String formatValue(ResultSet rs, int columnIndex) throws SQLException {
+
+        switch (rs.getMetaData().getColumnType(columnIndex)) {
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+            case Types.REAL:
+                try {
+                    BigDecimal decimal = rs.getBigDecimal(columnIndex);
+                    if (decimal != null) {
+                        return decimal.stripTrailingZeros().toPlainString();
+                    }
+                } catch (SQLException e) {
+                    // Fall back to the text value
+                }
+                break;
+            default:
+                break;
+        }
+
+        return rs.getString(columnIndex);
+    }
+}
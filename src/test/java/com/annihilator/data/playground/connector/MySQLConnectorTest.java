@@ -0,0 +1,366 @@
+package com.annihilator.data.playground.connector;
+
+import com.annihilator.data.playground.cloud.aws.S3Service;
+import com.annihilator.data.playground.cloud.aws.S3UploadStream;
+import com.annihilator.data.playground.config.MySQLConnectorConfig;
+import com.annihilator.data.playground.model.StepResult;
+import com.annihilator.data.playground.model.Task;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.services.emr.model.StepState;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MySQLConnectorTest {
+
+    @Mock
+    private MySQLDBConnection mysqlDBConnection;
+
+    @Mock
+    private S3Service s3Service;
+
+    @TempDir
+    Path outputDirectory;
+
+    private MySQLConnectorConfig config;
+    private MetricRegistry metrics;
+    private MySQLConnector connector;
+    private RecordingUploadStream uploadStream;
+    private final Map<String, RecordingUploadStream> uploadStreams = new ConcurrentHashMap<>();
+    private final CountDownLatch releaseConnection = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        config = new MySQLConnectorConfig();
+        config.setMaxSize(1);
+        config.setMaxQueuedTasks(1);
+        config.setOutputDirectory(outputDirectory.toString());
+
+        metrics = new MetricRegistry();
+        connector = newConnector();
+
+        lenient().when(s3Service.openUploadStream(anyString(), anyString())).thenAnswer(invocation -> {
+            uploadStream = new RecordingUploadStream(invocation.getArgument(0));
+            uploadStreams.put(uploadStream.getS3ObjectKey(), uploadStream);
+            return uploadStream;
+        });
+        lenient().when(s3Service.getBucketName()).thenReturn("test-bucket");
+    }
+
+    private MySQLConnector newConnector() {
+        return new MySQLConnector(mysqlDBConnection, config, s3Service, "data-phantom",
+                MySQLConnector.newTaskExecutor(config), metrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseConnection.countDown();
+        connector.close();
+    }
+
+    @Test
+    void testExecuteSQLTask_ShouldRunOnDedicatedWorker() throws Exception {
+        // Given
+        AtomicReference<String> workerName = new AtomicReference<>();
+        when(mysqlDBConnection.getConnection()).thenAnswer(invocation -> {
+            workerName.set(Thread.currentThread().getName());
+            throw new SQLException("connection refused");
+        });
+
+        // When
+        StepResult result = connector.executeSQLTask(task()).get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(StepState.FAILED, result.getStatus());
+        assertTrue(workerName.get().startsWith("mysql-task-"));
+    }
+
+    @Test
+    void testExecuteSQLTask_ShouldStreamCsvToS3() throws Exception {
+        // Given
+        stubResultSet(new String[]{"id", "name"}, new String[][]{{"1", "alpha"}, {"2", "beta, gamma"}});
+        Task task = task();
+
+        // When
+        StepResult result = connector.executeSQLTask(task).get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(StepState.COMPLETED, result.getStatus());
+        assertTrue(result.getOutputPath().startsWith("s3://test-bucket/data-phantom/"));
+        assertTrue(result.getOutputPath().endsWith("/" + task.getId() + ".csv"));
+        assertTrue(uploadStream.closed);
+        assertFalse(uploadStream.aborted);
+        assertEquals("id,name\n1,alpha\n2,\"beta, gamma\"\n", uploadStream.content());
+    }
+
+    @Test
+    void testExecuteSQLTask_WithGzipOutput_ShouldStreamCompressedCsv() throws Exception {
+        // Given
+        config.setGzipOutput(true);
+        connector.close();
+        metrics = new MetricRegistry();
+        connector = newConnector();
+        stubResultSet(new String[]{"id"}, new String[][]{{"1"}, {"2"}});
+
+        // When
+        StepResult result = connector.executeSQLTask(task()).get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(StepState.COMPLETED, result.getStatus());
+        assertTrue(result.getOutputPath().endsWith(".csv.gz"));
+        assertEquals("id\n1\n2\n", new String(new GZIPInputStream(
+                new ByteArrayInputStream(uploadStream.bytes.toByteArray())).readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testExecuteSQLTask_WhenQueryFails_ShouldAbortUpload() throws Exception {
+        // Given
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        when(mysqlDBConnection.getConnection()).thenReturn(connection);
+        when(connection.createStatement(anyInt(), anyInt())).thenReturn(statement);
+        when(statement.executeQuery("SELECT 1")).thenThrow(new SQLException("Unknown column"));
+
+        // When
+        StepResult result = connector.executeSQLTask(task()).get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(StepState.FAILED, result.getStatus());
+        assertTrue(uploadStream.aborted);
+        assertFalse(uploadStream.closed);
+    }
+
+    @Test
+    void testExecuteSQLTask_WithSplitHint_ShouldFetchPartitionsInParallelAndConcatenate() throws Exception {
+        // Given
+        Connection connection = mock(Connection.class);
+        Statement boundsStatement = mock(Statement.class);
+        PreparedStatement lowerStatement = mock(PreparedStatement.class);
+        PreparedStatement upperStatement = mock(PreparedStatement.class);
+
+        when(mysqlDBConnection.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(boundsStatement);
+        when(boundsStatement.executeQuery(anyString())).thenReturn(SyntheticResultSet.builder()
+                .column("min", Types.BIGINT).column("max", Types.BIGINT).row(1L, 10L).build().resultSet());
+        when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenAnswer(invocation ->
+                invocation.<String>getArgument(0).contains("IS NULL") ? lowerStatement : upperStatement);
+        when(lowerStatement.executeQuery()).thenReturn(SyntheticResultSet.builder()
+                .column("id", Types.BIGINT).row(1L).row(2L).build().resultSet());
+        when(upperStatement.executeQuery()).thenReturn(SyntheticResultSet.builder()
+                .column("id", Types.BIGINT).row(7L).row(10L).build().resultSet());
+        when(s3Service.concatenateObjects(anyList(), anyString(), anyString()))
+                .thenAnswer(invocation -> invocation.getArgument(1));
+
+        Task task = task();
+        task.setQuery("/* split_by(id, 2) */ SELECT id FROM orders");
+
+        // When
+        StepResult result = connector.executeSQLTask(task).get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(StepState.COMPLETED, result.getStatus());
+        verify(lowerStatement).setObject(1, 6L);
+        verify(upperStatement).setObject(1, 6L);
+
+        String s3ObjectKey = result.getOutputPath().substring("s3://test-bucket/".length());
+        List<String> partKeys = List.of(s3ObjectKey + ".parts/00000", s3ObjectKey + ".parts/00001");
+        verify(s3Service).concatenateObjects(partKeys, s3ObjectKey, "text/csv");
+        verify(s3Service).deleteObjects(partKeys);
+        assertEquals("id\n1\n2\n", uploadStreams.get(partKeys.get(0)).content());
+        assertEquals("7\n10\n", uploadStreams.get(partKeys.get(1)).content());
+    }
+
+    @Test
+    void testExecuteSQLTask_WhenPartitionFails_ShouldReportItAndCleanUp() throws Exception {
+        // Given
+        Connection connection = mock(Connection.class);
+        Statement boundsStatement = mock(Statement.class);
+        PreparedStatement lowerStatement = mock(PreparedStatement.class);
+        PreparedStatement upperStatement = mock(PreparedStatement.class);
+
+        when(mysqlDBConnection.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(boundsStatement);
+        when(boundsStatement.executeQuery(anyString())).thenReturn(SyntheticResultSet.builder()
+                .column("min", Types.BIGINT).column("max", Types.BIGINT).row(1L, 10L).build().resultSet());
+        when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenAnswer(invocation ->
+                invocation.<String>getArgument(0).contains("IS NULL") ? lowerStatement : upperStatement);
+        lenient().when(lowerStatement.executeQuery()).thenReturn(SyntheticResultSet.builder()
+                .column("id", Types.BIGINT).row(1L).build().resultSet());
+        when(upperStatement.executeQuery()).thenThrow(new SQLException("Lost connection to server"));
+
+        Task task = task();
+        task.setQuery("/* split_by(id, 2) */ SELECT id FROM orders");
+
+        // When
+        StepResult result = connector.executeSQLTask(task).get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(StepState.FAILED, result.getStatus());
+        assertTrue(result.getMessage().contains("Lost connection to server"));
+        verify(s3Service, never()).concatenateObjects(anyList(), anyString(), anyString());
+        verify(s3Service).deleteObjects(anyList());
+        assertTrue(uploadStreams.values().stream()
+                .filter(stream -> stream.getS3ObjectKey().endsWith(".parts/00001"))
+                .allMatch(stream -> stream.aborted && !stream.closed));
+    }
+
+    @Test
+    void testExecuteSQLTask_WhenQueueIsFull_ShouldRejectTask() throws Exception {
+        // Given
+        CountDownLatch firstStarted = blockConnections();
+        connector.executeSQLTask(task());
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+        connector.executeSQLTask(task());
+
+        // When
+        StepResult rejected = connector.executeSQLTask(task()).get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(StepState.FAILED, rejected.getStatus());
+        assertTrue(rejected.getMessage().contains("rejected"));
+        assertEquals(1, metrics.meter("mysql-connector.tasks.rejected").getCount());
+        assertEquals(1, metrics.getGauges().get("mysql-connector.tasks.queued").getValue());
+    }
+
+    @Test
+    void testCancelSQLTask_WhileQueued_ShouldCompleteImmediately() throws Exception {
+        // Given
+        CountDownLatch firstStarted = blockConnections();
+        connector.executeSQLTask(task());
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+
+        Task queued = task();
+        CompletableFuture<StepResult> queuedFuture = connector.executeSQLTask(queued);
+
+        // When
+        boolean cancelled = connector.cancelSQLTask(queued.getId().toString());
+
+        // Then
+        assertTrue(cancelled);
+        assertEquals(StepState.CANCELLED, queuedFuture.get(1, TimeUnit.SECONDS).getStatus());
+    }
+
+    @Test
+    void testCancelSQLTask_UnknownTask_ShouldReturnFalse() {
+        // When
+        boolean cancelled = connector.cancelSQLTask(UUID.randomUUID().toString());
+
+        // Then
+        assertFalse(cancelled);
+    }
+
+    private CountDownLatch blockConnections() throws SQLException {
+
+        CountDownLatch started = new CountDownLatch(1);
+
+        when(mysqlDBConnection.getConnection()).thenAnswer(invocation -> {
+            started.countDown();
+            releaseConnection.await();
+            throw new SQLException("connection closed");
+        });
+
+        return started;
+    }
+
+    private void stubResultSet(String[] columns, String[][] rows) throws SQLException {
+
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+
+        when(mysqlDBConnection.getConnection()).thenReturn(connection);
+        when(connection.createStatement(anyInt(), anyInt())).thenReturn(statement);
+        when(statement.executeQuery("SELECT 1")).thenReturn(resultSet);
+        when(resultSet.getMetaData()).thenReturn(metaData);
+        when(metaData.getColumnCount()).thenReturn(columns.length);
+
+        int[] row = {-1};
+        when(resultSet.next()).thenAnswer(invocation -> ++row[0] < rows.length);
+
+        for (int i = 0; i < columns.length; i++) {
+            int column = i;
+            when(metaData.getColumnName(column + 1)).thenReturn(columns[column]);
+            lenient().when(metaData.getColumnType(column + 1)).thenReturn(Types.VARCHAR);
+            lenient().when(resultSet.getString(eq(column + 1))).thenAnswer(invocation -> rows[row[0]][column]);
+        }
+    }
+
+    private static Task task() {
+        Task task = new Task();
+        task.setId(UUID.randomUUID());
+        task.setPlaygroundId(UUID.randomUUID());
+        task.setQuery("SELECT 1");
+        return task;
+    }
+
+    private static class RecordingUploadStream extends S3UploadStream {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        boolean closed;
+        boolean aborted;
+
+        RecordingUploadStream(String s3ObjectKey) {
+            super(s3ObjectKey);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            bytes.write(b);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public void abort() {
+            aborted = true;
+        }
+
+        String content() {
+            return bytes.toString(StandardCharsets.UTF_8);
+        }
+    }
+}
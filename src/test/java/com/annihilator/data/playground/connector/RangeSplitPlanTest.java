@@ -0,0 +1,147 @@
+package com.annihilator.data.playground.connector;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RangeSplitPlanTest {
+
+    private static final String QUERY = "/* split_by(order_id, 4) */\nSELECT * FROM orders;";
+
+    @Test
+    void testForQuery_WithoutHint_ShouldNotSplit() {
+        // When
+        Optional<RangeSplitPlan> plan = RangeSplitPlan.forQuery("SELECT * FROM orders", 8);
+
+        // Then
+        assertFalse(plan.isPresent());
+    }
+
+    @Test
+    void testForQuery_WithHint_ShouldReadColumnAndPartitions() {
+        // When
+        RangeSplitPlan plan = RangeSplitPlan.forQuery(QUERY, 8).orElseThrow();
+
+        // Then
+        assertEquals("order_id", plan.getColumn());
+        assertEquals(4, plan.getPartitions());
+        assertEquals("SELECT MIN(`order_id`), MAX(`order_id`) FROM (\n" + QUERY.replace(";", "") + "\n) AS dp_split",
+                plan.boundaryQuery());
+    }
+
+    @Test
+    void testForQuery_ShouldCapPartitions() {
+        // When
+        RangeSplitPlan capped = RangeSplitPlan.forQuery(QUERY, 2).orElseThrow();
+        RangeSplitPlan defaulted = RangeSplitPlan.forQuery("  /*SPLIT_BY( created_at )*/ SELECT 1", 6).orElseThrow();
+
+        // Then
+        assertEquals(2, capped.getPartitions());
+        assertEquals(6, defaulted.getPartitions());
+        assertFalse(RangeSplitPlan.forQuery("/* split_by(order_id, 1) */ SELECT 1", 8).isPresent());
+        assertFalse(RangeSplitPlan.forQuery("/* split_by(order_id; DROP TABLE orders) */ SELECT 1", 8).isPresent());
+    }
+
+    @Test
+    void testPartitions_IntegerColumn_ShouldCoverRangeAndNulls() throws Exception {
+        // Given
+        RangeSplitPlan plan = RangeSplitPlan.forQuery(QUERY, 8).orElseThrow();
+
+        // When
+        List<RangeSplitPlan.Partition> partitions = plan.partitions(bounds(Types.BIGINT, 1L, 100L));
+
+        // Then
+        assertEquals(4, partitions.size());
+        assertTrue(partitions.get(0).getSql().endsWith("WHERE (`order_id` < ? OR `order_id` IS NULL)"));
+        assertEquals(List.of(26L), partitions.get(0).getParameters());
+        assertTrue(partitions.get(1).getSql().endsWith("WHERE `order_id` >= ? AND `order_id` < ?"));
+        assertEquals(List.of(26L, 51L), partitions.get(1).getParameters());
+        assertEquals(List.of(51L, 76L), partitions.get(2).getParameters());
+        assertTrue(partitions.get(3).getSql().endsWith("WHERE `order_id` >= ?"));
+        assertEquals(List.of(76L), partitions.get(3).getParameters());
+    }
+
+    @Test
+    void testPartitions_NarrowRange_ShouldDropEmptyPartitions() throws Exception {
+        // Given
+        RangeSplitPlan plan = RangeSplitPlan.forQuery(QUERY, 8).orElseThrow();
+
+        // When
+        List<RangeSplitPlan.Partition> twoValues = plan.partitions(bounds(Types.INTEGER, 7L, 8L));
+        List<RangeSplitPlan.Partition> oneValue = plan.partitions(bounds(Types.INTEGER, 7L, 7L));
+
+        // Then
+        assertEquals(2, twoValues.size());
+        assertEquals(List.of(8L), twoValues.get(0).getParameters());
+        assertEquals(1, oneValue.size());
+        assertTrue(oneValue.get(0).getParameters().isEmpty());
+    }
+
+    @Test
+    void testPartitions_DateColumn_ShouldSplitByDay() throws Exception {
+        // Given
+        RangeSplitPlan plan = RangeSplitPlan.forQuery("/* split_by(order_date, 2) */ SELECT * FROM orders", 8).orElseThrow();
+
+        // When
+        List<RangeSplitPlan.Partition> partitions = plan.partitions(
+                bounds(Types.DATE, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31)));
+
+        // Then
+        assertEquals(2, partitions.size());
+        assertEquals(List.of(LocalDate.of(2024, 1, 16)), partitions.get(0).getParameters());
+    }
+
+    @Test
+    void testPartitions_DateTimeColumn_ShouldSplitByMicrosecond() throws Exception {
+        // Given
+        RangeSplitPlan plan = RangeSplitPlan.forQuery("/* split_by(created_at, 2) */ SELECT * FROM orders", 8).orElseThrow();
+
+        // When
+        List<RangeSplitPlan.Partition> partitions = plan.partitions(bounds(Types.TIMESTAMP,
+                LocalDateTime.of(2024, 1, 1, 0, 0), LocalDateTime.of(2024, 1, 1, 12, 0)));
+
+        // Then
+        assertEquals(List.of(LocalDateTime.of(2024, 1, 1, 6, 0)), partitions.get(0).getParameters());
+    }
+
+    @Test
+    void testPartitions_NoValues_ShouldRunUnsplit() throws Exception {
+        // Given
+        RangeSplitPlan plan = RangeSplitPlan.forQuery(QUERY, 8).orElseThrow();
+
+        // When
+        List<RangeSplitPlan.Partition> partitions = plan.partitions(bounds(Types.BIGINT, null, null));
+
+        // Then
+        assertEquals(1, partitions.size());
+        assertEquals("/* split_by(order_id, 4) */\nSELECT * FROM orders", partitions.get(0).getSql());
+    }
+
+    @Test
+    void testPartitions_TextColumn_ShouldBeRejected() {
+        // Given
+        RangeSplitPlan plan = RangeSplitPlan.forQuery(QUERY, 8).orElseThrow();
+
+        // When / Then
+        assertThrows(IllegalArgumentException.class, () -> plan.partitions(bounds(Types.VARCHAR, "a", "z")));
+    }
+
+    private static ResultSet bounds(int type, Object min, Object max) {
+        return SyntheticResultSet.builder()
+                .column("min", type)
+                .column("max", type)
+                .row(min, max)
+                .build()
+                .resultSet();
+    }
+}
@@ -0,0 +1,172 @@
+package com.annihilator.data.playground.connector;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A forward-only {@link ResultSet} over in-memory or generated rows, cheap enough per call to drive
+ * multi-million row encoder runs where a Mockito mock would dominate the measurement.
+ *
+ * Only the accessors the connector reads results with are implemented; anything else throws.
+ */
+class SyntheticResultSet {
+
+    @FunctionalInterface
+    interface ValueSource {
+        Object value(long row, int column);
+    }
+
+    private final String[] names;
+    private final int[] types;
+    private final boolean[] signed;
+    private final long rowCount;
+    private final ValueSource values;
+    private final ResultSet resultSet;
+    private final ResultSetMetaData metaData;
+
+    private long row = -1;
+    private boolean lastWasNull;
+    private int metaDataCalls;
+
+    private SyntheticResultSet(List<String> names, List<Integer> types, List<Boolean> signed, long rowCount, ValueSource values) {
+        this.names = names.toArray(new String[0]);
+        this.types = types.stream().mapToInt(Integer::intValue).toArray();
+        this.signed = new boolean[signed.size()];
+        for (int i = 0; i < this.signed.length; i++) {
+            this.signed[i] = signed.get(i);
+        }
+        this.rowCount = rowCount;
+        this.values = values;
+        this.resultSet = proxy(ResultSet.class, this::onResultSet);
+        this.metaData = proxy(ResultSetMetaData.class, this::onMetaData);
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    ResultSet resultSet() {
+        return resultSet;
+    }
+
+    int getMetaDataCalls() {
+        return metaDataCalls;
+    }
+
+    private Object onResultSet(Method method, Object[] args) {
+
+        switch (method.getName()) {
+            case "next":
+                return ++row < rowCount;
+            case "getMetaData":
+                metaDataCalls++;
+                return metaData;
+            case "wasNull":
+                return lastWasNull;
+            case "getString": {
+                Object value = current(args);
+                return value == null ? null : value.toString();
+            }
+            case "getLong": {
+                Object value = current(args);
+                return value == null ? 0L : ((Number) value).longValue();
+            }
+            case "getBigDecimal": {
+                Object value = current(args);
+                return value == null ? null : value instanceof BigDecimal ? value : new BigDecimal(value.toString());
+            }
+            case "getObject": {
+                Object value = current(args);
+                return value == null || args.length < 2 ? value : ((Class<?>) args[1]).cast(value);
+            }
+            case "close":
+                return null;
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+    private Object onMetaData(Method method, Object[] args) {
+
+        switch (method.getName()) {
+            case "getColumnCount":
+                return names.length;
+            case "getColumnName":
+            case "getColumnLabel":
+                return names[(Integer) args[0] - 1];
+            case "getColumnType":
+                return types[(Integer) args[0] - 1];
+            case "isSigned":
+                return signed[(Integer) args[0] - 1];
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+    private Object current(Object[] args) {
+
+        Object value = values.value(row, (Integer) args[0] - 1);
+        lastWasNull = value == null;
+        return value;
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+
+        InvocationHandler invocationHandler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.getName().equals("toString") ? "Synthetic" + type.getSimpleName() : method.invoke(handler, args);
+            }
+            return handler.handle(method, args);
+        };
+
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocationHandler));
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(Method method, Object[] args);
+    }
+
+    static class Builder {
+
+        private final List<String> names = new ArrayList<>();
+        private final List<Integer> types = new ArrayList<>();
+        private final List<Boolean> signed = new ArrayList<>();
+        private final List<Object[]> rows = new ArrayList<>();
+
+        Builder column(String name, int type) {
+            names.add(name);
+            types.add(type);
+            signed.add(true);
+            return this;
+        }
+
+        Builder unsignedColumn(String name, int type) {
+            names.add(name);
+            types.add(type);
+            signed.add(false);
+            return this;
+        }
+
+        Builder row(Object... values) {
+            rows.add(values);
+            return this;
+        }
+
+        SyntheticResultSet build() {
+            List<Object[]> snapshot = new ArrayList<>(rows);
+            return new SyntheticResultSet(names, types, signed, snapshot.size(),
+                    (row, column) -> snapshot.get((int) row)[column]);
+        }
+
+        SyntheticResultSet generate(long rowCount, ValueSource values) {
+            return new SyntheticResultSet(names, types, signed, rowCount, values);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.annihilator.data.playground.core;
+
+import com.annihilator.data.playground.connector.MySQLConnector;
+import com.annihilator.data.playground.db.NotificationDestinationDAO;
+import com.annihilator.data.playground.db.PlaygroundDAO;
+import com.annihilator.data.playground.db.PlaygroundRunHistoryDAO;
+import com.annihilator.data.playground.db.TaskDAO;
+import com.annihilator.data.playground.model.Playground;
+import com.annihilator.data.playground.model.PlaygroundExecutionType;
+import com.annihilator.data.playground.model.Status;
+import com.annihilator.data.playground.model.StepResult;
+import com.annihilator.data.playground.model.Task;
+import com.annihilator.data.playground.model.TaskType;
+import com.annihilator.data.playground.reconsilation.DataPhantomReconciliationManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.services.emr.model.StepState;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DataPhantomRunCoordinatorTest {
+
+    @Mock
+    private PlaygroundDAO playgroundDAO;
+
+    @Mock
+    private TaskDAO taskDAO;
+
+    @Mock
+    private PlaygroundRunHistoryDAO historyDAO;
+
+    @Mock
+    private MySQLConnector mySQLConnector;
+
+    @Mock
+    private NotificationDestinationDAO notificationDestinationDAO;
+
+    @Mock
+    private DataPhantomReconciliationManager reconciliationManager;
+
+    private DataPhantomRunCoordinator coordinator;
+    private Set<String> cancelPlaygroundRequestSet;
+    private Playground playground;
+
+    @BeforeEach
+    void setUp() {
+        coordinator = new DataPhantomRunCoordinator(Executors.newSingleThreadExecutor(), Executors.newSingleThreadExecutor());
+        cancelPlaygroundRequestSet = Collections.synchronizedSet(new HashSet<>());
+
+        playground = new Playground();
+        playground.setId(UUID.randomUUID());
+        playground.setName("Test Playground");
+        playground.setCurrentStatus(Status.IDLE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        coordinator.close();
+    }
+
+    @Test
+    void testRun_ShouldReleaseCallerAndCompleteOnTaskEvents() throws SQLException {
+        // Given
+        Task root = createTask("root", null);
+        Task child = createTask("child", root.getId());
+
+        CompletableFuture<StepResult> rootFuture = new CompletableFuture<>();
+
+        when(playgroundDAO.getPlaygroundById(playground.getId())).thenReturn(playground);
+        when(taskDAO.findTasksByPlaygroundRecursively(playground.getId())).thenReturn(Arrays.asList(root, child));
+        when(mySQLConnector.executeSQLTask(root)).thenReturn(rootFuture);
+        when(mySQLConnector.executeSQLTask(child)).thenReturn(CompletableFuture.completedFuture(success(child)));
+        when(notificationDestinationDAO.getNotificationDestinationsByPlaygroundId(playground.getId())).thenReturn(Collections.emptyList());
+
+        // When
+        createExecutor().run();
+
+        // Then - the caller is released while the root task is still in flight
+        verify(mySQLConnector, timeout(5000)).executeSQLTask(root);
+        assertEquals(1, coordinator.getActiveRunCount());
+
+        rootFuture.complete(success(root));
+
+        verify(historyDAO, timeout(5000)).completePlaygroundAndInsertHistory(
+                eq(playground.getId()), eq(Status.IDLE), anyLong(), eq(2), eq(0), eq(Status.SUCCESS));
+        verify(reconciliationManager).startReconciliation(playground.getId());
+    }
+
+    @Test
+    void testCancel_WithCancelRequest_ShouldCancelRunningTaskAndSkipChildren() throws SQLException {
+        // Given
+        Task root = createTask("root", null);
+        Task child = createTask("child", root.getId());
+
+        CompletableFuture<StepResult> rootFuture = new CompletableFuture<>();
+
+        when(playgroundDAO.getPlaygroundById(playground.getId())).thenReturn(playground);
+        when(taskDAO.findTasksByPlaygroundRecursively(playground.getId())).thenReturn(Arrays.asList(root, child));
+        when(mySQLConnector.executeSQLTask(root)).thenReturn(rootFuture);
+        when(notificationDestinationDAO.getNotificationDestinationsByPlaygroundId(playground.getId())).thenReturn(Collections.emptyList());
+
+        // The connector confirms the stop by completing the task's future
+        when(mySQLConnector.cancelSQLTask(root.getId().toString())).thenAnswer(invocation ->
+                rootFuture.complete(new StepResult("step-" + root.getId(), StepState.CANCELLED, "SQL task cancelled", null, null, root.getId().toString())));
+
+        createExecutor().run();
+        verify(mySQLConnector, timeout(5000)).executeSQLTask(root);
+
+        // When
+        cancelPlaygroundRequestSet.add(playground.getId().toString());
+        coordinator.cancel(playground.getId().toString());
+
+        // Then
+        verify(mySQLConnector, timeout(5000)).cancelSQLTask(root.getId().toString());
+        verify(historyDAO, timeout(5000)).completePlaygroundAndInsertHistory(
+                eq(playground.getId()), eq(Status.IDLE), anyLong(), eq(0), eq(0), eq(Status.CANCELLED));
+        verify(taskDAO).updateTaskCompletion(eq(root.getId()), eq(Status.IDLE), eq(Status.CANCELLED), any(), any(), any());
+        verify(taskDAO).updateTaskCompletion(eq(child.getId()), eq(Status.IDLE), eq(Status.SKIPPED), any(), any(), any());
+        assertFalse(cancelPlaygroundRequestSet.contains(playground.getId().toString()));
+    }
+
+    @Test
+    void testCancel_ShouldWaitForRunningTaskToStop() throws SQLException {
+        // Given
+        Task root = createTask("root", null);
+
+        CompletableFuture<StepResult> rootFuture = new CompletableFuture<>();
+
+        when(playgroundDAO.getPlaygroundById(playground.getId())).thenReturn(playground);
+        when(taskDAO.findTasksByPlaygroundRecursively(playground.getId())).thenReturn(Collections.singletonList(root));
+        when(mySQLConnector.executeSQLTask(root)).thenReturn(rootFuture);
+        when(mySQLConnector.cancelSQLTask(root.getId().toString())).thenReturn(true);
+        when(notificationDestinationDAO.getNotificationDestinationsByPlaygroundId(playground.getId())).thenReturn(Collections.emptyList());
+
+        createExecutor().run();
+        verify(mySQLConnector, timeout(5000)).executeSQLTask(root);
+
+        // When
+        cancelPlaygroundRequestSet.add(playground.getId().toString());
+        coordinator.cancel(playground.getId().toString());
+        verify(mySQLConnector, timeout(5000)).cancelSQLTask(root.getId().toString());
+
+        // Then - nothing is recorded until the query has actually stopped
+        verify(taskDAO, never()).updateTaskCompletion(eq(root.getId()), any(), any(), any(), any(), any());
+        assertEquals(1, coordinator.getActiveRunCount());
+
+        rootFuture.complete(new StepResult("step-" + root.getId(), StepState.CANCELLED, "SQL task cancelled", null, null, root.getId().toString()));
+
+        verify(historyDAO, timeout(5000)).completePlaygroundAndInsertHistory(
+                eq(playground.getId()), eq(Status.IDLE), anyLong(), eq(0), eq(0), eq(Status.CANCELLED));
+        verify(taskDAO).updateTaskCompletion(eq(root.getId()), eq(Status.IDLE), eq(Status.CANCELLED), any(), any(), any());
+    }
+
+    @Test
+    void testCancel_WithUnknownPlayground_ShouldReturnFalse() {
+        assertFalse(coordinator.cancel(UUID.randomUUID().toString()));
+    }
+
+    // Helper methods
+    private DataPhantomPlaygroundExecutor createExecutor() {
+        return new DataPhantomPlaygroundExecutor(
+                playground, taskDAO, playgroundDAO, historyDAO, null, null,
+                PlaygroundExecutionType.AD_HOC, reconciliationManager, cancelPlaygroundRequestSet, mySQLConnector,
+                false, null, notificationDestinationDAO, null, null, null, null, coordinator);
+    }
+
+    private Task createTask(String name, UUID parentId) {
+        Task task = new Task();
+        task.setId(UUID.randomUUID());
+        task.setName(name);
+        task.setParentId(parentId);
+        task.setPlaygroundId(playground.getId());
+        task.setType(TaskType.SQL);
+        task.setQuery("SELECT 1");
+        return task;
+    }
+
+    private StepResult success(Task task) {
+        return new StepResult("step-" + task.getId(), StepState.COMPLETED, "Success",
+                "s3://bucket/output/" + task.getId() + ".csv", null, task.getId().toString());
+    }
+}
@@ -55,7 +55,7 @@ class DataPhantomSchedulerAssistantTest {
         scheduler = new DataPhantomSchedulerAssistant( null,
             playgroundDAO, taskDAO, null, null, emrService,
             executorService, null, cancelPlaygroundRequestSet, null, null,
-            null, null, null, null
+            null, null, null, null, null
         );
     }
 
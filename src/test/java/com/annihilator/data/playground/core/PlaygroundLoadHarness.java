@@ -0,0 +1,471 @@
+package com.annihilator.data.playground.core;
+
+import com.annihilator.data.playground.cloud.aws.LocalDiskS3Service;
+import com.annihilator.data.playground.cloud.aws.SimulatedEmrService;
+import com.annihilator.data.playground.db.NotificationDestinationDAO;
+import com.annihilator.data.playground.db.PlaygroundDAO;
+import com.annihilator.data.playground.db.PlaygroundRunHistoryDAO;
+import com.annihilator.data.playground.db.TaskDAO;
+import com.annihilator.data.playground.model.Playground;
+import com.annihilator.data.playground.model.PlaygroundExecutionType;
+import com.annihilator.data.playground.model.Status;
+import com.annihilator.data.playground.model.Task;
+import com.annihilator.data.playground.model.TaskType;
+import com.annihilator.data.playground.reconsilation.DataPhantomReconciliationManager;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Drives synthetic playgrounds through {@link DataPhantomPlaygroundExecutor} and the
+ * {@link DataPhantomRunCoordinator}, submitted to a launcher pool the way {@link DataPhantomSchedulerAssistant}
+ * submits due playgrounds, on top of a {@link SimulatedEmrService} and in-memory DAOs.
+ *
+ * Each playground is a DAG of {@code dagDepth} levels with {@code dagWidth} tasks per level; every task below
+ * the first level depends on one task of the level above. The report covers throughput, end-to-end run
+ * latency (submission to history record) and peak thread count and heap use.
+ */
+class PlaygroundLoadHarness {
+
+    private static final long SAMPLE_INTERVAL_MS = 100;
+
+    private final Settings settings;
+    private final SimulatedEmrService.Profile emrProfile;
+    private final Path s3Root;
+
+    PlaygroundLoadHarness(Settings settings, SimulatedEmrService.Profile emrProfile, Path s3Root) {
+        this.settings = settings;
+        this.emrProfile = emrProfile;
+        this.s3Root = s3Root;
+    }
+
+    LoadReport run() throws Exception {
+
+        LocalDiskS3Service s3Service = new LocalDiskS3Service(s3Root, "load-test-bucket", "data-phantom");
+        SimulatedEmrService emrService = new SimulatedEmrService(s3Service, emrProfile, settings.seed);
+
+        InMemoryTaskDAO taskDAO = new InMemoryTaskDAO();
+        InMemoryPlaygroundDAO playgroundDAO = new InMemoryPlaygroundDAO();
+        InMemoryRunHistoryDAO historyDAO = new InMemoryRunHistoryDAO(settings.playgrounds);
+
+        DataPhantomReconciliationManager reconciliationManager = mock(DataPhantomReconciliationManager.class, withSettings().stubOnly());
+        NotificationDestinationDAO notificationDestinationDAO = mock(NotificationDestinationDAO.class, withSettings().stubOnly());
+        when(notificationDestinationDAO.getNotificationDestinationsByPlaygroundId(any())).thenReturn(Collections.emptyList());
+
+        List<Playground> playgrounds = new ArrayList<>();
+        for (int i = 0; i < settings.playgrounds; i++) {
+            playgrounds.add(createPlayground(i, playgroundDAO, taskDAO));
+        }
+
+        DataPhantomRunCoordinator runCoordinator = new DataPhantomRunCoordinator(
+                Executors.newFixedThreadPool(settings.runEventThreads), Executors.newFixedThreadPool(settings.runCompletionThreads));
+        ExecutorService launcher = Executors.newFixedThreadPool(settings.launcherThreads);
+        Set<String> cancelPlaygroundRequestSet = Collections.synchronizedSet(new HashSet<>());
+
+        ResourceSampler sampler = new ResourceSampler();
+        sampler.start();
+
+        long startNanos = System.nanoTime();
+
+        try {
+            for (Playground playground : playgrounds) {
+
+                historyDAO.markSubmitted(playground.getId());
+
+                launcher.submit(new DataPhantomPlaygroundExecutor(
+                        playground, taskDAO, playgroundDAO, historyDAO, null, emrService,
+                        PlaygroundExecutionType.SCHEDULED, reconciliationManager, cancelPlaygroundRequestSet, null,
+                        false, null, notificationDestinationDAO, s3Service, null, null, null, runCoordinator));
+            }
+
+            if (!historyDAO.awaitRuns(settings.timeoutMs)) {
+                throw new IllegalStateException("Only " + historyDAO.getCompletedRuns() + " of " + settings.playgrounds
+                        + " runs completed within " + settings.timeoutMs + "ms");
+            }
+
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+            return new LoadReport(settings, historyDAO.getCompletedRuns(), taskDAO.getCompletedTasks(), elapsedMs,
+                    historyDAO.getSortedLatencies(), sampler.getPeakThreads(), sampler.getPeakHeapBytes(),
+                    emrService.getSubmittedSteps(), emrService.getFailedSteps(), emrService.getThrottledSubmissions(),
+                    emrService.getPeakRunningSteps());
+        } finally {
+            sampler.stop();
+            launcher.shutdownNow();
+            runCoordinator.close();
+            emrService.close();
+        }
+    }
+
+    private Playground createPlayground(int index, InMemoryPlaygroundDAO playgroundDAO, InMemoryTaskDAO taskDAO) {
+
+        Playground playground = new Playground();
+        playground.setId(UUID.randomUUID());
+        playground.setName("load-playground-" + index);
+        playground.setCurrentStatus(Status.IDLE);
+        playground.setCreatedAt(System.currentTimeMillis());
+        playground.setModifiedAt(playground.getCreatedAt());
+
+        List<Task> tasks = new ArrayList<>();
+        List<Task> previousLevel = Collections.emptyList();
+
+        for (int level = 0; level < settings.dagDepth; level++) {
+
+            List<Task> currentLevel = new ArrayList<>();
+
+            for (int position = 0; position < settings.dagWidth; position++) {
+
+                Task task = new Task();
+                task.setId(UUID.randomUUID());
+                task.setName("task-" + level + "-" + position);
+                task.setPlaygroundId(playground.getId());
+                task.setType(position % 2 == 0 ? TaskType.HIVE : TaskType.PRESTO);
+                task.setQuery("SELECT " + level + ", " + position);
+                task.setParentId(previousLevel.isEmpty() ? null : previousLevel.get(position % previousLevel.size()).getId());
+
+                currentLevel.add(task);
+            }
+
+            tasks.addAll(currentLevel);
+            previousLevel = currentLevel;
+        }
+
+        playgroundDAO.add(playground);
+        taskDAO.add(playground.getId(), tasks);
+
+        return playground;
+    }
+
+    static class Settings {
+
+        int playgrounds = 1000;
+        int dagDepth = 5;
+        int dagWidth = 8;
+        int launcherThreads = 8;
+        int runEventThreads = 8;
+        int runCompletionThreads = 16;
+        long timeoutMs = 600000;
+        long seed = 42;
+
+        /**
+         * Reads {@code load.*} system properties, e.g. {@code -Dload.playgrounds=5000 -Dload.dagWidth=20}.
+         */
+        static Settings fromSystemProperties() {
+
+            Settings settings = new Settings();
+            settings.playgrounds = Integer.getInteger("load.playgrounds", settings.playgrounds);
+            settings.dagDepth = Integer.getInteger("load.dagDepth", settings.dagDepth);
+            settings.dagWidth = Integer.getInteger("load.dagWidth", settings.dagWidth);
+            settings.launcherThreads = Integer.getInteger("load.launcherThreads", settings.launcherThreads);
+            settings.runEventThreads = Integer.getInteger("load.runEventThreads", settings.runEventThreads);
+            settings.runCompletionThreads = Integer.getInteger("load.runCompletionThreads", settings.runCompletionThreads);
+            settings.timeoutMs = Long.getLong("load.timeoutMs", settings.timeoutMs);
+            settings.seed = Long.getLong("load.seed", settings.seed);
+            return settings;
+        }
+    }
+
+    static class LoadReport {
+
+        final Settings settings;
+        final int completedRuns;
+        final long completedTasks;
+        final long elapsedMs;
+        final long[] sortedLatenciesMs;
+        final int peakThreads;
+        final long peakHeapBytes;
+        final long submittedSteps;
+        final long failedSteps;
+        final long throttledSubmissions;
+        final int peakRunningSteps;
+
+        LoadReport(Settings settings, int completedRuns, long completedTasks, long elapsedMs, long[] sortedLatenciesMs,
+                   int peakThreads, long peakHeapBytes, long submittedSteps, long failedSteps, long throttledSubmissions,
+                   int peakRunningSteps) {
+            this.settings = settings;
+            this.completedRuns = completedRuns;
+            this.completedTasks = completedTasks;
+            this.elapsedMs = elapsedMs;
+            this.sortedLatenciesMs = sortedLatenciesMs;
+            this.peakThreads = peakThreads;
+            this.peakHeapBytes = peakHeapBytes;
+            this.submittedSteps = submittedSteps;
+            this.failedSteps = failedSteps;
+            this.throttledSubmissions = throttledSubmissions;
+            this.peakRunningSteps = peakRunningSteps;
+        }
+
+        double runsPerSecond() {
+            return completedRuns * 1000.0 / Math.max(1, elapsedMs);
+        }
+
+        double tasksPerSecond() {
+            return completedTasks * 1000.0 / Math.max(1, elapsedMs);
+        }
+
+        long latencyPercentileMs(double percentile) {
+
+            if (sortedLatenciesMs.length == 0) {
+                return 0;
+            }
+
+            int index = (int) Math.ceil(percentile / 100.0 * sortedLatenciesMs.length) - 1;
+            return sortedLatenciesMs[Math.max(0, Math.min(index, sortedLatenciesMs.length - 1))];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Load run: %d playgrounds x %d tasks (depth %d, width %d) in %dms%n"
+                            + "  throughput: %.1f runs/s, %.1f tasks/s%n"
+                            + "  run latency: p50=%dms p95=%dms p99=%dms max=%dms%n"
+                            + "  EMR: %d steps submitted, %d failed, %d throttled submissions, %d peak running%n"
+                            + "  resources: %d peak threads, %.1f MiB peak heap",
+                    completedRuns, settings.dagDepth * settings.dagWidth, settings.dagDepth, settings.dagWidth, elapsedMs,
+                    runsPerSecond(), tasksPerSecond(),
+                    latencyPercentileMs(50), latencyPercentileMs(95), latencyPercentileMs(99), latencyPercentileMs(100),
+                    submittedSteps, failedSteps, throttledSubmissions, peakRunningSteps,
+                    peakThreads, peakHeapBytes / (1024.0 * 1024.0));
+        }
+    }
+
+    /**
+     * Samples live threads and used heap, since the JVM only tracks a peak for threads.
+     */
+    private static class ResourceSampler {
+
+        private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        private final MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+        private final AtomicLong peakHeapBytes = new AtomicLong();
+        private ScheduledExecutorService scheduler;
+
+        void start() {
+
+            threadMXBean.resetPeakThreadCount();
+
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "load-resource-sampler");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            scheduler.scheduleAtFixedRate(() -> peakHeapBytes.accumulateAndGet(memoryMXBean.getHeapMemoryUsage().getUsed(), Math::max),
+                    0, SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+
+        void stop() {
+            scheduler.shutdownNow();
+        }
+
+        int getPeakThreads() {
+            return threadMXBean.getPeakThreadCount();
+        }
+
+        long getPeakHeapBytes() {
+            return peakHeapBytes.get();
+        }
+    }
+
+    private static class InMemoryTaskDAO implements TaskDAO {
+
+        private final Map<UUID, List<Task>> tasksByPlayground = new ConcurrentHashMap<>();
+        private final Map<String, Task> tasksById = new ConcurrentHashMap<>();
+        private final AtomicLong completedTasks = new AtomicLong();
+
+        void add(UUID playgroundId, List<Task> tasks) {
+            tasksByPlayground.put(playgroundId, tasks);
+            tasks.forEach(task -> tasksById.put(task.getId().toString(), task));
+        }
+
+        long getCompletedTasks() {
+            return completedTasks.get();
+        }
+
+        @Override
+        public Task findTaskById(String taskId) {
+            return tasksById.get(taskId);
+        }
+
+        @Override
+        public void updateTaskStatus(UUID taskId, UUID correlationId, Status status) {
+        }
+
+        @Override
+        public List<Task> findTasksByPlaygroundRecursively(UUID playgroundId) {
+            return new ArrayList<>(tasksByPlayground.getOrDefault(playgroundId, Collections.emptyList()));
+        }
+
+        @Override
+        public void createTaskAndUpdatePlayground(Task task) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void updateTaskQueryAndPlayground(UUID taskId, String query, UUID playgroundId, String udfIds) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deleteTaskAndUpdatePlayground(String taskId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void updateTaskCompletion(UUID taskId, Status currentStatus, Status lastRunStatus, String outputPath, String logPath, UUID correlationId) {
+            if (lastRunStatus == Status.SUCCESS || lastRunStatus == Status.FAILED) {
+                completedTasks.incrementAndGet();
+            }
+        }
+    }
+
+    private static class InMemoryPlaygroundDAO implements PlaygroundDAO {
+
+        private final Map<UUID, Playground> playgrounds = new ConcurrentHashMap<>();
+
+        void add(Playground playground) {
+            playgrounds.put(playground.getId(), playground);
+        }
+
+        @Override
+        public Playground getPlaygroundById(UUID id) {
+
+            Playground stored = playgrounds.get(id);
+
+            if (stored == null) {
+                return null;
+            }
+
+            // The executor compares against what is stored, not the instance it was handed
+            Playground copy = new Playground();
+            copy.setId(stored.getId());
+            copy.setName(stored.getName());
+            copy.setCurrentStatus(stored.getCurrentStatus());
+            copy.setCorrelationId(stored.getCorrelationId());
+            return copy;
+        }
+
+        @Override
+        public void updatePlaygroundStart(UUID id, UUID correlationId, long executedTime, Status status) {
+            Playground playground = playgrounds.get(id);
+            playground.setCorrelationId(correlationId);
+            playground.setLastExecutedAt(executedTime);
+            playground.setCurrentStatus(status);
+        }
+
+        @Override
+        public void updatePlaygroundCompletion(UUID id, Status status, long endTime, int successCount, int failureCount, Status runStatus) {
+            playgrounds.get(id).setCurrentStatus(status);
+        }
+
+        @Override
+        public void createPlayground(Playground playground) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deletePlayground(UUID playgroundId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Object> getPlaygrounds(String userId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Playground> getAllPlaygrounds() {
+            Map<String, Playground> all = new ConcurrentHashMap<>();
+            playgrounds.forEach((id, playground) -> all.put(id.toString(), playground));
+            return all;
+        }
+
+        @Override
+        public Map<String, Playground> getPlaygroundsUpdatedOrCreatedAfter(long time) {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public void updatePlayground(UUID id, String newName, String cron) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Playground> getAllPlaygroundsByStatus(Status status) {
+            List<Playground> matching = new ArrayList<>();
+            playgrounds.values().stream().filter(playground -> playground.getCurrentStatus() == status).forEach(matching::add);
+            return matching;
+        }
+    }
+
+    private static class InMemoryRunHistoryDAO implements PlaygroundRunHistoryDAO {
+
+        private final Map<UUID, Long> submittedAtNanos = new ConcurrentHashMap<>();
+        private final long[] latenciesMs;
+        private final AtomicInteger completedRuns = new AtomicInteger();
+        private final CountDownLatch runsDone;
+
+        InMemoryRunHistoryDAO(int expectedRuns) {
+            this.latenciesMs = new long[expectedRuns];
+            this.runsDone = new CountDownLatch(expectedRuns);
+        }
+
+        void markSubmitted(UUID playgroundId) {
+            submittedAtNanos.put(playgroundId, System.nanoTime());
+        }
+
+        boolean awaitRuns(long timeoutMs) throws InterruptedException {
+            return runsDone.await(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+
+        int getCompletedRuns() {
+            return completedRuns.get();
+        }
+
+        long[] getSortedLatencies() {
+            long[] sorted = Arrays.copyOf(latenciesMs, Math.min(completedRuns.get(), latenciesMs.length));
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        @Override
+        public void completePlaygroundAndInsertHistory(UUID playgroundId, Status currentStatus, long endTime,
+                                                       int successCount, int failureCount, Status finalStatus) {
+
+            Long submittedAt = submittedAtNanos.remove(playgroundId);
+            int slot = completedRuns.getAndIncrement();
+
+            if (submittedAt != null && slot < latenciesMs.length) {
+                latenciesMs[slot] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submittedAt);
+            }
+
+            runsDone.countDown();
+        }
+
+        @Override
+        public Map<String, Object> getRunHistoryByPlaygroundId(UUID playgroundId, int limit) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
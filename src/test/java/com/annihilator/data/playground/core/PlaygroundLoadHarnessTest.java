@@ -0,0 +1,89 @@
+package com.annihilator.data.playground.core;
+
+import com.annihilator.data.playground.cloud.aws.SimulatedEmrService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlaygroundLoadHarnessTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlaygroundLoadHarnessTest.class);
+
+    @TempDir
+    Path s3Root;
+
+    @Test
+    void testRun_ShouldCompleteEveryPlaygroundAndTask() throws Exception {
+        // Given
+        PlaygroundLoadHarness.Settings settings = new PlaygroundLoadHarness.Settings();
+        settings.playgrounds = 20;
+        settings.dagDepth = 3;
+        settings.dagWidth = 3;
+        settings.timeoutMs = 60000;
+
+        SimulatedEmrService.Profile profile = new SimulatedEmrService.Profile(5, 0.5, 0.0, 0, 32, 0);
+
+        // When
+        PlaygroundLoadHarness.LoadReport report = new PlaygroundLoadHarness(settings, profile, s3Root).run();
+
+        // Then
+        assertEquals(20, report.completedRuns);
+        assertEquals(20 * 9, report.completedTasks);
+        assertEquals(20 * 9, report.submittedSteps);
+        assertTrue(report.peakRunningSteps <= 32);
+        assertTrue(report.latencyPercentileMs(50) <= report.latencyPercentileMs(99));
+    }
+
+    @Test
+    void testRun_WhenEveryStepFails_ShouldSkipDownstreamTasks() throws Exception {
+        // Given
+        PlaygroundLoadHarness.Settings settings = new PlaygroundLoadHarness.Settings();
+        settings.playgrounds = 5;
+        settings.dagDepth = 3;
+        settings.dagWidth = 2;
+        settings.timeoutMs = 60000;
+
+        SimulatedEmrService.Profile profile = new SimulatedEmrService.Profile(2, 0.0, 1.0, 0, 16, 0);
+
+        // When
+        PlaygroundLoadHarness.LoadReport report = new PlaygroundLoadHarness(settings, profile, s3Root).run();
+
+        // Then
+        assertEquals(5, report.completedRuns);
+        assertEquals(5 * 2, report.submittedSteps);
+        assertEquals(5 * 2, report.failedSteps);
+    }
+
+    /**
+     * Scale run, excluded from the default build; run it with {@code mvn test -P load-test} and size it with
+     * {@code load.*} system properties, e.g. {@code -Dload.playgrounds=5000 -Dload.stepMedianMs=2000}.
+     */
+    @Test
+    @Tag("load")
+    void testScaleBenchmark() throws Exception {
+        // Given
+        PlaygroundLoadHarness.Settings settings = PlaygroundLoadHarness.Settings.fromSystemProperties();
+
+        SimulatedEmrService.Profile profile = new SimulatedEmrService.Profile(
+                Long.getLong("load.stepMedianMs", 200),
+                Double.parseDouble(System.getProperty("load.stepSigma", "0.8")),
+                Double.parseDouble(System.getProperty("load.failureRate", "0.01")),
+                Integer.getInteger("load.submissionsPerSecond", 0),
+                Integer.getInteger("load.stepConcurrency", 256),
+                Long.getLong("load.throttleBackoffMs", 1000));
+
+        // When
+        PlaygroundLoadHarness.LoadReport report = new PlaygroundLoadHarness(settings, profile, s3Root).run();
+
+        // Then
+        logger.info("{}", report);
+        assertEquals(settings.playgrounds, report.completedRuns);
+    }
+}
@@ -0,0 +1,141 @@
+package com.annihilator.data.playground.db;
+
+import com.annihilator.data.playground.model.TaskStepExecution;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TaskStepExecutionDAOImplTest {
+
+    @Mock
+    private MetaDBConnection metaDBConnection;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private PreparedStatement preparedStatement;
+
+    @Mock
+    private ResultSet resultSet;
+
+    private TaskStepExecutionDAOImpl stepExecutionDAO;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(metaDBConnection.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        stepExecutionDAO = new TaskStepExecutionDAOImpl(metaDBConnection);
+    }
+
+    @Test
+    void testUpsertStepExecution_ShouldBindAllColumns() throws SQLException {
+        // Given
+        TaskStepExecution execution = new TaskStepExecution();
+        execution.setTaskId("task-1");
+        execution.setCorrelationId("corr-1");
+        execution.setStepId("s-123");
+        execution.setClusterId("j-456");
+        execution.setOutputPath("s3://bucket/out.txt");
+        execution.setLogPath("s3://bucket/out.log");
+        execution.setAttempt(2);
+        execution.setStepState(TaskStepExecutionDAO.SUBMITTED);
+
+        // When
+        stepExecutionDAO.upsertStepExecution(execution);
+
+        // Then
+        verify(preparedStatement).setString(1, "task-1");
+        verify(preparedStatement).setString(2, "corr-1");
+        verify(preparedStatement).setString(3, "s-123");
+        verify(preparedStatement).setString(4, "j-456");
+        verify(preparedStatement).setInt(7, 2);
+        verify(preparedStatement).setString(8, TaskStepExecutionDAO.SUBMITTED);
+        verify(preparedStatement).setLong(eq(9), anyLong());
+        verify(preparedStatement).executeUpdate();
+        verify(preparedStatement).close();
+        verify(connection).close();
+        assertTrue(execution.getUpdatedAt() > 0);
+    }
+
+    @Test
+    void testFindStepExecution_WithRecordedStep_ShouldMapRow() throws SQLException {
+        // Given
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getString("task_id")).thenReturn("task-1");
+        when(resultSet.getString("correlation_id")).thenReturn("corr-1");
+        when(resultSet.getString("step_id")).thenReturn("s-123");
+        when(resultSet.getString("cluster_id")).thenReturn("j-456");
+        when(resultSet.getString("output_path")).thenReturn("s3://bucket/out.txt");
+        when(resultSet.getString("log_path")).thenReturn(null);
+        when(resultSet.getInt("attempt")).thenReturn(1);
+        when(resultSet.getString("step_state")).thenReturn("RUNNING");
+        when(resultSet.getLong("updated_at")).thenReturn(1000L);
+
+        // When
+        TaskStepExecution execution = stepExecutionDAO.findStepExecution("task-1", "corr-1");
+
+        // Then
+        assertEquals("s-123", execution.getStepId());
+        assertEquals("j-456", execution.getClusterId());
+        assertEquals(1, execution.getAttempt());
+        assertEquals("RUNNING", execution.getStepState());
+        assertEquals(1000L, execution.getUpdatedAt());
+        verify(preparedStatement).setString(1, "task-1");
+        verify(preparedStatement).setString(2, "corr-1");
+    }
+
+    @Test
+    void testFindStepExecution_WithoutRecordedStep_ShouldReturnNull() throws SQLException {
+        // Given
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(false);
+
+        // When & Then
+        assertNull(stepExecutionDAO.findStepExecution("task-1", "corr-1"));
+    }
+
+    @Test
+    void testUpdateStepState_ShouldBeGuardedByStepId() throws SQLException {
+        // When
+        stepExecutionDAO.updateStepState("task-1", "corr-1", "s-123", "COMPLETED", "s3://bucket/part-00000");
+
+        // Then
+        verify(preparedStatement).setString(1, "COMPLETED");
+        verify(preparedStatement).setString(2, "s3://bucket/part-00000");
+        verify(preparedStatement).setString(4, "task-1");
+        verify(preparedStatement).setString(5, "corr-1");
+        verify(preparedStatement).setString(6, "s-123");
+        verify(preparedStatement).executeUpdate();
+    }
+
+    @Test
+    void testUpdateStepState_WithSQLException_ShouldThrowException() throws SQLException {
+        // Given
+        when(preparedStatement.executeUpdate()).thenThrow(new SQLException("Database error"));
+
+        // When & Then
+        assertThrows(SQLException.class, () -> stepExecutionDAO.updateStepState("task-1", "corr-1", "s-123", "FAILED", null));
+        verify(preparedStatement).close();
+        verify(connection).close();
+    }
+}
@@ -0,0 +1,267 @@
+package com.annihilator.data.playground.reconsilation;
+
+import com.annihilator.data.playground.cloud.aws.S3Service;
+import com.annihilator.data.playground.config.ReconciliationConfig;
+import com.annihilator.data.playground.db.ReconciliationMappingDAO;
+import com.annihilator.data.playground.db.ReconciliationResultsDAO;
+import com.annihilator.data.playground.db.TaskDAO;
+import com.annihilator.data.playground.model.CSVComparisonResult;
+import com.annihilator.data.playground.model.Reconciliation;
+import com.annihilator.data.playground.model.Task;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AdaptiveCSVComparatorExactMatchTest {
+
+    private static final String LEFT_PATH = "s3://bucket/left.csv";
+    private static final String RIGHT_PATH = "s3://bucket/right.csv";
+
+    @Mock
+    private S3Service s3Service;
+
+    @Mock
+    private ReconciliationMappingDAO reconciliationMappingDAO;
+
+    @Mock
+    private ReconciliationResultsDAO reconciliationResultsDAO;
+
+    @Mock
+    private TaskDAO taskDAO;
+
+    private final Map<String, String> files = new HashMap<>();
+    private final Map<String, String> samples = new HashMap<>();
+
+    @TempDir
+    Path spillDirectory;
+
+    private ReconciliationConfig config;
+    private AdaptiveCSVComparator comparator;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        config = new ReconciliationConfig();
+        config.setExactMatchThreshold(1024 * 1024);
+        config.setSpillDirectory(spillDirectory.toString());
+
+        comparator = new AdaptiveCSVComparator(s3Service, reconciliationMappingDAO, reconciliationResultsDAO, taskDAO, config);
+
+        Reconciliation reconciliation = new Reconciliation();
+        reconciliation.setReconciliationId(UUID.randomUUID());
+        reconciliation.setLeftTableId("left");
+        reconciliation.setRightTableId("right");
+        reconciliation.setMapping("{\"id\":\"user_id\",\"email\":\"mail\"}");
+
+        when(reconciliationMappingDAO.findReconciliationMappingById("rec")).thenReturn(reconciliation);
+        when(taskDAO.findTaskById("left")).thenReturn(task(LEFT_PATH));
+        when(taskDAO.findTaskById("right")).thenReturn(task(RIGHT_PATH));
+        when(s3Service.getS3FileSize(anyString())).thenReturn(100L);
+        lenient().when(s3Service.getBucketName()).thenReturn("bucket");
+
+        when(s3Service.openFile(anyString())).thenAnswer(invocation ->
+                new ByteArrayInputStream(files.get(invocation.<String>getArgument(0)).getBytes(StandardCharsets.UTF_8)));
+
+        lenient().when(s3Service.writeReconciliationOutput(anyString(), anyString())).thenAnswer(invocation -> {
+            String fileName = invocation.getArgument(1);
+            samples.put(fileName.substring(fileName.lastIndexOf('/') + 1, fileName.lastIndexOf('_')), invocation.getArgument(0));
+            return fileName;
+        });
+    }
+
+    @Test
+    void testRunReconciliation_ShouldCountRowsAndSampleEachSide() throws Exception {
+        // Given
+        givenFilesWithEveryKindOfRow();
+
+        // When
+        comparator.runReconciliation("rec");
+
+        // Then
+        CSVComparisonResult result = storedResult();
+
+        assertEquals(4, result.getLeftFileRowCount());
+        assertEquals(4, result.getRightFileRowCount());
+        assertEquals(2, result.getCommonRowCount());
+        assertEquals(1, result.getLeftFileExclusiveRowCount());
+        assertEquals(1, result.getRightFileExclusiveRowCount());
+
+        assertEquals(List.of("1|a@x.com (Left: 2, Right: 1)", "2|b@x.com (Left: 1, Right: 1)"), sample("common"));
+        assertEquals(List.of("3|c@x.com (Count: 1)"), sample("exclusive_left"));
+        assertEquals(List.of("4|d@x.com (Count: 2)"), sample("exclusive_right"));
+
+        // Sample texts were captured on the way, so neither file is read again
+        verify(s3Service).openFile(LEFT_PATH);
+        verify(s3Service).openFile(RIGHT_PATH);
+    }
+
+    @Test
+    void testRunReconciliation_RareExclusiveRows_ShouldOnlyRereadTheirSide() throws Exception {
+        // Given - a few left-only rows among thousands of common ones, too rare to be among the captured rows
+        StringBuilder left = new StringBuilder("id,email\n");
+        StringBuilder right = new StringBuilder("user_id,mail\n");
+        for (int i = 0; i < 5_000; i++) {
+            left.append(i).append(",u").append(i).append("@x.com\n");
+            right.append(i).append(",u").append(i).append("@x.com\n");
+        }
+        for (int i = 0; i < 20; i++) {
+            left.append("only-").append(i).append(",o").append(i).append("@x.com\n");
+        }
+        files.put(LEFT_PATH, left.toString());
+        files.put(RIGHT_PATH, right.toString());
+
+        // When
+        comparator.runReconciliation("rec");
+
+        // Then
+        CSVComparisonResult result = storedResult();
+        assertEquals(5_000, result.getCommonRowCount());
+        assertEquals(20, result.getLeftFileExclusiveRowCount());
+
+        List<String> exclusiveLeft = sample("exclusive_left");
+        assertEquals(20, exclusiveLeft.size());
+        assertTrue(exclusiveLeft.stream().allMatch(row -> row.matches("only-\\d+\\|o\\d+@x\\.com \\(Count: 1\\)")));
+        assertEquals(100, sample("common").size());
+        assertTrue(sample("common").stream().noneMatch(row -> row.startsWith("null")));
+
+        verify(s3Service, times(2)).openFile(LEFT_PATH);
+        verify(s3Service, times(1)).openFile(RIGHT_PATH);
+    }
+
+    @Test
+    void testRunReconciliation_OverThreshold_ShouldSpillAndStayExact() throws Exception {
+        // Given
+        config.setExactMatchThreshold(150);
+        givenFilesWithEveryKindOfRow();
+
+        // When
+        comparator.runReconciliation("rec");
+
+        // Then
+        CSVComparisonResult result = storedResult();
+
+        assertEquals(4, result.getLeftFileRowCount());
+        assertEquals(4, result.getRightFileRowCount());
+        assertEquals(2, result.getCommonRowCount());
+        assertEquals(1, result.getLeftFileExclusiveRowCount());
+        assertEquals(1, result.getRightFileExclusiveRowCount());
+
+        List<String> common = new ArrayList<>(sample("common"));
+        Collections.sort(common);
+        assertEquals(List.of("1|a@x.com (Left: 2, Right: 1)", "2|b@x.com (Left: 1, Right: 1)"), common);
+        assertEquals(List.of("3|c@x.com (Count: 1)"), sample("exclusive_left"));
+        assertEquals(List.of("4|d@x.com (Count: 2)"), sample("exclusive_right"));
+
+        try (Stream<Path> leftovers = Files.list(spillDirectory)) {
+            assertEquals(0, leftovers.count());
+        }
+    }
+
+    @Test
+    void testRunReconciliation_OverThresholdWithoutSpilling_ShouldUseBloomFilter() throws Exception {
+        // Given
+        config.setExactMatchThreshold(150);
+        config.setMaxSpillPartitions(0);
+        config.setEstimatedRows(1000);
+        config.setFalsePositiveRate(0.01);
+        givenFilesWithEveryKindOfRow();
+
+        when(s3Service.openFilePrefix(anyString(), anyLong())).thenAnswer(invocation ->
+                new ByteArrayInputStream(files.get(invocation.<String>getArgument(0)).getBytes(StandardCharsets.UTF_8)));
+
+        // When
+        comparator.runReconciliation("rec");
+
+        // Then - each file is downloaded once, and the left file's fingerprints replayed from local disk
+        ArgumentCaptor<CSVComparisonResult> result = ArgumentCaptor.forClass(CSVComparisonResult.class);
+        verify(reconciliationResultsDAO).upsertReconciliationResult(anyString(), result.capture(), eq("SUCCESS"), eq("PROBABILISTIC_MATCH"));
+
+        assertEquals(4, result.getValue().getLeftFileRowCount());
+        assertEquals(4, result.getValue().getRightFileRowCount());
+        assertEquals(2, result.getValue().getCommonRowCount());
+        assertEquals(2, result.getValue().getLeftFileExclusiveRowCount());
+        assertEquals(2, result.getValue().getRightFileExclusiveRowCount());
+
+        verify(s3Service).openFile(LEFT_PATH);
+        verify(s3Service).openFile(RIGHT_PATH);
+
+        try (Stream<Path> leftovers = Files.list(spillDirectory)) {
+            assertEquals(0, leftovers.count());
+        }
+    }
+
+    private void givenFilesWithEveryKindOfRow() {
+        files.put(LEFT_PATH, "id,email,name\n"
+                + "1,a@x.com,Ann\n"
+                + "1,a@x.com,Ann again\n"
+                + "2,b@x.com,Bob\n"
+                + "\n"
+                + "3,c@x.com,Cid\n");
+        files.put(RIGHT_PATH, "mail,user_id\n"
+                + "a@x.com,1\n"
+                + "b@x.com, 2 \n"
+                + "d@x.com,4\n"
+                + "d@x.com,4\n");
+    }
+
+    @Test
+    void testRunReconciliation_IdenticalFiles_ShouldNotRereadLeft() throws Exception {
+        // Given
+        files.put(LEFT_PATH, "id,email\n1,a@x.com\n2,b@x.com\n");
+        files.put(RIGHT_PATH, "user_id,mail\n1,a@x.com\n2,b@x.com\n");
+
+        // When
+        comparator.runReconciliation("rec");
+
+        // Then
+        verify(s3Service).openFile(LEFT_PATH);
+        assertNull(samples.get("exclusive_left"));
+        assertEquals(2, sample("common").size());
+    }
+
+    private CSVComparisonResult storedResult() throws Exception {
+        ArgumentCaptor<CSVComparisonResult> result = ArgumentCaptor.forClass(CSVComparisonResult.class);
+        verify(reconciliationResultsDAO).upsertReconciliationResult(anyString(), result.capture(), eq("SUCCESS"), eq("EXACT_MATCH"));
+        return result.getValue();
+    }
+
+    private List<String> sample(String type) {
+        return new Gson().fromJson(samples.get(type), new TypeToken<List<String>>(){}.getType());
+    }
+
+    private static Task task(String outputLocation) {
+        Task task = new Task();
+        task.setOutputLocation(outputLocation);
+        return task;
+    }
+}
@@ -0,0 +1,85 @@
+package com.annihilator.data.playground.reconsilation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlockedBloomFilterTest {
+
+    @Test
+    void testMightContain_AddedRows_ShouldAlwaysBeFound() {
+        // Given
+        BlockedBloomFilter filter = new BlockedBloomFilter(200_000, 0.01, Long.MAX_VALUE);
+
+        // When
+        for (long i = 0; i < 200_000; i++) {
+            filter.put(mix(i), mix(~i));
+        }
+
+        // Then
+        for (long i = 0; i < 200_000; i++) {
+            assertTrue(filter.mightContain(mix(i), mix(~i)));
+        }
+    }
+
+    @Test
+    void testMightContain_OtherRows_ShouldStayNearTheFalsePositiveRate() {
+        // Given
+        BlockedBloomFilter filter = new BlockedBloomFilter(200_000, 0.01, Long.MAX_VALUE);
+        for (long i = 0; i < 200_000; i++) {
+            filter.put(mix(i), mix(~i));
+        }
+
+        // When
+        int falsePositives = 0;
+        for (long i = 200_000; i < 400_000; i++) {
+            if (filter.mightContain(mix(i), mix(~i))) {
+                falsePositives++;
+            }
+        }
+
+        // Then - within twice the wanted rate
+        assertTrue(falsePositives < 4_000, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void testMightContain_ShardedLowWord_ShouldNotRaiseFalsePositives() {
+        // Given - every key's low word is 0 modulo 8, as in one shard of eight
+        BlockedBloomFilter filter = new BlockedBloomFilter(100_000, 0.01, Long.MAX_VALUE);
+        for (long i = 0; i < 100_000; i++) {
+            filter.put(mix(i), mix(~i) & ~7L);
+        }
+
+        // When
+        int falsePositives = 0;
+        for (long i = 100_000; i < 200_000; i++) {
+            if (filter.mightContain(mix(i), mix(~i) & ~7L)) {
+                falsePositives++;
+            }
+        }
+
+        // Then
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void testConstructor_ShouldRespectMaxBytes() {
+        // When
+        BlockedBloomFilter capped = new BlockedBloomFilter(1_000_000_000L, 0.01, 1024 * 1024);
+        BlockedBloomFilter empty = new BlockedBloomFilter(0, 0.01, Long.MAX_VALUE);
+
+        // Then
+        assertEquals(1024 * 1024, capped.sizeInBytes());
+        assertEquals(64, empty.sizeInBytes());
+        assertEquals(7, empty.hashCount());
+        assertFalse(empty.mightContain(1L, 2L));
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+}
@@ -0,0 +1,201 @@
+package com.annihilator.data.playground.reconsilation;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DelimitedRowReaderTest {
+
+    @Test
+    void testNext_Csv_ShouldProjectAndTrimColumns() throws IOException {
+        // Given
+        String csv = "id,name,email\n"
+                + "1, Ann ,a@x.com\n"
+                + "2,Bob,b@x.com\r\n";
+
+        // When
+        List<String> rows = read(csv, "email", "id");
+
+        // Then
+        assertEquals(List.of("a@x.com|1", "b@x.com|2"), rows);
+    }
+
+    @Test
+    void testNext_SparkTsv_ShouldDetectTabDelimiter() throws IOException {
+        // Given
+        String tsv = "id\tcomment\tamount\n"
+                + "1\thello, world\t10.5\n"
+                + "2\t\"tab\tinside\"\t3\n";
+
+        // When
+        List<String> rows;
+        char delimiter;
+        try (DelimitedRowReader reader = new DelimitedRowReader(stream(tsv), List.of("comment", "amount"))) {
+            delimiter = reader.getDelimiter();
+            rows = drain(reader);
+        }
+
+        // Then
+        assertEquals('\t', delimiter);
+        assertEquals(List.of("hello, world|10.5", "tab\tinside|3"), rows);
+    }
+
+    @Test
+    void testNext_QuotedNewlines_ShouldStayInOneRow() throws IOException {
+        // Given
+        String csv = "id,note\n"
+                + "1,\"line one\nline two\"\n"
+                + "2,\"said \"\"hi\"\" and \\\"bye\\\"\"\n";
+
+        // When
+        List<String> rows = read(csv, "id", "note");
+
+        // Then
+        assertEquals(List.of("1|line one\nline two", "2|said \"hi\" and \"bye\""), rows);
+    }
+
+    @Test
+    void testNext_BlankAndShortRows_ShouldFollowPreviousRules() throws IOException {
+        // Given
+        String csv = "\uFEFFa,b,c\n"
+                + "\n"
+                + "   \n"
+                + "1\n"
+                + ",,\n"
+                + "x,y,z";
+
+        // When
+        List<String> rows = read(csv, "c", "a", "missing");
+
+        // Then - a short row keeps the columns it has, and a blank line is not a row
+        assertEquals(List.of("|1|", "||", "z|x|"), rows);
+    }
+
+    @Test
+    void testNext_RowWithoutProjectedColumns_ShouldBeSkipped() throws IOException {
+        // Given
+        String csv = "a,b,c\n1\n1,2,3\n";
+
+        // When
+        List<String> rows = read(csv, "c");
+
+        // Then
+        assertEquals(List.of("3"), rows);
+    }
+
+    @Test
+    void testNext_RepeatedColumn_ShouldFillEveryTarget() throws IOException {
+        // When
+        List<String> rows = read("a,b\n1,2\n", "b", "b", "a");
+
+        // Then
+        assertEquals(List.of("2|2|1"), rows);
+    }
+
+    @Test
+    void testNext_FieldsLongerThanBuffer_ShouldBeReadWhole() throws IOException {
+        // Given
+        String longValue = "v".repeat(200_000);
+        String csv = "skip,keep\n\"" + "s".repeat(150_000) + "\"," + longValue + "\n";
+
+        // When - a stream returning a few bytes per read forces refills mid-field
+        List<String> rows;
+        try (DelimitedRowReader reader = new DelimitedRowReader(trickle(csv), List.of("keep"))) {
+            rows = drain(reader);
+        }
+
+        // Then
+        assertEquals(List.of(longValue), rows);
+    }
+
+    @Test
+    void testNextBlock_ShouldOnlyCutBetweenRecords() throws IOException {
+        // Given
+        String csv = "id,note\n"
+                + "1,\"line one\nline two\"\n"
+                + "2,\"comma, \"\" and \\\" stay\nquoted\"\n"
+                + "3, x \"y\nz\n"
+                + "4,last";
+
+        // When - the smallest target cuts after every record
+        List<String> blocks = new ArrayList<>();
+        List<String> rows = new ArrayList<>();
+        try (DelimitedRowReader reader = new DelimitedRowReader(trickle(csv), List.of("id", "note"))) {
+            DelimitedRowReader parser = reader.blockParser();
+            byte[] block;
+            while ((block = reader.nextBlock(1)) != null) {
+                blocks.add(new String(block, StandardCharsets.UTF_8));
+                parser.reset(block);
+                rows.addAll(drain(parser));
+            }
+        }
+
+        // Then - the same rows as a single pass, the unopened quote in row 3 included
+        assertEquals(List.of("1,\"line one\nline two\"\n", "2,\"comma, \"\" and \\\" stay\nquoted\"\n",
+                "3, x \"y\n", "z\n", "4,last"), blocks);
+        assertEquals(read(csv, "id", "note"), rows);
+    }
+
+    @Test
+    void testNextBlock_LargeTarget_ShouldKeepBlocksWhole() throws IOException {
+        // Given
+        StringBuilder csv = new StringBuilder("a,b\n");
+        for (int i = 0; i < 50_000; i++) {
+            csv.append(i).append(",\"v\n").append(i).append("\"\n");
+        }
+
+        // When
+        int blockCount = 0;
+        List<String> rows = new ArrayList<>();
+        try (DelimitedRowReader reader = new DelimitedRowReader(stream(csv.toString()), List.of("b", "a"))) {
+            DelimitedRowReader parser = reader.blockParser();
+            byte[] block;
+            while ((block = reader.nextBlock(100_000)) != null) {
+                assertEquals('\n', block[block.length - 1]);
+                parser.reset(block);
+                rows.addAll(drain(parser));
+                blockCount++;
+            }
+        }
+
+        // Then
+        assertEquals(read(csv.toString(), "b", "a"), rows);
+        assertEquals(50_000, rows.size());
+        assertTrue(blockCount > 5);
+    }
+
+    private static List<String> read(String content, String... columns) throws IOException {
+        try (DelimitedRowReader reader = new DelimitedRowReader(stream(content), List.of(columns))) {
+            return drain(reader);
+        }
+    }
+
+    private static List<String> drain(DelimitedRowReader reader) throws IOException {
+        List<String> rows = new ArrayList<>();
+        while (reader.next()) {
+            rows.add(reader.rowText());
+        }
+        return rows;
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static InputStream trickle(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+    }
+}
@@ -0,0 +1,90 @@
+package com.annihilator.data.playground.reconsilation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FingerprintCountsTest {
+
+    @Test
+    void testIncrement_ShouldCountEachSideSeparately() {
+        // Given
+        FingerprintCounts counts = new FingerprintCounts(16);
+
+        // When
+        counts.incrementLeft(1L, 2L);
+        counts.incrementLeft(1L, 2L);
+        counts.incrementRight(1L, 2L);
+        counts.incrementRight(3L, 4L);
+
+        // Then
+        assertEquals(2, counts.size());
+
+        int common = counts.find(1L, 2L);
+        assertEquals(2, counts.leftCount(common));
+        assertEquals(1, counts.rightCount(common));
+
+        int rightOnly = counts.find(3L, 4L);
+        assertEquals(0, counts.leftCount(rightOnly));
+        assertEquals(1, counts.rightCount(rightOnly));
+
+        assertEquals(-1, counts.find(5L, 6L));
+    }
+
+    @Test
+    void testIncrement_ZeroFingerprint_ShouldNotReadAsEmptySlot() {
+        // Given
+        FingerprintCounts counts = new FingerprintCounts(16);
+
+        // When
+        int slot = counts.incrementLeft(0L, 0L);
+
+        // Then
+        assertTrue(counts.isUsed(slot));
+        assertEquals(slot, counts.find(0L, 0L));
+        assertEquals(1, counts.leftCount(slot));
+    }
+
+    @Test
+    void testIncrement_CollidingSlots_ShouldKeepFingerprintsApart() {
+        // Given
+        FingerprintCounts counts = new FingerprintCounts(16);
+
+        // When - same high word, so both probe from the same slot
+        counts.incrementLeft(7L, 1L);
+        counts.incrementRight(7L, 2L);
+
+        // Then
+        assertNotEquals(counts.find(7L, 1L), counts.find(7L, 2L));
+        assertEquals(1, counts.leftCount(counts.find(7L, 1L)));
+        assertEquals(0, counts.leftCount(counts.find(7L, 2L)));
+        assertEquals(1, counts.rightCount(counts.find(7L, 2L)));
+    }
+
+    @Test
+    void testIncrement_BeyondExpectedRows_ShouldGrowAndKeepCounts() {
+        // Given
+        FingerprintCounts counts = new FingerprintCounts(16);
+        int initialCapacity = counts.capacity();
+
+        // When
+        for (long i = 1; i <= 10_000; i++) {
+            counts.incrementLeft(i * 0x9E3779B97F4A7C15L, i);
+            if (i % 2 == 0) {
+                counts.incrementRight(i * 0x9E3779B97F4A7C15L, i);
+            }
+        }
+
+        // Then
+        assertEquals(10_000, counts.size());
+        assertTrue(counts.capacity() > initialCapacity);
+
+        for (long i = 1; i <= 10_000; i++) {
+            int slot = counts.find(i * 0x9E3779B97F4A7C15L, i);
+            assertEquals(1, counts.leftCount(slot));
+            assertEquals(i % 2 == 0 ? 1 : 0, counts.rightCount(slot));
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.annihilator.data.playground.reconsilation;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelRowPipelineTest {
+
+    @Test
+    void testAggregate_ShouldRouteEveryRowToItsShard() throws IOException {
+        // Given - left has 0..99_999 with every row twice, right has 50_000..159_999 as TSV
+        StringBuilder left = new StringBuilder("id,name\n");
+        for (int i = 0; i < 100_000; i++) {
+            left.append(i).append(",name-").append(i).append('\n');
+            left.append(i).append(",\"name-").append(i).append("\"\n");
+        }
+
+        StringBuilder right = new StringBuilder("name\tuser_id\n");
+        for (int i = 50_000; i < 160_000; i++) {
+            right.append("name-").append(i).append('\t').append(i).append('\n');
+        }
+
+        ParallelRowPipeline pipeline = new ParallelRowPipeline(4, 3);
+        FingerprintCounts[] counts = new FingerprintCounts[3];
+        ParallelRowPipeline.ShardSink[] sinks = new ParallelRowPipeline.ShardSink[3];
+        List<Set<Thread>> shardThreads = new ArrayList<>();
+        List<Boolean> misrouted = Collections.synchronizedList(new ArrayList<>());
+
+        for (int shard = 0; shard < 3; shard++) {
+            int current = shard;
+            FingerprintCounts shardCounts = new FingerprintCounts(16);
+            Set<Thread> threads = ConcurrentHashMap.newKeySet();
+            counts[shard] = shardCounts;
+            shardThreads.add(threads);
+            sinks[shard] = (side, high, low) -> {
+                threads.add(Thread.currentThread());
+                if (SpilledFingerprintDiff.shardOf(low, 3) != current) {
+                    misrouted.add(true);
+                }
+                if (side == ParallelRowPipeline.LEFT) {
+                    shardCounts.incrementLeft(high, low);
+                } else {
+                    shardCounts.incrementRight(high, low);
+                }
+            };
+        }
+
+        // When
+        long[] rows = pipeline.aggregate(source("left", left.toString(), "id", "name"),
+                source("right", right.toString(), "user_id", "name"), sinks);
+
+        FingerprintDiffSummary summary = new FingerprintDiffSummary(10);
+        for (FingerprintCounts shardCounts : counts) {
+            summary.add(shardCounts);
+        }
+
+        // Then
+        assertArrayEquals(new long[]{200_000, 110_000}, rows);
+        assertEquals(50_000, summary.getCommonRows());
+        assertEquals(50_000, summary.getLeftExclusiveRows());
+        assertEquals(60_000, summary.getRightExclusiveRows());
+        assertTrue(misrouted.isEmpty());
+
+        for (int shard = 0; shard < 3; shard++) {
+            assertTrue(counts[shard].size() > 0);
+            assertEquals(1, shardThreads.get(shard).size());
+        }
+    }
+
+    @Test
+    void testScan_SkippedSource_ShouldOnlyReadTheOther() throws IOException {
+        // Given
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+
+        // When
+        long[] rows = new ParallelRowPipeline(2, 1).scan(null, source("right", "a\n1\n2\n3\n", "a"),
+                () -> (side, row) -> seen.add(side + ":" + row.rowText()));
+
+        // Then
+        assertArrayEquals(new long[]{0, 3}, rows);
+        assertEquals(Set.of("1:1", "1:2", "1:3"), seen);
+    }
+
+    @Test
+    void testScan_SideDone_ShouldStopReadingIt() throws IOException {
+        // Given - 64 MB of rows on the left, of which only the first is wanted
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            rows.append(i).append('\n');
+        }
+        byte[] chunk = rows.toString().getBytes(StandardCharsets.UTF_8);
+        long total = 64L * 1024 * 1024 / chunk.length * chunk.length;
+        AtomicLong bytesRead = new AtomicLong();
+        Set<String> found = ConcurrentHashMap.newKeySet();
+
+        ParallelRowPipeline.Source left = new ParallelRowPipeline.Source("left", () -> new InputStream() {
+            private final InputStream header = stream("a\n");
+            private long position;
+
+            @Override
+            public int read() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int fromHeader = header.read(buffer, offset, length);
+                if (fromHeader > 0) {
+                    return fromHeader;
+                }
+                if (position == total) {
+                    return -1;
+                }
+                int count = (int) Math.min(length, Math.min(total - position, chunk.length - position % chunk.length));
+                System.arraycopy(chunk, (int) (position % chunk.length), buffer, offset, count);
+                position += count;
+                bytesRead.addAndGet(count);
+                return count;
+            }
+        }, List.of("a"));
+
+        // When
+        new ParallelRowPipeline(2, 1).scan(left, null,
+                () -> (side, row) -> {
+                    if (row.rowText().equals("0")) {
+                        found.add(row.rowText());
+                    }
+                },
+                side -> !found.isEmpty());
+
+        // Then - only the blocks already queued were read past the row
+        assertEquals(Set.of("0"), found);
+        assertTrue(bytesRead.get() < total / 4, "bytes read: " + bytesRead.get());
+    }
+
+    @Test
+    void testScan_FailingSource_ShouldRethrowWithoutHanging() {
+        // Given
+        ParallelRowPipeline.Source broken = new ParallelRowPipeline.Source("left", () -> {
+            throw new IOException("no such key");
+        }, List.of("a"));
+
+        // When / Then
+        IOException failure = assertThrows(IOException.class, () -> new ParallelRowPipeline(2, 1)
+                .scan(broken, source("right", "a\n1\n", "a"), () -> (side, row) -> { }));
+        assertEquals("no such key", failure.getCause().getMessage());
+    }
+
+    @Test
+    void testAggregate_FailingShard_ShouldStopTheRun() {
+        // Given
+        StringBuilder csv = new StringBuilder("a\n");
+        for (int i = 0; i < 300_000; i++) {
+            csv.append(i).append('\n');
+        }
+
+        ParallelRowPipeline.ShardSink failing = (side, high, low) -> {
+            throw new IllegalStateException("table full");
+        };
+
+        // When / Then
+        IllegalStateException failure = assertThrows(IllegalStateException.class, () -> new ParallelRowPipeline(2, 2)
+                .aggregate(source("left", csv.toString(), "a"), source("right", csv.toString(), "a"),
+                        new ParallelRowPipeline.ShardSink[]{failing, failing}));
+        assertEquals("table full", failure.getMessage());
+    }
+
+    @Test
+    void testForEachShard_ShouldReturnResultsInShardOrder() throws IOException {
+        // When
+        List<Integer> results = new ParallelRowPipeline(1, 4).forEachShard(shard -> shard * 10);
+
+        // Then
+        assertEquals(List.of(0, 10, 20, 30), results);
+    }
+
+    private static ParallelRowPipeline.Source source(String name, String content, String... columns) {
+        return new ParallelRowPipeline.Source(name, () -> stream(content), List.of(columns));
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,95 @@
+package com.annihilator.data.playground.reconsilation;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RowFingerprintTest {
+
+    @Test
+    void testCompute_SameValues_ShouldMatch() throws IOException {
+        // Given
+        RowFingerprint first = new RowFingerprint();
+        RowFingerprint second = new RowFingerprint();
+
+        // When
+        first.compute(row("id,email,amount\n1001,alice@example.com,42.50\n", "id", "email", "amount"));
+        second.compute(row("amount\tid\temail\n 42.50 \t1001\t\"alice@example.com\"\n", "id", "email", "amount"));
+
+        // Then
+        assertEquals(first.high(), second.high());
+        assertEquals(first.low(), second.low());
+    }
+
+    @Test
+    void testCompute_ShiftedValueBoundary_ShouldDiffer() throws IOException {
+        // Given
+        RowFingerprint fingerprint = new RowFingerprint();
+
+        // When
+        fingerprint.compute(row("a,b\nab,c\n", "a", "b"));
+        long high = fingerprint.high();
+        long low = fingerprint.low();
+        fingerprint.compute(row("a,b\na,bc\n", "a", "b"));
+
+        // Then
+        assertFalse(high == fingerprint.high() && low == fingerprint.low());
+    }
+
+    @Test
+    void testCompute_EmptyValues_ShouldDependOnColumnCount() throws IOException {
+        // Given
+        RowFingerprint fingerprint = new RowFingerprint();
+
+        // When
+        fingerprint.compute(row("a,b\n\"\",\"\"\n", "a"));
+        long high = fingerprint.high();
+        fingerprint.compute(row("a,b\n\"\",\"\"\n", "a", "b"));
+
+        // Then
+        assertNotEquals(high, fingerprint.high());
+    }
+
+    @Test
+    void testCompute_DistinctRows_ShouldNotCollide() throws IOException {
+        // Given
+        StringBuilder csv = new StringBuilder("id,user,flag\n");
+        for (int i = 0; i < 200_000; i++) {
+            csv.append(i).append(",user").append(i % 97).append(',').append(i % 2 == 0 ? "" : "x").append('\n');
+        }
+
+        RowFingerprint fingerprint = new RowFingerprint();
+        Set<String> fingerprints = new HashSet<>();
+
+        // When
+        try (DelimitedRowReader reader = reader(csv.toString(), "id", "user", "flag")) {
+            while (reader.next()) {
+                fingerprint.compute(reader);
+                fingerprints.add(fingerprint.high() + ":" + fingerprint.low());
+            }
+        }
+
+        // Then
+        assertEquals(200_000, fingerprints.size());
+    }
+
+    private static DelimitedRowReader row(String csv, String... columns) throws IOException {
+        DelimitedRowReader reader = reader(csv, columns);
+        assertTrue(reader.next());
+        return reader;
+    }
+
+    private static DelimitedRowReader reader(String csv, String... columns) throws IOException {
+        return new DelimitedRowReader(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), List.of(columns));
+    }
+}
@@ -0,0 +1,85 @@
+package com.annihilator.data.playground.reconsilation;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SampleRowTextsTest {
+
+    @Test
+    void testText_ShouldKeepEachSidesSmallestFingerprintsAcrossCollectors() throws IOException {
+        // Given - rows split over three collectors, as over three parse workers
+        SampleRowTexts samples = new SampleRowTexts(50);
+        SampleRowTexts.Collector[] collectors = {samples.newCollector(), samples.newCollector(), samples.newCollector()};
+        TreeMap<UUID, String> expected = new TreeMap<>();
+
+        StringBuilder csv = new StringBuilder("a\n");
+        for (int i = 0; i < 2_000; i++) {
+            csv.append(i).append('\n');
+        }
+
+        DelimitedRowReader row = new DelimitedRowReader(
+                new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)), List.of("a"));
+        RowFingerprint fingerprint = new RowFingerprint();
+
+        // When - every row twice, so duplicates must not take two places
+        for (int i = 0; row.next(); i++) {
+            fingerprint.compute(row);
+            collectors[i % 3].offer(ParallelRowPipeline.LEFT, fingerprint.high(), fingerprint.low(), row);
+            collectors[(i + 1) % 3].offer(ParallelRowPipeline.LEFT, fingerprint.high(), fingerprint.low(), row);
+            expected.put(new UUID(fingerprint.high(), fingerprint.low()), row.rowText());
+        }
+
+        for (SampleRowTexts.Collector collector : collectors) {
+            collector.finish();
+        }
+
+        // Then
+        int checked = 0;
+        for (UUID key : expected.keySet()) {
+            String text = samples.text(key.getMostSignificantBits(), key.getLeastSignificantBits());
+            if (checked++ < 50) {
+                assertEquals(expected.get(key), text);
+            } else {
+                assertNull(text);
+            }
+        }
+    }
+
+    @Test
+    void testText_ShouldFindRowsCapturedOnEitherSide() {
+        // Given
+        SampleRowTexts samples = new SampleRowTexts(1);
+        SampleRowTexts.Collector collector = samples.newCollector();
+
+        // When
+        collector.offer(ParallelRowPipeline.RIGHT, 5, 5, rowOf("right"));
+        collector.offer(ParallelRowPipeline.LEFT, 9, 9, rowOf("left"));
+        collector.offer(ParallelRowPipeline.LEFT, 7, 7, rowOf("smaller"));
+        collector.finish();
+
+        // Then
+        assertEquals("right", samples.text(5, 5));
+        assertEquals("smaller", samples.text(7, 7));
+        assertNull(samples.text(9, 9));
+    }
+
+    private static DelimitedRowReader rowOf(String value) {
+        try {
+            DelimitedRowReader row = new DelimitedRowReader(
+                    new ByteArrayInputStream(("a\n" + value + "\n").getBytes(StandardCharsets.UTF_8)), List.of("a"));
+            row.next();
+            return row;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.annihilator.data.playground.reconsilation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpilledFingerprintDiffTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testDiff_ShouldCountDistinctRowsAcrossPartitions() throws IOException {
+        // Given
+        FingerprintDiffSummary summary;
+
+        try (SpilledFingerprintDiff diff = new SpilledFingerprintDiff(tempDir, 7)) {
+
+            // When - left has 0..99_999 with every row twice, right has 50_000..119_999
+            try (SpilledFingerprintDiff.SpillWriter left = diff.openLeft()) {
+                for (long i = 0; i < 100_000; i++) {
+                    left.add(mix(i), i);
+                    left.add(mix(i), i);
+                }
+            }
+
+            try (SpilledFingerprintDiff.SpillWriter right = diff.openRight()) {
+                for (long i = 50_000; i < 120_000; i++) {
+                    right.add(mix(i), i);
+                }
+            }
+
+            summary = diff.diff(100);
+        }
+
+        // Then
+        assertEquals(50_000, summary.getCommonRows());
+        assertEquals(50_000, summary.getLeftExclusiveRows());
+        assertEquals(20_000, summary.getRightExclusiveRows());
+
+        assertEquals(100, summary.getCommonSamples().size());
+        assertEquals(100, summary.getLeftExclusiveSamples().size());
+        assertEquals(100, summary.getRightExclusiveSamples().size());
+
+        for (FingerprintDiffSummary.Sample sample : summary.getCommonSamples()) {
+            assertTrue(sample.low >= 50_000 && sample.low < 100_000);
+            assertEquals(2, sample.leftCount);
+            assertEquals(1, sample.rightCount);
+        }
+
+        for (FingerprintDiffSummary.Sample sample : summary.getRightExclusiveSamples()) {
+            assertTrue(sample.low >= 100_000);
+            assertEquals(0, sample.leftCount);
+        }
+    }
+
+    @Test
+    void testDiff_Shards_ShouldOnlyTouchTheirOwnPartitions() throws IOException {
+        // Given
+        int shards = 3;
+        FingerprintDiffSummary summary = new FingerprintDiffSummary(10);
+
+        try (SpilledFingerprintDiff diff = new SpilledFingerprintDiff(tempDir, 6)) {
+
+            // When - every shard spills the rows routed to it, then diffs its own partitions
+            for (int shard = 0; shard < shards; shard++) {
+                try (SpilledFingerprintDiff.SpillWriter left = diff.openLeft(shard, shards);
+                     SpilledFingerprintDiff.SpillWriter right = diff.openRight(shard, shards)) {
+                    for (long i = 0; i < 30_000; i++) {
+                        if (SpilledFingerprintDiff.shardOf(i, shards) == shard) {
+                            left.add(mix(i), i);
+                            if (i % 3 != 0) {
+                                right.add(mix(i), i);
+                            }
+                        }
+                    }
+                }
+            }
+
+            for (int shard = shards - 1; shard >= 0; shard--) {
+                summary.merge(diff.diff(shard, shards, 10));
+            }
+        }
+
+        // Then
+        assertEquals(20_000, summary.getCommonRows());
+        assertEquals(10_000, summary.getLeftExclusiveRows());
+        assertEquals(0, summary.getRightExclusiveRows());
+        assertEquals(10, summary.getCommonSamples().size());
+    }
+
+    @Test
+    void testOpen_ShardsNotDividingPartitions_ShouldFail() throws IOException {
+        try (SpilledFingerprintDiff diff = new SpilledFingerprintDiff(tempDir, 5)) {
+            assertThrows(IllegalArgumentException.class, () -> diff.openLeft(0, 2));
+        }
+    }
+
+    @Test
+    void testClose_ShouldRemoveWorkDirectory() throws IOException {
+        // Given
+        SpilledFingerprintDiff diff = new SpilledFingerprintDiff(tempDir, 4);
+
+        try (SpilledFingerprintDiff.SpillWriter left = diff.openLeft()) {
+            left.add(1L, 2L);
+        }
+
+        // When - closed without diffing, as after a failed read
+        diff.close();
+
+        // Then
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertFalse(files.findAny().isPresent());
+        }
+    }
+
+    private static long mix(long value) {
+        return value * 0x9E3779B97F4A7C15L;
+    }
+}
@@ -0,0 +1,115 @@
+package com.annihilator.data.playground.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlockingExecutorsTest {
+
+    @Test
+    void testNewBoundedExecutor_PlatformThreads_ShouldCapConcurrency() throws Exception {
+        // Given
+        ExecutorService executor = BlockingExecutors.newBoundedExecutor("test-platform", 3, false);
+
+        try {
+            // When
+            int peak = runBlockingTasks(executor, 12);
+
+            // Then
+            assertTrue(peak <= 3, "peak concurrency " + peak);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testNewBoundedExecutor_VirtualThreads_ShouldCapConcurrencyOnAnyRuntime() throws Exception {
+        // Given
+        ExecutorService executor = BlockingExecutors.newBoundedExecutor("test-virtual", 4, true);
+
+        try {
+            // When
+            int peak = runBlockingTasks(executor, 16);
+
+            // Then
+            assertTrue(peak <= 4, "peak concurrency " + peak);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testSemaphoreBoundedExecutor_ShouldReleasePermitWhenTaskFails() throws Exception {
+        // Given
+        BlockingExecutors.SemaphoreBoundedExecutor executor =
+                new BlockingExecutors.SemaphoreBoundedExecutor(Executors.newCachedThreadPool(), 2);
+        CountDownLatch done = new CountDownLatch(1);
+
+        try {
+            // When
+            executor.execute(() -> {
+                try {
+                    throw new IllegalStateException("task failure");
+                } finally {
+                    done.countDown();
+                }
+            });
+
+            // Then
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+            assertEquals(2, executor.availablePermits());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testSemaphoreBoundedExecutor_ShouldQueueTasksBeyondLimit() throws Exception {
+        // Given
+        BlockingExecutors.SemaphoreBoundedExecutor executor =
+                new BlockingExecutors.SemaphoreBoundedExecutor(Executors.newCachedThreadPool(), 2);
+
+        try {
+            // When
+            int peak = runBlockingTasks(executor, 10);
+
+            // Then
+            assertTrue(peak <= 2, "peak concurrency " + peak);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static int runBlockingTasks(ExecutorService executor, int tasks) throws InterruptedException {
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(tasks);
+
+        for (int i = 0; i < tasks; i++) {
+            executor.execute(() -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    running.decrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        return peak.get();
+    }
+}
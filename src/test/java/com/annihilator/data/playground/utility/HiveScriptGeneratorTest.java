@@ -11,6 +11,7 @@ import org.mockito.MockitoAnnotations;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -131,8 +132,9 @@ class HiveScriptGeneratorTest {
         System.out.println("=== END SCRIPT ===\n");
 
         // Verify UDF setup exists
-        assertTrue(script.stream().anyMatch(line -> line.contains("aws s3 cp s3://test-bucket/udfs/string-utils.jar /tmp/string-utils.jar")));
-        assertTrue(script.stream().anyMatch(line -> line.contains("sudo cp /tmp/string-utils.jar /usr/lib/hive/lib/")));
+        assertTrue(script.contains("UDF_JAR_1=$(fetch_udf_jar s3://test-bucket/udfs/string-utils.jar) || exit 1"));
+        assertFalse(script.stream().anyMatch(line -> line.contains("/usr/lib/hive/lib/")));
+        assertTrue(script.stream().anyMatch(line -> line.startsWith("hive -e \"SET hive.cli.print.header=true; ADD JAR ${UDF_JAR_1}; CREATE TEMPORARY FUNCTION")));
         assertTrue(script.stream().anyMatch(line -> line.contains("CREATE TEMPORARY FUNCTION toUpperCase AS 'com.annihilator.dataphantom.udfs.StringUtils'")));
         assertTrue(script.stream().anyMatch(line -> line.contains("CREATE TEMPORARY FUNCTION toLowerCase AS 'com.annihilator.dataphantom.udfs.StringUtils'")));
         
@@ -154,6 +156,52 @@ class HiveScriptGeneratorTest {
         verify(udfDAO).getUDFById("udf2");
     }
 
+    @Test
+    void testGenerateHiveScript_WithUDFs_ShouldFetchJarsThroughNodeLocalCache() throws SQLException {
+        // Given
+        Task task = new Task();
+        task.setUdfIds("udf1,udf2");
+        task.setQuery("SELECT toUpperCase(a), parseUrl(b) FROM t");
+
+        UDF udf1 = new UDF();
+        udf1.setId("udf1");
+        udf1.setFunctionName("toUpperCase");
+        udf1.setJarS3Path("s3://test-bucket/udfs/string-utils.jar");
+        udf1.setClassName("com.annihilator.dataphantom.udfs.StringUtils");
+
+        UDF udf2 = new UDF();
+        udf2.setId("udf2");
+        udf2.setFunctionName("parseUrl");
+        udf2.setJarS3Path("s3://test-bucket/udfs/url-utils.jar");
+        udf2.setClassName("com.annihilator.dataphantom.udfs.UrlUtils");
+
+        when(udfDAO.getUDFById("udf1")).thenReturn(udf1);
+        when(udfDAO.getUDFById("udf2")).thenReturn(udf2);
+
+        // When
+        List<String> script = HiveScriptGenerator.generateHiveScript(
+            task, udfDAO, "playground", "query", "abc123", "test-bucket", "2025-01-20",
+            "/tmp/output.csv", "s3://test-bucket/output/result.csv");
+
+        // Then - the cache is keyed by ETag and only downloads on a miss
+        assertEquals(1, script.stream().filter(line -> line.equals("fetch_udf_jar() {")).count());
+        assertTrue(script.stream().anyMatch(line -> line.contains("aws s3api head-object") && line.contains("--query ETag")));
+        assertTrue(script.stream().anyMatch(line -> line.contains("if [ ! -s \"${jar_path}\" ]; then")));
+        // Without an ETag or a complete download the function fails rather than printing a path
+        assertTrue(script.stream().anyMatch(line -> line.contains("if [ -z \"${etag}\" ]")));
+        assertEquals(2, script.stream().filter(line -> line.trim().equals("return 1")).count());
+        assertTrue(script.contains("UDF_JAR_1=$(fetch_udf_jar s3://test-bucket/udfs/string-utils.jar) || exit 1"));
+        assertTrue(script.contains("UDF_JAR_2=$(fetch_udf_jar s3://test-bucket/udfs/url-utils.jar) || exit 1"));
+
+        // Then - one Hive session registers the functions and runs the query
+        List<String> hiveCommands = script.stream().filter(line -> line.startsWith("hive -e")).collect(Collectors.toList());
+        assertEquals(1, hiveCommands.size());
+        assertTrue(hiveCommands.get(0).startsWith("hive -e \"SET hive.cli.print.header=true; "
+                + "ADD JAR ${UDF_JAR_1}; CREATE TEMPORARY FUNCTION toUpperCase AS 'com.annihilator.dataphantom.udfs.StringUtils'; "
+                + "ADD JAR ${UDF_JAR_2}; CREATE TEMPORARY FUNCTION parseUrl AS 'com.annihilator.dataphantom.udfs.UrlUtils'; "
+                + "SELECT toUpperCase(a), parseUrl(b) FROM t\""));
+    }
+
     @Test
     void testGenerateHiveScript_WithMissingUDF_ShouldHandleGracefully() throws SQLException {
         // Given
@@ -199,7 +247,7 @@ class HiveScriptGeneratorTest {
         System.out.println("=== END SCRIPT ===\n");
 
         // Verify valid UDF is processed
-        assertTrue(script.stream().anyMatch(line -> line.contains("aws s3 cp s3://test-bucket/udfs/string-utils.jar /tmp/string-utils.jar")));
+        assertTrue(script.contains("UDF_JAR_1=$(fetch_udf_jar s3://test-bucket/udfs/string-utils.jar) || exit 1"));
         assertTrue(script.stream().anyMatch(line -> line.contains("CREATE TEMPORARY FUNCTION toUpperCase AS")));
         
         // Verify missing UDF warning
@@ -98,9 +98,9 @@ class PrestoScriptGeneratorLegacyTest {
         // Then
         assertFalse(script.isEmpty());
         assertTrue(script.contains("#!/bin/bash"));
-        assertTrue(script.contains("aws s3 cp s3://bucket/udfs/test-udf.jar /tmp/test-udf.jar"));
-        assertTrue(script.contains("sudo cp /tmp/test-udf.jar /usr/lib/hive/lib/"));
-        assertTrue(script.contains("hive -e \"CREATE TEMPORARY FUNCTION toUpperCase AS 'com.annihilator.dataphantom.udfs.TestUDF'\""));
+        assertTrue(script.contains("UDF_JAR_1=$(fetch_udf_jar s3://bucket/udfs/test-udf.jar) || exit 1"));
+        assertTrue(script.stream().anyMatch(line -> line.startsWith("hive -e \"SET hive.cli.print.header=true; ADD JAR ${UDF_JAR_1}; "
+                + "CREATE TEMPORARY FUNCTION toUpperCase AS 'com.annihilator.dataphantom.udfs.TestUDF'; SELECT toUpperCase('hello')")));
         assertTrue(script.stream().anyMatch(line -> line.contains("echo \"Query:")));
         
         // Check that the query is in the script
@@ -147,16 +147,19 @@ class PrestoScriptGeneratorLegacyTest {
         assertFalse(script.isEmpty());
         assertTrue(script.contains("#!/bin/bash"));
         
-        // Check that both UDFs are processed
-        long downloadCommands = script.stream()
-                .filter(cmd -> cmd.startsWith("aws s3 cp") && cmd.contains("udfs/"))
+        // Check that both UDFs are processed; they share a JAR, so it is fetched once
+        long fetchCommands = script.stream()
+                .filter(cmd -> cmd.contains("$(fetch_udf_jar s3://"))
                 .count();
-        assertEquals(2, downloadCommands);
-
-        long registerCommands = script.stream()
-                .filter(cmd -> cmd.contains("CREATE TEMPORARY FUNCTION"))
-                .count();
-        assertEquals(2, registerCommands);
+        assertEquals(1, fetchCommands);
+
+        String queryCommand = script.stream()
+                .filter(cmd -> cmd.startsWith("hive -e"))
+                .findFirst()
+                .orElseThrow();
+        assertTrue(queryCommand.contains("CREATE TEMPORARY FUNCTION toUpperCase AS 'com.annihilator.dataphantom.udfs.TestUDF';"));
+        assertTrue(queryCommand.contains("CREATE TEMPORARY FUNCTION toLowerCase AS 'com.annihilator.dataphantom.udfs.TestUDF';"));
+        assertEquals(1, script.stream().filter(cmd -> cmd.startsWith("hive -e")).count());
 
         // Check that the query is in the script
         boolean queryFound = script.stream().anyMatch(line -> line.contains("SELECT toUpperCase('hello'), toLowerCase('WORLD')"));
@@ -144,8 +144,9 @@ class PrestoScriptGeneratorTest {
         assertTrue(script.contains("LOG_FILE=\"/tmp/presto-execution-abc123.log\""));
         
         // Verify UDF setup exists
-        assertTrue(script.stream().anyMatch(line -> line.contains("aws s3 cp s3://test-bucket/udfs/string-utils.jar /tmp/string-utils.jar")));
-        assertTrue(script.stream().anyMatch(line -> line.contains("sudo cp /tmp/string-utils.jar /usr/lib/hive/lib/")));
+        assertTrue(script.contains("UDF_JAR_1=$(fetch_udf_jar s3://test-bucket/udfs/string-utils.jar) || exit 1"));
+        assertFalse(script.stream().anyMatch(line -> line.contains("/usr/lib/hive/lib/")));
+        assertTrue(script.stream().anyMatch(line -> line.startsWith("hive -e \"SET hive.cli.print.header=true; ADD JAR ${UDF_JAR_1}; CREATE TEMPORARY FUNCTION")));
         assertTrue(script.stream().anyMatch(line -> line.contains("CREATE TEMPORARY FUNCTION toUpperCase AS 'com.annihilator.dataphantom.udfs.StringUtils'")));
         assertTrue(script.stream().anyMatch(line -> line.contains("CREATE TEMPORARY FUNCTION toLowerCase AS 'com.annihilator.dataphantom.udfs.StringUtils'")));
         
@@ -211,7 +212,7 @@ class PrestoScriptGeneratorTest {
         System.out.println("=== END SCRIPT ===\n");
 
         // Verify valid UDF is processed
-        assertTrue(script.stream().anyMatch(line -> line.contains("aws s3 cp s3://test-bucket/udfs/string-utils.jar /tmp/string-utils.jar")));
+        assertTrue(script.contains("UDF_JAR_1=$(fetch_udf_jar s3://test-bucket/udfs/string-utils.jar) || exit 1"));
         assertTrue(script.stream().anyMatch(line -> line.contains("CREATE TEMPORARY FUNCTION toUpperCase AS")));
         
         // Verify missing UDF warning